@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Runs the benchmarks like org.openjdk.jmh.Main and accepts the same arguments, but writes the
+ * results as JSON to jmh-result.json if no other result format is specified. If the system property
+ * baseline points to the JSON result of an earlier run, every benchmark which got slower by more
+ * than regression_threshold (default 0.1, i.e. 10%) is reported and the exit code is 1. E.g.:
+ * <p>
+ * java -Dbaseline=old.json -jar graphhopper-benchmarks-*-jar-with-dependencies.jar RoutingBenchmark
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+            if (!cmdOptions.getResult().hasValue())
+                builder.result("jmh-result.json");
+        }
+
+        Collection<RunResult> results = new Runner(builder.build()).run();
+
+        String baseline = System.getProperty("baseline");
+        if (baseline != null) {
+            double threshold = Double.parseDouble(System.getProperty("regression_threshold", "0.1"));
+            List<String> regressions = findRegressions(readScores(new File(baseline)), results, threshold);
+            for (String regression : regressions) {
+                System.out.println("REGRESSION " + regression);
+            }
+            if (!regressions.isEmpty())
+                System.exit(1);
+        }
+    }
+
+    /**
+     * @return the score of every benchmark in the specified JMH JSON result, see createKey
+     */
+    static Map<String, Double> readScores(File file) throws Exception {
+        Map<String, Double> scores = new HashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> iter = result.path("params").fields();
+            while (iter.hasNext()) {
+                Map.Entry<String, JsonNode> entry = iter.next();
+                params.put(entry.getKey(), entry.getValue().asText());
+            }
+            String key = createKey(result.get("benchmark").asText(), result.get("mode").asText(), params);
+            scores.put(key, result.get("primaryMetric").get("score").asDouble());
+        }
+        return scores;
+    }
+
+    static List<String> findRegressions(Map<String, Double> baseline, Collection<RunResult> results, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (RunResult result : results) {
+            Map<String, String> params = new TreeMap<>();
+            for (String paramKey : result.getParams().getParamsKeys()) {
+                params.put(paramKey, result.getParams().getParam(paramKey));
+            }
+            String mode = result.getParams().getMode().shortLabel();
+            String key = createKey(result.getParams().getBenchmark(), mode, params);
+            Double oldScore = baseline.get(key);
+            if (oldScore == null || oldScore == 0)
+                continue;
+
+            double newScore = result.getPrimaryResult().getScore();
+            // for throughput higher is better, for all other modes like the average time lower is better
+            double change = "thrpt".equals(mode) ? oldScore / newScore - 1 : newScore / oldScore - 1;
+            if (change > threshold)
+                regressions.add(key + " " + oldScore + " -> " + newScore + " " + result.getPrimaryResult().getScoreUnit()
+                        + String.format(Locale.ROOT, " (%.1f%% slower)", change * 100));
+        }
+        return regressions;
+    }
+
+    private static String createKey(String benchmark, String mode, Map<String, String> sortedParams) {
+        return benchmark + " " + mode + (sortedParams.isEmpty() ? "" : " " + sortedParams);
+    }
+}
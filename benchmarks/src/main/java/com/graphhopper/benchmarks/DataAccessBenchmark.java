@@ -0,0 +1,164 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the DataAccess implementations for sequential and random integer access and for reading
+ * byte arrays like the way names. RAM_INT_STORE does not support getBytes and is only used for the
+ * integer benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DataAccessBenchmark {
+    // number of accesses per benchmark invocation
+    private static final int OPERATIONS = 1 << 16;
+
+    static DAType toType(String type) {
+        if ("RAM_STORE".equals(type))
+            return DAType.RAM_STORE;
+        if ("RAM_INT_STORE".equals(type))
+            return DAType.RAM_INT_STORE;
+        if ("MMAP".equals(type))
+            return DAType.MMAP;
+        if ("UNSAFE_STORE".equals(type))
+            return DAType.UNSAFE_STORE;
+        throw new IllegalArgumentException("Unknown type " + type);
+    }
+
+    @State(Scope.Benchmark)
+    public abstract static class AbstractDataAccessState {
+        @Param({"64"})
+        int sizeInMB;
+        GHDirectory dir;
+        DataAccess da;
+        long capacity;
+        long[] randomPositions;
+
+        abstract String getType();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            File location = File.createTempFile("gh-benchmark", "");
+            location.delete();
+            dir = new GHDirectory(location.getAbsolutePath(), toType(getType()));
+            dir.create();
+            da = dir.find("benchmark");
+            capacity = (long) sizeInMB << 20;
+            da.create(capacity);
+            for (long pos = 0; pos < capacity; pos += 4) {
+                da.setInt(pos, (int) pos);
+            }
+
+            Random random = new Random(123);
+            randomPositions = new long[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                // aligned to integers like the graph storage does
+                randomPositions[i] = (long) random.nextInt((int) (capacity / 4)) * 4;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            String location = dir.getLocation();
+            dir.clear();
+            Helper.removeDir(new File(location));
+        }
+    }
+
+    public static class IntState extends AbstractDataAccessState {
+        @Param({"RAM_STORE", "RAM_INT_STORE", "MMAP", "UNSAFE_STORE"})
+        String type;
+
+        @Override
+        String getType() {
+            return type;
+        }
+    }
+
+    public static class BytesState extends AbstractDataAccessState {
+        @Param({"RAM_STORE", "MMAP", "UNSAFE_STORE"})
+        String type;
+        byte[] bytes = new byte[32];
+
+        @Override
+        String getType() {
+            return type;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int getIntSequential(IntState state) {
+        DataAccess da = state.da;
+        int sum = 0;
+        for (long pos = 0, end = (long) OPERATIONS * 4; pos < end; pos += 4) {
+            sum += da.getInt(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int getIntRandom(IntState state) {
+        DataAccess da = state.da;
+        long[] positions = state.randomPositions;
+        int sum = 0;
+        for (int i = 0; i < positions.length; i++) {
+            sum += da.getInt(positions[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void setIntRandom(IntState state) {
+        DataAccess da = state.da;
+        long[] positions = state.randomPositions;
+        for (int i = 0; i < positions.length; i++) {
+            da.setInt(positions[i], i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void getBytesRandom(BytesState state, Blackhole blackhole) {
+        DataAccess da = state.da;
+        long[] positions = state.randomPositions;
+        byte[] bytes = state.bytes;
+        long maxPos = state.capacity - bytes.length;
+        for (int i = 0; i < positions.length; i++) {
+            da.getBytes(Math.min(positions[i], maxPos), bytes, bytes.length);
+            blackhole.consume(bytes[0]);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+
+/**
+ * The input of the benchmarks, either the OSM file ub+routes.osm imported with the indoor encoder or
+ * a synthetic grid with varying speeds. Fixtures are created once per trial and always with the same
+ * seed, so the results of different runs are comparable.
+ */
+class Fixture {
+    static final String INDOOR = "ub+routes";
+    static final String GRID = "grid";
+    private static final long SEED = 123;
+
+    private final GraphHopper hopper;
+    private final File location;
+    private final GraphHopperStorage graph;
+    private final Weighting weighting;
+    private final PrepareContractionHierarchies chPreparation;
+    private final LocationIndexTree locationIndex;
+
+    private Fixture(GraphHopper hopper, File location, GraphHopperStorage graph, Weighting weighting,
+                    PrepareContractionHierarchies chPreparation) {
+        this.hopper = hopper;
+        this.location = location;
+        this.graph = graph;
+        this.weighting = weighting;
+        this.chPreparation = chPreparation;
+        this.locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        this.locationIndex.prepareIndex();
+    }
+
+    /**
+     * @param name either INDOOR or GRID
+     */
+    static Fixture create(String name) throws IOException {
+        if (INDOOR.equals(name))
+            return importOSM(findFile(INDOOR + ".osm"));
+        if (GRID.equals(name))
+            return createGrid(300);
+        throw new IllegalArgumentException("Unknown fixture " + name);
+    }
+
+    /**
+     * The benchmarks are usually started from the root folder but also from the benchmarks folder.
+     */
+    private static File findFile(String name) {
+        for (File file : new File[]{new File(name), new File("..", name)}) {
+            if (file.exists())
+                return file;
+        }
+        throw new IllegalArgumentException("Cannot find " + name + " in " + new File("").getAbsolutePath() + " or its parent folder");
+    }
+
+    static Fixture importOSM(File osmFile) throws IOException {
+        File location = createTempDir();
+        GraphHopper hopper = new GraphHopperOSM().
+                setDataReaderFile(osmFile.getAbsolutePath()).
+                setGraphHopperLocation(location.getAbsolutePath()).
+                setEncodingManager(new EncodingManager("indoor")).
+                setMinNetworkSize(0, 0).
+                setStoreOnFlush(false);
+        hopper.getCHFactoryDecorator().setWeightingsAsStrings("fastest");
+        hopper.importOrLoad();
+
+        PrepareContractionHierarchies ch = hopper.getCHFactoryDecorator().getPreparations().get(0);
+        return new Fixture(hopper, location, hopper.getGraphHopperStorage(), ch.getWeighting(), ch);
+    }
+
+    /**
+     * Creates a grid with the specified number of nodes per side. Some edges are missing and the
+     * speeds vary, so the shortest paths are not just straight lines.
+     */
+    static Fixture createGrid(int size) {
+        EncodingManager em = new EncodingManager("car");
+        FlagEncoder encoder = em.getEncoder("car");
+        Weighting weighting = new FastestWeighting(encoder);
+        GraphHopperStorage graph = new GraphBuilder(em).setCHGraph(weighting).create();
+        NodeAccess na = graph.getNodeAccess();
+        DistanceCalc distCalc = new DistanceCalcEarth();
+        Random random = new Random(SEED);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                na.setNode(row * size + col, 50 + row * 0.001, 10 + col * 0.001);
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int node = row * size + col;
+                if (col + 1 < size)
+                    connect(graph, encoder, distCalc, random, node, node + 1);
+                if (row + 1 < size)
+                    connect(graph, encoder, distCalc, random, node, node + size);
+            }
+        }
+        graph.freeze();
+
+        PrepareContractionHierarchies ch = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                graph, graph.getGraph(CHGraph.class, weighting), weighting, TraversalMode.NODE_BASED);
+        ch.doWork();
+        return new Fixture(null, null, graph, weighting, ch);
+    }
+
+    private static void connect(GraphHopperStorage graph, FlagEncoder encoder, DistanceCalc distCalc, Random random,
+                                int from, int to) {
+        if (random.nextInt(10) == 0)
+            return;
+
+        NodeAccess na = graph.getNodeAccess();
+        double dist = distCalc.calcDist(na.getLatitude(from), na.getLongitude(from), na.getLatitude(to), na.getLongitude(to));
+        EdgeIteratorState edge = graph.edge(from, to).setDistance(dist);
+        edge.setFlags(encoder.setProperties(20 + random.nextInt(10) * 10, true, true));
+    }
+
+    private static File createTempDir() throws IOException {
+        File location = File.createTempFile("gh-benchmark", "");
+        if (!location.delete())
+            throw new IOException("Cannot create temporary folder " + location);
+        return location;
+    }
+
+    GraphHopperStorage getGraph() {
+        return graph;
+    }
+
+    Weighting getWeighting() {
+        return weighting;
+    }
+
+    FlagEncoder getEncoder() {
+        return weighting.getFlagEncoder();
+    }
+
+    LocationIndexTree getLocationIndexTree() {
+        return locationIndex;
+    }
+
+    /**
+     * @return the location index used for routing requests, for indoor graphs this is one tree per level
+     */
+    LocationIndex getRoutingLocationIndex() {
+        return hopper == null ? locationIndex : hopper.getLocationIndex();
+    }
+
+    RoutingAlgorithm createCHAlgo() {
+        return chPreparation.createAlgo(graph.getGraph(CHGraph.class, weighting),
+                AlgorithmOptions.start().algorithm(DIJKSTRA_BI).weighting(weighting).
+                        traversalMode(TraversalMode.NODE_BASED).build());
+    }
+
+    /**
+     * @return count pairs of start and end nodes, the nodes of the pair i are at 2 * i and 2 * i + 1
+     */
+    int[] createQueries(int count) {
+        Random random = new Random(SEED);
+        int[] queries = new int[count * 2];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(graph.getNodes());
+        }
+        return queries;
+    }
+
+    DefaultEdgeFilter createEdgeFilter() {
+        return new DefaultEdgeFilter(getEncoder());
+    }
+
+    void close() {
+        locationIndex.close();
+        if (hopper != null)
+            hopper.close();
+        else
+            graph.close();
+        if (location != null)
+            Helper.removeDir(location);
+    }
+}
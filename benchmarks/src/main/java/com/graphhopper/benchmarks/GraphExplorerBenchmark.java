@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the iteration over the edges of all nodes of the BaseGraph, which is the inner loop of
+ * every routing algorithm. One invocation visits all nodes once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class GraphExplorerBenchmark {
+    @Param({Fixture.INDOOR, Fixture.GRID})
+    String fixtureName;
+    private Fixture fixture;
+    private EdgeExplorer allExplorer;
+    private EdgeExplorer outExplorer;
+    private int nodes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = Fixture.create(fixtureName);
+        Graph graph = fixture.getGraph().getBaseGraph();
+        nodes = graph.getNodes();
+        allExplorer = graph.createEdgeExplorer();
+        outExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(fixture.getEncoder(), false, true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public long exploreAllEdges() {
+        return explore(allExplorer);
+    }
+
+    @Benchmark
+    public long exploreOutgoingEdges() {
+        return explore(outExplorer);
+    }
+
+    private long explore(EdgeExplorer explorer) {
+        long sum = 0;
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                sum += iter.getAdjNode() + iter.getFlags();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilterIndoor;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures LocationIndexTree.findClosest on the indoor graph without a level, with an
+ * EdgeFilterIndoor which rejects the edges of all other levels and with the per level
+ * LocationIndexIndoor used for routing requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LocationIndexBenchmark {
+    private static final int POINTS = 1000;
+    private Fixture fixture;
+    private double[] lats, lons;
+    private EdgeFilterIndoor[] levelFilters;
+    private DefaultEdgeFilter filter;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = Fixture.create(Fixture.INDOOR);
+        filter = fixture.createEdgeFilter();
+        IndoorExtension ext = (IndoorExtension) fixture.getGraph().getExtension();
+        NodeAccess na = fixture.getGraph().getNodeAccess();
+        Random random = new Random(123);
+        lats = new double[POINTS];
+        lons = new double[POINTS];
+        levelFilters = new EdgeFilterIndoor[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            // close to a node but usually not exactly at it
+            int node = random.nextInt(fixture.getGraph().getNodes());
+            lats[i] = na.getLatitude(node) + (random.nextDouble() - 0.5) * 0.0002;
+            lons[i] = na.getLongitude(node) + (random.nextDouble() - 0.5) * 0.0002;
+            levelFilters[i] = new EdgeFilterIndoor(ext.getLevel(node));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private int next() {
+        index = (index + 1) % POINTS;
+        return index;
+    }
+
+    @Benchmark
+    public QueryResult findClosest() {
+        int i = next();
+        return fixture.getLocationIndexTree().findClosest(lats[i], lons[i], filter);
+    }
+
+    @Benchmark
+    public QueryResult findClosestIndoorFilter() {
+        int i = next();
+        return fixture.getLocationIndexTree().findClosest(lats[i], lons[i], levelFilters[i]);
+    }
+
+    @Benchmark
+    public QueryResult findClosestIndoorIndex() {
+        int i = next();
+        LocationIndex index = fixture.getRoutingLocationIndex();
+        return index.findClosest(lats[i], lons[i], levelFilters[i]);
+    }
+}
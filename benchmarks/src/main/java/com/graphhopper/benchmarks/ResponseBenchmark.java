@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.http.SimpleRouteSerializer;
+import com.graphhopper.http.WebHelper;
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.util.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steps after the routing algorithm: creating the instructions via
+ * InstructionsFromEdges, merging the path into the response via PathMerger including the
+ * simplification, encoding the points as polyline and serializing the response to the JSON map.
+ * The paths are calculated once on the indoor graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ResponseBenchmark {
+    private static final int QUERIES = 300;
+    private Fixture fixture;
+    private Translation translation;
+    private PathMerger pathMerger;
+    private SimpleRouteSerializer serializer;
+    private final List<Path> paths = new ArrayList<>();
+    private final List<PointList> points = new ArrayList<>();
+    private final List<GHResponse> responses = new ArrayList<>();
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = Fixture.create(Fixture.INDOOR);
+        translation = new TranslationMap().doImport().getWithFallBack(Locale.US);
+        pathMerger = new PathMerger().setDouglasPeucker(new DouglasPeuckerIndoor());
+        serializer = new SimpleRouteSerializer(fixture.getGraph().getBounds());
+        IndoorExtension ext = (IndoorExtension) fixture.getGraph().getExtension();
+        int[] queries = fixture.createQueries(QUERIES);
+        for (int i = 0; i < queries.length; i += 2) {
+            Path path = new AStarBidirection(fixture.getGraph(), fixture.getWeighting(), TraversalMode.NODE_BASED).
+                    calcPath(queries[i], queries[i + 1]);
+            if (!path.isFound() || path.getEdgeCount() == 0)
+                continue;
+
+            // like RoutingTemplateIndoor the levels of the query points are required for the points
+            path.setLevels(new int[]{ext.getLevel(queries[i]), ext.getLevel(queries[i + 1])});
+
+            paths.add(path);
+            points.add(path.calcPoints());
+            GHResponse rsp = new GHResponse();
+            rsp.add(mergePath(path));
+            responses.add(rsp);
+        }
+        if (paths.isEmpty())
+            throw new IllegalStateException("No route found for the indoor fixture");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private int next() {
+        index = (index + 1) % paths.size();
+        return index;
+    }
+
+    private PathWrapper mergePath(Path path) {
+        PathWrapper pathWrapper = new PathWrapper();
+        pathMerger.doWork(pathWrapper, Collections.singletonList(path), translation);
+        return pathWrapper;
+    }
+
+    @Benchmark
+    public InstructionList instructionsFromEdges() {
+        return paths.get(next()).calcInstructions(translation);
+    }
+
+    @Benchmark
+    public PathWrapper pathMerger() {
+        return mergePath(paths.get(next()));
+    }
+
+    @Benchmark
+    public String encodePolyline() {
+        return WebHelper.encodePolyline(points.get(next()));
+    }
+
+    @Benchmark
+    public Map<String, Object> simpleRouteSerializer() {
+        return serializer.toJSON(responses.get(next()), true, true, false, true);
+    }
+}
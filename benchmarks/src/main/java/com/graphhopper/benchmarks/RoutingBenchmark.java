@@ -0,0 +1,82 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.Graph;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures point to point queries between random nodes for the unidirectional Dijkstra, the
+ * bidirectional A* and the bidirectional Dijkstra on the CH graph. Every invocation calculates one
+ * route, the queries repeat after QUERIES invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+    private static final int QUERIES = 500;
+    @Param({Fixture.INDOOR, Fixture.GRID})
+    String fixtureName;
+    private Fixture fixture;
+    private Graph graph;
+    private int[] queries;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = Fixture.create(fixtureName);
+        graph = fixture.getGraph().getBaseGraph();
+        queries = fixture.createQueries(QUERIES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private Path route(RoutingAlgorithm algo) {
+        index = (index + 2) % queries.length;
+        return algo.calcPath(queries[index], queries[index + 1]);
+    }
+
+    @Benchmark
+    public Path dijkstra() {
+        return route(new Dijkstra(graph, fixture.getWeighting(), TraversalMode.NODE_BASED));
+    }
+
+    @Benchmark
+    public Path astarBidirection() {
+        return route(new AStarBidirection(graph, fixture.getWeighting(), TraversalMode.NODE_BASED));
+    }
+
+    @Benchmark
+    public Path dijkstraBidirectionCH() {
+        return route(fixture.createCHAlgo());
+    }
+}
@@ -28,6 +28,8 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.exceptions.*;
 import com.graphhopper.util.shapes.GHPoint;
+import com.graphhopper.util.shapes.GHPointIndoor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.ResponseBody;
@@ -382,6 +384,17 @@ public class GraphHopperWeb implements GraphHopperAPI {
         try {
             Request okRequest = createRequest(request);
             ResponseBody rspBody = getClientForRequest(request).newCall(okRequest).execute().body();
+            boolean tmpTurnDescription = request.getHints().getBool("turn_description", turnDescription);
+            MediaType contentType = rspBody.contentType();
+            if (contentType != null && BinaryRouteCodec.CONTENT_TYPE.equals(contentType.type() + "/" + contentType.subtype())) {
+                try {
+                    return BinaryRouteCodec.read(rspBody.byteStream(), tmpTurnDescription);
+                } finally {
+                    rspBody.close();
+                }
+            }
+
+            // errors are always returned as JSON, also if type=binary was requested
             JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
             rspBody.close();
 
@@ -395,7 +408,6 @@ public class GraphHopperWeb implements GraphHopperAPI {
             boolean tmpInstructions = request.getHints().getBool("instructions", instructions);
             boolean tmpCalcPoints = request.getHints().getBool("calc_points", calcPoints);
             boolean tmpElevation = request.getHints().getBool("elevation", elevation);
-            boolean tmpTurnDescription = request.getHints().getBool("turn_description", turnDescription);
 
             for (JsonNode path : paths) {
                 PathWrapper altRsp = createPathWrapper(path, tmpCalcPoints, tmpInstructions, tmpElevation, tmpTurnDescription, !request.getPathDetails().isEmpty());
@@ -436,7 +448,10 @@ public class GraphHopperWeb implements GraphHopperAPI {
 
         String places = "";
         for (GHPoint p : request.getPoints()) {
-            places += "point=" + round6(p.lat) + "," + round6(p.lon) + "&";
+            places += "point=" + round6(p.lat) + "," + round6(p.lon);
+            if (p instanceof GHPointIndoor)
+                places += "," + ((GHPointIndoor) p).getLevel();
+            places += "&";
         }
 
         String type = request.getHints().get("type", "json");
@@ -23,17 +23,23 @@ import com.graphhopper.reader.dem.*;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHAlgoFactoryDecorator;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.indoor.IndoorOverlayAlgoFactoryDecorator;
 import com.graphhopper.routing.lm.LMAlgoFactoryDecorator;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.template.*;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.*;
 import com.graphhopper.storage.*;
+import com.graphhopper.storage.change.ChangeGraphBatch;
+import com.graphhopper.storage.change.ChangeGraphException;
+import com.graphhopper.storage.change.ChangeGraphFeatureReader;
 import com.graphhopper.storage.change.ChangeGraphHelper;
 import com.graphhopper.storage.change.ChangeGraphResponse;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexIndoor;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.storage.index.SnapshotLocationIndex;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
@@ -50,6 +56,9 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -105,14 +114,29 @@ public class GraphHopper implements GraphHopperAPI {
     // for CH prepare
     private final CHAlgoFactoryDecorator chFactoryDecorator = new CHAlgoFactoryDecorator();
 
+    // for indoor graphs
+    private final IndoorOverlayAlgoFactoryDecorator indoorOverlayFactoryDecorator = new IndoorOverlayAlgoFactoryDecorator();
+
     // for data reader
     private String dataReaderFile;
     private double dataReaderWayPointMaxDistance = 1;
     private int dataReaderWorkerThreads = 2;
+    private int dataReaderWayWorkerThreads = 0;
+    private String dataReaderNodeMapDataAccess = "";
+    // streamed graph changes
+    private int changeGraphThreads = 2;
+    private int changeGraphBatchSize = 500;
+    private long changeGraphBatchMillis = 100;
+    // finds the edges of the changes, created on the first changeGraph call and shut down in close
+    private ExecutorService changeGraphExecutor;
     private boolean calcPoints = true;
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
     private FlagEncoderFactory flagEncoderFactory = FlagEncoderFactory.DEFAULT;
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    // serializes the preparation of the indoor overlay after graph changes, never held while waiting for the write lock
+    private final Object indoorOverlayLock = new Object();
+    // read-only copy of ghStorage used for routing after the first changeGraph call, see changeGraph
+    private volatile GraphHopperStorage routingSnapshot;
     private PathDetailsBuilderFactory pathBuilderFactory = new PathDetailsBuilderFactory();
 
     public GraphHopper() {
@@ -122,6 +146,7 @@ public class GraphHopper implements GraphHopperAPI {
         // order is important to use CH as base algo and set the approximation in the followed lm factory decorator
         algoDecorators.add(chFactoryDecorator);
         algoDecorators.add(lmFactoryDecorator);
+        algoDecorators.add(indoorOverlayFactoryDecorator);
     }
 
     /**
@@ -181,6 +206,40 @@ public class GraphHopper implements GraphHopperAPI {
         return dataReaderWorkerThreads;
     }
 
+    /**
+     * Threads which encode the ways while data reading, 0 if this is done in the reading thread.
+     */
+    protected int getWayWorkerThreads() {
+        return dataReaderWayWorkerThreads;
+    }
+
+    /**
+     * This parameter specifies how many threads calculate the flags of the ways while importing.
+     * The edges are still created in the order of the file. Default is 0 i.e. the ways are
+     * processed in the reading thread.
+     */
+    public GraphHopper setWayWorkerThreads(int wayWorkerThreads) {
+        this.dataReaderWayWorkerThreads = wayWorkerThreads;
+        return this;
+    }
+
+    /**
+     * @return the DataAccess type of the node map used while data reading or an empty string for
+     * the default on-heap map
+     */
+    protected String getNodeMapDataAccess() {
+        return dataReaderNodeMapDataAccess;
+    }
+
+    /**
+     * This parameter specifies where the map from OSM node IDs is stored while importing, e.g.
+     * UNSAFE_STORE to keep it off-heap or MMAP. Default is an empty string i.e. an on-heap BTree.
+     */
+    public GraphHopper setNodeMapDataAccess(String dataAccess) {
+        this.dataReaderNodeMapDataAccess = dataAccess;
+        return this;
+    }
+
     /**
      * Return maximum distance (in meter) to reduce points via douglas peucker while OSM import.
      */
@@ -197,6 +256,17 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * This parameter specifies how many features changeGraph applies at once while reading them.
+     * Bigger batches need less snapshots but it takes longer until the first changes are visible.
+     */
+    public GraphHopper setChangeGraphBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batch size has to be positive but was " + batchSize);
+        this.changeGraphBatchSize = batchSize;
+        return this;
+    }
+
     public TraversalMode getTraversalMode() {
         return traversalMode;
     }
@@ -223,8 +293,8 @@ public class GraphHopper implements GraphHopperAPI {
      * also optimized for usage in the web module i.e. try reduce network IO.
      */
     public GraphHopper forServer(boolean isIndoor) {
-        //you need more detailed routes indoors
-        setSimplifyResponse(!isIndoor);
+        // indoor routes are simplified per level, see DouglasPeuckerIndoor
+        setSimplifyResponse(true);
         return setInMemory();
     }
 
@@ -298,9 +368,10 @@ public class GraphHopper implements GraphHopperAPI {
     }
 
     /**
-     * Not yet stable enough to offer it for everyone
+     * Keeps the graph off-heap in native memory which avoids GC pressure for large graphs. Falls back
+     * to RAM_STORE if native memory is not available on the target platform.
      */
-    private GraphHopper setUnsafeMemory() {
+    public GraphHopper setUnsafeMemory() {
         ensureNotLoaded();
         dataAccessType = DAType.UNSAFE_STORE;
         return this;
@@ -457,6 +528,7 @@ public class GraphHopper implements GraphHopperAPI {
 
     public void setGraphHopperStorage(GraphHopperStorage ghStorage) {
         this.ghStorage = ghStorage;
+        routingSnapshot = null;
         fullyLoaded = true;
     }
 
@@ -606,6 +678,11 @@ public class GraphHopper implements GraphHopperAPI {
         dataReaderWayPointMaxDistance = args.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, dataReaderWayPointMaxDistance);
 
         dataReaderWorkerThreads = args.getInt("datareader.worker_threads", dataReaderWorkerThreads);
+        dataReaderWayWorkerThreads = args.getInt("datareader.way_worker_threads", dataReaderWayWorkerThreads);
+        dataReaderNodeMapDataAccess = args.get("datareader.node_map_dataaccess", dataReaderNodeMapDataAccess);
+        changeGraphThreads = args.getInt("graph.change.threads", changeGraphThreads);
+        changeGraphBatchSize = args.getInt("graph.change.batch_size", changeGraphBatchSize);
+        changeGraphBatchMillis = args.getLong("graph.change.batch_millis", changeGraphBatchMillis);
         enableInstructions = args.getBool("datareader.instructions", enableInstructions);
         preferredLanguage = args.get("datareader.preferred_language", preferredLanguage);
 
@@ -838,6 +915,10 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    public final IndoorOverlayAlgoFactoryDecorator getIndoorOverlayFactoryDecorator() {
+        return indoorOverlayFactoryDecorator;
+    }
+
     /**
      * Does the preparation and creates the location index
      */
@@ -869,6 +950,27 @@ public class GraphHopper implements GraphHopperAPI {
         if (lmFactoryDecorator.isEnabled())
             lmFactoryDecorator.createPreparations(ghStorage, locationIndex);
         loadOrPrepareLM();
+
+        if (encodingManager.isIndoor() && indoorOverlayFactoryDecorator.isEnabled())
+            prepareIndoorOverlay();
+    }
+
+    /**
+     * The overlay of an indoor graph is small and therefore created in memory after every import or load,
+     * and again after every graph change.
+     */
+    protected void prepareIndoorOverlay() {
+        indoorOverlayFactoryDecorator.createPreparations(ghStorage, createIndoorOverlayWeightings(ghStorage));
+    }
+
+    private List<Weighting> createIndoorOverlayWeightings(Graph graph) {
+        List<Weighting> weightings = new ArrayList<>();
+        for (FlagEncoder encoder : encodingManager.fetchEdgeEncoders()) {
+            for (String weightingStr : indoorOverlayFactoryDecorator.getWeightingsAsStrings()) {
+                weightings.add(createWeighting(new HintsMap(weightingStr), encoder, graph));
+            }
+        }
+        return weightings;
     }
 
     private void interpolateBridgesAndOrTunnels() {
@@ -927,6 +1029,14 @@ public class GraphHopper implements GraphHopperAPI {
         if (weighting == null)
             throw new IllegalArgumentException("weighting " + weightingStr + " not supported");
 
+        if (encoder instanceof IndoorFlagEncoder) {
+            weighting = new IndoorProfileWeighting(weighting, hintsMap);
+            // graph is null for preparations which cannot depend on the time of a request
+            if (hintsMap.has(Routing.DEPARTURE_TIME) && graph != null && graph.getExtension() instanceof IndoorExtension)
+                weighting = new TimeRestrictionWeighting(weighting, (IndoorExtension) graph.getExtension(),
+                        TimeRestrictionWeighting.parseTimeSlot(hintsMap.get(Routing.DEPARTURE_TIME, "")));
+        }
+
         if (hintsMap.has(Routing.BLOCK_AREA)) {
             String blockAreaStr = hintsMap.get(Parameters.Routing.BLOCK_AREA, "");
             GraphEdgeIdFinder.BlockArea blockArea = new GraphEdgeIdFinder(graph, locationIndex).
@@ -971,8 +1081,14 @@ public class GraphHopper implements GraphHopperAPI {
             request.setVehicle(vehicle);
         }
 
-        Lock readLock = readWriteLock.readLock();
-        readLock.lock();
+        // after the first graph change routing uses a snapshot without locking
+        GraphHopperStorage graph = routingSnapshot;
+        Lock readLock = null;
+        if (graph == null) {
+            readLock = readWriteLock.readLock();
+            readLock.lock();
+            graph = ghStorage;
+        }
         try {
             if (!encodingManager.supports(vehicle))
                 throw new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
@@ -1003,15 +1119,17 @@ public class GraphHopper implements GraphHopperAPI {
             // For example see #734
             checkIfPointsAreInBounds(points);
 
+            // the location index is built for ghStorage, the lookup has to read the flags of the snapshot
+            LocationIndex index = graph == ghStorage ? locationIndex : new SnapshotLocationIndex(locationIndex, graph);
             RoutingTemplate routingTemplate;
             if (ROUND_TRIP.equalsIgnoreCase(algoStr))
-                routingTemplate = new RoundTripRoutingTemplate(request, ghRsp, locationIndex, maxRoundTripRetries);
+                routingTemplate = new RoundTripRoutingTemplate(request, ghRsp, index, maxRoundTripRetries);
             else if (ALT_ROUTE.equalsIgnoreCase(algoStr))
-                routingTemplate = new AlternativeRoutingTemplate(request, ghRsp, locationIndex);
+                routingTemplate = new AlternativeRoutingTemplate(request, ghRsp, index);
             else if (encodingManager.isIndoor())
-                routingTemplate = new RoutingTemplateIndoor(request,ghRsp,locationIndex,(IndoorExtension)getGraphHopperStorage().getExtension());
+                routingTemplate = new RoutingTemplateIndoor(request,ghRsp,index,(IndoorExtension)graph.getExtension());
             else
-                routingTemplate = new ViaRoutingTemplate(request, ghRsp, locationIndex);
+                routingTemplate = new ViaRoutingTemplate(request, ghRsp, index);
 
             List<Path> altPaths = null;
             int maxRetries = routingTemplate.getMaxRetries();
@@ -1048,7 +1166,7 @@ public class GraphHopper implements GraphHopperAPI {
                     queryGraph.lookup(qResults);
                 } else {
                     checkNonChMaxWaypointDistance(points);
-                    queryGraph = new QueryGraph(ghStorage);
+                    queryGraph = new QueryGraph(graph);
                     queryGraph.lookup(qResults);
                     weighting = createWeighting(hints, encoder, queryGraph);
                     ghRsp.addDebugInfo("tmode:" + tMode.toString());
@@ -1072,7 +1190,8 @@ public class GraphHopper implements GraphHopperAPI {
                 boolean tmpCalcPoints = hints.getBool(Routing.CALC_POINTS, calcPoints);
                 double wayPointMaxDistance = hints.getDouble(Routing.WAY_POINT_MAX_DISTANCE, 1d);
 
-                DouglasPeucker peucker = new DouglasPeucker().setMaxDistance(wayPointMaxDistance);
+                DouglasPeucker peucker = encodingManager.isIndoor() ? new DouglasPeuckerIndoor() : new DouglasPeucker();
+                peucker.setMaxDistance(wayPointMaxDistance);
                 PathMerger pathMerger = new PathMerger().
                         setCalcPoints(tmpCalcPoints).
                         setDouglasPeucker(peucker).
@@ -1093,29 +1212,176 @@ public class GraphHopper implements GraphHopperAPI {
             ghRsp.addError(ex);
             return Collections.emptyList();
         } finally {
-            readLock.unlock();
+            if (readLock != null)
+                readLock.unlock();
         }
     }
 
     /**
-     * This method applies the changes to the graph specified as feature collection. It does so by locking the routing
-     * to avoid concurrent changes which could result in incorrect routing (like when done while a Dijkstra search) or
-     * also while just reading one edge row (inconsistent edge properties).
+     * This method applies the changes to the graph specified as feature collection. Concurrent
+     * changes are applied one after the other.
+     * <p>
+     * If the graph is kept on the heap (RAM or RAM_STORE) the changes are applied to ghStorage while
+     * routing continues without locking on a snapshot of the previous state. The snapshot is
+     * replaced after all changes are applied, only the modified segments are copied. Later direct
+     * modifications of getGraphHopperStorage() are not visible for routing until the next call of
+     * this method.
+     * <p>
+     * For other storages the routing is locked while the changes are applied to avoid incorrect
+     * routing (like when done while a Dijkstra search) or inconsistent edge properties.
+     * <p>
+     * Changes are not supported if CH or LM is enabled: their preparations are computed once from
+     * ghStorage and would neither follow the changes nor the snapshot. The indoor overlay is prepared
+     * again for the changed graph after the changes are applied, without blocking the routing. Until
+     * then routes on the changed graph do not use the overlay.
      */
     public ChangeGraphResponse changeGraph(Collection<JsonFeature> collection) {
-        // TODO allow calling this method if called before CH preparation
-        if (getCHFactoryDecorator().isEnabled())
-            throw new IllegalArgumentException("To use the changeGraph API you need to turn off CH");
+        checkChangeGraphSupported();
 
+        ChangeGraphResponse response;
         Lock writeLock = readWriteLock.writeLock();
         writeLock.lock();
         try {
             ChangeGraphHelper overlay = createChangeGraphHelper(ghStorage, locationIndex);
             long updateCount = overlay.applyChanges(encodingManager, collection);
-            return new ChangeGraphResponse(updateCount);
+            publishRoutingSnapshot();
+            response = new ChangeGraphResponse(updateCount);
         } finally {
             writeLock.unlock();
         }
+        updateIndoorOverlay();
+        return response;
+    }
+
+    /**
+     * This method applies the changes while they are read from the specified iterator, e.g. while
+     * they are parsed from a request. The features are collected into batches of at most
+     * graph.change.batch_size features, a batch is also finished if graph.change.batch_millis passed
+     * since its first feature was read. The features are read in a separate thread, so this time limit
+     * holds even if reading blocks. The edges of a batch are found with graph.change.threads threads
+     * without locking, then the changes are applied sorted by edge like in changeGraph.
+     *
+     * @return the response containing the statistics of every batch
+     * @throws ChangeGraphException if reading or applying the features failed, it contains the
+     *                              batches applied before
+     */
+    public ChangeGraphResponse changeGraph(Iterator<JsonFeature> features) {
+        checkChangeGraphSupported();
+
+        ChangeGraphHelper helper = createChangeGraphHelper(ghStorage, locationIndex);
+        ExecutorService executor = getChangeGraphExecutor();
+        List<ChangeGraphBatch> batches = new ArrayList<>();
+        ChangeGraphFeatureReader reader = new ChangeGraphFeatureReader(features, changeGraphBatchSize);
+        try {
+            JsonFeature feature;
+            while ((feature = reader.take()) != null) {
+                long start = System.currentTimeMillis();
+                List<JsonFeature> batchFeatures = new ArrayList<>();
+                batchFeatures.add(feature);
+                while (batchFeatures.size() < changeGraphBatchSize) {
+                    long remainingMillis = start + changeGraphBatchMillis - System.currentTimeMillis();
+                    if (remainingMillis <= 0 || (feature = reader.poll(remainingMillis)) == null)
+                        break;
+                    batchFeatures.add(feature);
+                }
+
+                List<ChangeGraphHelper.EdgeChange> changes = helper.findEdgeChanges(encodingManager, batchFeatures, executor, changeGraphThreads);
+                long updateCount;
+                Lock writeLock = readWriteLock.writeLock();
+                writeLock.lock();
+                try {
+                    updateCount = helper.applyEdgeChanges(changes);
+                    publishRoutingSnapshot();
+                } finally {
+                    writeLock.unlock();
+                }
+                updateIndoorOverlay();
+
+                ChangeGraphBatch batch = new ChangeGraphBatch(batchFeatures.size(), ChangeGraphHelper.countEdges(changes),
+                        updateCount, System.currentTimeMillis() - start);
+                logger.debug("applied graph changes, " + batch);
+                batches.add(batch);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ChangeGraphException("Interrupted while reading the graph changes", ex, new ChangeGraphResponse(batches));
+        } catch (RuntimeException ex) {
+            throw new ChangeGraphException(ex.getMessage(), ex, new ChangeGraphResponse(batches));
+        } finally {
+            reader.close();
+        }
+        return new ChangeGraphResponse(batches);
+    }
+
+    private void checkChangeGraphSupported() {
+        // TODO allow calling this method if called before CH preparation
+        if (getCHFactoryDecorator().isEnabled())
+            throw new IllegalArgumentException("To use the changeGraph API you need to turn off CH");
+        if (getLMFactoryDecorator().isEnabled())
+            throw new IllegalArgumentException("To use the changeGraph API you need to turn off LM");
+    }
+
+    private synchronized ExecutorService getChangeGraphExecutor() {
+        if (changeGraphExecutor == null) {
+            changeGraphExecutor = Executors.newFixedThreadPool(changeGraphThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    // do not keep the JVM alive if close was not called
+                    Thread thread = new Thread(runnable, "changeGraph");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return changeGraphExecutor;
+    }
+
+    /**
+     * Has to be called with the write lock. Requests which found no snapshot wait for the write lock,
+     * so also the first snapshot is published after the changes. Without snapshots the indoor overlay
+     * is removed as ghStorage is changed in place, see updateIndoorOverlay.
+     */
+    private void publishRoutingSnapshot() {
+        if (encodingManager.isIndoor())
+            // the cached connectors of the weightings depend on the changed edge properties
+            ((IndoorExtension) ghStorage.getExtension()).clearWeightingCache();
+        if (ghStorage.isSnapshotPossible())
+            routingSnapshot = ghStorage.createSnapshot();
+        else if (isIndoorOverlayEnabled())
+            indoorOverlayFactoryDecorator.clearPreparations();
+    }
+
+    /**
+     * Prepares the indoor overlay for the graph used for routing after publishRoutingSnapshot. Has to be
+     * called without the write lock: a snapshot is not modified anymore, ghStorage is only read with
+     * the read lock, so routing continues meanwhile. If several batches were applied in the meantime
+     * only the latest snapshot is prepared.
+     */
+    private void updateIndoorOverlay() {
+        if (!isIndoorOverlayEnabled())
+            return;
+
+        synchronized (indoorOverlayLock) {
+            Graph snapshot = routingSnapshot;
+            if (snapshot != null) {
+                if (!indoorOverlayFactoryDecorator.isPreparedFor(snapshot))
+                    indoorOverlayFactoryDecorator.updatePreparations(snapshot, createIndoorOverlayWeightings(snapshot));
+                return;
+            }
+
+            Lock readLock = readWriteLock.readLock();
+            readLock.lock();
+            try {
+                if (!indoorOverlayFactoryDecorator.isPreparedFor(ghStorage))
+                    indoorOverlayFactoryDecorator.updatePreparations(ghStorage, createIndoorOverlayWeightings(ghStorage));
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+
+    private boolean isIndoorOverlayEnabled() {
+        return encodingManager.isIndoor() && indoorOverlayFactoryDecorator.isEnabled();
     }
 
     protected ChangeGraphHelper createChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
@@ -1154,6 +1420,17 @@ public class GraphHopper implements GraphHopperAPI {
     }
 
     protected LocationIndex createLocationIndex(Directory dir) {
+        if (encodingManager.isIndoor()) {
+            LocationIndexIndoor indoorIndex = new LocationIndexIndoor(ghStorage, dir);
+            indoorIndex.setResolution(preciseIndexResolution);
+            indoorIndex.setMaxRegionSearch(maxRegionSearch);
+            if (!indoorIndex.loadExisting()) {
+                ensureWriteAccess();
+                indoorIndex.prepareIndex();
+            }
+            return indoorIndex;
+        }
+
         LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, dir);
         tmpIndex.setResolution(preciseIndexResolution);
         tmpIndex.setMaxRegionSearch(maxRegionSearch);
@@ -1238,6 +1515,13 @@ public class GraphHopper implements GraphHopperAPI {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        routingSnapshot = null;
+        synchronized (this) {
+            if (changeGraphExecutor != null) {
+                changeGraphExecutor.shutdown();
+                changeGraphExecutor = null;
+            }
+        }
         if (ghStorage != null)
             ghStorage.close();
 
@@ -0,0 +1,312 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from long to int which stores its entries in sorted arrays of DataAccess objects, e.g.
+ * off-heap via DAType.UNSAFE_STORE or memory mapped via DAType.MMAP. This way the OSM node IDs
+ * need nearly no heap while importing.
+ * <p>
+ * Keys bigger than all previous keys are appended to the newest sorted run, so for sorted keys
+ * only one run exists. Other new keys are collected in a small on-heap buffer which is written as
+ * new run if full. Runs of similar size are merged like in a log structured merge tree to keep
+ * the number of runs logarithmic. The runs are searched via a binary search which alternates with
+ * an interpolation step as OSM IDs are distributed nearly uniform.
+ */
+public class SortedLongIntMap implements LongIntMap {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private final Directory dir;
+    private final String name;
+    private final DAType type;
+    private final int noEntryValue;
+    private final int bufferSize;
+    // the biggest and oldest run is the first, the keys of all runs and the buffer are disjoint
+    private final List<Run> runs = new ArrayList<>();
+    private final LongIntHashMap buffer;
+    private long maxKey = Long.MIN_VALUE;
+    private long size;
+    private int runCounter;
+
+    public SortedLongIntMap(Directory dir, String name, DAType type, int noEntryValue) {
+        this(dir, name, type, noEntryValue, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param name       the prefix of the names of the DataAccess objects
+     * @param bufferSize the maximum number of unsorted entries kept on-heap before a new run is
+     *                   written
+     */
+    public SortedLongIntMap(Directory dir, String name, DAType type, int noEntryValue, int bufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("buffer size has to be positive but was " + bufferSize);
+        this.dir = dir;
+        this.name = name;
+        this.type = type;
+        this.noEntryValue = noEntryValue;
+        this.bufferSize = bufferSize;
+        this.buffer = new LongIntHashMap(bufferSize);
+    }
+
+    @Override
+    public int put(long key, int value) {
+        if (key > maxKey) {
+            if (runs.isEmpty())
+                runs.add(createRun(100));
+
+            runs.get(runs.size() - 1).append(key, value);
+            maxKey = key;
+            size++;
+            return noEntryValue;
+        }
+
+        int index = buffer.indexOf(key);
+        if (buffer.indexExists(index))
+            return buffer.indexReplace(index, value);
+
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            Run run = runs.get(i);
+            long pos = run.search(key);
+            if (pos >= 0)
+                return run.setValue(pos, value);
+        }
+
+        buffer.indexInsert(index, key, value);
+        size++;
+        if (buffer.size() >= bufferSize)
+            flushBuffer();
+        return noEntryValue;
+    }
+
+    @Override
+    public int get(long key) {
+        if (key > maxKey)
+            return noEntryValue;
+
+        int index = buffer.indexOf(key);
+        if (buffer.indexExists(index))
+            return buffer.indexGet(index);
+
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            Run run = runs.get(i);
+            long pos = run.search(key);
+            if (pos >= 0)
+                return run.getValue(pos);
+        }
+        return noEntryValue;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Writes the buffer and merges all runs into one to make the lookups faster.
+     */
+    @Override
+    public void optimize() {
+        if (!buffer.isEmpty())
+            flushBuffer();
+
+        while (runs.size() > 1) {
+            mergeLastRuns();
+        }
+    }
+
+    /**
+     * @return the memory in MB used by the DataAccess objects, which is off-heap e.g. for
+     * DAType.UNSAFE_STORE, plus the on-heap buffer
+     */
+    @Override
+    public int getMemoryUsage() {
+        long bytes = (long) buffer.keys.length * (8 + 4);
+        for (Run run : runs) {
+            bytes += run.keys.getCapacity() + run.values.getCapacity();
+        }
+        return Math.round(bytes / Helper.MB);
+    }
+
+    /**
+     * Removes all entries and releases the DataAccess objects.
+     */
+    public void clear() {
+        for (Run run : runs) {
+            run.remove();
+        }
+        runs.clear();
+        buffer.clear();
+        maxKey = Long.MIN_VALUE;
+        size = 0;
+    }
+
+    private void flushBuffer() {
+        long[] keys = buffer.keys().toArray();
+        Arrays.sort(keys);
+
+        Run run = createRun(keys.length * 8L);
+        for (long key : keys) {
+            run.append(key, buffer.get(key));
+        }
+        buffer.clear();
+
+        // the newest run is appended to as well, so add the new run before it to keep it the newest
+        int pos = runs.isEmpty() ? 0 : runs.size() - 1;
+        runs.add(pos, run);
+        // similar to a binary counter this keeps the number of runs logarithmic
+        while (runs.size() > 2 && runs.get(runs.size() - 3).size <= 2 * runs.get(runs.size() - 2).size) {
+            mergeRuns(runs.size() - 3);
+        }
+    }
+
+    private void mergeLastRuns() {
+        mergeRuns(runs.size() - 2);
+    }
+
+    /**
+     * Merges the run at the specified index with the next run.
+     */
+    private void mergeRuns(int index) {
+        Run first = runs.get(index);
+        Run second = runs.get(index + 1);
+        Run merged = createRun((first.size + second.size) * 8);
+        long i = 0, j = 0;
+        while (i < first.size && j < second.size) {
+            long firstKey = first.getKey(i);
+            long secondKey = second.getKey(j);
+            if (firstKey < secondKey) {
+                merged.append(firstKey, first.getValue(i));
+                i++;
+            } else {
+                merged.append(secondKey, second.getValue(j));
+                j++;
+            }
+        }
+        for (; i < first.size; i++) {
+            merged.append(first.getKey(i), first.getValue(i));
+        }
+        for (; j < second.size; j++) {
+            merged.append(second.getKey(j), second.getValue(j));
+        }
+
+        first.remove();
+        second.remove();
+        runs.remove(index + 1);
+        runs.set(index, merged);
+    }
+
+    private Run createRun(long bytes) {
+        String runName = name + "_" + runCounter++;
+        return new Run(dir.find(runName + "_keys", type).create(bytes),
+                dir.find(runName + "_values", type).create(bytes / 2));
+    }
+
+    @Override
+    public String toString() {
+        return "size:" + size + ", runs:" + runs.size() + ", buffer:" + buffer.size();
+    }
+
+    /**
+     * Keys and values sorted by key. A key is stored as two ints, the lower bits first.
+     */
+    private class Run {
+        final DataAccess keys;
+        final DataAccess values;
+        long size;
+
+        Run(DataAccess keys, DataAccess values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        void append(long key, int value) {
+            long pointer = size * 8;
+            keys.ensureCapacity(pointer + 8);
+            keys.setInt(pointer, (int) key);
+            keys.setInt(pointer + 4, (int) (key >>> 32));
+            values.ensureCapacity(size * 4 + 4);
+            values.setInt(size * 4, value);
+            size++;
+        }
+
+        long getKey(long index) {
+            long pointer = index * 8;
+            return ((long) keys.getInt(pointer + 4) << 32) | (keys.getInt(pointer) & 0xFFFFFFFFL);
+        }
+
+        int getValue(long index) {
+            return values.getInt(index * 4);
+        }
+
+        int setValue(long index, int value) {
+            int oldValue = values.getInt(index * 4);
+            values.setInt(index * 4, value);
+            return oldValue;
+        }
+
+        /**
+         * @return the index of the key or a negative value if not found
+         */
+        long search(long key) {
+            long low = 0, high = size - 1;
+            boolean interpolate = true;
+            while (low <= high) {
+                long mid;
+                if (interpolate) {
+                    long lowKey = getKey(low), highKey = getKey(high);
+                    if (key < lowKey || key > highKey)
+                        return -1;
+
+                    // calculate with doubles to avoid an overflow for distant keys
+                    mid = low + (long) (((double) key - lowKey) / ((double) highKey - lowKey + 1) * (high - low));
+                } else {
+                    mid = (low + high) >>> 1;
+                }
+                // alternating with bisection guarantees logarithmic steps for skewed keys
+                interpolate = !interpolate;
+
+                long midKey = getKey(mid);
+                if (midKey < key)
+                    low = mid + 1;
+                else if (midKey > key)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+
+        void remove() {
+            dir.remove(keys);
+            dir.remove(values);
+        }
+    }
+}
@@ -17,6 +17,9 @@
  */
 package com.graphhopper.json;
 
+import com.graphhopper.json.geo.JsonFeature;
+import com.graphhopper.util.CloseableIterator;
+
 import java.io.Reader;
 
 /**
@@ -31,4 +34,11 @@ public interface GHJson {
      * class.
      */
     <T> T fromJson(Reader source, Class<T> aClass);
+
+    /**
+     * This method reads the features of a GeoJSON feature collection one by one while they are
+     * iterated, so that the whole collection never needs to be kept in memory. The returned iterator
+     * has to be closed, which closes the source too.
+     */
+    CloseableIterator<JsonFeature> readFeatures(Reader source);
 }
@@ -0,0 +1,171 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm.conditional;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.graphhopper.storage.IndoorExtension.*;
+
+/**
+ * Parses the weekly part of the opening_hours syntax into a bit mask of the time slots of one week,
+ * see IndoorExtension.TIME_SLOT_MINUTES. In contrast to the DateRangeParser the times of a day are
+ * supported, so the mask can be evaluated for the time of a request instead of the import time.
+ * <p>
+ * Supported are rules like "24/7", "Mo-Fr 08:00-18:00; Sa 10:00-14:00", "Sa,Su off" or
+ * "22:00-06:00" separated by ';'. Later rules replace the earlier rules of their days, times after
+ * midnight are added to the next day. Everything else like public holidays, months or "||" throws
+ * a ParseException.
+ */
+public class OpeningHoursParser {
+    private static final List<String> DAY_NAMES = Arrays.asList("Mo", "Tu", "We", "Th", "Fr", "Sa", "Su");
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    public long[] parse(String openingHours) throws ParseException {
+        if (openingHours == null || openingHours.trim().isEmpty())
+            throw new ParseException("Empty opening hours", 0);
+
+        long[] mask = new long[TIME_MASK_LONGS];
+        for (String rule : openingHours.split(";")) {
+            rule = rule.trim().replaceAll("\\s*,\\s*", ",");
+            if (rule.isEmpty())
+                continue;
+
+            if ("24/7".equals(rule)) {
+                Arrays.fill(mask, -1L);
+                continue;
+            }
+
+            String[] tokens = rule.split("\\s+");
+            int index = 0;
+            boolean[] days;
+            if (Character.isLetter(tokens[0].charAt(0)) && !isOff(tokens[0])) {
+                days = parseDays(tokens[0], openingHours);
+                index++;
+            } else {
+                days = new boolean[7];
+                Arrays.fill(days, true);
+            }
+
+            for (int day = 0; day < 7; day++) {
+                if (days[day])
+                    setSlots(mask, day * MINUTES_PER_DAY, (day + 1) * MINUTES_PER_DAY, false);
+            }
+
+            if (index == tokens.length) {
+                // only days like "Sa,Su" means open the whole day
+                for (int day = 0; day < 7; day++) {
+                    if (days[day])
+                        setSlots(mask, day * MINUTES_PER_DAY, (day + 1) * MINUTES_PER_DAY, true);
+                }
+            } else if (index == tokens.length - 1 && isOff(tokens[index])) {
+                // the days are already cleared
+            } else if (index == tokens.length - 1) {
+                for (String range : tokens[index].split(",")) {
+                    int[] minutes = parseTimeRange(range, openingHours);
+                    for (int day = 0; day < 7; day++) {
+                        if (days[day])
+                            setSlots(mask, day * MINUTES_PER_DAY + minutes[0], day * MINUTES_PER_DAY + minutes[1], true);
+                    }
+                }
+            } else {
+                throw new ParseException("Unsupported rule '" + rule + "' in " + openingHours, 0);
+            }
+        }
+        return mask;
+    }
+
+    private static boolean isOff(String token) {
+        return "off".equals(token) || "closed".equals(token);
+    }
+
+    private static boolean[] parseDays(String daysStr, String openingHours) throws ParseException {
+        boolean[] days = new boolean[7];
+        for (String range : daysStr.split(",")) {
+            String[] fromTo = range.split("-");
+            if (fromTo.length > 2)
+                throw new ParseException("Unsupported days '" + daysStr + "' in " + openingHours, 0);
+
+            int from = parseDay(fromTo[0], openingHours);
+            int to = fromTo.length == 2 ? parseDay(fromTo[1], openingHours) : from;
+            // ranges like Fr-Mo continue at the start of the week
+            for (int day = from; ; day = (day + 1) % 7) {
+                days[day] = true;
+                if (day == to)
+                    break;
+            }
+        }
+        return days;
+    }
+
+    private static int parseDay(String day, String openingHours) throws ParseException {
+        int index = DAY_NAMES.indexOf(day);
+        if (index < 0)
+            throw new ParseException("Unsupported day '" + day + "' in " + openingHours, 0);
+        return index;
+    }
+
+    /**
+     * @return the start and end minute of the specified range, the end is after the start and can be
+     * on the next day, e.g. 22:00-02:00 returns 1320 and 1560
+     */
+    private static int[] parseTimeRange(String range, String openingHours) throws ParseException {
+        String[] fromTo = range.split("-");
+        if (fromTo.length != 2)
+            throw new ParseException("Unsupported time range '" + range + "' in " + openingHours, 0);
+
+        int from = parseTime(fromTo[0], openingHours);
+        int to = parseTime(fromTo[1], openingHours);
+        if (to <= from)
+            to += MINUTES_PER_DAY;
+        return new int[]{from, to};
+    }
+
+    private static int parseTime(String time, String openingHours) throws ParseException {
+        int colon = time.indexOf(':');
+        if (colon < 1 || colon != time.length() - 3)
+            throw new ParseException("Unsupported time '" + time + "' in " + openingHours, 0);
+
+        try {
+            int hours = Integer.parseInt(time.substring(0, colon));
+            int minutes = Integer.parseInt(time.substring(colon + 1));
+            if (hours < 0 || hours > 24 || minutes < 0 || minutes > 59 || hours == 24 && minutes > 0)
+                throw new ParseException("Invalid time '" + time + "' in " + openingHours, 0);
+            return hours * 60 + minutes;
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid time '" + time + "' in " + openingHours, 0);
+        }
+    }
+
+    /**
+     * Sets or clears all slots which start in the specified minutes of the week. Minutes after the
+     * end of the week continue at its start.
+     */
+    private static void setSlots(long[] mask, int fromMinute, int toMinute, boolean open) {
+        int fromSlot = (fromMinute + TIME_SLOT_MINUTES - 1) / TIME_SLOT_MINUTES;
+        int toSlot = (toMinute + TIME_SLOT_MINUTES - 1) / TIME_SLOT_MINUTES;
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            int weekSlot = slot % TIME_SLOTS;
+            if (open)
+                mask[weekSlot >>> 6] |= 1L << weekSlot;
+            else
+                mask[weekSlot >>> 6] &= ~(1L << weekSlot);
+        }
+    }
+}
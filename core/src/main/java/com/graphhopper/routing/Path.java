@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.DoubleArrayList;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIndexedContainer;
 import com.graphhopper.coll.GHIntArrayList;
@@ -67,7 +68,7 @@ public class Path {
     private NodeAccess nodeAccess;
     GraphExtension graphExtension;
     boolean indoor;
-    int []levels;
+    double[] levels;
 
     public Path(Graph graph, Weighting weighting) {
         this.weight = Double.MAX_VALUE;
@@ -341,13 +342,24 @@ public class Path {
 
         int tmpNode = getFromNode();
         points.add(nodeAccess, tmpNode);
+        // collect the levels in the same pass to avoid fetching the geometry of every edge twice
+        final DoubleArrayList pointLevels = isIndoor() ? new DoubleArrayList(edgeIds.size() + 1) : null;
         forEveryEdge(new EdgeVisitor() {
+            double level;
+
             @Override
             public void next(EdgeIteratorState eb, int index, int prevEdgeId) {
                 PointList pl = eb.fetchWayGeometry(2);
                 for (int j = 0; j < pl.getSize(); j++) {
                     points.add(pl, j);
                 }
+
+                if (pointLevels != null) {
+                    level = PointListIndoor.getEdgeLevel(eb, index, level, (IndoorExtension) graphExtension, levels);
+                    for (int j = 0; j < pl.getSize(); j++) {
+                        pointLevels.add(level);
+                    }
+                }
             }
 
             @Override
@@ -357,8 +369,8 @@ public class Path {
         });
         // add levels to point list if necessary
         if(isIndoor()){
-            PointListIndoor pointsIndoor = PointListIndoor.fromPointList(points,calcEdges(),(IndoorExtension)graphExtension,levels);
-            return pointsIndoor;
+            pointLevels.add(levels[1]);
+            return new PointListIndoor(points, pointLevels.toArray());
         }
         return points;
     }
@@ -429,7 +441,10 @@ public class Path {
         void finish();
     }
 
-    public void setLevels(int[] levels) {
+    /**
+     * @param levels the exact levels of the start and the end point of this path
+     */
+    public void setLevels(double[] levels) {
         this.levels = levels;
     }
 
@@ -18,9 +18,12 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.IndoorWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.IndoorExtension;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.Helper;
 
 import static com.graphhopper.util.Parameters.Algorithms.*;
@@ -45,7 +48,7 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         } else if (ASTAR_BI.equalsIgnoreCase(algoStr)) {
             AStarBidirection aStarBi = new AStarBidirection(g, opts.getWeighting(),
                     opts.getTraversalMode());
-            aStarBi.setApproximation(getApproximation(ASTAR_BI, opts, g.getNodeAccess()));
+            aStarBi.setApproximation(getApproximation(ASTAR_BI, opts, g));
             ra = aStarBi;
 
         } else if (DIJKSTRA_ONE_TO_MANY.equalsIgnoreCase(algoStr)) {
@@ -53,7 +56,7 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
 
         } else if (ASTAR.equalsIgnoreCase(algoStr)) {
             AStar aStar = new AStar(g, opts.getWeighting(), opts.getTraversalMode());
-            aStar.setApproximation(getApproximation(ASTAR, opts, g.getNodeAccess()));
+            aStar.setApproximation(getApproximation(ASTAR, opts, g));
             ra = aStar;
 
         } else if (ALT_ROUTE.equalsIgnoreCase(algoStr)) {
@@ -73,19 +76,37 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         return ra;
     }
 
+    /**
+     * Indoor graphs use the IndoorWeightApproximator which takes level changes into account, unless
+     * the hint &lt;algorithm&gt;.level_aware is set to false.
+     */
+    public static WeightApproximator getApproximation(String prop, AlgorithmOptions opts, Graph g) {
+        if (!(g.getExtension() instanceof IndoorExtension) || !opts.getHints().getBool(prop + ".level_aware", true))
+            return getApproximation(prop, opts, g.getNodeAccess());
+
+        String approxAsStr = opts.getHints().get(prop + ".approximation", "BeelineSimplification");
+        IndoorWeightApproximator approx = new IndoorWeightApproximator(g, opts.getWeighting());
+        approx.setEpsilon(opts.getHints().getDouble(prop + ".epsilon", 1));
+        approx.setDistanceCalc(getDistanceCalc(approxAsStr));
+        return approx;
+    }
+
     public static WeightApproximator getApproximation(String prop, AlgorithmOptions opts, NodeAccess na) {
         String approxAsStr = opts.getHints().get(prop + ".approximation", "BeelineSimplification");
         double epsilon = opts.getHints().getDouble(prop + ".epsilon", 1);
 
         BeelineWeightApproximator approx = new BeelineWeightApproximator(na, opts.getWeighting());
         approx.setEpsilon(epsilon);
+        approx.setDistanceCalc(getDistanceCalc(approxAsStr));
+        return approx;
+    }
+
+    private static DistanceCalc getDistanceCalc(String approxAsStr) {
         if ("BeelineSimplification".equals(approxAsStr))
-            approx.setDistanceCalc(Helper.DIST_PLANE);
+            return Helper.DIST_PLANE;
         else if ("BeelineAccurate".equals(approxAsStr))
-            approx.setDistanceCalc(Helper.DIST_EARTH);
+            return Helper.DIST_EARTH;
         else
             throw new IllegalArgumentException("Approximation " + approxAsStr + " not found in " + RoutingAlgorithmFactorySimple.class.getName());
-
-        return approx;
     }
 }
@@ -55,6 +55,7 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     // for backward compatibility enable CH by default.
     private boolean enabled = true;
     private int preparationThreads;
+    private int preparationContractionThreads = 1;
     private ExecutorService threadPool;
     private int preparationPeriodicUpdates = -1;
     private int preparationLazyUpdates = -1;
@@ -76,6 +77,7 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
             throw new IllegalStateException("Use " + CH.PREPARE + "weightings and a comma separated list instead of prepare.chWeighting or prepare.chWeightings");
 
         setPreparationThreads(args.getInt(CH.PREPARE + "threads", getPreparationThreads()));
+        setPreparationContractionThreads(args.getInt(CH.PREPARE + "contraction_threads", getPreparationContractionThreads()));
 
         // default is enabled & fastest
         String chWeightingsStr = args.get(CH.PREPARE + "weightings", "");
@@ -279,6 +281,19 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         this.threadPool = java.util.concurrent.Executors.newFixedThreadPool(preparationThreads);
     }
 
+    public int getPreparationContractionThreads() {
+        return preparationContractionThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to contract the nodes of one weighting.
+     * Default is 1. Every thread needs its own witness search for the whole graph.
+     */
+    public CHAlgoFactoryDecorator setPreparationContractionThreads(int preparationContractionThreads) {
+        this.preparationContractionThreads = preparationContractionThreads;
+        return this;
+    }
+
     public void prepare(final StorableProperties properties) {
         ExecutorCompletionService completionService = new ExecutorCompletionService<>(threadPool);
         int counter = 0;
@@ -324,7 +339,8 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
             tmpPrepareCH.setPeriodicUpdates(preparationPeriodicUpdates).
                     setLazyUpdates(preparationLazyUpdates).
                     setNeighborUpdates(preparationNeighborUpdates).
-                    setLogMessages(preparationLogMessages);
+                    setLogMessages(preparationLogMessages).
+                    setContractionThreads(preparationContractionThreads);
 
             addPreparation(tmpPrepareCH);
         }
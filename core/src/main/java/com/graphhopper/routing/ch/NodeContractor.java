@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.routing.DijkstraOneToMany;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -29,6 +30,7 @@ import com.graphhopper.util.*;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 class NodeContractor {
@@ -38,12 +40,15 @@ class NodeContractor {
     // todo: so far node contraction can only be done for node-based graph traversal
     private final TraversalMode traversalMode;
     private final DataAccess originalEdges;
+    // only the contractor which created the original edges closes them
+    private final boolean ownsOriginalEdges;
     private final Map<Shortcut, Shortcut> shortcuts = new HashMap<>();
     private final AddShortcutHandler addScHandler = new AddShortcutHandler();
     private final CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
     private CHEdgeExplorer vehicleInExplorer;
     private CHEdgeExplorer vehicleOutExplorer;
     private IgnoreNodeFilter ignoreNodeFilter;
+    private GHBitSet avoidNodes;
     private DijkstraOneToMany prepareAlgo;
     private int addedShortcutsCount;
     private long dijkstraCount;
@@ -64,6 +69,20 @@ class NodeContractor {
         this.traversalMode = traversalMode;
         originalEdges = dir.find("original_edges_" + AbstractWeighting.weightingToFileName(weighting));
         originalEdges.create(1000);
+        ownsOriginalEdges = true;
+    }
+
+    /**
+     * Creates a contractor for witness searches in another thread. It shares the graph and the
+     * original edge counts with the specified contractor but has its own explorers and search.
+     */
+    NodeContractor(NodeContractor contractor) {
+        this.ghStorage = contractor.ghStorage;
+        this.prepareGraph = contractor.prepareGraph;
+        this.prepareWeighting = contractor.prepareWeighting;
+        this.traversalMode = contractor.traversalMode;
+        this.originalEdges = contractor.originalEdges;
+        ownsOriginalEdges = false;
     }
 
     void initFromGraph() {
@@ -72,6 +91,7 @@ class NodeContractor {
         maxLevel = prepareGraph.getNodes() + 1;
         maxEdgesCount = ghStorage.getAllEdges().getMaxId();
         ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph, maxLevel);
+        ignoreNodeFilter.avoidNodes = avoidNodes;
         FlagEncoder prepareFlagEncoder = prepareWeighting.getFlagEncoder();
         vehicleInExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
         vehicleOutExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
@@ -80,7 +100,16 @@ class NodeContractor {
 
     void close() {
         prepareAlgo.close();
-        originalEdges.close();
+        if (ownsOriginalEdges)
+            originalEdges.close();
+    }
+
+    /**
+     * The witness searches will not use the specified nodes, e.g. the nodes which are contracted
+     * in the same round. Call before initFromGraph.
+     */
+    void setAvoidNodes(GHBitSet avoidNodes) {
+        this.avoidNodes = avoidNodes;
     }
 
     void setMaxVisitedNodes(int maxVisitedNodes) {
@@ -94,6 +123,26 @@ class NodeContractor {
         return degree;
     }
 
+    /**
+     * Finds the shortcuts which are necessary to contract the specified node like contractNode but
+     * does not change the graph. The graph must not be changed while this method is running.
+     *
+     * @return the degree of the node, see findShortcuts
+     */
+    long findShortcuts(int node, List<Shortcut> shortcutsToAdd) {
+        long degree = findShortcuts(addScHandler.setNode(node));
+        shortcutsToAdd.addAll(shortcuts.keySet());
+        shortcuts.clear();
+        return degree;
+    }
+
+    /**
+     * Adds the shortcuts found via findShortcuts to the graph.
+     */
+    void applyShortcuts(List<Shortcut> shortcutsToAdd) {
+        addedShortcutsCount += addShortcuts(shortcutsToAdd);
+    }
+
     CalcShortcutsResult calcShortcutCount(int node) {
         findShortcuts(calcScHandler.setNode(node));
         return calcScHandler.calcShortcutsResult;
@@ -284,6 +333,7 @@ class NodeContractor {
 
     static class IgnoreNodeFilter implements EdgeFilter {
         int avoidNode;
+        GHBitSet avoidNodes;
         int maxLevel;
         CHGraph graph;
 
@@ -301,7 +351,8 @@ class NodeContractor {
         public final boolean accept(EdgeIteratorState iter) {
             // ignore if it is skipNode or adjNode is already contracted
             int node = iter.getAdjNode();
-            return avoidNode != node && graph.getLevel(node) == maxLevel;
+            return avoidNode != node && graph.getLevel(node) == maxLevel
+                    && (avoidNodes == null || !avoidNodes.contains(node));
         }
     }
 
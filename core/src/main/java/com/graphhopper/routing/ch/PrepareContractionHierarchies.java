@@ -17,6 +17,9 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.GHTreeMapComposed;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.util.*;
@@ -27,6 +30,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
 import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
@@ -41,6 +46,11 @@ import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
  * The only difference is that we use two skipped edges instead of one skipped node for faster
  * unpacking.
  * <p>
+ * With more than one contraction thread the nodes are contracted in rounds. Every round polls
+ * nodes with the lowest priority which are not adjacent and have no common neighbors. Their
+ * witness searches run in parallel and avoid all nodes of the round, then the shortcuts are added
+ * in the order the nodes were polled. So the result does not depend on the thread scheduling.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -54,11 +64,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private final CHGraphImpl prepareGraph;
     private final Random rand = new Random(123);
     private final StopWatch allSW = new StopWatch();
+    // the number of nodes per thread which are contracted in one round
+    private static final int ROUND_NODES_PER_THREAD = 16;
     private NodeContractor nodeContractor;
+    // the first worker uses the nodeContractor, the others are only used in parallel rounds
+    private List<ContractionWorker> workers;
+    private ExecutorService contractionPool;
+    private int contractionThreads = 1;
+    // the nodes of the current round which have to be avoided in the witness searches
+    private GHBitSet roundNodes;
+    // the nodes of the current round and their neighbors
+    private GHBitSet touchedNodes;
+    private final IntArrayList touchedNodeList = new IntArrayList();
+    private final IntArrayList rejectedNodes = new IntArrayList();
     private CHEdgeExplorer vehicleAllExplorer;
     private CHEdgeExplorer vehicleAllTmpExplorer;
     private CHEdgeExplorer calcPrioAllExplorer;
     private int maxLevel;
+    private int level;
     // the most important nodes comes last
     private GHTreeMapComposed sortedNodes;
     private int oldPriorities[];
@@ -155,16 +178,33 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return this;
     }
 
+    /**
+     * Specifies the number of threads which contract the nodes of this graph. Every thread needs
+     * its own witness search of the size of the graph. Default is 1.
+     */
+    public PrepareContractionHierarchies setContractionThreads(int contractionThreads) {
+        if (contractionThreads < 1)
+            throw new IllegalArgumentException("contraction threads have to be at least 1 but was " + contractionThreads);
+
+        this.contractionThreads = contractionThreads;
+        return this;
+    }
+
     @Override
     public void doWork() {
         allSW.start();
         super.doWork();
 
-        initFromGraph();
-        if (!prepareNodes())
-            return;
+        try {
+            initFromGraph();
+            if (!prepareNodes())
+                return;
 
-        contractNodes();
+            contractNodes();
+        } finally {
+            // the pool is only needed while contracting, also if the preparation failed
+            shutdownContractionPool();
+        }
     }
 
     @Override
@@ -214,6 +254,28 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         sortedNodes = new GHTreeMapComposed();
         oldPriorities = new int[prepareGraph.getNodes()];
         nodeContractor = new NodeContractor(dir, ghStorage, prepareGraph, weighting, traversalMode);
+        workers = new ArrayList<>(contractionThreads);
+        workers.add(new ContractionWorker(nodeContractor, calcPrioAllExplorer));
+        if (contractionThreads > 1) {
+            roundNodes = new GHBitSetImpl(prepareGraph.getNodes());
+            touchedNodes = new GHBitSetImpl(prepareGraph.getNodes());
+            nodeContractor.setAvoidNodes(roundNodes);
+            for (int i = 1; i < contractionThreads; i++) {
+                NodeContractor contractor = new NodeContractor(nodeContractor);
+                contractor.setAvoidNodes(roundNodes);
+                contractor.initFromGraph();
+                workers.add(new ContractionWorker(contractor, prepareGraph.createEdgeExplorer(accessWithLevelFilter)));
+            }
+            contractionPool = Executors.newFixedThreadPool(contractionThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    // do not keep the JVM alive if the pool is not shut down
+                    Thread thread = new Thread(runnable, "contraction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
         nodeContractor.initFromGraph();
     }
 
@@ -223,12 +285,75 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             prepareGraph.setLevel(node, maxLevel);
         }
 
-        for (int node = 0; node < nodes; node++) {
-            int priority = oldPriorities[node] = calculatePriority(node);
-            sortedNodes.insert(node, priority);
+        calculatePriorities();
+        return !sortedNodes.isEmpty();
+    }
+
+    /**
+     * Calculates the priorities of all uncontracted nodes and sorts them, in parallel if more than
+     * one contraction thread is used.
+     */
+    private void calculatePriorities() {
+        sortedNodes.clear();
+        final IntArrayList nodes = new IntArrayList();
+        int len = prepareGraph.getNodes();
+        for (int node = 0; node < len; node++) {
+            if (prepareGraph.getLevel(node) == maxLevel)
+                nodes.add(node);
         }
 
-        return !sortedNodes.isEmpty();
+        runInParallel(nodes.size(), new WorkerTask() {
+            @Override
+            public void run(ContractionWorker worker, int index) {
+                int node = nodes.get(index);
+                oldPriorities[node] = worker.calculatePriority(node);
+            }
+        });
+
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = nodes.get(i);
+            sortedNodes.insert(node, oldPriorities[node]);
+        }
+    }
+
+    /**
+     * Calls the task for every index from 0 to count-1 using all workers. Every worker calls the
+     * task for the indices it takes, so the task must only write results for its index.
+     */
+    private void runInParallel(final int count, final WorkerTask task) {
+        if (workers.size() == 1) {
+            ContractionWorker worker = workers.get(0);
+            for (int i = 0; i < count; i++) {
+                task.run(worker, i);
+            }
+            return;
+        }
+
+        final AtomicInteger nextIndex = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<>(workers.size());
+        for (final ContractionWorker worker : workers) {
+            callables.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    int index;
+                    while ((index = nextIndex.getAndIncrement()) < count) {
+                        task.run(worker, index);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Object> future : contractionPool.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Problem while contracting nodes", ex.getCause());
+        }
     }
 
     private void contractNodes() {
@@ -239,7 +364,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         // no witness path can be found. this is not really what we want, but changing it requires re-optimizing the
         // graph contraction parameters, because it affects the node contraction order.
         meanDegree = prepareGraph.getAllEdges().getMaxId() / prepareGraph.getNodes();
-        int level = 1;
+        level = 1;
         long counter = 0;
         int initSize = sortedNodes.getSize();
         long logSize = Math.round(Math.max(10, sortedNodes.getSize() / 100 * logMessagesPercentage));
@@ -272,27 +397,25 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             neighborUpdate = false;
 
         StopWatch neighborSW = new StopWatch();
+        // the counter is increased by more than one for parallel rounds
+        long nextPeriodicUpdate = periodicUpdatesCount;
+        long nextLog = 0;
+        IntArrayList round = new IntArrayList();
         while (!sortedNodes.isEmpty()) {
             // periodically update priorities of ALL nodes
-            if (periodicUpdate && counter > 0 && counter % periodicUpdatesCount == 0) {
+            if (periodicUpdate && counter >= nextPeriodicUpdate) {
+                nextPeriodicUpdate += periodicUpdatesCount;
                 periodSW.start();
-                sortedNodes.clear();
-                int len = prepareGraph.getNodes();
-                for (int node = 0; node < len; node++) {
-                    if (prepareGraph.getLevel(node) != maxLevel)
-                        continue;
-
-                    int priority = oldPriorities[node] = calculatePriority(node);
-                    sortedNodes.insert(node, priority);
-                }
+                calculatePriorities();
                 periodSW.stop();
                 updateCounter++;
                 if (sortedNodes.isEmpty())
                     throw new IllegalStateException("Cannot prepare as no unprepared nodes where found. Called preparation twice?");
             }
 
-            if (counter % logSize == 0) {
-                dijkstraTime += nodeContractor.getDijkstraSeconds();
+            if (counter >= nextLog) {
+                nextLog += logSize;
+                dijkstraTime += getDijkstraSeconds();
                 periodTime += periodSW.getSeconds();
                 lazyTime += lazySW.getSeconds();
                 neighborTime += neighborSW.getSeconds();
@@ -300,18 +423,26 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 logger.info(Helper.nf(counter) + ", updates:" + updateCounter
                         + ", nodes: " + Helper.nf(sortedNodes.getSize())
                         + ", shortcuts:" + Helper.nf(nodeContractor.getAddedShortcutsCount())
-                        + ", dijkstras:" + Helper.nf(nodeContractor.getDijkstraCount())
+                        + ", dijkstras:" + Helper.nf(getDijkstraCount())
                         + ", " + getTimesAsString()
                         + ", meanDegree:" + (long) meanDegree
                         + ", algo:" + nodeContractor.getPrepareAlgoMemoryUsage()
                         + ", " + Helper.getMemInfo());
 
-                nodeContractor.resetDijkstraTime();
+                resetDijkstraTime();
                 periodSW = new StopWatch();
                 lazySW = new StopWatch();
                 neighborSW = new StopWatch();
             }
 
+            if (contractionThreads > 1) {
+                counter += pollIndependentNodes(round, lastNodesLazyUpdates, lazySW);
+                counter += round.size();
+                if (!contractRound(round, nodesToAvoidContract, neighborUpdate, neighborSW))
+                    break;
+                continue;
+            }
+
             counter++;
             int polledNode = sortedNodes.pollKey();
 
@@ -330,69 +461,219 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             // contract node v!
             nodeContractor.setMaxVisitedNodes(getMaxVisitedNodesEstimate());
             long degree = nodeContractor.contractNode(polledNode);
-            // put weight factor on meanDegree instead of taking the average => meanDegree is more stable
-            meanDegree = (meanDegree * 2 + degree) / 3;
-            prepareGraph.setLevel(polledNode, level);
-            level++;
-
-            if (sortedNodes.getSize() < nodesToAvoidContract)
-                // skipped nodes are already set to maxLevel
+            if (!finishContraction(polledNode, degree, sortedNodes.getSize(), nodesToAvoidContract, neighborUpdate, neighborSW))
                 break;
-
-            CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(polledNode);
-            while (iter.next()) {
-
-                if (Thread.currentThread().isInterrupted()) {
-                    throw new RuntimeException("Thread was interrupted");
-                }
-
-                int nn = iter.getAdjNode();
-                if (prepareGraph.getLevel(nn) != maxLevel)
-                    continue;
-
-                if (neighborUpdate && rand.nextInt(100) < neighborUpdatePercentage) {
-                    neighborSW.start();
-                    int oldPrio = oldPriorities[nn];
-                    int priority = oldPriorities[nn] = calculatePriority(nn);
-                    if (priority != oldPrio)
-                        sortedNodes.update(nn, oldPrio, priority);
-
-                    neighborSW.stop();
-                }
-
-                prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
-            }
         }
 
         // Preparation works only once so we can release temporary data.
         // The preparation object itself has to be intact to create the algorithm.
         close();
 
-        dijkstraTime += nodeContractor.getDijkstraSeconds();
+        dijkstraTime += getDijkstraSeconds();
         periodTime += periodSW.getSeconds();
         lazyTime += lazySW.getSeconds();
         neighborTime += neighborSW.getSeconds();
         logger.info("took:" + (int) allSW.stop().getSeconds()
                 + ", new shortcuts: " + Helper.nf(nodeContractor.getAddedShortcutsCount())
                 + ", " + prepareWeighting
-                + ", dijkstras:" + nodeContractor.getDijkstraCount()
+                + ", dijkstras:" + getDijkstraCount()
                 + ", " + getTimesAsString()
                 + ", meanDegree:" + (long) meanDegree
                 + ", initSize:" + initSize
                 + ", periodic:" + periodicUpdatesPercentage
                 + ", lazy:" + lastNodesLazyUpdatePercentage
                 + ", neighbor:" + neighborUpdatePercentage
+                + ", threads:" + contractionThreads
                 + ", " + Helper.getMemInfo());
     }
 
+    /**
+     * Sets the level of the contracted node and disconnects it from its uncontracted neighbors
+     * whose priorities are updated.
+     *
+     * @return false if the contraction should stop as enough nodes are contracted
+     */
+    private boolean finishContraction(int node, long degree, long remainingNodes, long nodesToAvoidContract,
+                                      boolean neighborUpdate, StopWatch neighborSW) {
+        // put weight factor on meanDegree instead of taking the average => meanDegree is more stable
+        meanDegree = (meanDegree * 2 + degree) / 3;
+        prepareGraph.setLevel(node, level);
+        level++;
+
+        if (remainingNodes < nodesToAvoidContract)
+            // skipped nodes are already set to maxLevel
+            return false;
+
+        CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(node);
+        while (iter.next()) {
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("Thread was interrupted");
+            }
+
+            int nn = iter.getAdjNode();
+            if (prepareGraph.getLevel(nn) != maxLevel)
+                continue;
+
+            if (neighborUpdate && rand.nextInt(100) < neighborUpdatePercentage) {
+                neighborSW.start();
+                int oldPrio = oldPriorities[nn];
+                int priority = oldPriorities[nn] = calculatePriority(nn);
+                if (priority != oldPrio)
+                    sortedNodes.update(nn, oldPrio, priority);
+
+                neighborSW.stop();
+            }
+
+            prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
+        }
+        return true;
+    }
+
+    /**
+     * Polls the nodes with the lowest priority which are not adjacent and have no common neighbor
+     * into the specified round. Other polled nodes are inserted again.
+     *
+     * @return the number of nodes which were inserted again due to a lazy update
+     */
+    private int pollIndependentNodes(IntArrayList round, long lastNodesLazyUpdates, StopWatch lazySW) {
+        round.clear();
+        rejectedNodes.clear();
+        int maxRoundSize = ROUND_NODES_PER_THREAD * contractionThreads;
+        int lazyUpdates = 0;
+        while (!sortedNodes.isEmpty() && round.size() < maxRoundSize && rejectedNodes.size() < maxRoundSize) {
+            int polledNode = sortedNodes.pollKey();
+            if (!sortedNodes.isEmpty() && sortedNodes.getSize() < lastNodesLazyUpdates) {
+                lazySW.start();
+                int priority = oldPriorities[polledNode] = calculatePriority(polledNode);
+                lazySW.stop();
+                if (priority > sortedNodes.peekValue()) {
+                    sortedNodes.insert(polledNode, priority);
+                    lazyUpdates++;
+                    continue;
+                }
+            }
+
+            if (touchedNodes.contains(polledNode)) {
+                rejectedNodes.add(polledNode);
+                continue;
+            }
+
+            boolean independent = true;
+            CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(polledNode);
+            while (iter.next()) {
+                if (touchedNodes.contains(iter.getAdjNode())) {
+                    independent = false;
+                    break;
+                }
+            }
+            if (!independent) {
+                rejectedNodes.add(polledNode);
+                continue;
+            }
+
+            round.add(polledNode);
+            touch(polledNode);
+            iter = vehicleAllExplorer.setBaseNode(polledNode);
+            while (iter.next()) {
+                if (prepareGraph.getLevel(iter.getAdjNode()) == maxLevel)
+                    touch(iter.getAdjNode());
+            }
+        }
+
+        for (int i = 0; i < touchedNodeList.size(); i++) {
+            touchedNodes.remove(touchedNodeList.get(i));
+        }
+        touchedNodeList.clear();
+        for (int i = 0; i < rejectedNodes.size(); i++) {
+            int node = rejectedNodes.get(i);
+            sortedNodes.insert(node, oldPriorities[node]);
+        }
+        return lazyUpdates;
+    }
+
+    private void touch(int node) {
+        if (!touchedNodes.contains(node)) {
+            touchedNodes.add(node);
+            touchedNodeList.add(node);
+        }
+    }
+
+    /**
+     * Searches the shortcuts of the nodes in parallel and adds them in the order of the round.
+     *
+     * @return false if the contraction should stop as enough nodes are contracted
+     */
+    private boolean contractRound(final IntArrayList round, long nodesToAvoidContract, boolean neighborUpdate,
+                                  StopWatch neighborSW) {
+        final long[] degrees = new long[round.size()];
+        final List<List<NodeContractor.Shortcut>> shortcuts = new ArrayList<>(round.size());
+        for (int i = 0; i < round.size(); i++) {
+            roundNodes.add(round.get(i));
+            shortcuts.add(new ArrayList<NodeContractor.Shortcut>());
+        }
+
+        final int maxVisitedNodes = getMaxVisitedNodesEstimate();
+        runInParallel(round.size(), new WorkerTask() {
+            @Override
+            public void run(ContractionWorker worker, int index) {
+                worker.contractor.setMaxVisitedNodes(maxVisitedNodes);
+                degrees[index] = worker.contractor.findShortcuts(round.get(index), shortcuts.get(index));
+            }
+        });
+
+        for (int i = 0; i < round.size(); i++) {
+            roundNodes.remove(round.get(i));
+        }
+
+        for (int i = 0; i < round.size(); i++) {
+            int node = round.get(i);
+            nodeContractor.applyShortcuts(shortcuts.get(i));
+            long remainingNodes = sortedNodes.getSize() + round.size() - i - 1;
+            if (!finishContraction(node, degrees[i], remainingNodes, nodesToAvoidContract, neighborUpdate, neighborSW))
+                return false;
+        }
+        return true;
+    }
+
+    private float getDijkstraSeconds() {
+        float seconds = 0;
+        for (ContractionWorker worker : workers) {
+            seconds += worker.contractor.getDijkstraSeconds();
+        }
+        return seconds;
+    }
+
+    private void resetDijkstraTime() {
+        for (ContractionWorker worker : workers) {
+            worker.contractor.resetDijkstraTime();
+        }
+    }
+
     public void close() {
-        nodeContractor.close();
+        for (ContractionWorker worker : workers) {
+            worker.contractor.close();
+        }
+        shutdownContractionPool();
         sortedNodes = null;
         oldPriorities = null;
+        roundNodes = null;
+        touchedNodes = null;
+    }
+
+    private void shutdownContractionPool() {
+        if (contractionPool != null) {
+            contractionPool.shutdown();
+            contractionPool = null;
+        }
     }
 
     public long getDijkstraCount() {
-        return nodeContractor.getDijkstraCount();
+        long count = 0;
+        for (ContractionWorker worker : workers) {
+            count += worker.contractor.getDijkstraCount();
+        }
+        return count;
     }
 
     public int getShortcuts() {
@@ -433,8 +714,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
      * lead to a slowish or even endless loop.
      */
     private int calculatePriority(int node) {
-        nodeContractor.setMaxVisitedNodes(getMaxVisitedNodesEstimate());
-        NodeContractor.CalcShortcutsResult calcShortcutsResult = nodeContractor.calcShortcutCount(node);
+        return calculatePriority(node, nodeContractor, calcPrioAllExplorer);
+    }
+
+    private int calculatePriority(int node, NodeContractor contractor, CHEdgeExplorer calcPrioAllExplorer) {
+        contractor.setMaxVisitedNodes(getMaxVisitedNodesEstimate());
+        NodeContractor.CalcShortcutsResult calcShortcutsResult = contractor.calcShortcutCount(node);
 
         // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
         //
@@ -481,4 +766,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return "prepare|dijkstrabi|ch";
     }
 
+    /**
+     * A node contractor with its own explorer to calculate priorities in a separate thread.
+     */
+    private class ContractionWorker {
+        final NodeContractor contractor;
+        final CHEdgeExplorer calcPrioExplorer;
+
+        ContractionWorker(NodeContractor contractor, CHEdgeExplorer calcPrioExplorer) {
+            this.contractor = contractor;
+            this.calcPrioExplorer = calcPrioExplorer;
+        }
+
+        int calculatePriority(int node) {
+            return PrepareContractionHierarchies.this.calculatePriority(node, contractor, calcPrioExplorer);
+        }
+    }
+
+    private interface WorkerTask {
+        void run(ContractionWorker worker, int index);
+    }
 }
@@ -0,0 +1,275 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.indoor;
+
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.ConsistentWeightApproximator;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+
+import java.util.PriorityQueue;
+
+/**
+ * Bidirectional A* for indoor graphs which only explores the level of the start and of the
+ * destination. All other levels are crossed via the level transitions and the shortcuts between
+ * the vertical connectors of a PrepareIndoorOverlay.
+ */
+public class AStarBidirectionIndoorOverlay extends AbstractRoutingAlgorithm {
+    private static final int UNKNOWN_LEVEL = Integer.MIN_VALUE;
+    private final PrepareIndoorOverlay overlay;
+    private final IndoorExtension extension;
+    private ConsistentWeightApproximator weightApprox;
+    private final GHIntObjectHashMap<OverlayEntry> bestWeightMapFrom;
+    private final GHIntObjectHashMap<OverlayEntry> bestWeightMapTo;
+    private final PriorityQueue<OverlayEntry> pqOpenSetFrom;
+    private final PriorityQueue<OverlayEntry> pqOpenSetTo;
+    private OverlayEntry currFrom;
+    private OverlayEntry currTo;
+    private boolean finishedFrom;
+    private boolean finishedTo;
+    private int visitedCountFrom;
+    private int visitedCountTo;
+    private int fromLevelCode, toLevelCode;
+    private PathIndoorOverlay bestPath;
+
+    public AStarBidirectionIndoorOverlay(Graph graph, PrepareIndoorOverlay overlay, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("The indoor overlay does not support edge based traversal");
+
+        this.overlay = overlay;
+        this.extension = overlay.getExtension();
+        int size = Math.min(Math.max(200, graph.getNodes() / 10), 150_000);
+        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+        bestWeightMapTo = new GHIntObjectHashMap<>(size);
+        pqOpenSetFrom = new PriorityQueue<>(size);
+        pqOpenSetTo = new PriorityQueue<>(size);
+        BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
+        defaultApprox.setDistanceCalc(Helper.DIST_PLANE);
+        setApproximation(defaultApprox);
+    }
+
+    /**
+     * @param approx defines how the weight to the goal node is approximated
+     */
+    public AStarBidirectionIndoorOverlay setApproximation(WeightApproximator approx) {
+        weightApprox = new ConsistentWeightApproximator(approx);
+        return this;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        checkAlreadyRun();
+        bestPath = new PathIndoorOverlay(graph, weighting, overlay);
+        fromLevelCode = getLevelCode(from);
+        toLevelCode = getLevelCode(to);
+        weightApprox.setFrom(from);
+        weightApprox.setTo(to);
+
+        currFrom = new OverlayEntry(EdgeIterator.NO_EDGE, from, weightApprox.approximate(from, false), 0);
+        currTo = new OverlayEntry(EdgeIterator.NO_EDGE, to, weightApprox.approximate(to, true), 0);
+        pqOpenSetFrom.add(currFrom);
+        pqOpenSetTo.add(currTo);
+        bestWeightMapFrom.put(from, currFrom);
+        bestWeightMapTo.put(to, currTo);
+        if (from == to)
+            updateBestPath(currFrom, currTo);
+
+        while (!finished() && !isMaxVisitedNodesExceeded()) {
+            if (!finishedFrom)
+                finishedFrom = !fillEdges(false);
+
+            if (!finishedTo)
+                finishedTo = !fillEdges(true);
+        }
+        return extractPath();
+    }
+
+    private boolean fillEdges(boolean reverse) {
+        PriorityQueue<OverlayEntry> prioQueueOpenSet = reverse ? pqOpenSetTo : pqOpenSetFrom;
+        if (prioQueueOpenSet.isEmpty())
+            return false;
+
+        OverlayEntry currEdge = prioQueueOpenSet.poll();
+        if (reverse) {
+            currTo = currEdge;
+            visitedCountTo++;
+        } else {
+            currFrom = currEdge;
+            visitedCountFrom++;
+        }
+
+        int currNode = currEdge.adjNode;
+        int levelCode = getLevelCode(currNode);
+        boolean searchLevel = isSearchLevel(levelCode);
+        EdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        EdgeIterator iter = explorer.setBaseNode(currNode);
+        while (iter.next()) {
+            if (!accept(iter, currEdge.edge))
+                continue;
+
+            // on all other levels only the level transitions are used, the rest is covered by the shortcuts
+            if (!searchLevel && getLevelCode(iter.getAdjNode()) == levelCode)
+                continue;
+
+            relax(currEdge, iter.getEdge(), iter.getAdjNode(), weighting.calcWeight(iter, reverse, currEdge.edge),
+                    -1, reverse);
+        }
+
+        int connector = searchLevel ? -1 : overlay.getConnectorIndex(currNode);
+        if (connector < 0)
+            return true;
+
+        if (reverse) {
+            for (int i = overlay.getInShortcutStart(connector); i < overlay.getInShortcutEnd(connector); i++) {
+                int shortcut = overlay.getInShortcut(i);
+                int firstEdge = overlay.getShortcutEdge(overlay.getShortcutEdgeStart(shortcut));
+                relax(currEdge, firstEdge, overlay.getShortcutBaseNode(shortcut), overlay.getShortcutWeight(shortcut),
+                        shortcut, true);
+            }
+        } else {
+            for (int shortcut = overlay.getShortcutStart(connector); shortcut < overlay.getShortcutEnd(connector); shortcut++) {
+                int lastEdge = overlay.getShortcutEdge(overlay.getShortcutEdgeEnd(shortcut) - 1);
+                relax(currEdge, lastEdge, overlay.getShortcutAdjNode(shortcut), overlay.getShortcutWeight(shortcut),
+                        shortcut, false);
+            }
+        }
+        return true;
+    }
+
+    private void relax(OverlayEntry currEdge, int edge, int adjNode, double weight, int shortcut, boolean reverse) {
+        double alreadyVisitedWeight = weight + currEdge.weightOfVisitedPath;
+        if (Double.isInfinite(alreadyVisitedWeight))
+            return;
+
+        GHIntObjectHashMap<OverlayEntry> bestWeightMap = reverse ? bestWeightMapTo : bestWeightMapFrom;
+        OverlayEntry entry = bestWeightMap.get(adjNode);
+        if (entry != null && entry.weightOfVisitedPath <= alreadyVisitedWeight)
+            return;
+
+        PriorityQueue<OverlayEntry> prioQueueOpenSet = reverse ? pqOpenSetTo : pqOpenSetFrom;
+        double estimationFullWeight = alreadyVisitedWeight + weightApprox.approximate(adjNode, reverse);
+        if (entry == null) {
+            entry = new OverlayEntry(edge, adjNode, estimationFullWeight, alreadyVisitedWeight);
+            bestWeightMap.put(adjNode, entry);
+        } else {
+            prioQueueOpenSet.remove(entry);
+            entry.edge = edge;
+            entry.weight = estimationFullWeight;
+            entry.weightOfVisitedPath = alreadyVisitedWeight;
+        }
+        entry.shortcut = shortcut;
+        entry.parent = currEdge;
+        prioQueueOpenSet.add(entry);
+
+        OverlayEntry entryOther = (reverse ? bestWeightMapFrom : bestWeightMapTo).get(adjNode);
+        if (entryOther != null) {
+            if (reverse)
+                updateBestPath(entryOther, entry);
+            else
+                updateBestPath(entry, entryOther);
+        }
+    }
+
+    private void updateBestPath(OverlayEntry entryFrom, OverlayEntry entryTo) {
+        double newWeight = entryFrom.weightOfVisitedPath + entryTo.weightOfVisitedPath;
+        if (newWeight < bestPath.getWeight()) {
+            bestPath.setSPTEntry(entryFrom);
+            bestPath.setSPTEntryTo(entryTo);
+            bestPath.setWeight(newWeight);
+        }
+    }
+
+    private boolean isSearchLevel(int levelCode) {
+        return levelCode == fromLevelCode || levelCode == toLevelCode || levelCode == UNKNOWN_LEVEL
+                || fromLevelCode == UNKNOWN_LEVEL || toLevelCode == UNKNOWN_LEVEL;
+    }
+
+    /**
+     * Virtual nodes get the level of the edge they were created on, on level transitions the level
+     * is unknown and all levels are searched.
+     */
+    private int getLevelCode(int node) {
+        if (graph instanceof QueryGraph && ((QueryGraph) graph).isVirtualNode(node)) {
+            EdgeIteratorState edge = ((QueryGraph) graph).getOriginalEdgeFromVirtNode(node);
+            int baseCode = extension.getLevelCode(edge.getBaseNode());
+            return baseCode == extension.getLevelCode(edge.getAdjNode()) ? baseCode : UNKNOWN_LEVEL;
+        }
+        return extension.getLevelCode(node);
+    }
+
+    @Override
+    protected boolean finished() {
+        if (finishedFrom || finishedTo)
+            return true;
+
+        return currFrom.weight + currTo.weight >= bestPath.getWeight();
+    }
+
+    @Override
+    protected Path extractPath() {
+        if (finished())
+            return bestPath.extract();
+
+        return bestPath;
+    }
+
+    @Override
+    protected SPTEntry createSPTEntry(int node, double weight) {
+        throw new IllegalStateException("use OverlayEntry constructor directly");
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedCountFrom + visitedCountTo;
+    }
+
+    @Override
+    public String getName() {
+        return Parameters.Algorithms.ASTAR_BI + "|indoor_overlay|" + weightApprox;
+    }
+
+    static class OverlayEntry extends SPTEntry {
+        double weightOfVisitedPath;
+        // the shortcut which was used to reach adjNode or -1 for a normal edge
+        int shortcut = -1;
+
+        OverlayEntry(int edgeId, int adjNode, double weightForHeap, double weightOfVisitedPath) {
+            super(edgeId, adjNode, weightForHeap);
+            this.weightOfVisitedPath = weightOfVisitedPath;
+        }
+
+        @Override
+        public final double getWeightOfVisitedPath() {
+            return weightOfVisitedPath;
+        }
+    }
+}
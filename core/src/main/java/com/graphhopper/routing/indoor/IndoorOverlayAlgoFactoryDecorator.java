@@ -0,0 +1,202 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.indoor;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingAlgorithmFactoryDecorator;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Parameters.IndoorOverlay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class decorates the non-CH routing of indoor graphs with the overlay of vertical connectors,
+ * see PrepareIndoorOverlay. Routes with a weighting for which no overlay was prepared, with other
+ * algorithms than the bidirectional A*, or on another graph state than the overlay was prepared
+ * for, still use the flat graph.
+ */
+public class IndoorOverlayAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator {
+    // never modified but replaced as a whole, so a route reads either the old or the new list without locking
+    private volatile List<PrepareIndoorOverlay> preparations = Collections.emptyList();
+    private final List<String> weightingsAsStrings = new ArrayList<>();
+    private boolean enabled = true;
+    private boolean disablingAllowed = true;
+
+    public IndoorOverlayAlgoFactoryDecorator() {
+        setWeightingsAsStrings(Collections.singletonList("fastest"));
+    }
+
+    @Override
+    public void init(CmdArgs args) {
+        String weightingsStr = args.get(IndoorOverlay.PREPARE + "weightings", "");
+        if ("no".equals(weightingsStr)) {
+            setEnabled(false);
+        } else if (!weightingsStr.isEmpty()) {
+            setWeightingsAsStrings(Arrays.asList(weightingsStr.split(",")));
+        }
+        setDisablingAllowed(args.getBool(IndoorOverlay.INIT_DISABLING_ALLOWED, isDisablingAllowed()));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public IndoorOverlayAlgoFactoryDecorator setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isDisablingAllowed() {
+        return disablingAllowed || !isEnabled();
+    }
+
+    public IndoorOverlayAlgoFactoryDecorator setDisablingAllowed(boolean disablingAllowed) {
+        this.disablingAllowed = disablingAllowed;
+        return this;
+    }
+
+    /**
+     * Sets the weightings like "fastest" for which an overlay is prepared for every indoor encoder.
+     */
+    public IndoorOverlayAlgoFactoryDecorator setWeightingsAsStrings(List<String> weightingList) {
+        weightingsAsStrings.clear();
+        for (String strWeighting : weightingList) {
+            strWeighting = strWeighting.trim().toLowerCase();
+            if (!strWeighting.isEmpty())
+                weightingsAsStrings.add(strWeighting);
+        }
+        return this;
+    }
+
+    public List<String> getWeightingsAsStrings() {
+        return weightingsAsStrings;
+    }
+
+    public List<PrepareIndoorOverlay> getPreparations() {
+        return Collections.unmodifiableList(preparations);
+    }
+
+    public synchronized IndoorOverlayAlgoFactoryDecorator addPreparation(PrepareIndoorOverlay preparation) {
+        List<PrepareIndoorOverlay> list = new ArrayList<>(preparations);
+        list.add(preparation);
+        preparations = list;
+        return this;
+    }
+
+    /**
+     * Creates and prepares the overlays for the specified weightings of an indoor graph.
+     */
+    public synchronized void createPreparations(Graph graph, List<Weighting> weightings) {
+        if (!preparations.isEmpty())
+            throw new IllegalStateException("Preparations were already created");
+
+        preparations = prepare(graph, weightings);
+    }
+
+    /**
+     * Replaces the overlays with new ones prepared for the specified graph, e.g. for the routing
+     * snapshot after a graph change. Routes continue with the old overlays while the new ones are
+     * prepared, routes on the changed graph ignore them and use the flat graph meanwhile.
+     */
+    public void updatePreparations(Graph graph, List<Weighting> weightings) {
+        List<PrepareIndoorOverlay> list = prepare(graph, weightings);
+        synchronized (this) {
+            preparations = list;
+        }
+    }
+
+    /**
+     * Removes all overlays, e.g. before the graph they were prepared for is changed in place.
+     */
+    public synchronized void clearPreparations() {
+        preparations = Collections.emptyList();
+    }
+
+    /**
+     * @return true if overlays exist and all of them were prepared for the specified graph state
+     */
+    public boolean isPreparedFor(Graph graph) {
+        List<PrepareIndoorOverlay> list = preparations;
+        for (PrepareIndoorOverlay preparation : list) {
+            if (preparation.getExtension() != graph.getExtension())
+                return false;
+        }
+        return !list.isEmpty();
+    }
+
+    private List<PrepareIndoorOverlay> prepare(Graph graph, List<Weighting> weightings) {
+        List<PrepareIndoorOverlay> list = new ArrayList<>();
+        for (Weighting weighting : weightings) {
+            PrepareIndoorOverlay preparation = new PrepareIndoorOverlay(graph, weighting);
+            preparation.doWork();
+            list.add(preparation);
+        }
+        return list;
+    }
+
+    @Override
+    public RoutingAlgorithmFactory getDecoratedAlgorithmFactory(RoutingAlgorithmFactory defaultAlgoFactory, HintsMap map) {
+        // CH and LM use their own algorithms
+        if (preparations.isEmpty() || !(defaultAlgoFactory instanceof RoutingAlgorithmFactorySimple))
+            return defaultAlgoFactory;
+
+        boolean disable = map.getBool(IndoorOverlay.DISABLE, false);
+        if (!isDisablingAllowed() && disable)
+            throw new IllegalArgumentException("Disabling the indoor overlay is not allowed on the server-side");
+
+        if (disable)
+            return defaultAlgoFactory;
+
+        return new IndoorOverlayRAFactory(defaultAlgoFactory);
+    }
+
+    /**
+     * Picks the overlay matching the weighting of the request and falls back to the default
+     * factory otherwise.
+     */
+    public class IndoorOverlayRAFactory implements RoutingAlgorithmFactory {
+        private final RoutingAlgorithmFactory defaultAlgoFactory;
+
+        public IndoorOverlayRAFactory(RoutingAlgorithmFactory defaultAlgoFactory) {
+            this.defaultAlgoFactory = defaultAlgoFactory;
+        }
+
+        public RoutingAlgorithmFactory getDefaultAlgoFactory() {
+            return defaultAlgoFactory;
+        }
+
+        @Override
+        public RoutingAlgorithm createAlgo(Graph g, AlgorithmOptions opts) {
+            for (PrepareIndoorOverlay preparation : preparations) {
+                if (preparation.accepts(g, opts))
+                    return preparation.createAlgo(g, opts);
+            }
+            return defaultAlgoFactory.createAlgo(g, opts);
+        }
+    }
+}
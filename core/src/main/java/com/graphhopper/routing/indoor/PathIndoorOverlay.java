@@ -0,0 +1,118 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.indoor;
+
+import com.graphhopper.coll.GHIntArrayList;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathBidirRef;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Path of the AStarBidirectionIndoorOverlay which expands the used shortcuts into the edges of the
+ * graph. The SPTEntry has to be from the forward search and the 'to' entry from the backward search.
+ */
+public class PathIndoorOverlay extends PathBidirRef {
+    private final PrepareIndoorOverlay overlay;
+
+    public PathIndoorOverlay(Graph graph, Weighting weighting, PrepareIndoorOverlay overlay) {
+        super(graph, weighting);
+        this.overlay = overlay;
+    }
+
+    @Override
+    public Path extract() {
+        if (sptEntry == null || edgeTo == null)
+            return this;
+
+        if (sptEntry.adjNode != edgeTo.adjNode)
+            throw new IllegalStateException("Locations of the 'to'- and 'from'-Edge has to be the same." + toString()
+                    + ", fromEntry:" + sptEntry + ", toEntry:" + edgeTo);
+
+        GHIntArrayList edges = new GHIntArrayList();
+        GHIntArrayList adjNodes = new GHIntArrayList();
+        // the forward tree is collected from the meeting node back to the start
+        SPTEntry currEdge = sptEntry;
+        while (EdgeIterator.Edge.isValid(currEdge.edge)) {
+            addEdges(currEdge, currEdge.parent.adjNode, currEdge.adjNode, edges, adjNodes, true);
+            currEdge = currEdge.parent;
+        }
+        setFromNode(currEdge.adjNode);
+        edges.reverse();
+        adjNodes.reverse();
+
+        currEdge = edgeTo;
+        while (EdgeIterator.Edge.isValid(currEdge.edge)) {
+            addEdges(currEdge, currEdge.adjNode, currEdge.parent.adjNode, edges, adjNodes, false);
+            currEdge = currEdge.parent;
+        }
+        setEndNode(currEdge.adjNode);
+
+        // the edges are already in the correct order
+        reverseOrder = false;
+        int prevEdge = EdgeIterator.NO_EDGE;
+        for (int i = 0; i < edges.size(); i++) {
+            processEdge(edges.get(i), adjNodes.get(i), prevEdge);
+            prevEdge = edges.get(i);
+        }
+        return setFound(true);
+    }
+
+    /**
+     * Adds the edges from fromNode to toNode which are stored in the specified entry. If reversed is
+     * true the edges are added starting at toNode.
+     */
+    private void addEdges(SPTEntry entry, int fromNode, int toNode, GHIntArrayList edges, GHIntArrayList adjNodes,
+                          boolean reversed) {
+        int shortcut = entry instanceof AStarBidirectionIndoorOverlay.OverlayEntry
+                ? ((AStarBidirectionIndoorOverlay.OverlayEntry) entry).shortcut : -1;
+        if (shortcut < 0) {
+            edges.add(entry.edge);
+            adjNodes.add(toNode);
+            return;
+        }
+
+        int start = overlay.getShortcutEdgeStart(shortcut);
+        int end = overlay.getShortcutEdgeEnd(shortcut);
+        if (reversed) {
+            int node = toNode;
+            for (int i = end - 1; i >= start; i--) {
+                int edge = overlay.getShortcutEdge(i);
+                edges.add(edge);
+                adjNodes.add(node);
+                node = getOtherNode(edge, node);
+            }
+        } else {
+            int node = fromNode;
+            for (int i = start; i < end; i++) {
+                int edge = overlay.getShortcutEdge(i);
+                node = getOtherNode(edge, node);
+                edges.add(edge);
+                adjNodes.add(node);
+            }
+        }
+    }
+
+    private int getOtherNode(int edge, int node) {
+        EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+        return edgeState.getBaseNode() == node ? edgeState.getAdjNode() : edgeState.getBaseNode();
+    }
+}
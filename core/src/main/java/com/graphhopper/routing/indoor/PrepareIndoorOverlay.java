@@ -0,0 +1,313 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.indoor;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
+
+/**
+ * Prepares an overlay graph for indoor routing. The nodes of the overlay are the vertical connectors,
+ * i.e. the nodes of stairs, elevators and ramps which connect different levels. Its edges are the
+ * shortest paths between two connectors on the same level.
+ * <p>
+ * A route then only needs to search the level of the start and of the destination. All other
+ * levels are crossed via the overlay, which is similar to a multi-level Dijkstra with the levels
+ * as cells. The overlay is small for buildings and therefore created in memory after every import
+ * or load.
+ */
+public class PrepareIndoorOverlay implements RoutingAlgorithmFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrepareIndoorOverlay.class);
+    private final Graph graph;
+    private final Weighting weighting;
+    private final IndoorExtension extension;
+    private final TraversalMode traversalMode = TraversalMode.NODE_BASED;
+    private IntIntHashMap connectorIndex = new IntIntHashMap();
+    private int[] connectorNodes = new int[0];
+    // the shortcuts of connector i are stored from shortcutStart[i] to shortcutStart[i + 1]
+    private int[] shortcutStart = new int[1];
+    private int[] shortcutBaseNodes = new int[0];
+    private int[] shortcutAdjNodes = new int[0];
+    private double[] shortcutWeights = new double[0];
+    // the edges of shortcut s are stored from shortcutEdgeStart[s] to shortcutEdgeStart[s + 1]
+    private int[] shortcutEdgeStart = new int[1];
+    private int[] shortcutEdges = new int[0];
+    // the shortcuts ending at connector i are stored from inShortcutStart[i] to inShortcutStart[i + 1]
+    private int[] inShortcutStart = new int[1];
+    private int[] inShortcuts = new int[0];
+    private boolean prepared;
+
+    public PrepareIndoorOverlay(Graph graph, Weighting weighting) {
+        if (!(graph.getExtension() instanceof IndoorExtension))
+            throw new IllegalArgumentException("PrepareIndoorOverlay requires an indoor graph");
+
+        this.graph = graph;
+        this.weighting = weighting;
+        this.extension = (IndoorExtension) graph.getExtension();
+    }
+
+    public Weighting getWeighting() {
+        return weighting;
+    }
+
+    public boolean isPrepared() {
+        return prepared;
+    }
+
+    public void doWork() {
+        if (prepared)
+            throw new IllegalStateException("Call doWork only once!");
+
+        StopWatch sw = new StopWatch().start();
+        IntHashSet connectorSet = new IntHashSet();
+        for (int edge : extension.getLevelTransitionEdges()) {
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            connectorSet.add(edgeState.getBaseNode());
+            connectorSet.add(edgeState.getAdjNode());
+        }
+        connectorNodes = connectorSet.toArray();
+        Arrays.sort(connectorNodes);
+        connectorIndex = new IntIntHashMap(connectorNodes.length);
+        for (int i = 0; i < connectorNodes.length; i++) {
+            connectorIndex.put(connectorNodes[i], i);
+        }
+
+        IntArrayList starts = new IntArrayList(connectorNodes.length + 1);
+        IntArrayList baseNodes = new IntArrayList();
+        IntArrayList adjNodes = new IntArrayList();
+        DoubleArrayList weights = new DoubleArrayList();
+        IntArrayList edgeStarts = new IntArrayList();
+        IntArrayList edges = new IntArrayList();
+        EdgeExplorer explorer = graph.createEdgeExplorer(new DefaultEdgeFilter(weighting.getFlagEncoder(), false, true));
+        for (int connector : connectorNodes) {
+            starts.add(adjNodes.size());
+            addShortcuts(explorer, connector, adjNodes, weights, edgeStarts, edges);
+            while (baseNodes.size() < adjNodes.size()) {
+                baseNodes.add(connector);
+            }
+        }
+        starts.add(adjNodes.size());
+        edgeStarts.add(edges.size());
+
+        shortcutStart = starts.toArray();
+        shortcutBaseNodes = baseNodes.toArray();
+        shortcutAdjNodes = adjNodes.toArray();
+        shortcutWeights = weights.toArray();
+        shortcutEdgeStart = edgeStarts.toArray();
+        shortcutEdges = edges.toArray();
+        initInShortcuts();
+        prepared = true;
+        LOGGER.info("Prepared indoor overlay for " + weighting + " with " + connectorNodes.length + " connectors and "
+                + shortcutAdjNodes.length + " shortcuts in " + sw.stop().getSeconds() + "s");
+    }
+
+    /**
+     * Runs a Dijkstra from the specified connector which does not leave its level and stores the
+     * shortest path to every other reachable connector of this level.
+     */
+    private void addShortcuts(EdgeExplorer explorer, int connector, IntArrayList adjNodes, DoubleArrayList weights,
+                              IntArrayList edgeStarts, IntArrayList edges) {
+        int levelCode = extension.getLevelCode(connector);
+        IntObjectMap<SPTEntry> map = new GHIntObjectHashMap<>();
+        PriorityQueue<SPTEntry> heap = new PriorityQueue<>();
+        SPTEntry curr = new SPTEntry(EdgeIterator.NO_EDGE, connector, 0);
+        map.put(connector, curr);
+        IntArrayList pathEdges = new IntArrayList();
+        while (curr != null) {
+            if (curr.adjNode != connector && connectorIndex.containsKey(curr.adjNode)) {
+                pathEdges.clear();
+                for (SPTEntry entry = curr; EdgeIterator.Edge.isValid(entry.edge); entry = entry.parent) {
+                    pathEdges.add(entry.edge);
+                }
+                adjNodes.add(curr.adjNode);
+                weights.add(curr.weight);
+                edgeStarts.add(edges.size());
+                for (int i = pathEdges.size() - 1; i >= 0; i--) {
+                    edges.add(pathEdges.get(i));
+                }
+            }
+
+            EdgeIterator iter = explorer.setBaseNode(curr.adjNode);
+            while (iter.next()) {
+                if (extension.getLevelCode(iter.getAdjNode()) != levelCode)
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter, false, curr.edge) + curr.weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                SPTEntry entry = map.get(iter.getAdjNode());
+                if (entry == null) {
+                    entry = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+                    entry.parent = curr;
+                    map.put(iter.getAdjNode(), entry);
+                    heap.add(entry);
+                } else if (entry.weight > tmpWeight) {
+                    heap.remove(entry);
+                    entry.edge = iter.getEdge();
+                    entry.weight = tmpWeight;
+                    entry.parent = curr;
+                    heap.add(entry);
+                }
+            }
+            curr = heap.poll();
+        }
+    }
+
+    /**
+     * Sorts the shortcuts by their adjacent connector for the backward search
+     */
+    private void initInShortcuts() {
+        inShortcutStart = new int[connectorNodes.length + 1];
+        for (int adjNode : shortcutAdjNodes) {
+            inShortcutStart[connectorIndex.get(adjNode) + 1]++;
+        }
+        for (int i = 0; i < connectorNodes.length; i++) {
+            inShortcutStart[i + 1] += inShortcutStart[i];
+        }
+        int[] next = Arrays.copyOf(inShortcutStart, connectorNodes.length);
+        inShortcuts = new int[shortcutAdjNodes.length];
+        for (int shortcut = 0; shortcut < shortcutAdjNodes.length; shortcut++) {
+            inShortcuts[next[connectorIndex.get(shortcutAdjNodes[shortcut])]++] = shortcut;
+        }
+    }
+
+    public int getConnectorCount() {
+        return connectorNodes.length;
+    }
+
+    public int getShortcutCount() {
+        return shortcutAdjNodes.length;
+    }
+
+    /**
+     * @return the index of the specified node in the overlay or -1 if the node is no connector
+     */
+    int getConnectorIndex(int node) {
+        return connectorIndex.getOrDefault(node, -1);
+    }
+
+    int getShortcutStart(int connectorIndex) {
+        return shortcutStart[connectorIndex];
+    }
+
+    int getShortcutEnd(int connectorIndex) {
+        return shortcutStart[connectorIndex + 1];
+    }
+
+    int getInShortcutStart(int connectorIndex) {
+        return inShortcutStart[connectorIndex];
+    }
+
+    int getInShortcutEnd(int connectorIndex) {
+        return inShortcutStart[connectorIndex + 1];
+    }
+
+    int getInShortcut(int index) {
+        return inShortcuts[index];
+    }
+
+    int getShortcutBaseNode(int shortcut) {
+        return shortcutBaseNodes[shortcut];
+    }
+
+    int getShortcutAdjNode(int shortcut) {
+        return shortcutAdjNodes[shortcut];
+    }
+
+    double getShortcutWeight(int shortcut) {
+        return shortcutWeights[shortcut];
+    }
+
+    int getShortcutEdgeStart(int shortcut) {
+        return shortcutEdgeStart[shortcut];
+    }
+
+    int getShortcutEdgeEnd(int shortcut) {
+        return shortcutEdgeStart[shortcut + 1];
+    }
+
+    int getShortcutEdge(int index) {
+        return shortcutEdges[index];
+    }
+
+    IndoorExtension getExtension() {
+        return extension;
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo(Graph graph, AlgorithmOptions opts) {
+        if (!prepared)
+            throw new IllegalStateException("Call doWork before creating an algorithm");
+
+        AStarBidirectionIndoorOverlay algo = new AStarBidirectionIndoorOverlay(graph, this, opts.getWeighting(),
+                opts.getTraversalMode());
+        algo.setApproximation(RoutingAlgorithmFactorySimple.getApproximation(ASTAR_BI, opts, graph));
+        algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
+        return algo;
+    }
+
+    /**
+     * @return true if a route on the specified graph with the specified options can use this overlay.
+     * The shortcuts are only valid for the graph they were prepared for: every snapshot of a changed
+     * graph, and a QueryGraph wrapping it, shares the IndoorExtension of this graph state only.
+     */
+    public boolean accepts(Graph graph, AlgorithmOptions opts) {
+        return graph.getExtension() == extension && accepts(opts);
+    }
+
+    /**
+     * @return true if a route with the specified options can use this overlay
+     */
+    public boolean accepts(AlgorithmOptions opts) {
+        String algo = opts.getAlgorithm();
+        return opts.getTraversalMode() == traversalMode
+                && (algo.isEmpty() || ASTAR_BI.equalsIgnoreCase(algo))
+                && weighting.toString().equals(opts.getWeighting().toString());
+    }
+
+    @Override
+    public String toString() {
+        return Parameters.IndoorOverlay.PREPARE + weighting;
+    }
+}
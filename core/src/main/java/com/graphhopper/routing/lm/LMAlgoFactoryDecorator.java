@@ -67,6 +67,7 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     private boolean disablingAllowed = false;
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
+    private int landmarkThreads = 1;
     private ExecutorService threadPool;
     private boolean logDetails = false;
 
@@ -77,6 +78,7 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     @Override
     public void init(CmdArgs args) {
         setPreparationThreads(args.getInt(Parameters.Landmark.PREPARE + "threads", getPreparationThreads()));
+        setLandmarkThreads(args.getInt(Landmark.PREPARE + "landmark_threads", getLandmarkThreads()));
 
         landmarkCount = args.getInt(Parameters.Landmark.COUNT, landmarkCount);
         activeLandmarkCount = args.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, landmarkCount));
@@ -138,6 +140,19 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         this.threadPool = java.util.concurrent.Executors.newFixedThreadPool(preparationThreads);
     }
 
+    public int getLandmarkThreads() {
+        return landmarkThreads;
+    }
+
+    /**
+     * This method changes the number of threads which calculate the landmark weights of one weighting.
+     * Default is 1. Every thread explores the whole subnetwork, so make sure that you have enough memory.
+     */
+    public LMAlgoFactoryDecorator setLandmarkThreads(int landmarkThreads) {
+        this.landmarkThreads = landmarkThreads;
+        return this;
+    }
+
     /**
      * Enables the use of contraction hierarchies to reduce query times. Enabled by default.
      *
@@ -336,6 +351,7 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
                     weighting, landmarkCount, activeLandmarkCount).
                     setLandmarkSuggestions(lmSuggestions).
                     setMaximumWeight(maximumWeight).
+                    setLandmarkThreads(landmarkThreads).
                     setLogDetails(logDetails);
             if (minNodes > 1)
                 tmpPrepareLM.setMinimumNodes(minNodes);
@@ -41,8 +41,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class stores the landmark nodes and the weights from and to all other nodes in every
@@ -79,6 +81,12 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private SpatialRuleLookup ruleLookup;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
+    // calculates the weights of the landmarks in parallel, only used while creating the landmarks
+    private ExecutorService weightPool;
+    private final List<Future<Object>> weightTasks = new ArrayList<>();
+    private final AtomicInteger finishedLandmarks = new AtomicInteger();
+    private final AtomicLong exploredNodes = new AtomicLong();
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
@@ -148,6 +156,18 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         this.logDetails = logDetails;
     }
 
+    /**
+     * This method sets the number of threads which calculate the weights from and to the landmarks.
+     * Every thread explores the whole subnetwork and needs the memory for it. Default is 1.
+     */
+    public LandmarkStorage setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            throw new IllegalArgumentException("landmark threads have to be at least 1 but was " + landmarkThreads);
+
+        this.landmarkThreads = landmarkThreads;
+        return this;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -269,31 +289,23 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
 
         EdgeExplorer tmpExplorer = graph.createEdgeExplorer(new RequireBothDirectionsEdgeFilter(encoder));
 
-        int nodes = 0;
-        for (IntArrayList subnetworkIds : graphComponents) {
-            nodes += subnetworkIds.size();
-            if (subnetworkIds.size() < minimumNodes)
-                continue;
-
-            int index = subnetworkIds.size() - 1;
-            // ensure start node is reachable from both sides and no subnetwork is associated
-            for (; index >= 0; index--) {
-                int nextStartNode = subnetworkIds.get(index);
-                if (subnetworks[nextStartNode] == UNSET_SUBNETWORK
-                        && GHUtility.count(tmpExplorer.setBaseNode(nextStartNode)) > 0) {
-
-                    GHPoint p = createPoint(graph, nextStartNode);
-                    if (logDetails)
-                        LOGGER.info("start node: " + nextStartNode + " (" + p + ") subnetwork size: " + subnetworkIds.size()
-                                + ", " + Helper.getMemInfo() + ((ruleLookup == null) ? "" : " area:" + ruleLookup.lookupRule(p).getId()));
-
-                    if (createLandmarksForSubnetwork(nextStartNode, subnetworks, blockedEdges))
-                        break;
-                }
+        StopWatch weightSW = new StopWatch().start();
+        if (landmarkThreads > 1)
+            weightPool = Executors.newFixedThreadPool(landmarkThreads);
+        try {
+            createLandmarksForSubnetworks(graphComponents, tmpExplorer, subnetworks, blockedEdges);
+            waitForWeightTasks();
+        } finally {
+            if (weightPool != null) {
+                weightPool.shutdownNow();
+                weightPool = null;
             }
-            if (index < 0)
-                LOGGER.warn("next start node not found in big enough network of size " + subnetworkIds.size() + ", first element is " + subnetworkIds.get(0) + ", " + createPoint(graph, subnetworkIds.get(0)));
         }
+        weightSW.stop();
+        if (logDetails)
+            LOGGER.info("Calculated weights of " + finishedLandmarks.get() + " landmarks with " + landmarkThreads
+                    + " threads in " + weightSW.getSeconds() + "s, explored nodes: " + Helper.nf(exploredNodes.get())
+                    + ", nodes/s: " + Helper.nf(Math.round(exploredNodes.get() / Math.max(weightSW.getSeconds(), 1e-3))));
 
         int subnetworkCount = landmarkIDs.size();
         // store all landmark node IDs and one int for the factor itself.
@@ -321,9 +333,54 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             subnetworkStorage.setSubnetwork(nodeId, subnetworks[nodeId]);
         }
 
+        initialized = true;
+    }
+
+    private void createLandmarksForSubnetworks(List<IntArrayList> graphComponents, EdgeExplorer tmpExplorer,
+                                               byte[] subnetworks, IntHashSet blockedEdges) {
+        int nodes = 0;
+        for (IntArrayList subnetworkIds : graphComponents) {
+            nodes += subnetworkIds.size();
+            if (subnetworkIds.size() < minimumNodes)
+                continue;
+
+            int index = subnetworkIds.size() - 1;
+            // ensure start node is reachable from both sides and no subnetwork is associated
+            for (; index >= 0; index--) {
+                int nextStartNode = subnetworkIds.get(index);
+                if (subnetworks[nextStartNode] == UNSET_SUBNETWORK
+                        && GHUtility.count(tmpExplorer.setBaseNode(nextStartNode)) > 0) {
+
+                    GHPoint p = createPoint(graph, nextStartNode);
+                    if (logDetails)
+                        LOGGER.info("start node: " + nextStartNode + " (" + p + ") subnetwork size: " + subnetworkIds.size()
+                                + ", " + Helper.getMemInfo() + ((ruleLookup == null) ? "" : " area:" + ruleLookup.lookupRule(p).getId()));
+
+                    if (createLandmarksForSubnetwork(nextStartNode, subnetworks, blockedEdges))
+                        break;
+                }
+            }
+            if (index < 0)
+                LOGGER.warn("next start node not found in big enough network of size " + subnetworkIds.size() + ", first element is " + subnetworkIds.get(0) + ", " + createPoint(graph, subnetworkIds.get(0)));
+        }
+
         if (logDetails)
             LOGGER.info("Finished landmark creation. Subnetwork node count sum " + nodes + " vs. nodes " + graph.getNodes());
-        initialized = true;
+    }
+
+    private void waitForWeightTasks() {
+        try {
+            for (Future<Object> future : weightTasks) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Problem while calculating landmark weights", ex.getCause());
+        } finally {
+            weightTasks.clear();
+        }
     }
 
     /**
@@ -331,7 +388,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
      *
      * @return landmark mapping
      */
-    private boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, IntHashSet blockedEdges) {
+    private boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, final IntHashSet blockedEdges) {
         final int subnetworkId = landmarkIDs.size();
         int[] tmpLandmarkNodeIds = new int[landmarks];
         int logOffset = Math.max(1, tmpLandmarkNodeIds.length / 2);
@@ -400,37 +457,25 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted");
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode);
-            explorer.initFrom(lmNodeId, 0);
-            explorer.setFilter(blockedEdges, false, true);
-            explorer.runAlgo(true);
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
-
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
-
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode);
-            explorer.initTo(lmNodeId, 0);
-            explorer.setFilter(blockedEdges, true, false);
-            explorer.runAlgo(false);
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+        // the first landmark sets the subnetwork, the others only depend on it and can run in parallel
+        if (!calculateWeights(0, tmpLandmarkNodeIds[0], subnetworks, subnetworkId, blockedEdges))
+            return false;
 
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
+        for (int lmIdx = 1; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
+            final int tmpLmIdx = lmIdx;
+            final int lmNodeId = tmpLandmarkNodeIds[lmIdx];
+            if (weightPool == null) {
+                calculateWeights(tmpLmIdx, lmNodeId, subnetworks, subnetworkId, blockedEdges);
+                continue;
             }
 
-            if (logDetails && lmIdx % logOffset == 0)
-                LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
+            weightTasks.add(weightPool.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    calculateWeights(tmpLmIdx, lmNodeId, subnetworks, subnetworkId, blockedEdges);
+                    return null;
+                }
+            }));
         }
 
         // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
@@ -438,6 +483,51 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         return true;
     }
 
+    /**
+     * This method calculates the 'from' and 'to' weights of the specified landmark. Only the first landmark of a
+     * subnetwork associates the explored nodes with the subnetwork. All other landmarks write only the weights of
+     * nodes in this subnetwork, so they write into disjoint cells and can be calculated in parallel.
+     *
+     * @return false if an explored node was already associated with a different subnetwork
+     */
+    private boolean calculateWeights(int lmIdx, int lmNodeId, byte[] subnetworks, int subnetworkId, IntHashSet blockedEdges) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Thread was interrupted");
+        }
+        byte[] onlySubnetworks = lmIdx == 0 ? null : subnetworks;
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode);
+        explorer.initFrom(lmNodeId, 0);
+        explorer.setFilter(blockedEdges, false, true);
+        explorer.runAlgo(true);
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET, onlySubnetworks, subnetworkId);
+        long visited = explorer.getVisitedNodes();
+
+        // set subnetwork id to all explored nodes, but do this only for the first landmark
+        if (lmIdx == 0) {
+            if (explorer.setSubnetworks(subnetworks, subnetworkId))
+                return false;
+        }
+
+        explorer = new LandmarkExplorer(graph, this, weighting, traversalMode);
+        explorer.initTo(lmNodeId, 0);
+        explorer.setFilter(blockedEdges, true, false);
+        explorer.runAlgo(false);
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET, onlySubnetworks, subnetworkId);
+        visited += explorer.getVisitedNodes();
+
+        if (lmIdx == 0) {
+            if (explorer.setSubnetworks(subnetworks, subnetworkId))
+                return false;
+        }
+
+        long explored = exploredNodes.addAndGet(visited);
+        int finished = finishedLandmarks.incrementAndGet();
+        if (logDetails && finished % Math.max(1, landmarks / 2) == 0)
+            LOGGER.info("Set landmarks weights [" + weighting + "]. Finished landmarks: " + finished
+                    + ", explored nodes: " + Helper.nf(explored) + ", " + Helper.getMemInfo());
+        return true;
+    }
+
     /**
      * This method specifies the polygons which should be used to split the world wide area to improve performance and
      * quality in this scenario.
@@ -797,7 +887,11 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             return failed.get();
         }
 
-        public void initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset) {
+        /**
+         * @param subnetworks if not null only the weights of nodes in the specified subnetwork are set
+         */
+        public void initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset,
+                                        final byte[] subnetworks, final int subnetworkId) {
             IntObjectMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
             final AtomicInteger maxedout = new AtomicInteger(0);
             final Map.Entry<Double, Double> finalMaxWeight = new MapEntry<>(0d, 0d);
@@ -805,6 +899,9 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             map.forEach(new IntObjectProcedure<SPTEntry>() {
                 @Override
                 public void apply(int nodeId, SPTEntry b) {
+                    if (subnetworks != null && subnetworks[nodeId] != subnetworkId)
+                        return;
+
                     if (!lms.setWeight(nodeId * rowSize + lmIdx * 4 + offset, b.weight)) {
                         maxedout.incrementAndGet();
                         finalMaxWeight.setValue(Math.max(b.weight, finalMaxWeight.getValue()));
@@ -24,7 +24,7 @@ import java.util.List;
 public class RoutingTemplateIndoor extends ViaRoutingTemplate {
 
     private final LocationIndex locationIndex;
-    private int[] levels;
+    private double[] levels;
     private IndoorExtension indoorExtension;
 
     public RoutingTemplateIndoor(GHRequest ghRequest, GHResponse ghRsp, LocationIndex locationIndex, IndoorExtension indoorExtension) {
@@ -38,7 +38,7 @@ public class RoutingTemplateIndoor extends ViaRoutingTemplate {
         if (points.size() < 2)
             throw new IllegalArgumentException("At least 2 points have to be specified, but was:" + points.size());
         queryResults = new ArrayList<>(points.size());
-        levels = new int[points.size()];
+        levels = new double[points.size()];
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++) {
             GHPointIndoor point = (GHPointIndoor)points.get(placeIndex);
             levels[placeIndex] = point.level;
@@ -47,6 +47,9 @@ public class RoutingTemplateIndoor extends ViaRoutingTemplate {
 
             if (!res.isValid())
                 ghResponse.addError(new PointNotFoundException("Cannot find point " + placeIndex + ": " + point, placeIndex));
+            else if (indoorExtension != null)
+                // the requested level is a full level, the snapped edge can be on a mezzanine like 0.5
+                levels[placeIndex] = indoorExtension.getLevelValue(res.getClosestEdge().getBaseNode());
 
             queryResults.add(res);
         }
@@ -68,7 +71,7 @@ public class RoutingTemplateIndoor extends ViaRoutingTemplate {
         List<Path> paths = super.calcPaths(queryGraph, algoFactory, algoOpts);
         for(int i=0;i<paths.size();i++){
             Path path = paths.get(i);
-            int[] partLevels = {levels[i],levels[i+1]};
+            double[] partLevels = {levels[i],levels[i+1]};
             path.setLevels(partLevels);
         }
         return paths;
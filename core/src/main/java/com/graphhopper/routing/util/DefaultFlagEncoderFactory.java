@@ -18,6 +18,7 @@
 package com.graphhopper.routing.util;
 
 import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
 
 /**
  * This class creates FlagEncoders that are already included in the GraphHopper distribution.
@@ -60,11 +61,10 @@ public class DefaultFlagEncoderFactory implements FlagEncoderFactory {
         if (name.equals(INDOOR))
             return new IndoorFlagEncoder(configuration);
 
-        if (name.equals(NOSTAIRS))
-            return new IndoorFlagEncoderNoStairs(configuration);
-
-        if(name.equals(NOELEVATORS))
-            return new IndoorFlagEncoderNoElevators(configuration);
+        if (name.equals(NOSTAIRS) || name.equals(NOELEVATORS))
+            throw new IllegalArgumentException("The encoder " + name + " was removed, use " + INDOOR
+                    + " with the request parameter " + Parameters.Routing.INDOOR_PROFILE + "=" + name
+                    + " instead. Existing indoor graphs have to be imported again.");
 
         throw new IllegalArgumentException("entry in encoder list not supported " + name);
     }
@@ -2,11 +2,18 @@ package com.graphhopper.routing.util;
 
 import com.graphhopper.util.EdgeIteratorState;
 
+/**
+ * Accepts only edges which lie completely on the specified level, level transitions are rejected.
+ */
 public class EdgeFilterIndoor implements EdgeFilter {
-    private String currentLevel = "";
+    private final int currentLevel;
 
     public EdgeFilterIndoor(int currentLevel) {
-        this.currentLevel = Integer.toString(currentLevel);
+        this.currentLevel = currentLevel;
+    }
+
+    public int getLevel() {
+        return currentLevel;
     }
 
     @Override
@@ -19,9 +26,6 @@ public class EdgeFilterIndoor implements EdgeFilter {
                     "You used " + edgeState.getClass() + " instead");
         }
 
-        if (edgeIndoor.getLevel().equals(currentLevel))
-            return true;
-
-        return false;
+        return !edgeIndoor.isLevelTransition() && edgeIndoor.getBaseLevel() == currentLevel;
     }
 }
@@ -4,5 +4,32 @@ import com.graphhopper.util.EdgeIteratorState;
 
 public interface EdgeIteratorIndoor extends EdgeIteratorState {
     EdgeIteratorIndoor setLevel(String floor);
+
+    /**
+     * Restricts this edge to the time slots set in the specified mask, see IndoorExtension
+     */
+    EdgeIteratorIndoor setTimeRestriction(long[] openSlots);
+
+    /**
+     * @return the level of this edge as String, e.g. "1", "0;1" for a level transition or "0;2" for a
+     * multi-level way tagged with level=0;1;2. Allocates a
+     * new String on every call, use {@link #getBaseLevel()} and {@link #getAdjLevel()} in hot paths.
+     */
     String getLevel();
+
+    /**
+     * @return the level of the base node of this edge
+     */
+    int getBaseLevel();
+
+    /**
+     * @return the level of the adjacent node of this edge
+     */
+    int getAdjLevel();
+
+    /**
+     * @return true if base and adjacent node of this edge are on different levels, e.g. for stairs, or
+     * if this edge spans several levels itself like an elevator
+     */
+    boolean isLevelTransition();
 }
@@ -415,7 +415,7 @@ public class EncodingManager {
     }
 
     public boolean isIndoor() {
-        return (supports("indoor")||supports("nostairs")||supports("noelevators"));
+        return supports(FlagEncoderFactory.INDOOR);
 
     }
 }
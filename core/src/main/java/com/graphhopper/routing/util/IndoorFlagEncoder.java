@@ -19,16 +19,35 @@ package com.graphhopper.routing.util;
 
 import com.graphhopper.reader.ReaderRelation;
 import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.reader.osm.conditional.OpeningHoursParser;
 import com.graphhopper.routing.weighting.PriorityWeighting;
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
 
+import java.text.ParseException;
 import java.util.*;
 
 import static com.graphhopper.routing.util.PriorityCode.*;
 
 
+/**
+ * Encoder for indoor routing by foot. Besides the speed every edge stores which kind of vertical
+ * connector or door it is, so that profiles like no stairs or wheelchair can be applied at query
+ * time via the IndoorProfileWeighting instead of importing one encoder per profile.
+ * <p>
+ * Ways which are only open at certain times, e.g. doors with opening_hours or
+ * access:conditional=no @ (Mo-Fr 18:00-08:00), are imported with a time restriction which is
+ * evaluated for the departure time of a request, see TimeRestrictionWeighting.
+ */
 public class IndoorFlagEncoder extends AbstractFlagEncoder {
+    public static final int STAIRS = 1;
+    public static final int ELEVATOR = 2;
+    public static final int ESCALATOR = 4;
+    public static final int RAMP = 8;
+    public static final int DOOR = 16;
+    private static final int CONNECTOR_BITS = 5;
+    private static final int LEVEL_DELTA_BITS = 8;
     static final int MEAN_SPEED = 5;
     final Set<String> safeHighwayTags = new HashSet<String>();
     final Set<String> allowedHighwayTags = new HashSet<String>();
@@ -37,6 +56,9 @@ public class IndoorFlagEncoder extends AbstractFlagEncoder {
     // convert network tag of hiking routes into a way route code
     private EncodedValue priorityWayEncoder;
     private EncodedValue relationCodeEncoder;
+    private EncodedValue connectorEncoder;
+    private EncodedValue levelDeltaEncoder;
+    private final OpeningHoursParser openingHoursParser = new OpeningHoursParser();
 
 
     /**
@@ -80,9 +102,13 @@ public class IndoorFlagEncoder extends AbstractFlagEncoder {
     }
 
 
+    /**
+     * Version 6 added the connector types and the level delta. Graphs imported with an older version
+     * cannot be loaded and have to be imported again.
+     */
     @Override
     public int getVersion() {
-        return 4;
+        return 6;
     }
 
     @Override
@@ -92,6 +118,10 @@ public class IndoorFlagEncoder extends AbstractFlagEncoder {
         // larger value required - ferries are faster than pedestrians
         speedEncoder = new EncodedDoubleValue("Speed", shift, speedBits, speedFactor, MEAN_SPEED, maxPossibleSpeed);
         shift += speedEncoder.getBits();
+        connectorEncoder = new EncodedValue("Connector", shift, CONNECTOR_BITS, 1, 0, (1 << CONNECTOR_BITS) - 1);
+        shift += connectorEncoder.getBits();
+        levelDeltaEncoder = new EncodedValue("LevelDelta", shift, LEVEL_DELTA_BITS, 1, 0, (1 << LEVEL_DELTA_BITS) - 1);
+        shift += levelDeltaEncoder.getBits();
         return shift;
     }
 
@@ -104,19 +134,88 @@ public class IndoorFlagEncoder extends AbstractFlagEncoder {
     public long acceptWay(ReaderWay way) {
         String highwayValue = way.getTag("highway");
 
+        // restrictions depending on the time of the day are not evaluated for the import time but for every request
+        boolean timeRestricted = getOpenSlots(way) != null;
+
         // check access restrictions
-        if (way.hasTag(restrictions, restrictedValues) && !getConditionalTagInspector().isRestrictedWayConditionallyPermitted(way))
+        if (way.hasTag(restrictions, restrictedValues) && !timeRestricted && !getConditionalTagInspector().isRestrictedWayConditionallyPermitted(way))
             return 0;
 
         if (!allowedHighwayTags.contains(highwayValue))
             return 0;
 
-        if (getConditionalTagInspector().isPermittedWayConditionallyRestricted(way))
+        if (!timeRestricted && getConditionalTagInspector().isPermittedWayConditionallyRestricted(way))
             return 0;
 
         return acceptBit;
     }
 
+    /**
+     * @return the time slots of the week in which the specified way is open, see IndoorExtension, or
+     * null if the access does not depend on the time. Conditional restrictions which are no weekly
+     * times like date ranges are left to the ConditionalTagInspector.
+     */
+    long[] getOpenSlots(ReaderWay way) {
+        boolean restricted = way.hasTag(restrictions, restrictedValues);
+        long[] open = null;
+        for (String restriction : restrictions) {
+            String conditional = way.getTag(restriction + ":conditional");
+            if (Helper.isEmpty(conditional))
+                continue;
+
+            int index = conditional.indexOf('@');
+            if (index < 0)
+                continue;
+
+            String value = conditional.substring(0, index).trim();
+            boolean permitted = intendedValues.contains(value);
+            if (!permitted && !restrictedValues.contains(value))
+                continue;
+
+            long[] slots = parseOpeningHours(conditional.substring(index + 1).replace('(', ' ').replace(')', ' '));
+            if (slots == null)
+                continue;
+
+            if (open == null) {
+                open = new long[slots.length];
+                if (!restricted)
+                    Arrays.fill(open, -1L);
+            }
+            for (int i = 0; i < slots.length; i++) {
+                if (permitted)
+                    open[i] |= slots[i];
+                else
+                    open[i] &= ~slots[i];
+            }
+        }
+
+        // opening hours cannot lift an access restriction
+        if (restricted && open == null)
+            return null;
+
+        long[] openingHours = parseOpeningHours(way.getTag("opening_hours"));
+        if (openingHours != null) {
+            if (open == null)
+                return openingHours;
+
+            for (int i = 0; i < open.length; i++) {
+                open[i] &= openingHours[i];
+            }
+        }
+        return open;
+    }
+
+    private long[] parseOpeningHours(String value) {
+        if (Helper.isEmpty(value))
+            return null;
+
+        try {
+            return openingHoursParser.parse(value);
+        } catch (ParseException ex) {
+            return null;
+        }
+    }
+
     @Override
     // indoor ways aren't stored as relations
     public long handleRelationTags(ReaderRelation relation, long oldRelationFlags) {
@@ -131,11 +230,60 @@ public class IndoorFlagEncoder extends AbstractFlagEncoder {
         long flags = 0;
 
         flags = speedEncoder.setDoubleValue(flags, MEAN_SPEED);
+        flags = connectorEncoder.setValue(flags, getConnectorTypes(way));
         flags |= directionBitMask;
 
         return flags;
     }
 
+    /**
+     * @return the connector types like STAIRS or DOOR of the specified way combined into one bitfield
+     */
+    int getConnectorTypes(ReaderWay way) {
+        int types = 0;
+        String highwayValue = way.getTag("highway");
+        if ("steps".equals(highwayValue) || "stairs".equals(highwayValue)) {
+            if (way.hasTag("conveying") && !way.hasTag("conveying", "no"))
+                types |= ESCALATOR;
+            else
+                types |= STAIRS;
+        } else if ("elevator".equals(highwayValue)) {
+            types |= ELEVATOR;
+        } else if (way.hasTag("incline")) {
+            types |= RAMP;
+        }
+
+        if (way.hasTag("ramp", "yes") || way.hasTag("ramp:wheelchair", "yes"))
+            types |= RAMP;
+        if (way.hasTag("indoor", "door") || way.hasTag("door") && !way.hasTag("door", "no"))
+            types |= DOOR;
+        return types;
+    }
+
+    /**
+     * @return the connector types of the edge with the specified flags, see STAIRS, ELEVATOR,
+     * ESCALATOR, RAMP and DOOR
+     */
+    public int getConnectorTypes(long flags) {
+        return (int) connectorEncoder.getValue(flags);
+    }
+
+    /**
+     * @return the difference between the level codes of base and adjacent node of the edge with the
+     * specified flags, e.g. 10 for stairs to the next level
+     */
+    public int getLevelCodeDelta(long flags) {
+        return (int) levelDeltaEncoder.getValue(flags);
+    }
+
+    /**
+     * Stores the absolute difference of the level codes. Larger values than 25.5 levels are cut off.
+     */
+    public long setLevelCodeDelta(long flags, int levelCodeDelta) {
+        int delta = Math.min(Math.abs(levelCodeDelta), (int) levelDeltaEncoder.getMaxValue());
+        return levelDeltaEncoder.setValue(flags, delta);
+    }
+
     @Override
     public String toString() {
         return "indoor";
@@ -150,6 +298,10 @@ public class IndoorFlagEncoder extends AbstractFlagEncoder {
             EdgeIteratorIndoor edgeIndoor = (EdgeIteratorIndoor) edge;
             edgeIndoor.setLevel(level);
 
+            long[] openSlots = getOpenSlots(way);
+            if (openSlots != null)
+                edgeIndoor.setTimeRestriction(openSlots);
+
         }
     }
 }
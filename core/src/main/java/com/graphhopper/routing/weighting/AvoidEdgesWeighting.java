@@ -43,6 +43,10 @@ public class AvoidEdgesWeighting extends AbstractAdjustedWeighting {
         return this;
     }
 
+    double getEdgePenaltyFactor() {
+        return edgePenaltyFactor;
+    }
+
     /**
      * This method adds the specified path to this weighting which should be penalized in the
      * calcWeight method.
@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.IndoorFlagEncoder;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters.Routing;
+
+import static com.graphhopper.routing.util.IndoorFlagEncoder.*;
+
+/**
+ * Applies an accessibility profile like 'nostairs' or 'wheelchair' to the weighting of the indoor
+ * encoder. Edges with a connector type that is not usable for the profile are blocked, so a single
+ * imported graph can serve all profiles.
+ * <p>
+ * Vertical transitions are not cheap just because their geometry is short: every elevator ride costs
+ * elevator_wait_seconds plus elevator_floor_seconds per level and stairs or escalators cost
+ * stairs_floor_seconds per level, where the level difference is taken from the edge flags. Further
+ * stairs_penalty multiplies the weight of stairs and avoid_doors penalizes doors. All parameters are
+ * parsed once in the constructor, so calcWeight does not allocate.
+ * <p>
+ * The transition costs are converted into the unit of the wrapped weighting: one second costs the
+ * minimum weight of the distance the encoder covers in one second at its maximum speed. For time based
+ * weightings like fastest this is one, for shortest the seconds become the meters walked meanwhile.
+ */
+public class IndoorProfileWeighting extends AbstractAdjustedWeighting {
+    public static final String DEFAULT = "default";
+    public static final String NO_STAIRS = "nostairs";
+    public static final String NO_ELEVATORS = "noelevators";
+    public static final String WHEELCHAIR = "wheelchair";
+    public static final String STROLLER = "stroller";
+    /**
+     * the factor applied to the weight of doors if avoid_doors is enabled
+     */
+    static final double DOOR_PENALTY = 5;
+    public static final double DEFAULT_ELEVATOR_WAIT_SECONDS = 30;
+    public static final double DEFAULT_ELEVATOR_FLOOR_SECONDS = 3;
+    public static final double DEFAULT_STAIRS_FLOOR_SECONDS = 10;
+
+    private final IndoorFlagEncoder encoder;
+    private final String profile;
+    private final int blockedTypes;
+    private final double stairsPenalty;
+    private final double elevatorWaitSeconds;
+    private final double elevatorSecondsPerLevelCode;
+    private final double stairsSecondsPerLevelCode;
+    private final double weightPerSecond;
+    private final double doorPenalty;
+    private final boolean adjusted;
+    private final String name;
+
+    public IndoorProfileWeighting(Weighting superWeighting, String profile) {
+        this(superWeighting, new PMap().put(Routing.INDOOR_PROFILE, profile));
+    }
+
+    public IndoorProfileWeighting(Weighting superWeighting, PMap params) {
+        super(superWeighting);
+        if (!(superWeighting.getFlagEncoder() instanceof IndoorFlagEncoder))
+            throw new IllegalArgumentException("Indoor profiles require the indoor encoder but was " + superWeighting.getFlagEncoder());
+
+        this.encoder = (IndoorFlagEncoder) superWeighting.getFlagEncoder();
+        this.profile = Helper.toLowerCase(params.get(Routing.INDOOR_PROFILE, DEFAULT));
+        this.blockedTypes = getBlockedTypes(profile);
+        // smaller values would make the weight approximation of A* overestimate
+        this.stairsPenalty = params.getDouble(Routing.STAIRS_PENALTY, 1);
+        if (stairsPenalty < 1)
+            throw new IllegalArgumentException(Routing.STAIRS_PENALTY + " must not be smaller than 1 but was " + stairsPenalty);
+        this.elevatorWaitSeconds = getSeconds(params, Routing.ELEVATOR_WAIT_SECONDS, DEFAULT_ELEVATOR_WAIT_SECONDS);
+        double elevatorFloorSeconds = getSeconds(params, Routing.ELEVATOR_FLOOR_SECONDS, DEFAULT_ELEVATOR_FLOOR_SECONDS);
+        double stairsFloorSeconds = getSeconds(params, Routing.STAIRS_FLOOR_SECONDS, DEFAULT_STAIRS_FLOOR_SECONDS);
+        this.elevatorSecondsPerLevelCode = elevatorFloorSeconds / IndoorExtension.LEVEL_FACTOR;
+        this.stairsSecondsPerLevelCode = stairsFloorSeconds / IndoorExtension.LEVEL_FACTOR;
+        this.weightPerSecond = superWeighting.getMinWeight(encoder.getMaxSpeed() / FastestWeighting.SPEED_CONV);
+        boolean avoidDoors = params.getBool(Routing.AVOID_DOORS, false);
+        this.doorPenalty = avoidDoors ? DOOR_PENALTY : 1;
+
+        // the indoor overlay is only used for weightings with the same name, so it has to change with the parameters
+        this.adjusted = stairsPenalty != 1 || avoidDoors
+                || elevatorWaitSeconds != DEFAULT_ELEVATOR_WAIT_SECONDS
+                || elevatorFloorSeconds != DEFAULT_ELEVATOR_FLOOR_SECONDS
+                || stairsFloorSeconds != DEFAULT_STAIRS_FLOOR_SECONDS;
+        this.name = "indoor_" + profile + (adjusted ? "_adjusted" : "");
+    }
+
+    private static double getSeconds(PMap params, String key, double defaultSeconds) {
+        double seconds = params.getDouble(key, defaultSeconds);
+        if (seconds < 0)
+            throw new IllegalArgumentException(key + " must not be negative but was " + seconds);
+        return seconds;
+    }
+
+    /**
+     * @return the connector types which cannot be used with the specified profile
+     */
+    public static int getBlockedTypes(String profile) {
+        if (DEFAULT.equals(profile))
+            return 0;
+        if (NO_STAIRS.equals(profile))
+            return STAIRS | ESCALATOR;
+        if (NO_ELEVATORS.equals(profile))
+            return ELEVATOR;
+        if (WHEELCHAIR.equals(profile) || STROLLER.equals(profile))
+            return STAIRS | ESCALATOR;
+        throw new IllegalArgumentException("indoor profile " + profile + " not supported");
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return true if one of the transition costs or penalties differs from its default
+     */
+    boolean isAdjusted() {
+        return adjusted;
+    }
+
+    @Override
+    public double getMinWeight(double distance) {
+        return superWeighting.getMinWeight(distance);
+    }
+
+    @Override
+    public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        long flags = edgeState.getFlags();
+        int types = encoder.getConnectorTypes(flags);
+        if (types == 0)
+            return superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+        if ((types & blockedTypes) != 0)
+            return Double.POSITIVE_INFINITY;
+
+        double weight = superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+        if ((types & STAIRS) != 0)
+            weight *= stairsPenalty;
+        if ((types & DOOR) != 0)
+            weight *= doorPenalty;
+        return weight + calcTransitionSeconds(types, flags) * weightPerSecond;
+    }
+
+    @Override
+    public long calcMillis(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        long millis = superWeighting.calcMillis(edgeState, reverse, prevOrNextEdgeId);
+        long flags = edgeState.getFlags();
+        return millis + Math.round(calcTransitionSeconds(encoder.getConnectorTypes(flags), flags) * 1000);
+    }
+
+    /**
+     * @return the time to change the level via the edge with the specified connector types and flags
+     */
+    private double calcTransitionSeconds(int types, long flags) {
+        int levelCodeDelta = encoder.getLevelCodeDelta(flags);
+        if (levelCodeDelta == 0)
+            return 0;
+        if ((types & ELEVATOR) != 0)
+            return elevatorWaitSeconds + levelCodeDelta * elevatorSecondsPerLevelCode;
+        if ((types & (STAIRS | ESCALATOR)) != 0)
+            return levelCodeDelta * stairsSecondsPerLevelCode;
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+/**
+ * Approximates the weight to the goal node in indoor graphs. If the current node is on a different
+ * level than the goal node every path has to use at least one level transition like stairs or an
+ * elevator. So instead of the direct beeline the shortest beeline via one of these connectors is
+ * used, plus the extra weight a level transition costs per level. As every transition on the path
+ * costs at least as much per level as the cheapest one, the extra weight of this cheapest transition
+ * is used for all levels, i.e. the minimum over all connectors of the beeline via the connector plus
+ * the levels times the cheapest transition of the connector.
+ * <p>
+ * Both parts are a lower bound of the real weight and the combination is consistent, so it can be
+ * used for AStar and AStarBidirection without losing optimality.
+ */
+public class IndoorWeightApproximator implements WeightApproximator {
+    private static final int UNKNOWN_LEVEL = Integer.MIN_VALUE;
+    private final Graph graph;
+    private final NodeAccess nodeAccess;
+    private final Weighting weighting;
+    private final IndoorExtension extension;
+    // the nodes of all usable level transitions, shared between requests and the reverse approximator
+    private final double[] connectorLats;
+    private final double[] connectorLons;
+    private final double[] connectorWeightsPerLevelCode;
+    private final double minWeightPerLevelCode;
+    private double[] connectorDistToGoal;
+    private DistanceCalc distanceCalc = Helper.DIST_EARTH;
+    private double toLat, toLon;
+    private int toLevelCode = UNKNOWN_LEVEL;
+    private double epsilon = 1;
+
+    public IndoorWeightApproximator(Graph graph, Weighting weighting) {
+        if (!(graph.getExtension() instanceof IndoorExtension))
+            throw new IllegalArgumentException("IndoorWeightApproximator requires an indoor graph");
+
+        this.graph = graph;
+        this.nodeAccess = graph.getNodeAccess();
+        this.weighting = weighting;
+        this.extension = (IndoorExtension) graph.getExtension();
+        Connectors connectors = getConnectors(graph, extension, weighting);
+        this.connectorLats = connectors.lats;
+        this.connectorLons = connectors.lons;
+        this.connectorWeightsPerLevelCode = connectors.weightsPerLevelCode;
+        this.minWeightPerLevelCode = connectors.minWeightPerLevelCode;
+    }
+
+    private IndoorWeightApproximator(IndoorWeightApproximator approx) {
+        this.graph = approx.graph;
+        this.nodeAccess = approx.nodeAccess;
+        this.weighting = approx.weighting;
+        this.extension = approx.extension;
+        this.connectorLats = approx.connectorLats;
+        this.connectorLons = approx.connectorLons;
+        this.connectorWeightsPerLevelCode = approx.connectorWeightsPerLevelCode;
+        this.minWeightPerLevelCode = approx.minWeightPerLevelCode;
+        this.distanceCalc = approx.distanceCalc;
+        this.epsilon = approx.epsilon;
+    }
+
+    /**
+     * Returns the connectors of the specified weighting. They are cached in the indoor extension if
+     * the weighting is fully described by its toString, other weightings scan the level transitions
+     * on every call.
+     */
+    static Connectors getConnectors(Graph graph, IndoorExtension extension, Weighting weighting) {
+        Weighting cacheable = getCacheableWeighting(weighting);
+        if (cacheable == null)
+            return new Connectors(graph, extension, weighting);
+
+        String key = "indoor_connectors|" + cacheable;
+        Connectors connectors = (Connectors) extension.getWeightingCache(key);
+        if (connectors == null) {
+            connectors = new Connectors(graph, extension, cacheable);
+            extension.putWeightingCache(key, connectors);
+        }
+        return connectors;
+    }
+
+    /**
+     * Weightings which only block edges or make them more expensive, like the per request time
+     * restrictions, are replaced by the weighting they wrap: its connectors are a superset and its
+     * transition weights are not larger, so the approximation stays a lower bound.
+     *
+     * @return the weighting to cache the connectors for or null if they cannot be cached
+     */
+    static Weighting getCacheableWeighting(Weighting weighting) {
+        while (weighting instanceof TimeRestrictionWeighting || weighting instanceof BlockAreaWeighting
+                || weighting instanceof AvoidEdgesWeighting && ((AvoidEdgesWeighting) weighting).getEdgePenaltyFactor() >= 1) {
+            weighting = ((AbstractAdjustedWeighting) weighting).superWeighting;
+        }
+
+        if (weighting instanceof IndoorProfileWeighting) {
+            IndoorProfileWeighting profileWeighting = (IndoorProfileWeighting) weighting;
+            // the name of adjusted profiles does not contain all their parameters
+            if (profileWeighting.isAdjusted() || getCacheableWeighting(profileWeighting.superWeighting) != profileWeighting.superWeighting)
+                return null;
+            return weighting;
+        }
+
+        Class<?> clazz = weighting.getClass();
+        return clazz == FastestWeighting.class || clazz == ShortestWeighting.class ? weighting : null;
+    }
+
+    /**
+     * The nodes of all level transitions which can be used with a weighting and the minimum extra weight
+     * the transitions of each node cost per level code. Immutable once created.
+     */
+    static final class Connectors {
+        final double[] lats;
+        final double[] lons;
+        final double[] weightsPerLevelCode;
+        final double minWeightPerLevelCode;
+
+        Connectors(Graph graph, IndoorExtension extension, Weighting weighting) {
+            int[] transitions = extension.getLevelTransitionEdges();
+            IntIntHashMap connectorIndices = new IntIntHashMap();
+            IntArrayList connectors = new IntArrayList();
+            DoubleArrayList weights = new DoubleArrayList();
+            double minWeight = Double.POSITIVE_INFINITY;
+            for (int edge : transitions) {
+                EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                double weight = Math.min(weighting.calcWeight(edgeState, false, EdgeIterator.NO_EDGE),
+                        weighting.calcWeight(edgeState, true, EdgeIterator.NO_EDGE));
+                if (Double.isInfinite(weight))
+                    continue;
+
+                int baseNode = edgeState.getBaseNode();
+                int adjNode = edgeState.getAdjNode();
+                // the part of the weight which is not yet covered by the beeline
+                double extraWeight = Math.max(0, weight - weighting.getMinWeight(edgeState.getDistance()));
+                // multi-level ways like elevators can span more levels than their nodes are apart
+                int levelCodes = extension.getLevelCodeDelta(edge, baseNode, adjNode);
+                double weightPerLevelCode = extraWeight / levelCodes;
+                addConnector(baseNode, weightPerLevelCode, connectorIndices, connectors, weights);
+                addConnector(adjNode, weightPerLevelCode, connectorIndices, connectors, weights);
+                minWeight = Math.min(minWeight, weightPerLevelCode);
+            }
+
+            this.minWeightPerLevelCode = Double.isInfinite(minWeight) ? 0 : minWeight;
+            this.weightsPerLevelCode = weights.toArray();
+            NodeAccess nodeAccess = graph.getNodeAccess();
+            this.lats = new double[connectors.size()];
+            this.lons = new double[connectors.size()];
+            for (int i = 0; i < connectors.size(); i++) {
+                lats[i] = nodeAccess.getLatitude(connectors.get(i));
+                lons[i] = nodeAccess.getLongitude(connectors.get(i));
+            }
+        }
+
+        private static void addConnector(int node, double weightPerLevelCode, IntIntHashMap connectorIndices,
+                                         IntArrayList connectors, DoubleArrayList weights) {
+            int index = connectorIndices.getOrDefault(node, -1);
+            if (index < 0) {
+                connectorIndices.put(node, connectors.size());
+                connectors.add(node);
+                weights.add(weightPerLevelCode);
+            } else if (weightPerLevelCode < weights.get(index)) {
+                weights.set(index, weightPerLevelCode);
+            }
+        }
+    }
+
+    /**
+     * @return the minimum weight a level transition costs per level code on top of its beeline weight
+     */
+    public double getMinWeightPerLevelCode() {
+        return minWeightPerLevelCode;
+    }
+
+    @Override
+    public void setTo(int toNode) {
+        toLat = nodeAccess.getLatitude(toNode);
+        toLon = nodeAccess.getLongitude(toNode);
+        toLevelCode = getLevelCode(toNode);
+        if (connectorDistToGoal == null)
+            connectorDistToGoal = new double[connectorLats.length];
+        for (int i = 0; i < connectorLats.length; i++) {
+            connectorDistToGoal[i] = distanceCalc.calcDist(toLat, toLon, connectorLats[i], connectorLons[i]);
+        }
+    }
+
+    public IndoorWeightApproximator setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+        return this;
+    }
+
+    public IndoorWeightApproximator setDistanceCalc(DistanceCalc distanceCalc) {
+        this.distanceCalc = distanceCalc;
+        return this;
+    }
+
+    @Override
+    public WeightApproximator reverse() {
+        return new IndoorWeightApproximator(this);
+    }
+
+    @Override
+    public double approximate(int fromNode) {
+        double fromLat = nodeAccess.getLatitude(fromNode);
+        double fromLon = nodeAccess.getLongitude(fromNode);
+        int fromLevelCode = getLevelCode(fromNode);
+        if (fromLevelCode == toLevelCode || fromLevelCode == UNKNOWN_LEVEL || toLevelCode == UNKNOWN_LEVEL
+                || connectorLats.length == 0)
+            return weighting.getMinWeight(distanceCalc.calcDist(toLat, toLon, fromLat, fromLon)) * epsilon;
+
+        int levelCodes = Math.abs(fromLevelCode - toLevelCode);
+        double weight2goal = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < connectorLats.length; i++) {
+            double dist = distanceCalc.calcDist(fromLat, fromLon, connectorLats[i], connectorLons[i])
+                    + connectorDistToGoal[i];
+            double weight = weighting.getMinWeight(dist) + levelCodes * connectorWeightsPerLevelCode[i];
+            if (weight < weight2goal)
+                weight2goal = weight;
+        }
+        return weight2goal * epsilon;
+    }
+
+    /**
+     * Virtual nodes get the level of the edge they were created on. For virtual nodes on a level
+     * transition the level is unknown and only the beeline is used.
+     */
+    private int getLevelCode(int node) {
+        if (graph instanceof QueryGraph && ((QueryGraph) graph).isVirtualNode(node)) {
+            EdgeIteratorState edge = ((QueryGraph) graph).getOriginalEdgeFromVirtNode(node);
+            int baseCode = extension.getLevelCode(edge.getBaseNode());
+            return baseCode == extension.getLevelCode(edge.getAdjNode()) ? baseCode : UNKNOWN_LEVEL;
+        }
+        return extension.getLevelCode(node);
+    }
+
+    @Override
+    public String toString() {
+        return "indoor_beeline";
+    }
+}
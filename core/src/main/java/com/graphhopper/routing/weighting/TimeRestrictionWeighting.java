@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+
+import java.text.ParseException;
+import java.util.Calendar;
+
+/**
+ * Blocks the edges of an indoor graph which are closed at the departure time of the request, e.g.
+ * doors with opening hours. The time slot is fixed for the whole route and the open time restrictions
+ * are looked up once per slot, see IndoorExtension.getOpenTimeRestrictions, so calcWeight only checks
+ * one bit per restricted edge.
+ */
+public class TimeRestrictionWeighting extends AbstractAdjustedWeighting {
+    private final IndoorExtension extension;
+    private final int timeSlot;
+    private final long[] openRestrictions;
+
+    public TimeRestrictionWeighting(Weighting superWeighting, IndoorExtension extension, int timeSlot) {
+        super(superWeighting);
+        this.extension = extension;
+        this.timeSlot = timeSlot;
+        this.openRestrictions = extension.getOpenTimeRestrictions(timeSlot);
+    }
+
+    /**
+     * @return the time slot of the specified local time like 2017-06-01T18:30. Time zones are ignored
+     * as opening hours are in the local time of the building too.
+     */
+    public static int parseTimeSlot(String departureTime) {
+        Calendar calendar = Calendar.getInstance(Helper.UTC);
+        try {
+            calendar.setTime(Helper.createFormatter("yyyy-MM-dd'T'HH:mm").parse(departureTime));
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("Cannot parse departure time " + departureTime
+                    + ", the format has to be like 2017-06-01T18:30");
+        }
+        return IndoorExtension.getTimeSlot(calendar);
+    }
+
+    public int getTimeSlot() {
+        return timeSlot;
+    }
+
+    @Override
+    public double getMinWeight(double distance) {
+        return superWeighting.getMinWeight(distance);
+    }
+
+    @Override
+    public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        int edge = edgeState instanceof VirtualEdgeIteratorState
+                ? GHUtility.getEdgeFromEdgeKey(((VirtualEdgeIteratorState) edgeState).getOriginalTraversalKey())
+                : edgeState.getEdge();
+        int restriction = extension.getTimeRestriction(edge);
+        if (restriction != 0 && !IndoorExtension.isOpen(openRestrictions, restriction))
+            return Double.POSITIVE_INFINITY;
+
+        return superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+    }
+
+    @Override
+    public String getName() {
+        return "time_restriction";
+    }
+}
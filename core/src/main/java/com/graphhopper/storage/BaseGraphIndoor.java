@@ -3,12 +3,20 @@ package com.graphhopper.storage;
 
 import com.graphhopper.routing.util.*;
 import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 
 public class BaseGraphIndoor extends BaseGraph {
     final EncodingManager encodingManager;
     private IndoorExtension indoorExtension;
+    private final List<IndoorFlagEncoder> indoorEncoders = new ArrayList<>();
+    // used while levels are set, which is not thread safe anyway
+    private EdgeExplorer levelDeltaExplorer;
 
 
     public BaseGraphIndoor(Directory dir, final EncodingManager encodingManager, boolean withElevation,
@@ -16,15 +24,67 @@ public class BaseGraphIndoor extends BaseGraph {
         super(dir, encodingManager, withElevation, listener, extendedStorage);
         this.encodingManager = encodingManager;
         this.indoorExtension = (IndoorExtension) extendedStorage;
+        for (FlagEncoder encoder : encodingManager.fetchEdgeEncoders()) {
+            if (encoder instanceof IndoorFlagEncoder)
+                indoorEncoders.add((IndoorFlagEncoder) encoder);
+        }
+    }
+
+    /**
+     * Stores the level code delta in the flags of all edges of the specified node, called whenever the
+     * level of the node changes. The delta lets the weighting add the costs of stairs and elevators
+     * without a lookup in the IndoorExtension.
+     */
+    void updateLevelCodeDeltas(int node) {
+        if (indoorEncoders.isEmpty() || node >= getNodes())
+            return;
+
+        if (levelDeltaExplorer == null)
+            levelDeltaExplorer = createEdgeExplorer();
+        EdgeIterator iter = levelDeltaExplorer.setBaseNode(node);
+        while (iter.next()) {
+            updateLevelCodeDelta(iter);
+        }
+    }
+
+    /**
+     * Stores the level code delta in the flags of the specified edge, called whenever its level changes.
+     */
+    void updateLevelCodeDelta(int edge, int adjNode) {
+        if (!indoorEncoders.isEmpty())
+            updateLevelCodeDelta(getEdgeIteratorState(edge, adjNode));
+    }
+
+    private void updateLevelCodeDelta(EdgeIteratorState edge) {
+        int delta = indoorExtension.getLevelCodeDelta(edge.getEdge(), edge.getBaseNode(), edge.getAdjNode());
+        long flags = edge.getFlags();
+        long newFlags = flags;
+        for (IndoorFlagEncoder encoder : indoorEncoders) {
+            newFlags = encoder.setLevelCodeDelta(newFlags, delta);
+        }
+        if (newFlags != flags)
+            edge.setFlags(newFlags);
     }
 
 
-    private String getLevel(int baseNode,int adjNode){
-        int baseLevel = indoorExtension.getLevel(baseNode);
-        int adjLevel = indoorExtension.getLevel(adjNode);
+    private String getLevel(int edge,int baseNode,int adjNode){
+        int minLevel = indoorExtension.getMinLevelCode(edge);
+        int maxLevel = indoorExtension.getMaxLevelCode(edge);
+        if(minLevel != maxLevel)
+            return IndoorExtension.toLevelString(minLevel)+";"+IndoorExtension.toLevelString(maxLevel);
+        int baseLevel = indoorExtension.getLevelCode(baseNode);
+        int adjLevel = indoorExtension.getLevelCode(adjNode);
         if(baseLevel == adjLevel)
-            return Integer.toString(baseLevel);
-        return Integer.toString(baseLevel)+";"+Integer.toString(adjLevel);
+            return IndoorExtension.toLevelString(baseLevel);
+        return IndoorExtension.toLevelString(baseLevel)+";"+IndoorExtension.toLevelString(adjLevel);
+    }
+
+    final int getLevel(int node){
+        return indoorExtension.getLevel(node);
+    }
+
+    final boolean isLevelTransition(int edge,int baseNode,int adjNode){
+        return indoorExtension.isLevelTransition(edge,baseNode,adjNode);
     }
 
 
@@ -37,13 +97,33 @@ public class BaseGraphIndoor extends BaseGraph {
         }
 
         public String getLevel(){
-            return baseGraph.getLevel(baseNode,adjNode);
+            return baseGraph.getLevel(edgeId,baseNode,adjNode);
+        }
+
+        @Override
+        public int getBaseLevel() {
+            return baseGraph.getLevel(baseNode);
+        }
+
+        @Override
+        public int getAdjLevel() {
+            return baseGraph.getLevel(adjNode);
+        }
+
+        @Override
+        public boolean isLevelTransition() {
+            return baseGraph.isLevelTransition(edgeId,baseNode,adjNode);
         }
 
         @Override
         public EdgeIteratorIndoor setLevel(String floor) {
-            baseGraph.getExtension().setLevel(baseNode,floor);
-            baseGraph.getExtension().setLevel(adjNode,floor);
+            baseGraph.getExtension().setEdgeLevel(edgeId,baseNode,adjNode,floor);
+            return this;
+        }
+
+        @Override
+        public EdgeIteratorIndoor setTimeRestriction(long[] openSlots) {
+            baseGraph.getExtension().setTimeRestriction(edgeId, openSlots);
             return this;
         }
 
@@ -61,14 +141,34 @@ public class BaseGraphIndoor extends BaseGraph {
 
         @Override
         public String getLevel() {
-            return baseGraph.getLevel(baseNode,adjNode);
+            return baseGraph.getLevel(edgeId,baseNode,adjNode);
+        }
+
+        @Override
+        public int getBaseLevel() {
+            return baseGraph.getLevel(baseNode);
+        }
+
+        @Override
+        public int getAdjLevel() {
+            return baseGraph.getLevel(adjNode);
+        }
+
+        @Override
+        public boolean isLevelTransition() {
+            return baseGraph.isLevelTransition(edgeId,baseNode,adjNode);
         }
 
 
         @Override
         public EdgeIteratorIndoor setLevel(String level) {
-            baseGraph.getExtension().setLevel(baseNode,level);
-            baseGraph.getExtension().setLevel(adjNode,level);
+            baseGraph.getExtension().setEdgeLevel(edgeId,baseNode,adjNode,level);
+            return this;
+        }
+
+        @Override
+        public EdgeIteratorIndoor setTimeRestriction(long[] openSlots) {
+            baseGraph.getExtension().setTimeRestriction(edgeId, openSlots);
             return this;
         }
     }
@@ -54,7 +54,9 @@ public class DAType {
      */
     public static final DAType MMAP_RO = new DAType(MemRef.MMAP, true, false, false);
     /**
-     * Experimental API. Do not use yet.
+     * The DA object is hold entirely off-heap in native memory and is loaded from and flushed to disc
+     * like RAM_STORE. Recommended for big graphs to avoid garbage collector pressure. See
+     * UnsafeDataAccess.
      */
     public static final DAType UNSAFE_STORE = new DAType(MemRef.UNSAFE, true, false, true);
     private final MemRef memRef;
@@ -18,6 +18,7 @@
 package com.graphhopper.storage;
 
 import com.graphhopper.util.Helper;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.nio.ByteOrder;
@@ -95,6 +96,12 @@ public class GHDirectory implements Directory {
         if (!name.equals(toLowerCase(name)))
             throw new IllegalArgumentException("Since 0.7 DataAccess objects does no longer accept upper case names");
 
+        if (type.getMemRef() == DAType.MemRef.UNSAFE && !UnsafeDataAccess.isAvailable(byteOrder)) {
+            // e.g. on Android, the stored files are identical so they can be loaded with RAM_STORE too
+            LoggerFactory.getLogger(getClass()).warn("Unsafe memory is not available, using RAM_STORE for " + name);
+            type = DAType.RAM_STORE;
+        }
+
         DataAccess da = map.get(name);
         if (da != null) {
             if (!type.equals(da.getType()))
@@ -80,7 +80,7 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
             }
         };
 
-        if(encodingManager.supports("indoor")||encodingManager.supports("nostairs")||encodingManager.supports("noelevators"))
+        if(encodingManager.isIndoor())
             this.baseGraph = new BaseGraphIndoor(dir, encodingManager, withElevation, listener, new IndoorExtension());
         else
             this.baseGraph = new BaseGraph(dir, encodingManager, withElevation, listener, extendedStorage);
@@ -392,6 +392,42 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return baseGraph.copyTo(g);
     }
 
+    /**
+     * @return true if createSnapshot is cheap as the data is kept in segments on the heap and CH is
+     * not used
+     */
+    public boolean isSnapshotPossible() {
+        return chGraphs.isEmpty() && dir.getDefaultType().isInMemory();
+    }
+
+    /**
+     * Creates an in-memory copy of the current state of this graph which can be used for reading
+     * while this graph is modified. The segments of the DataAccess objects are shared and only
+     * cloned by the side which writes to them first, so creating a snapshot is cheap if
+     * isSnapshotPossible returns true. The snapshot must not be modified.
+     */
+    public GraphHopperStorage createSnapshot() {
+        if (!chGraphs.isEmpty())
+            throw new IllegalStateException("Snapshots of a graph with CH are not supported");
+
+        GraphExtension ext = baseGraph.getExtension();
+        if (ext instanceof TurnCostExtension)
+            ext = new TurnCostExtension();
+        else if (ext instanceof GraphExtension.NoOpExtension || ext instanceof IndoorExtension)
+            // the indoor graph creates its own extension
+            ext = new GraphExtension.NoOpExtension();
+        else
+            throw new IllegalStateException("Snapshots are not supported for the extension " + ext);
+
+        GraphHopperStorage snapshot = new GraphHopperStorage(new RAMDirectory(), encodingManager,
+                baseGraph.nodeAccess.is3D(), ext);
+        // the segments are replaced while copying, so avoid allocating big ones before
+        snapshot.setSegmentSize(128);
+        snapshot.create(100);
+        baseGraph._copyTo(snapshot.baseGraph);
+        return snapshot;
+    }
+
     @Override
     public GraphExtension getExtension() {
         return baseGraph.getExtension();
@@ -1,19 +1,62 @@
 package com.graphhopper.storage;
 
-import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.coll.GHIntArrayList;
+import com.graphhopper.routing.util.AllEdgesIterator;
 
-import java.io.Console;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Stores the level of every node and the level range of every edge in its own storages, so that
+ * indoor graphs can be loaded without parsing any level tag again.
+ * <p>
+ * Levels are stored as codes in steps of 1/LEVEL_FACTOR, so fractional levels like mezzanines
+ * tagged with level=0.5 are supported. Multi-level ways like level=0;1;2 store their minimum and
+ * maximum level per edge.
+ * <p>
+ * Edges which are only open at certain times of the week, e.g. doors with opening_hours, reference a
+ * time restriction. A time restriction is a bit mask of the TIME_SLOTS of one week and is stored only
+ * once for all edges with the same opening times. The edges store the 16 bit ID of their restriction,
+ * 0 means always open.
+ */
 public class IndoorExtension implements GraphExtension {
-    NodeAccess nodeAccess;
+    /**
+     * The smallest level step which can be stored, i.e. one tenth of a level
+     */
+    public static final int LEVEL_FACTOR = 10;
+    private static final int NODE_BYTES = 2;
+    private static final int E_MIN_LEVEL = 0, E_MAX_LEVEL = 2, EDGE_BYTES = 4;
+    private static final long NO_LEVEL = Long.MIN_VALUE;
+    /**
+     * The length of one time slot, a week starts with the slot of monday 00:00
+     */
+    public static final int TIME_SLOT_MINUTES = 5;
+    public static final int TIME_SLOTS = 7 * 24 * 60 / TIME_SLOT_MINUTES;
+    public static final int TIME_MASK_LONGS = (TIME_SLOTS + 63) / 64;
+    private static final int TIME_MASK_BYTES = TIME_MASK_LONGS * 8;
+    private static final int TIME_RESTRICTION_BYTES = 2;
+    private static final int MAX_TIME_RESTRICTIONS = 1 << 16;
 
-    public NodeAccess getNodeAccess() {
-        return nodeAccess;
-    }
+    private BaseGraphIndoor graph;
+    private DataAccess nodeLevels;
+    private DataAccess edgeLevels;
+    private DataAccess edgeTimeRestrictions;
+    private DataAccess timeRestrictions;
+    // the masks of all time restrictions indexed by their ID, the masks are never modified
+    private List<long[]> timeMasks = new ArrayList<>();
+    private Map<TimeMask, Integer> timeMaskIds = new HashMap<>();
+    // for every time slot the IDs of the time restrictions which are open, created on demand
+    private AtomicReferenceArray<long[]> openRestrictionsCache = new AtomicReferenceArray<>(TIME_SLOTS);
+    // lazily created list of edges between nodes of different levels, e.g. stairs and elevators
+    private volatile int[] levelTransitionEdges;
+    // values derived from the levels and edges per weighting, e.g. the connectors of the IndoorWeightApproximator
+    private final ConcurrentMap<String, Object> weightingCache = new ConcurrentHashMap<>();
 
     @Override
     public boolean isRequireNodeField() {
-        return true;
+        return false;
     }
 
     @Override
@@ -28,11 +71,15 @@ public class IndoorExtension implements GraphExtension {
 
     @Override
     public int getDefaultNodeFieldValue() {
-        return 0;
-    } //
+        throw new UnsupportedOperationException("not supported by this graph extension");
+    }
 
     @Override
     public void setSegmentSize(int bytes) {
+        nodeLevels.setSegmentSize(bytes);
+        edgeLevels.setSegmentSize(bytes);
+        edgeTimeRestrictions.setSegmentSize(bytes);
+        timeRestrictions.setSegmentSize(bytes);
     }
 
     @Override
@@ -40,53 +87,452 @@ public class IndoorExtension implements GraphExtension {
         if (!(clonedStorage instanceof IndoorExtension)) {
             throw new IllegalStateException("the extended storage to clone must be the same");
         }
+
+        IndoorExtension clonedIndoor = (IndoorExtension) clonedStorage;
+        setHeader();
+        nodeLevels.copyTo(clonedIndoor.nodeLevels);
+        edgeLevels.copyTo(clonedIndoor.edgeLevels);
+        edgeTimeRestrictions.copyTo(clonedIndoor.edgeTimeRestrictions);
+        timeRestrictions.copyTo(clonedIndoor.timeRestrictions);
+        // the levels are identical, so the list can be shared
+        clonedIndoor.levelTransitionEdges = levelTransitionEdges;
+        // the masks itself are immutable
+        clonedIndoor.timeMasks = new ArrayList<>(timeMasks);
+        clonedIndoor.timeMaskIds = new HashMap<>(timeMaskIds);
+        clonedIndoor.openRestrictionsCache = new AtomicReferenceArray<>(TIME_SLOTS);
         return clonedStorage;
     }
 
     @Override
     public void init(Graph graph, Directory dir) {
-        if (graph instanceof BaseGraphIndoor) {
-            this.nodeAccess = graph.getNodeAccess();
-        } else throw new IllegalStateException("You need to use an indoor graph for this graph extension!");
-    }
+        if (!(graph instanceof BaseGraphIndoor))
+            throw new IllegalStateException("You need to use an indoor graph for this graph extension!");
 
+        this.graph = (BaseGraphIndoor) graph;
+        this.nodeLevels = dir.find("indoor_node_levels");
+        this.edgeLevels = dir.find("indoor_edge_levels");
+        this.edgeTimeRestrictions = dir.find("indoor_edge_time_restrictions");
+        this.timeRestrictions = dir.find("indoor_time_restrictions");
+    }
 
     @Override
     public boolean isClosed() {
-        return false;
+        return nodeLevels.isClosed();
     }
 
     @Override
     public long getCapacity() {
-        return 0;
+        return nodeLevels.getCapacity() + edgeLevels.getCapacity()
+                + edgeTimeRestrictions.getCapacity() + timeRestrictions.getCapacity();
     }
 
     @Override
     public void close() {
+        nodeLevels.close();
+        edgeLevels.close();
+        edgeTimeRestrictions.close();
+        timeRestrictions.close();
     }
 
     @Override
     public boolean loadExisting() {
+        if (!nodeLevels.loadExisting() || !edgeLevels.loadExisting()
+                || !edgeTimeRestrictions.loadExisting() || !timeRestrictions.loadExisting())
+            return false;
+
+        if (nodeLevels.getHeader(0) != LEVEL_FACTOR)
+            throw new IllegalStateException("Stored levels use the level factor " + nodeLevels.getHeader(0)
+                    + " but " + LEVEL_FACTOR + " is required");
+        if (timeRestrictions.getHeader(4) != TIME_SLOT_MINUTES)
+            throw new IllegalStateException("Stored time restrictions use slots of " + timeRestrictions.getHeader(4)
+                    + " minutes but " + TIME_SLOT_MINUTES + " are required");
+
+        int count = timeRestrictions.getHeader(0);
+        addAlwaysOpenMask();
+        for (int id = 1; id < count; id++) {
+            long[] mask = new long[TIME_MASK_LONGS];
+            long pointer = (long) id * TIME_MASK_BYTES;
+            for (int i = 0; i < TIME_MASK_LONGS; i++) {
+                long low = timeRestrictions.getInt(pointer + i * 8) & 0xFFFFFFFFL;
+                long high = timeRestrictions.getInt(pointer + i * 8 + 4);
+                mask[i] = high << 32 | low;
+            }
+            addTimeMask(mask);
+        }
         return true;
     }
 
     @Override
     public void flush() {
+        setHeader();
+        nodeLevels.flush();
+        edgeLevels.flush();
+        edgeTimeRestrictions.flush();
+        timeRestrictions.flush();
+    }
+
+    private void setHeader() {
+        nodeLevels.setHeader(0, LEVEL_FACTOR);
+        edgeLevels.setHeader(0, LEVEL_FACTOR);
+        timeRestrictions.setHeader(0, timeMasks.size());
+        timeRestrictions.setHeader(4, TIME_SLOT_MINUTES);
     }
 
     @Override
     public GraphExtension create(long byteCount) {
+        nodeLevels.create(byteCount);
+        edgeLevels.create(byteCount);
+        edgeTimeRestrictions.create(byteCount);
+        timeRestrictions.create(TIME_MASK_BYTES);
+        addAlwaysOpenMask();
         return this;
     }
 
-    public void setLevel(int index,String level){
-        try{
-        nodeAccess.setAdditionalNodeField(index,Integer.parseInt(level));
+    /**
+     * ID 0 is reserved for edges which are always open, its mask is not stored
+     */
+    private void addAlwaysOpenMask() {
+        long[] alwaysOpen = new long[TIME_MASK_LONGS];
+        Arrays.fill(alwaysOpen, -1L);
+        addTimeMask(alwaysOpen);
+    }
+
+    /**
+     * Sets the level of the specified node. Values which are no single level, like "0;1" or a name,
+     * are ignored.
+     */
+    public void setLevel(int node, String level) {
+        long range = parseLevelRange(level);
+        if (range == NO_LEVEL || getMinCode(range) != getMaxCode(range))
+            return;
+
+        setLevelCode(node, getMinCode(range));
+    }
+
+    /**
+     * Sets the level range of the specified edge. For single levels the level of base and adjacent
+     * node is set too, multi-level ways like "0;1;2" only store the range as their nodes are usually
+     * shared with the ways of the different levels.
+     */
+    public void setEdgeLevel(int edge, int baseNode, int adjNode, String level) {
+        long range = parseLevelRange(level);
+        if (range == NO_LEVEL)
+            return;
+
+        int minCode = getMinCode(range);
+        int maxCode = getMaxCode(range);
+        long pointer = (long) edge * EDGE_BYTES;
+        edgeLevels.ensureCapacity(pointer + EDGE_BYTES);
+        edgeLevels.setShort(pointer + E_MIN_LEVEL, (short) minCode);
+        edgeLevels.setShort(pointer + E_MAX_LEVEL, (short) maxCode);
+        if (minCode == maxCode) {
+            setLevelCode(baseNode, minCode);
+            setLevelCode(adjNode, minCode);
+        } else {
+            graph.updateLevelCodeDelta(edge, adjNode);
         }
-        catch(NumberFormatException exc){}
+        levelTransitionEdges = null;
+        weightingCache.clear();
+    }
+
+    public void setLevelCode(int node, int levelCode) {
+        long pointer = (long) node * NODE_BYTES;
+        nodeLevels.ensureCapacity(pointer + NODE_BYTES);
+        nodeLevels.setShort(pointer, (short) levelCode);
+        levelTransitionEdges = null;
+        weightingCache.clear();
+        graph.updateLevelCodeDeltas(node);
+    }
+
+    /**
+     * @return the value cached for the specified weighting key or null
+     */
+    public Object getWeightingCache(String weightingKey) {
+        return weightingCache.get(weightingKey);
+    }
+
+    /**
+     * Caches a value which is derived from the levels and edges of this graph for the specified weighting
+     * key. The cache is cleared if a level changes, but edge properties can also change without this
+     * extension knowing it, so clearWeightingCache has to be called after them.
+     */
+    public void putWeightingCache(String weightingKey, Object value) {
+        weightingCache.put(weightingKey, value);
+    }
+
+    public void clearWeightingCache() {
+        weightingCache.clear();
+    }
+
+    /**
+     * @return the IDs of all edges whose base and adjacent node are on a different level. The list is
+     * created on the first call, so do not call this method while importing.
+     */
+    public int[] getLevelTransitionEdges() {
+        int[] edges = levelTransitionEdges;
+        if (edges == null) {
+            GHIntArrayList list = new GHIntArrayList();
+            AllEdgesIterator iter = graph.getAllEdges();
+            while (iter.next()) {
+                if (isLevelTransition(iter.getEdge(), iter.getBaseNode(), iter.getAdjNode()))
+                    list.add(iter.getEdge());
+            }
+            edges = list.toArray();
+            levelTransitionEdges = edges;
+        }
+        return edges;
+    }
+
+    /**
+     * @return true if the specified edge connects different levels, either because its nodes are on
+     * different levels or because it is a multi-level way like an elevator tagged with level=0;1;2
+     */
+    public boolean isLevelTransition(int edge, int baseNode, int adjNode) {
+        return getLevelCode(baseNode) != getLevelCode(adjNode)
+                || getMinLevelCode(edge) != getMaxLevelCode(edge);
+    }
+
+    /**
+     * @return the number of level codes the specified edge crosses: the difference of its nodes or, for
+     * multi-level ways like an elevator tagged with level=0;1;2, the range of the way if it is larger
+     */
+    public int getLevelCodeDelta(int edge, int baseNode, int adjNode) {
+        return Math.max(Math.abs(getLevelCode(baseNode) - getLevelCode(adjNode)),
+                getMaxLevelCode(edge) - getMinLevelCode(edge));
+    }
+
+    /**
+     * @return the level code of the specified node, 0 if no level was stored
+     */
+    public int getLevelCode(int node) {
+        long pointer = (long) node * NODE_BYTES;
+        if (pointer >= nodeLevels.getCapacity())
+            return 0;
+        return nodeLevels.getShort(pointer);
+    }
+
+    /**
+     * @return the level of the specified node rounded down to a full level, e.g. 0 for a mezzanine on level 0.5
+     */
+    public int getLevel(int node) {
+        return toLevel(getLevelCode(node));
+    }
+
+    /**
+     * @return the exact level of the specified node, e.g. 0.5 for a mezzanine
+     */
+    public double getLevelValue(int node) {
+        return toLevelValue(getLevelCode(node));
+    }
+
+    public int getMinLevelCode(int edge) {
+        return getEdgeLevelCode(edge, E_MIN_LEVEL);
+    }
+
+    public int getMaxLevelCode(int edge) {
+        return getEdgeLevelCode(edge, E_MAX_LEVEL);
+    }
+
+    public double getMinLevel(int edge) {
+        return toLevelValue(getMinLevelCode(edge));
+    }
+
+    public double getMaxLevel(int edge) {
+        return toLevelValue(getMaxLevelCode(edge));
     }
 
-    public int getLevel(int index) {
-        return nodeAccess.getAdditionalNodeField(index);
+    private int getEdgeLevelCode(int edge, int offset) {
+        long pointer = (long) edge * EDGE_BYTES;
+        if (pointer >= edgeLevels.getCapacity())
+            return 0;
+        return edgeLevels.getShort(pointer + offset);
+    }
+
+    /**
+     * Stores that the specified edge is only open in the time slots set in the specified mask, see
+     * OpeningHoursParser. Edges with identical masks share one time restriction.
+     */
+    public void setTimeRestriction(int edge, long[] openSlots) {
+        if (openSlots.length != TIME_MASK_LONGS)
+            throw new IllegalArgumentException("The mask needs " + TIME_MASK_LONGS + " longs but had " + openSlots.length);
+
+        openSlots = openSlots.clone();
+        // the bits behind the last slot are ignored, so they are set like for the masks which are always open
+        if (TIME_SLOTS % 64 != 0)
+            openSlots[TIME_MASK_LONGS - 1] |= -1L << TIME_SLOTS;
+
+        Integer id = timeMaskIds.get(new TimeMask(openSlots));
+        if (id == null) {
+            if (timeMasks.size() >= MAX_TIME_RESTRICTIONS)
+                throw new IllegalStateException("Too many different time restrictions, only " + MAX_TIME_RESTRICTIONS + " are supported");
+
+            id = timeMasks.size();
+            long pointer = (long) id * TIME_MASK_BYTES;
+            timeRestrictions.ensureCapacity(pointer + TIME_MASK_BYTES);
+            for (int i = 0; i < TIME_MASK_LONGS; i++) {
+                timeRestrictions.setInt(pointer + i * 8, (int) openSlots[i]);
+                timeRestrictions.setInt(pointer + i * 8 + 4, (int) (openSlots[i] >>> 32));
+            }
+            addTimeMask(openSlots);
+        }
+
+        long pointer = (long) edge * TIME_RESTRICTION_BYTES;
+        edgeTimeRestrictions.ensureCapacity(pointer + TIME_RESTRICTION_BYTES);
+        edgeTimeRestrictions.setShort(pointer, (short) (int) id);
+    }
+
+    private void addTimeMask(long[] mask) {
+        timeMaskIds.put(new TimeMask(mask), timeMasks.size());
+        timeMasks.add(mask);
+        openRestrictionsCache = new AtomicReferenceArray<>(TIME_SLOTS);
+    }
+
+    /**
+     * @return the ID of the time restriction of the specified edge, 0 if it is always open
+     */
+    public int getTimeRestriction(int edge) {
+        long pointer = (long) edge * TIME_RESTRICTION_BYTES;
+        if (pointer >= edgeTimeRestrictions.getCapacity())
+            return 0;
+        return edgeTimeRestrictions.getShort(pointer) & 0xFFFF;
+    }
+
+    /**
+     * @return a bit set of all time restriction IDs which are open in the specified time slot. The
+     * result is cached, so it is cheap to call this method for every request.
+     */
+    public long[] getOpenTimeRestrictions(int timeSlot) {
+        if (timeSlot < 0 || timeSlot >= TIME_SLOTS)
+            throw new IllegalArgumentException("Time slot " + timeSlot + " is not within the week");
+
+        AtomicReferenceArray<long[]> cache = openRestrictionsCache;
+        long[] open = cache.get(timeSlot);
+        if (open == null) {
+            List<long[]> masks = timeMasks;
+            open = new long[(masks.size() + 63) / 64];
+            for (int id = 0; id < masks.size(); id++) {
+                if (isOpen(masks.get(id), timeSlot))
+                    open[id >>> 6] |= 1L << id;
+            }
+            cache.set(timeSlot, open);
+        }
+        return open;
+    }
+
+    /**
+     * @return true if the specified bit mask has the bit of the specified index set
+     */
+    public static boolean isOpen(long[] mask, int index) {
+        int i = index >>> 6;
+        return i < mask.length && (mask[i] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the time slot of the week for the specified local time
+     */
+    public static int getTimeSlot(Calendar calendar) {
+        // monday is the first day
+        int day = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+        int minute = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+        return (day * 24 * 60 + minute) / TIME_SLOT_MINUTES;
+    }
+
+    public static int toLevel(int levelCode) {
+        if (levelCode >= 0)
+            return levelCode / LEVEL_FACTOR;
+        return -((-levelCode + LEVEL_FACTOR - 1) / LEVEL_FACTOR);
+    }
+
+    public static double toLevelValue(int levelCode) {
+        return (double) levelCode / LEVEL_FACTOR;
+    }
+
+    /**
+     * @return the level as it would be tagged, e.g. "1" or "0.5"
+     */
+    public static String toLevelString(int levelCode) {
+        if (levelCode % LEVEL_FACTOR == 0)
+            return Integer.toString(levelCode / LEVEL_FACTOR);
+        return Double.toString(toLevelValue(levelCode));
+    }
+
+    /**
+     * @return the level code for the specified level or Integer.MIN_VALUE if it cannot be stored
+     */
+    public static int toLevelCode(double level) {
+        if (Double.isNaN(level) || Double.isInfinite(level))
+            return Integer.MIN_VALUE;
+        long code = Math.round(level * LEVEL_FACTOR);
+        if (code < Short.MIN_VALUE || code > Short.MAX_VALUE)
+            return Integer.MIN_VALUE;
+        return (int) code;
+    }
+
+    /**
+     * Parses a level tag like "1", "0.5" or "-1;0;1" and returns the minimum and the maximum level code
+     * combined into one long, or NO_LEVEL if the tag contains no storable level.
+     */
+    static long parseLevelRange(String level) {
+        if (level == null || level.isEmpty())
+            return NO_LEVEL;
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int start = 0;
+        while (start <= level.length()) {
+            int end = level.indexOf(';', start);
+            if (end < 0)
+                end = level.length();
+
+            int code = Integer.MIN_VALUE;
+            try {
+                code = toLevelCode(Double.parseDouble(level.substring(start, end).trim()));
+            } catch (NumberFormatException ex) {
+                // level names like "M" cannot be ordered and are skipped
+            }
+            if (code != Integer.MIN_VALUE) {
+                min = Math.min(min, code);
+                max = Math.max(max, code);
+            }
+            start = end + 1;
+        }
+
+        if (min > max)
+            return NO_LEVEL;
+        return ((long) min << 32) | (max & 0xFFFFFFFFL);
+    }
+
+    static int getMinCode(long range) {
+        return (int) (range >> 32);
+    }
+
+    static int getMaxCode(long range) {
+        return (int) range;
+    }
+
+    @Override
+    public String toString() {
+        return "indoor";
+    }
+
+    /**
+     * Wraps a time mask to find identical masks via a HashMap
+     */
+    private static final class TimeMask {
+        private final long[] slots;
+
+        TimeMask(long[] slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TimeMask && Arrays.equals(slots, ((TimeMask) obj).slots);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(slots);
+        }
     }
 }
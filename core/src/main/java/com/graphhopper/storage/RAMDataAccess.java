@@ -34,6 +34,8 @@ import java.util.Arrays;
  */
 public class RAMDataAccess extends AbstractDataAccess {
     private byte[][] segments = new byte[0][];
+    // true for all segments which are still shared with a copy created via copyTo
+    private boolean[] shared = new boolean[0];
     private boolean store;
 
     RAMDataAccess(String name, String location, boolean store, ByteOrder order) {
@@ -59,12 +61,10 @@ public class RAMDataAccess extends AbstractDataAccess {
         if (da instanceof RAMDataAccess) {
             copyHeader(da);
             RAMDataAccess rda = (RAMDataAccess) da;
-            // TODO PERFORMANCE we could reuse rda segments!
-            rda.segments = new byte[segments.length][];
-            for (int i = 0; i < segments.length; i++) {
-                byte[] area = segments[i];
-                rda.segments[i] = Arrays.copyOf(area, area.length);
-            }
+            // share the segments until one side writes to them, see getWritableSegment
+            rda.segments = segments.clone();
+            Arrays.fill(shared, true);
+            rda.shared = shared.clone();
             rda.setSegmentSize(segmentSizeInBytes);
             // leave id, store and close unchanged
             return da;
@@ -104,6 +104,7 @@ public class RAMDataAccess extends AbstractDataAccess {
                 newSegs[i] = new byte[1 << segmentSizePower];
             }
             segments = newSegs;
+            shared = Arrays.copyOf(shared, newSegs.length);
         } catch (OutOfMemoryError err) {
             throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new memory. Old capacity: "
                     + cap + ", new bytes:" + newBytes + ", segmentSizeIntsPower:" + segmentSizePower
@@ -141,6 +142,7 @@ public class RAMDataAccess extends AbstractDataAccess {
                     segmentCount++;
 
                 segments = new byte[segmentCount][];
+                shared = new boolean[segmentCount];
                 for (int s = 0; s < segmentCount; s++) {
                     byte[] bytes = new byte[segmentSizeInBytes];
                     int read = raFile.read(bytes);
@@ -191,7 +193,7 @@ public class RAMDataAccess extends AbstractDataAccess {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
         assert index + 4 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
-        bitUtil.fromInt(segments[bufferIndex], value, index);
+        bitUtil.fromInt(getWritableSegment(bufferIndex), value, index);
     }
 
     @Override
@@ -214,7 +216,7 @@ public class RAMDataAccess extends AbstractDataAccess {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
         assert index + 2 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
-        bitUtil.fromShort(segments[bufferIndex], value, index);
+        bitUtil.fromShort(getWritableSegment(bufferIndex), value, index);
     }
 
     @Override
@@ -232,12 +234,12 @@ public class RAMDataAccess extends AbstractDataAccess {
         assert segmentSizePower > 0 : "call create or loadExisting before usage!";
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        byte[] seg = segments[bufferIndex];
+        byte[] seg = getWritableSegment(bufferIndex);
         int delta = index + length - segmentSizeInBytes;
         if (delta > 0) {
             length -= delta;
             System.arraycopy(values, 0, seg, index, length);
-            seg = segments[bufferIndex + 1];
+            seg = getWritableSegment(bufferIndex + 1);
             System.arraycopy(values, length, seg, 0, delta);
         } else {
             System.arraycopy(values, 0, seg, index, length);
@@ -266,9 +268,30 @@ public class RAMDataAccess extends AbstractDataAccess {
     public void close() {
         super.close();
         segments = new byte[0][];
+        shared = new boolean[0];
         closed = true;
     }
 
+    /**
+     * Returns the specified segment for writing. A segment which is still shared with a copy is
+     * cloned first, so a copy costs nearly nothing until one of both sides is modified. The other
+     * side clones the segment on its first write too as it does not know that it is the only user
+     * now.
+     */
+    private byte[] getWritableSegment(int bufferIndex) {
+        byte[] seg = segments[bufferIndex];
+        if (shared[bufferIndex]) {
+            seg = Arrays.copyOf(seg, seg.length);
+            segments[bufferIndex] = seg;
+            shared[bufferIndex] = false;
+        }
+        return seg;
+    }
+
+    boolean isShared(int segment) {
+        return shared[segment];
+    }
+
     @Override
     public long getCapacity() {
         return (long) getSegments() * segmentSizeInBytes;
@@ -295,6 +318,7 @@ public class RAMDataAccess extends AbstractDataAccess {
         }
 
         segments = Arrays.copyOf(segments, remainingSegments);
+        shared = Arrays.copyOf(shared, remainingSegments);
     }
 
     @Override
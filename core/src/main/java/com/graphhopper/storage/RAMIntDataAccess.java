@@ -32,6 +32,8 @@ import java.util.Arrays;
  */
 class RAMIntDataAccess extends AbstractDataAccess {
     private int[][] segments = new int[0][];
+    // true for all segments which are still shared with a copy created via copyTo
+    private boolean[] shared = new boolean[0];
     private boolean closed = false;
     private boolean store;
     private transient int segmentSizeIntsPower;
@@ -59,12 +61,10 @@ class RAMIntDataAccess extends AbstractDataAccess {
         if (da instanceof RAMIntDataAccess) {
             copyHeader(da);
             RAMIntDataAccess rda = (RAMIntDataAccess) da;
-            // TODO PERFORMANCE we could reuse rda segments!
-            rda.segments = new int[segments.length][];
-            for (int i = 0; i < segments.length; i++) {
-                int[] area = segments[i];
-                rda.segments[i] = Arrays.copyOf(area, area.length);
-            }
+            // share the segments until one side writes to them, see getWritableSegment
+            rda.segments = segments.clone();
+            Arrays.fill(shared, true);
+            rda.shared = shared.clone();
             rda.setSegmentSize(segmentSizeInBytes);
             // leave id, store and close unchanged
             return da;
@@ -104,6 +104,7 @@ class RAMIntDataAccess extends AbstractDataAccess {
                 newSegs[i] = new int[1 << segmentSizeIntsPower];
             }
             segments = newSegs;
+            shared = Arrays.copyOf(shared, newSegs.length);
             return true;
         } catch (OutOfMemoryError err) {
             throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new memory. Old capacity: "
@@ -142,6 +143,7 @@ class RAMIntDataAccess extends AbstractDataAccess {
                     segmentCount++;
 
                 segments = new int[segmentCount][];
+                shared = new boolean[segmentCount];
                 for (int s = 0; s < segmentCount; s++) {
                     int read = raFile.read(bytes) / 4;
                     int area[] = new int[read];
@@ -197,7 +199,7 @@ class RAMIntDataAccess extends AbstractDataAccess {
         bytePos >>>= 2;
         int bufferIndex = (int) (bytePos >>> segmentSizeIntsPower);
         int index = (int) (bytePos & indexDivisor);
-        segments[bufferIndex][index] = value;
+        getWritableSegment(bufferIndex)[index] = value;
     }
 
     @Override
@@ -218,11 +220,12 @@ class RAMIntDataAccess extends AbstractDataAccess {
         long tmpIndex = bytePos >>> 2;
         int bufferIndex = (int) (tmpIndex >>> segmentSizeIntsPower);
         int index = (int) (tmpIndex & indexDivisor);
-        int oldVal = segments[bufferIndex][index];
+        int[] seg = getWritableSegment(bufferIndex);
+        int oldVal = seg[index];
         if (tmpIndex * 4 == bytePos)
-            segments[bufferIndex][index] = oldVal & 0xFFFF0000 | value & 0x0000FFFF;
+            seg[index] = oldVal & 0xFFFF0000 | value & 0x0000FFFF;
         else
-            segments[bufferIndex][index] = oldVal & 0x0000FFFF | value << 16;
+            seg[index] = oldVal & 0x0000FFFF | value << 16;
     }
 
     @Override
@@ -254,9 +257,28 @@ class RAMIntDataAccess extends AbstractDataAccess {
     public void close() {
         super.close();
         segments = new int[0][];
+        shared = new boolean[0];
         closed = true;
     }
 
+    /**
+     * Clones the specified segment before the first write if it is still shared with a copy, see
+     * RAMDataAccess.
+     */
+    private int[] getWritableSegment(int bufferIndex) {
+        int[] seg = segments[bufferIndex];
+        if (shared[bufferIndex]) {
+            seg = Arrays.copyOf(seg, seg.length);
+            segments[bufferIndex] = seg;
+            shared[bufferIndex] = false;
+        }
+        return seg;
+    }
+
+    boolean isShared(int segment) {
+        return shared[segment];
+    }
+
     @Override
     public long getCapacity() {
         return (long) getSegments() * segmentSizeInBytes;
@@ -286,6 +308,7 @@ class RAMIntDataAccess extends AbstractDataAccess {
         }
 
         segments = Arrays.copyOf(segments, remainingSegments);
+        shared = Arrays.copyOf(shared, remainingSegments);
     }
 
     boolean releaseSegment(int segNumber) {
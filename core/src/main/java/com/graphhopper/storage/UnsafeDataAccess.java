@@ -1,14 +1,14 @@
 /*
  *  Licensed to GraphHopper GmbH under one or more contributor
- *  license agreements. See the NOTICE file distributed with this work for 
+ *  license agreements. See the NOTICE file distributed with this work for
  *  additional information regarding copyright ownership.
- * 
- *  GraphHopper GmbH licenses this file to you under the Apache License, 
- *  Version 2.0 (the "License"); you may not use this file except in 
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
  *  compliance with the License. You may obtain a copy of the License at
- * 
+ *
  *       http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  *  Unless required by applicable law or agreed to in writing, software
  *  distributed under the License is distributed on an "AS IS" BASIS,
  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -30,11 +30,17 @@ import java.nio.ByteOrder;
  * RAMDataAccess is roughly 10% due to index calculations and BitUtil overhead in RAMDataAccess.
  * Notes:
  * <p>
- * 1. Highly experimental. Still some bugs and access through file/MMAP should work at some point
+ * 1. The memory is one continuous off-heap area which is resized in steps of the segment size, so
+ * even graphs with many GB do not put any pressure on the garbage collector.
  * <p>
  * 2. Compared to MMAP no syncDAWrapper is need to make it read and write safe from multiple threads
+ * and there are no page faults when accessing cold areas.
  * <p>
- * 3. Cannot be used on Android as no memory allocation methods are available there
+ * 3. There are no bounds checks except if assertions are enabled, e.g. while testing. An access
+ * outside of the capacity will crash the JVM otherwise.
+ * <p>
+ * 4. Cannot be used on Android as no memory allocation methods are available there. Use
+ * isAvailable to check this, GHDirectory falls back to RAM_STORE in this case.
  * <p>
  *
  * @author Peter Karich
@@ -43,18 +49,29 @@ import java.nio.ByteOrder;
 public class UnsafeDataAccess extends AbstractDataAccess {
     @SuppressWarnings("all")
     static final sun.misc.Unsafe UNSAFE;
+    private static final long BYTE_ARRAY_OFFSET;
+    private static final boolean CHECK_BOUNDS;
+    // loading and flushing copies the data in chunks of this size
+    private static final int COPY_CHUNK_SIZE = 1 << 24;
 
     static {
+        sun.misc.Unsafe unsafe = null;
         try {
             // On Android getting Unsafe fails as the field is named THE_ONE but Android has no memory allocation methods so it won't work nevertheless.
             // On Android we need JNI+malloc https://github.com/libgdx/libgdx/blob/5945211a88570ced7eafce95c68f6f1f7124cd23/gdx/src/com/badlogic/gdx/utils/BufferUtils.java#L287
             @SuppressWarnings("all")
             Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
             field.setAccessible(true);
-            UNSAFE = (sun.misc.Unsafe) field.get(null);
-        } catch (Exception e) {
-            throw new AssertionError(e);
+            unsafe = (sun.misc.Unsafe) field.get(null);
+        } catch (Throwable t) {
+            // not available, see isAvailable
         }
+        UNSAFE = unsafe;
+        BYTE_ARRAY_OFFSET = unsafe == null ? 0 : unsafe.arrayBaseOffset(byte[].class);
+
+        boolean assertionsEnabled = false;
+        assert assertionsEnabled = true;
+        CHECK_BOUNDS = assertionsEnabled;
     }
 
     private long address;
@@ -62,14 +79,29 @@ public class UnsafeDataAccess extends AbstractDataAccess {
 
     UnsafeDataAccess(String name, String location, ByteOrder order) {
         super(name, location, order);
+        if (!isAvailable(order))
+            throw new IllegalStateException("Unsafe memory access is not available for the byte order " + order
+                    + ", native byte order is " + ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return true if native memory can be used for the specified byte order. The values are written
+     * in the native byte order, so it has to be identical to keep the files compatible to the other
+     * DataAccess implementations.
+     */
+    public static boolean isAvailable(ByteOrder order) {
+        return UNSAFE != null && ByteOrder.nativeOrder().equals(order);
     }
 
     @Override
     public UnsafeDataAccess create(long bytes) {
+        if (capacity > 0)
+            throw new IllegalThreadStateException("already created");
+
         // TODO use unsafe.pageSize() instead segmentSizeInBytes?
         // e.g. on my system pageSize is only 4096
         setSegmentSize(segmentSizeInBytes);
-        ensureCapacity(bytes);
+        ensureCapacity(Math.max(10 * 4, bytes));
         return this;
     }
 
@@ -79,40 +111,56 @@ public class UnsafeDataAccess extends AbstractDataAccess {
     }
 
     final boolean ensureCapacity(long bytes, boolean clearNewMem) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
         long oldCap = getCapacity();
         long newBytes = bytes - oldCap;
         if (newBytes <= 0)
             return false;
 
         // avoid frequent increase of allocation area, instead increase by segment size
-        int allSegments = (int) (bytes / segmentSizeInBytes);
-        if (bytes % segmentSizeInBytes != 0)
-            allSegments++;
-        capacity = allSegments * segmentSizeInBytes;
-
+        long newCap = toSegments(bytes) * segmentSizeInBytes;
         try {
-            address = UNSAFE.reallocateMemory(address, capacity);
+            address = UNSAFE.reallocateMemory(address, newCap);
         } catch (OutOfMemoryError err) {
             throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new memory. Old capacity: "
                     + oldCap + ", new bytes:" + newBytes + ", segmentSizeIntsPower:" + segmentSizePower);
         }
+        capacity = newCap;
 
         if (clearNewMem)
             UNSAFE.setMemory(address + oldCap, capacity - oldCap, (byte) 0);
         return true;
     }
 
+    private long toSegments(long bytes) {
+        long segments = bytes / segmentSizeInBytes;
+        if (bytes % segmentSizeInBytes != 0)
+            segments++;
+        return segments;
+    }
+
     @Override
     public DataAccess copyTo(DataAccess da) {
         if (da instanceof UnsafeDataAccess) {
-            // TODO unsafe.copyMemory(address, da.address, capacity);
-            // return this;
+            copyHeader(da);
+            UnsafeDataAccess uda = (UnsafeDataAccess) da;
+            uda.setSegmentSize(segmentSizeInBytes);
+            uda.address = UNSAFE.reallocateMemory(uda.address, capacity);
+            uda.capacity = capacity;
+            UNSAFE.copyMemory(address, uda.address, capacity);
+            // leave id, store and close unchanged
+            return da;
         }
         return super.copyTo(da);
     }
 
     @Override
     public boolean loadExisting() {
+        if (capacity > 0)
+            throw new IllegalStateException("already initialized");
+
         if (isClosed())
             throw new IllegalStateException("already closed");
 
@@ -128,20 +176,19 @@ public class UnsafeDataAccess extends AbstractDataAccess {
                     return false;
 
                 raFile.seek(HEADER_OFFSET);
-                int segmentCount = (int) (byteCount / segmentSizeInBytes);
-                if (byteCount % segmentSizeInBytes != 0)
-                    segmentCount++;
-
                 ensureCapacity(byteCount, false);
-                byte[] bytes = new byte[segmentSizeInBytes];
-                for (int s = 0; s < segmentCount; s++) {
-                    int read = raFile.read(bytes);
-                    if (read <= 0)
-                        throw new IllegalStateException("segment " + s + " is empty? " + toString());
-
-                    // is there a faster method?
-                    setBytes(s * segmentSizeInBytes, bytes, segmentSizeInBytes);
+                // read the whole file in big chunks directly behind each other instead of one read per segment
+                long toRead = Math.min(capacity, raFile.length() - HEADER_OFFSET);
+                byte[] bytes = new byte[(int) Math.min(COPY_CHUNK_SIZE, Math.max(1, toRead))];
+                long pos = 0;
+                while (pos < toRead) {
+                    int length = (int) Math.min(bytes.length, toRead - pos);
+                    raFile.readFully(bytes, 0, length);
+                    UNSAFE.copyMemory(bytes, BYTE_ARRAY_OFFSET, null, address + pos, length);
+                    pos += length;
                 }
+                if (pos < capacity)
+                    UNSAFE.setMemory(address + pos, capacity - pos, (byte) 0);
                 return true;
             } finally {
                 raFile.close();
@@ -162,11 +209,13 @@ public class UnsafeDataAccess extends AbstractDataAccess {
                 long len = getCapacity();
                 writeHeader(raFile, len, segmentSizeInBytes);
                 raFile.seek(HEADER_OFFSET);
-                byte bytes[] = new byte[segmentSizeInBytes];
-                int segs = getSegments();
-                for (int s = 0; s < segs; s++) {
-                    getBytes(s * segmentSizeInBytes, bytes, segmentSizeInBytes);
-                    raFile.write(bytes);
+                byte[] bytes = new byte[(int) Math.min(COPY_CHUNK_SIZE, Math.max(1, len))];
+                long pos = 0;
+                while (pos < len) {
+                    int length = (int) Math.min(bytes.length, len - pos);
+                    UNSAFE.copyMemory(null, address + pos, bytes, BYTE_ARRAY_OFFSET, length);
+                    raFile.write(bytes, 0, length);
+                    pos += length;
                 }
             } finally {
                 raFile.close();
@@ -179,42 +228,60 @@ public class UnsafeDataAccess extends AbstractDataAccess {
     @Override
     public void close() {
         super.close();
-        UNSAFE.freeMemory(address);
+        if (address != 0)
+            UNSAFE.freeMemory(address);
+        address = 0;
+        capacity = 0;
+    }
+
+    private void checkBounds(long bytePos, int length) {
+        if (bytePos < 0 || bytePos + length > capacity)
+            throw new IndexOutOfBoundsException("Cannot access " + length + " bytes at " + bytePos
+                    + ", capacity of " + getName() + " is " + capacity);
     }
 
     @Override
     public final void setInt(long bytePos, int value) {
+        if (CHECK_BOUNDS)
+            checkBounds(bytePos, 4);
         UNSAFE.putInt(address + bytePos, value);
     }
 
     @Override
     public final int getInt(long bytePos) {
+        if (CHECK_BOUNDS)
+            checkBounds(bytePos, 4);
         return UNSAFE.getInt(address + bytePos);
     }
 
     @Override
     public short getShort(long bytePos) {
+        if (CHECK_BOUNDS)
+            checkBounds(bytePos, 2);
         return UNSAFE.getShort(address + bytePos);
     }
 
     @Override
     public void setShort(long bytePos, short value) {
+        if (CHECK_BOUNDS)
+            checkBounds(bytePos, 2);
         UNSAFE.putShort(address + bytePos, value);
     }
 
     @Override
     public final void setBytes(long bytePos, byte[] values, int length) {
-        for (int offset = 0; offset < length; offset++) {
-            UNSAFE.putByte(address + bytePos + offset, values[offset]);
-        }
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        if (CHECK_BOUNDS)
+            checkBounds(bytePos, length);
+        UNSAFE.copyMemory(values, BYTE_ARRAY_OFFSET, null, address + bytePos, length);
     }
 
     @Override
     public final void getBytes(long bytePos, byte[] values, int length) {
         assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
-        for (int offset = 0; offset < length; offset++) {
-            values[offset] = UNSAFE.getByte(address + bytePos + offset);
-        }
+        if (CHECK_BOUNDS)
+            checkBounds(bytePos, length);
+        UNSAFE.copyMemory(null, address + bytePos, values, BYTE_ARRAY_OFFSET, length);
     }
 
     @Override
@@ -230,14 +297,16 @@ public class UnsafeDataAccess extends AbstractDataAccess {
     @Override
     public final void trimTo(long bytes) {
         if (bytes > this.capacity)
-            throw new IllegalStateException("Use ensureCapacity to increase capacity!");
+            throw new IllegalStateException("Cannot increase capacity (" + capacity + ") to " + bytes
+                    + " via trimTo. Use ensureCapacity instead. ");
 
-        int allSegments = (int) (bytes / segmentSizeInBytes);
-        if (bytes % segmentSizeInBytes != 0)
-            allSegments++;
-        if (allSegments <= 0)
-            allSegments = 1;
-        capacity = allSegments * segmentSizeInBytes;
+        long newCap = Math.max(1, toSegments(bytes)) * segmentSizeInBytes;
+        if (newCap == capacity)
+            return;
+
+        // release the memory and not only forget about it
+        address = UNSAFE.reallocateMemory(address, newCap);
+        capacity = newCap;
     }
 
     @Override
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.change;
+
+/**
+ * Describes one batch of changes applied via GraphHopper.changeGraph while the features are still
+ * read.
+ */
+public class ChangeGraphBatch {
+    private final int featureCount;
+    private final int edgeCount;
+    private final long updateCount;
+    private final long tookMillis;
+
+    public ChangeGraphBatch(int featureCount, int edgeCount, long updateCount, long tookMillis) {
+        this.featureCount = featureCount;
+        this.edgeCount = edgeCount;
+        this.updateCount = updateCount;
+        this.tookMillis = tookMillis;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * @return the number of different edges touched by this batch
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * @return the time from the first feature of this batch until the changes were visible for
+     * routing, including reading the features
+     */
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "features:" + featureCount + ", edges:" + edgeCount + ", updates:" + updateCount + ", took:" + tookMillis + "ms";
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.change;
+
+/**
+ * Thrown by GraphHopper.changeGraph if reading or applying the features failed. The batches which
+ * were applied before are not rolled back and returned by getAppliedChanges.
+ */
+public class ChangeGraphException extends RuntimeException {
+    private final ChangeGraphResponse appliedChanges;
+
+    public ChangeGraphException(String message, Throwable cause, ChangeGraphResponse appliedChanges) {
+        super(message, cause);
+        this.appliedChanges = appliedChanges;
+    }
+
+    public ChangeGraphResponse getAppliedChanges() {
+        return appliedChanges;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.change;
+
+import com.graphhopper.json.geo.JsonFeature;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the features for GraphHopper.changeGraph in a separate thread. This way a batch can be
+ * finished after its time limit even if reading the next feature blocks, e.g. because a client
+ * stopped sending its request.
+ */
+public class ChangeGraphFeatureReader implements Closeable {
+    private static final Object END = new Object();
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private boolean finished;
+
+    /**
+     * @param capacity the maximum number of features read ahead
+     */
+    public ChangeGraphFeatureReader(final Iterator<JsonFeature> features, int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Object last = END;
+                try {
+                    while (features.hasNext()) {
+                        queue.put(features.next());
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                } catch (RuntimeException | Error ex) {
+                    last = ex;
+                }
+                try {
+                    queue.put(last);
+                } catch (InterruptedException ex) {
+                    // closed, nobody waits for the end anymore
+                }
+            }
+        }, "changeGraphReader");
+        // do not keep the JVM alive if a client never finishes its request
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits until the next feature was read.
+     *
+     * @return the next feature or null if all features were read
+     */
+    public JsonFeature take() throws InterruptedException {
+        if (finished)
+            return null;
+        return toFeature(queue.take());
+    }
+
+    /**
+     * Waits at most the specified time until the next feature was read.
+     *
+     * @return the next feature or null if all features were read or the time passed, see isFinished
+     */
+    public JsonFeature poll(long timeoutMillis) throws InterruptedException {
+        if (finished)
+            return null;
+        Object next = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        return next == null ? null : toFeature(next);
+    }
+
+    /**
+     * @return true if all features were read
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private JsonFeature toFeature(Object next) {
+        if (next instanceof JsonFeature)
+            return (JsonFeature) next;
+
+        finished = true;
+        if (next instanceof RuntimeException)
+            throw (RuntimeException) next;
+        if (next instanceof Error)
+            throw (Error) next;
+        return null;
+    }
+
+    /**
+     * Stops reading. A read which currently blocks is only stopped when the source of the features is
+     * closed too.
+     */
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+}
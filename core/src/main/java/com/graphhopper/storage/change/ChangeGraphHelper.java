@@ -29,7 +29,9 @@ import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.EdgeIteratorState;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 
 import org.slf4j.Logger;
@@ -37,11 +39,16 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * This graph applies permanent changes passed as JsonFeature to the specified graph.
  * <p>
- * This class is not thread-safe. It is currently only safe to use it via GraphHopper.changeGraph
+ * This class is not thread-safe. It is currently only safe to use it via GraphHopper.changeGraph.
+ * Only findEdgeChanges can be called while the graph is read or changed as it does not modify it.
  *
  * @author Peter Karich
  */
@@ -101,29 +108,162 @@ public class ChangeGraphHelper {
             throw new IllegalArgumentException("Feature " + jsonFeature.getId() + " has no geometry and no bbox");
 
         Iterator<IntCursor> iter = edges.iterator();
-        Map<String, Object> props = jsonFeature.getProperties();
         while (iter.hasNext()) {
-            int edgeId = iter.next().value;
-            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
-            if (props.containsKey("access")) {
-                boolean value = (boolean) props.get("access");
+            if (applyChange(iter.next().value, jsonFeature, encoder))
                 updates++;
+        }
+        return updates;
+    }
+
+    private boolean applyChange(int edgeId, JsonFeature jsonFeature, FlagEncoder encoder) {
+        EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+        Map<String, Object> props = jsonFeature.getProperties();
+        if (props.containsKey("access")) {
+            boolean value = (boolean) props.get("access");
+            if (enableLogging)
+                logger.info(encoder.toString() + " - access change via feature " + jsonFeature.getId());
+            edge.setFlags(encoder.setAccess(edge.getFlags(), value, value));
+            return true;
+
+        } else if (props.containsKey("speed")) {
+            // TODO use different speed for the different directions (see e.g. Bike2WeightFlagEncoder)
+            double value = ((Number) props.get("speed")).doubleValue();
+            double oldSpeed = encoder.getSpeed(edge.getFlags());
+            if (oldSpeed != value) {
                 if (enableLogging)
-                    logger.info(encoder.toString() + " - access change via feature " + jsonFeature.getId());
-                edge.setFlags(encoder.setAccess(edge.getFlags(), value, value));
-
-            } else if (props.containsKey("speed")) {
-                // TODO use different speed for the different directions (see e.g. Bike2WeightFlagEncoder)
-                double value = ((Number) props.get("speed")).doubleValue();
-                double oldSpeed = encoder.getSpeed(edge.getFlags());
-                if (oldSpeed != value) {
-                    updates++;
-                    if (enableLogging)
-                        logger.info(encoder.toString() + " - speed change via feature " + jsonFeature.getId() + ". Old: " + oldSpeed + ", new:" + value);
-                    edge.setFlags(encoder.setSpeed(edge.getFlags(), value));
+                    logger.info(encoder.toString() + " - speed change via feature " + jsonFeature.getId() + ". Old: " + oldSpeed + ", new:" + value);
+                edge.setFlags(encoder.setSpeed(edge.getFlags(), value));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method finds the edges of the specified features like applyChanges does but without
+     * changing the graph. The features are distributed over the threads of the specified executor as
+     * the graph is only read.
+     *
+     * @return the changes sorted by edge, so that applying them writes one segment after the other
+     */
+    public List<EdgeChange> findEdgeChanges(final EncodingManager em, List<JsonFeature> features,
+                                            ExecutorService executor, int threads) {
+        if (em == null)
+            throw new NullPointerException("EncodingManager cannot be null to change existing graph");
+
+        int chunkSize = Math.max(1, (features.size() + threads - 1) / threads);
+        List<Future<List<EdgeChange>>> futures = new ArrayList<>();
+        for (int from = 0; from < features.size(); from += chunkSize) {
+            final List<JsonFeature> chunk = features.subList(from, Math.min(features.size(), from + chunkSize));
+            futures.add(executor.submit(new Callable<List<EdgeChange>>() {
+                @Override
+                public List<EdgeChange> call() {
+                    List<EdgeChange> changes = new ArrayList<>();
+                    for (JsonFeature jsonFeature : chunk) {
+                        findEdgeChanges(changes, em, jsonFeature);
+                    }
+                    return changes;
                 }
+            }));
+        }
+
+        List<EdgeChange> changes = new ArrayList<>();
+        for (Future<List<EdgeChange>> future : futures) {
+            try {
+                changes.addAll(future.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        // stable sort, so changes of the same edge are still applied in the order of the features
+        Collections.sort(changes);
+        return changes;
+    }
+
+    private void findEdgeChanges(List<EdgeChange> changes, EncodingManager em, JsonFeature jsonFeature) {
+        if (!jsonFeature.hasProperties())
+            throw new IllegalArgumentException("One feature has no properties, please specify properties e.g. speed or access");
+
+        List<String> encodersAsStr = (List) jsonFeature.getProperty("vehicles");
+        List<FlagEncoder> encoders = new ArrayList<>();
+        if (encodersAsStr == null) {
+            encoders.addAll(em.fetchEdgeEncoders());
+        } else {
+            for (String encoderStr : encodersAsStr) {
+                encoders.add(em.getEncoder(encoderStr));
+            }
+        }
+
+        for (FlagEncoder encoder : encoders) {
+            EdgeFilter filter = new DefaultEdgeFilter(encoder);
+            GHIntHashSet edges = new GHIntHashSet();
+            if (jsonFeature.hasGeometry()) {
+                graphBrowser.fillEdgeIDs(edges, jsonFeature.getGeometry(), filter);
+            } else if (jsonFeature.getBBox() != null) {
+                graphBrowser.findEdgesInShape(edges, jsonFeature.getBBox(), filter);
+            } else
+                throw new IllegalArgumentException("Feature " + jsonFeature.getId() + " has no geometry and no bbox");
+
+            for (IntCursor cursor : edges) {
+                changes.add(new EdgeChange(cursor.value, jsonFeature, encoder));
             }
         }
+    }
+
+    /**
+     * Applies the changes found via findEdgeChanges.
+     *
+     * @return number of successfully applied edge changes
+     */
+    public long applyEdgeChanges(List<EdgeChange> changes) {
+        long updates = 0;
+        for (EdgeChange change : changes) {
+            if (applyChange(change.edge, change.feature, change.encoder))
+                updates++;
+        }
         return updates;
     }
+
+    /**
+     * @return the number of different edges of the specified changes
+     */
+    public static int countEdges(List<EdgeChange> changes) {
+        int count = 0;
+        int prevEdge = -1;
+        for (EdgeChange change : changes) {
+            if (change.edge != prevEdge)
+                count++;
+            prevEdge = change.edge;
+        }
+        return count;
+    }
+
+    /**
+     * The change of one edge for one vehicle
+     */
+    public static class EdgeChange implements Comparable<EdgeChange> {
+        final int edge;
+        final JsonFeature feature;
+        final FlagEncoder encoder;
+
+        EdgeChange(int edge, JsonFeature feature, FlagEncoder encoder) {
+            this.edge = edge;
+            this.feature = feature;
+            this.encoder = encoder;
+        }
+
+        public int getEdge() {
+            return edge;
+        }
+
+        @Override
+        public int compareTo(EdgeChange o) {
+            return edge < o.edge ? -1 : edge > o.edge ? 1 : 0;
+        }
+    }
 }
@@ -17,6 +17,9 @@
  */
 package com.graphhopper.storage.change;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This class describes the changes that were applied to the graph, currently only used in GraphHopper.changeGraph
  *
@@ -24,12 +27,30 @@ package com.graphhopper.storage.change;
  */
 public class ChangeGraphResponse {
     private final long updateCount;
+    private final List<ChangeGraphBatch> batches;
 
     public ChangeGraphResponse(long updateCount) {
         this.updateCount = updateCount;
+        this.batches = Collections.emptyList();
+    }
+
+    public ChangeGraphResponse(List<ChangeGraphBatch> batches) {
+        long sum = 0;
+        for (ChangeGraphBatch batch : batches) {
+            sum += batch.getUpdateCount();
+        }
+        this.updateCount = sum;
+        this.batches = batches;
     }
 
     public long getUpdateCount() {
         return updateCount;
     }
+
+    /**
+     * @return the batches if the changes were read as stream, otherwise an empty list
+     */
+    public List<ChangeGraphBatch> getBatches() {
+        return batches;
+    }
 }
@@ -0,0 +1,271 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EdgeFilterIndoor;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+import java.util.Arrays;
+
+/**
+ * Location index for indoor graphs which holds one LocationIndexTree per level. A lookup with an
+ * EdgeFilterIndoor only searches the tree of the requested level and does not have to scan and
+ * reject the edges of all other levels in the same tile.
+ * <p>
+ * The levels are taken from the 'levels' property written while importing the OSM file. Level
+ * transitions like stairs and elevators are added to the tree of every level they touch, so that
+ * a lookup without an EdgeFilterIndoor can snap onto them too.
+ */
+public class LocationIndexIndoor implements LocationIndex {
+    private final GraphHopperStorage graph;
+    private final Directory dir;
+    private final DataAccess levelInfo;
+    private int minResolutionInMeter = 300;
+    private int maxRegionSearch = 4;
+    private boolean approx = true;
+    // sorted to find the tree of a level via binary search
+    private int[] levels = new int[0];
+    private LocationIndexTree[] trees = new LocationIndexTree[0];
+
+    public LocationIndexIndoor(GraphHopperStorage graph, Directory dir) {
+        if (!(graph.getExtension() instanceof IndoorExtension))
+            throw new IllegalArgumentException("LocationIndexIndoor requires an indoor graph");
+
+        this.graph = graph;
+        this.dir = dir;
+        this.levelInfo = dir.find("location_index_levels");
+    }
+
+    public LocationIndexIndoor setMaxRegionSearch(int numTiles) {
+        this.maxRegionSearch = numTiles;
+        return this;
+    }
+
+    @Override
+    public LocationIndex setResolution(int minResolutionInMeter) {
+        if (minResolutionInMeter <= 0)
+            throw new IllegalStateException("Negative precision is not allowed!");
+
+        this.minResolutionInMeter = minResolutionInMeter;
+        return this;
+    }
+
+    @Override
+    public LocationIndex setApproximation(boolean approx) {
+        this.approx = approx;
+        return this;
+    }
+
+    /**
+     * @return the levels for which an index exists, sorted ascending
+     */
+    public int[] getLevels() {
+        return levels.clone();
+    }
+
+    @Override
+    public LocationIndex prepareIndex() {
+        initTrees(parseLevels(graph.getProperties().get("levels")));
+        levelInfo.create(Math.max(4, levels.length * 4));
+        for (int i = 0; i < levels.length; i++) {
+            levelInfo.setInt((long) i * 4, levels[i]);
+        }
+        levelInfo.setHeader(0, levels.length);
+        levelInfo.flush();
+        for (LocationIndexTree tree : trees) {
+            tree.prepareIndex();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!levelInfo.loadExisting())
+            return false;
+
+        int count = levelInfo.getHeader(0);
+        int[] storedLevels = new int[count];
+        for (int i = 0; i < count; i++) {
+            storedLevels[i] = levelInfo.getInt((long) i * 4);
+        }
+        initTrees(storedLevels);
+        for (LocationIndexTree tree : trees) {
+            if (!tree.loadExisting())
+                return false;
+        }
+        return true;
+    }
+
+    private void initTrees(int[] newLevels) {
+        levels = newLevels.clone();
+        Arrays.sort(levels);
+        trees = new LocationIndexTree[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            LocationIndexTree tree = new LocationIndexTree(graph, dir, "location_index_level_" + levels[i]);
+            tree.setMinResolutionInMeter(minResolutionInMeter);
+            tree.setMaxRegionSearch(maxRegionSearch);
+            tree.setApproximation(approx);
+            tree.setIndexEdgeFilter(new TouchesLevelFilter((IndoorExtension) graph.getExtension(), levels[i]));
+            trees[i] = tree;
+        }
+    }
+
+    /**
+     * Converts the stored levels like "[0, 1, 0.5]" into the distinct full levels used for the
+     * lookup. If the property is missing the levels of all nodes are used.
+     */
+    int[] parseLevels(String levelsProperty) {
+        IntHashSet set = new IntHashSet();
+        if (!Helper.isEmpty(levelsProperty)) {
+            String str = levelsProperty.trim();
+            if (str.startsWith("[") && str.endsWith("]"))
+                str = str.substring(1, str.length() - 1);
+            for (String level : str.split(",")) {
+                try {
+                    int code = IndoorExtension.toLevelCode(Double.parseDouble(level.trim()));
+                    if (code != Integer.MIN_VALUE)
+                        set.add(IndoorExtension.toLevel(code));
+                } catch (NumberFormatException ex) {
+                    // level names cannot be queried
+                }
+            }
+        }
+
+        if (set.isEmpty()) {
+            IndoorExtension ext = (IndoorExtension) graph.getExtension();
+            for (int node = 0; node < graph.getNodes(); node++) {
+                set.add(ext.getLevel(node));
+            }
+        }
+        return set.toArray();
+    }
+
+    /**
+     * @return the index of the specified level or null if no edge lies on this level
+     */
+    public LocationIndexTree getIndex(int level) {
+        int index = Arrays.binarySearch(levels, level);
+        return index < 0 ? null : trees[index];
+    }
+
+    @Override
+    public QueryResult findClosest(double lat, double lon, EdgeFilter edgeFilter) {
+        if (edgeFilter instanceof EdgeFilterIndoor) {
+            LocationIndexTree tree = getIndex(((EdgeFilterIndoor) edgeFilter).getLevel());
+            if (tree == null)
+                return new QueryResult(lat, lon);
+            return tree.findClosest(lat, lon, edgeFilter);
+        }
+
+        // no level specified, so the closest match of all levels is returned
+        QueryResult closest = new QueryResult(lat, lon);
+        for (LocationIndexTree tree : trees) {
+            QueryResult res = tree.findClosest(lat, lon, edgeFilter);
+            if (res.isValid() && (!closest.isValid() || res.getQueryDistance() < closest.getQueryDistance()))
+                closest = res;
+        }
+        return closest;
+    }
+
+    /**
+     * Accepts all edges which touch the specified full level: edges on this level and level transitions
+     * which start, end or pass on it.
+     */
+    static class TouchesLevelFilter implements EdgeFilter {
+        private final IndoorExtension ext;
+        private final int level;
+
+        TouchesLevelFilter(IndoorExtension ext, int level) {
+            this.ext = ext;
+            this.level = level;
+        }
+
+        @Override
+        public boolean accept(EdgeIteratorState edgeState) {
+            int edge = edgeState.getEdge();
+            int baseCode = ext.getLevelCode(edgeState.getBaseNode());
+            int adjCode = ext.getLevelCode(edgeState.getAdjNode());
+            int minCode = Math.min(baseCode, adjCode);
+            int maxCode = Math.max(baseCode, adjCode);
+            // the range of a multi-level way like an elevator can exceed the levels of its nodes
+            int edgeMinCode = ext.getMinLevelCode(edge);
+            int edgeMaxCode = ext.getMaxLevelCode(edge);
+            if (edgeMinCode != edgeMaxCode) {
+                minCode = Math.min(minCode, edgeMinCode);
+                maxCode = Math.max(maxCode, edgeMaxCode);
+            }
+            return IndoorExtension.toLevel(minCode) <= level && level <= IndoorExtension.toLevel(maxCode);
+        }
+    }
+
+    @Override
+    public LocationIndex create(long byteCount) {
+        throw new UnsupportedOperationException("Not supported. Use prepareIndex instead.");
+    }
+
+    @Override
+    public void flush() {
+        levelInfo.setHeader(0, levels.length);
+        levelInfo.flush();
+        for (LocationIndexTree tree : trees) {
+            tree.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        levelInfo.close();
+        for (LocationIndexTree tree : trees) {
+            tree.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return levelInfo.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        long capacity = levelInfo.getCapacity();
+        for (LocationIndexTree tree : trees) {
+            capacity += tree.getCapacity();
+        }
+        return capacity;
+    }
+
+    @Override
+    public void setSegmentSize(int bytes) {
+        levelInfo.setSegmentSize(bytes);
+        for (LocationIndexTree tree : trees) {
+            tree.setSegmentSize(bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TREE_INDOOR";
+    }
+}
@@ -73,6 +73,7 @@ public class LocationIndexTree implements LocationIndex {
     private double deltaLon;
     private int initSizeLeafEntries = 4;
     private boolean initialized = false;
+    private EdgeFilter indexEdgeFilter = EdgeFilter.ALL_EDGES;
     private static final Comparator<QueryResult> QR_COMPARATOR = new Comparator<QueryResult>() {
         @Override
         public int compare(QueryResult o1, QueryResult o2) {
@@ -89,13 +90,29 @@ public class LocationIndexTree implements LocationIndex {
      * @param g the graph for which this index should do the lookup based on latitude,longitude.
      */
     public LocationIndexTree(Graph g, Directory dir) {
+        this(g, dir, "location_index");
+    }
+
+    /**
+     * @param name the name of the storage, required if more than one index is created for the same graph
+     */
+    protected LocationIndexTree(Graph g, Directory dir, String name) {
         if (g instanceof CHGraph)
             throw new IllegalArgumentException("Use base graph for LocationIndexTree instead of CHGraph");
 
         MAGIC_INT = Integer.MAX_VALUE / 22316;
         this.graph = g;
         this.nodeAccess = g.getNodeAccess();
-        dataAccess = dir.find("location_index");
+        dataAccess = dir.find(name);
+    }
+
+    /**
+     * Only edges accepted from the specified filter are added to the index in prepareIndex. All
+     * edges are indexed by default.
+     */
+    public LocationIndexTree setIndexEdgeFilter(EdgeFilter indexEdgeFilter) {
+        this.indexEdgeFilter = indexEdgeFilter;
+        return this;
     }
 
     public int getMinResolutionInMeter() {
@@ -789,6 +806,9 @@ public class LocationIndexTree implements LocationIndex {
             final EdgeIterator allIter = graph.getAllEdges();
             try {
                 while (allIter.next()) {
+                    if (!indexEdgeFilter.accept(allIter))
+                        continue;
+
                     int nodeA = allIter.getBaseNode();
                     int nodeB = allIter.getAdjNode();
                     double lat1 = nodeAccess.getLatitude(nodeA);
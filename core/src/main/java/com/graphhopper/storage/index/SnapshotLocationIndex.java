@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EdgeFilterIndoor;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Searches with a location index built for the graph that is changed by GraphHopper.changeGraph, but
+ * reads the edges from a snapshot of that graph. Graph changes only modify the flags of edges, never
+ * their geometry, so the index itself is valid for every snapshot. The edge filter however has to see
+ * the flags of the snapshot, otherwise a lookup could accept an edge which is blocked in the snapshot
+ * used for routing, or the other way around.
+ * <p>
+ * This is a read-only view: it cannot be created, loaded or flushed.
+ */
+public class SnapshotLocationIndex implements LocationIndex {
+    private final LocationIndex index;
+    private final Graph snapshot;
+
+    public SnapshotLocationIndex(LocationIndex index, Graph snapshot) {
+        this.index = index;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public QueryResult findClosest(double lat, double lon, final EdgeFilter edgeFilter) {
+        // the levels used by EdgeFilterIndoor are never changed and the indoor index has to see the filter itself
+        EdgeFilter snapshotFilter = edgeFilter;
+        if (!(edgeFilter instanceof EdgeFilterIndoor)) {
+            snapshotFilter = new EdgeFilter() {
+                @Override
+                public boolean accept(EdgeIteratorState edgeState) {
+                    EdgeIteratorState snapshotEdge = snapshot.getEdgeIteratorState(edgeState.getEdge(), edgeState.getAdjNode());
+                    return snapshotEdge != null && edgeFilter.accept(snapshotEdge);
+                }
+            };
+        }
+
+        QueryResult res = index.findClosest(lat, lon, snapshotFilter);
+        if (res.isValid()) {
+            EdgeIteratorState edge = res.getClosestEdge();
+            res.setClosestEdge(snapshot.getEdgeIteratorState(edge.getEdge(), edge.getAdjNode()));
+        }
+        return res;
+    }
+
+    @Override
+    public LocationIndex setResolution(int resolution) {
+        throw new UnsupportedOperationException("A snapshot view cannot be modified");
+    }
+
+    @Override
+    public LocationIndex prepareIndex() {
+        throw new UnsupportedOperationException("A snapshot view cannot be modified");
+    }
+
+    @Override
+    public LocationIndex setApproximation(boolean approxDist) {
+        throw new UnsupportedOperationException("A snapshot view cannot be modified");
+    }
+
+    @Override
+    public void setSegmentSize(int bytes) {
+        throw new UnsupportedOperationException("A snapshot view cannot be modified");
+    }
+
+    @Override
+    public boolean loadExisting() {
+        throw new UnsupportedOperationException("A snapshot view cannot be loaded");
+    }
+
+    @Override
+    public LocationIndex create(long byteCount) {
+        throw new UnsupportedOperationException("A snapshot view cannot be created");
+    }
+
+    @Override
+    public void flush() {
+        throw new UnsupportedOperationException("A snapshot view cannot be flushed");
+    }
+
+    @Override
+    public void close() {
+        // the underlying index is closed by its owner
+    }
+
+    @Override
+    public boolean isClosed() {
+        return index.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return index.getCapacity();
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.storage.IndoorExtension;
+
+import java.io.*;
+
+/**
+ * Compact binary alternative to the JSON route response, used with type=binary. Coordinates are
+ * stored as delta encoded integers with a precision of 1e-6 degree, indoor levels as a run length
+ * column of level codes, see IndoorExtension.toLevelCode, and instructions reference their points via the number of points they cover. All integers
+ * are written as zig-zag encoded varints. Without calc_points the points are still written if
+ * instructions are requested, but only to restore the points of the instructions.
+ * <p>
+ * Errors are not part of this format, they are still returned as JSON.
+ */
+public class BinaryRouteCodec {
+    public static final String CONTENT_TYPE = "application/vnd.graphhopper.route";
+    private static final int MAGIC = 0x4748;
+    private static final int VERSION = 3;
+    private static final double COORD_FACTOR = 1e6;
+    private static final double ELE_FACTOR = 100;
+    private static final int HAS_POINTS = 1, HAS_INSTRUCTIONS = 2;
+    private static final int IS_3D = 1, IS_INDOOR = 2;
+
+    private BinaryRouteCodec() {
+    }
+
+    /**
+     * Writes all paths of the specified response, which must not contain errors.
+     */
+    public static void write(GHResponse rsp, boolean calcPoints, boolean enableInstructions, boolean includeElevation,
+                             OutputStream out) throws IOException {
+        if (rsp.hasErrors())
+            throw new IllegalArgumentException("Errors cannot be written in the binary format: " + rsp.getErrors());
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+        dos.writeShort(MAGIC);
+        dos.writeByte(VERSION);
+        writeVarInt(dos, rsp.getAll().size());
+        for (PathWrapper path : rsp.getAll()) {
+            dos.writeDouble(path.getDistance());
+            dos.writeDouble(path.getRouteWeight());
+            writeVarLong(dos, path.getTime());
+            writeVarInt(dos, path.getNumChanges());
+            dos.writeByte((calcPoints ? HAS_POINTS : 0) | (enableInstructions ? HAS_INSTRUCTIONS : 0));
+            if (calcPoints || enableInstructions)
+                writePoints(dos, path.getPoints(), includeElevation);
+            if (enableInstructions)
+                writeInstructions(dos, path.getInstructions());
+            writePoints(dos, path.getWaypoints(), includeElevation);
+        }
+        dos.flush();
+    }
+
+    static void writePoints(DataOutputStream dos, PointList points, boolean includeElevation) throws IOException {
+        boolean is3D = includeElevation && points.is3D();
+        boolean indoor = points instanceof PointListIndoor;
+        dos.writeByte((is3D ? IS_3D : 0) | (indoor ? IS_INDOOR : 0));
+        int size = points.getSize();
+        writeVarInt(dos, size);
+        int prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < size; i++) {
+            int lat = (int) Math.round(points.getLatitude(i) * COORD_FACTOR);
+            int lon = (int) Math.round(points.getLongitude(i) * COORD_FACTOR);
+            writeVarInt(dos, lat - prevLat);
+            writeVarInt(dos, lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                int ele = (int) Math.round(points.getElevation(i) * ELE_FACTOR);
+                writeVarInt(dos, ele - prevEle);
+                prevEle = ele;
+            }
+        }
+
+        if (!indoor || size == 0)
+            return;
+
+        // one entry per run of points on the same level
+        PointListIndoor indoorPoints = (PointListIndoor) points;
+        int runs = 1;
+        for (int i = 1; i < size; i++) {
+            if (indoorPoints.getLevel(i) != indoorPoints.getLevel(i - 1))
+                runs++;
+        }
+        writeVarInt(dos, runs);
+        int runStart = 0;
+        int prevLevel = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || indoorPoints.getLevel(i) != indoorPoints.getLevel(runStart)) {
+                int level = IndoorExtension.toLevelCode(indoorPoints.getLevel(runStart));
+                writeVarInt(dos, level - prevLevel);
+                writeVarInt(dos, i - runStart);
+                prevLevel = level;
+                runStart = i;
+            }
+        }
+    }
+
+    static void writeInstructions(DataOutputStream dos, InstructionList instructions) throws IOException {
+        writeVarInt(dos, instructions.size());
+        for (Instruction instruction : instructions) {
+            writeVarInt(dos, instruction.getSign());
+            writeNullableUTF(dos, instructions.createText(instruction));
+            writeNullableUTF(dos, instruction.getName());
+            dos.writeDouble(instruction.getDistance());
+            writeVarLong(dos, instruction.getTime());
+            writeVarInt(dos, instruction.getLength());
+            if (instruction instanceof RoundaboutInstruction) {
+                RoundaboutInstruction ri = (RoundaboutInstruction) instruction;
+                writeVarInt(dos, ri.getExitNumber());
+                dos.writeBoolean(ri.isExited());
+                dos.writeDouble(ri.getTurnAngle());
+            }
+        }
+    }
+
+    /**
+     * Reads a response written via write.
+     *
+     * @param turnDescription if true the instructions use the translated text of the server, otherwise
+     *                        only the street name
+     */
+    public static GHResponse read(InputStream in, boolean turnDescription) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+        if (dis.readUnsignedShort() != MAGIC)
+            throw new IllegalStateException("Not a binary route response");
+        int version = dis.readUnsignedByte();
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported version " + version + " of the binary route response, expected " + VERSION);
+
+        GHResponse rsp = new GHResponse();
+        int paths = readVarInt(dis);
+        for (int p = 0; p < paths; p++) {
+            PathWrapper path = new PathWrapper();
+            path.setDistance(dis.readDouble());
+            path.setRouteWeight(dis.readDouble());
+            path.setTime(readVarLong(dis));
+            path.setNumChanges(readVarInt(dis));
+            int content = dis.readUnsignedByte();
+            boolean withPoints = (content & HAS_POINTS) != 0;
+            boolean withInstructions = (content & HAS_INSTRUCTIONS) != 0;
+            PointList points = withPoints || withInstructions ? readPoints(dis) : null;
+            if (withPoints)
+                path.setPoints(points);
+            if (withInstructions)
+                path.setInstructions(readInstructions(dis, points, turnDescription));
+            path.setWaypoints(readPoints(dis));
+            rsp.add(path);
+        }
+        return rsp;
+    }
+
+    static PointList readPoints(DataInputStream dis) throws IOException {
+        int type = dis.readUnsignedByte();
+        boolean is3D = (type & IS_3D) != 0;
+        boolean indoor = (type & IS_INDOOR) != 0;
+        int size = readVarInt(dis);
+        PointList points = new PointList(size, is3D);
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < size; i++) {
+            lat += readVarInt(dis);
+            lon += readVarInt(dis);
+            if (is3D) {
+                ele += readVarInt(dis);
+                points.add(lat / COORD_FACTOR, lon / COORD_FACTOR, ele / ELE_FACTOR);
+            } else {
+                points.add(lat / COORD_FACTOR, lon / COORD_FACTOR);
+            }
+        }
+
+        if (!indoor)
+            return points;
+
+        double[] levels = new double[size];
+        if (size > 0) {
+            int runs = readVarInt(dis);
+            int index = 0;
+            int level = 0;
+            for (int r = 0; r < runs; r++) {
+                level += readVarInt(dis);
+                int length = readVarInt(dis);
+                if (index + length > size)
+                    throw new IllegalStateException("Level runs exceed the " + size + " points");
+                for (int i = 0; i < length; i++) {
+                    levels[index++] = IndoorExtension.toLevelValue(level);
+                }
+            }
+        }
+        return new PointListIndoor(points, levels);
+    }
+
+    static InstructionList readInstructions(DataInputStream dis, PointList points, boolean turnDescription) throws IOException {
+        int count = readVarInt(dis);
+        InstructionList instructions = new InstructionList(count, null);
+        int viaCount = 1;
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int sign = readVarInt(dis);
+            String text = readNullableUTF(dis);
+            String streetName = readNullableUTF(dis);
+            if (!turnDescription)
+                text = streetName;
+            double distance = dis.readDouble();
+            long time = readVarLong(dis);
+            int length = readVarInt(dis);
+            // via and finish instructions have a length of 0 but still contain the point they were reached at
+            int end = Math.min(points.getSize(), from + Math.max(1, length));
+            PointList instructionPoints = points.copy(from, end);
+            from += length;
+
+            Instruction instruction;
+            if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+                RoundaboutInstruction ri = new RoundaboutInstruction(sign, text, InstructionAnnotation.EMPTY, instructionPoints);
+                ri.setExitNumber(readVarInt(dis));
+                if (dis.readBoolean())
+                    ri.setExited();
+                double angle = dis.readDouble();
+                if (!Double.isNaN(angle)) {
+                    ri.setDirOfRotation(angle);
+                    ri.setRadian((angle < 0 ? -Math.PI : Math.PI) - angle);
+                }
+                instruction = ri;
+            } else if (sign == Instruction.REACHED_VIA) {
+                ViaInstruction via = new ViaInstruction(text, InstructionAnnotation.EMPTY, instructionPoints);
+                via.setViaCount(viaCount++);
+                instruction = via;
+            } else if (sign == Instruction.FINISH) {
+                instruction = new FinishInstruction(text, instructionPoints, 0);
+            } else {
+                instruction = new Instruction(sign, text, InstructionAnnotation.EMPTY, instructionPoints);
+            }
+            // the text is already translated by the server
+            if (turnDescription)
+                instruction.setUseRawName();
+            instruction.setDistance(distance).setTime(time);
+            instructions.add(instruction);
+        }
+        return instructions;
+    }
+
+    /**
+     * Writes a flag before the string as instructions without a street name have a null name.
+     */
+    static void writeNullableUTF(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    static String readNullableUTF(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        // zig-zag encoding keeps small negative values small
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new IllegalStateException("Value " + value + " is not an integer");
+        return (int) value;
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (v >>> 1) ^ -(v & 1);
+        }
+        throw new IllegalStateException("Varint is too long");
+    }
+}
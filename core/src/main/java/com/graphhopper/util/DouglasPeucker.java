@@ -27,8 +27,8 @@ package com.graphhopper.util;
  * @author Peter Karich
  */
 public class DouglasPeucker {
-    private double normedMaxDist;
-    private DistanceCalc calc;
+    protected double normedMaxDist;
+    protected DistanceCalc calc;
     private boolean approx;
 
     public DouglasPeucker() {
@@ -111,7 +111,7 @@ public class DouglasPeucker {
             }
             if(points instanceof PointListIndoor) {
                 ((PointListIndoor)points).set(freeIndex, points.getLatitude(currentIndex), points.getLongitude(currentIndex), points.getElevation(currentIndex),((PointListIndoor)points).getLevel(currentIndex));
-                ((PointListIndoor)points).set(currentIndex, Double.NaN, Double.NaN, Double.NaN,Integer.MAX_VALUE);
+                ((PointListIndoor)points).set(currentIndex, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
             }
             else{
                 points.set(freeIndex, points.getLatitude(currentIndex), points.getLongitude(currentIndex), points.getElevation(currentIndex));
@@ -164,7 +164,7 @@ public class DouglasPeucker {
         if (maxDist < normedMaxDist) {
             for (int i = fromIndex + 1; i < lastIndex; i++) {
                 if(points instanceof PointListIndoor)
-                    ((PointListIndoor)points).set(i, Double.NaN, Double.NaN, Double.NaN,Integer.MAX_VALUE);
+                    ((PointListIndoor)points).set(i, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
                 else
                     points.set(i, Double.NaN, Double.NaN, Double.NaN);
                 counter++;
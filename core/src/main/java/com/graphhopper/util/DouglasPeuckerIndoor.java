@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+/**
+ * Douglas-Peucker simplification for indoor routes. Every run of points on the same level is
+ * simplified on its own and the last point before and the first point after a level change are
+ * always kept, so stairs and elevators do not disappear from the response.
+ * <p>
+ * Instead of marking removed points with NaN and compressing the list afterwards, the kept points are
+ * collected in a flag array and moved to the front in a single pass.
+ */
+public class DouglasPeuckerIndoor extends DouglasPeucker {
+
+    @Override
+    public int simplify(PointList points, int fromIndex, int lastIndex) {
+        if (!(points instanceof PointListIndoor))
+            return super.simplify(points, fromIndex, lastIndex);
+        if (lastIndex - fromIndex < 2)
+            return 0;
+
+        PointListIndoor indoorPoints = (PointListIndoor) points;
+        boolean[] keep = new boolean[lastIndex - fromIndex + 1];
+        int runStart = fromIndex;
+        for (int i = fromIndex + 1; i <= lastIndex; i++) {
+            if (indoorPoints.getLevel(i) != indoorPoints.getLevel(runStart)) {
+                keepRun(indoorPoints, keep, fromIndex, runStart, i - 1);
+                runStart = i;
+            }
+        }
+        keepRun(indoorPoints, keep, fromIndex, runStart, lastIndex);
+        return compress(indoorPoints, keep, fromIndex, lastIndex);
+    }
+
+    /**
+     * Keeps the first and the last point of the specified run of points on the same level and all
+     * points in between which are required to stay within the maximum distance.
+     */
+    private void keepRun(PointListIndoor points, boolean[] keep, int offset, int runStart, int runEnd) {
+        keep[runStart - offset] = true;
+        keep[runEnd - offset] = true;
+        keepBetween(points, keep, offset, runStart, runEnd);
+    }
+
+    private void keepBetween(PointListIndoor points, boolean[] keep, int offset, int fromIndex, int lastIndex) {
+        if (lastIndex - fromIndex < 2)
+            return;
+
+        int indexWithMaxDist = -1;
+        double maxDist = -1;
+        double firstLat = points.getLatitude(fromIndex);
+        double firstLon = points.getLongitude(fromIndex);
+        double lastLat = points.getLatitude(lastIndex);
+        double lastLon = points.getLongitude(lastIndex);
+        for (int i = fromIndex + 1; i < lastIndex; i++) {
+            double dist = calc.calcNormalizedEdgeDistance(points.getLatitude(i), points.getLongitude(i),
+                    firstLat, firstLon, lastLat, lastLon);
+            if (maxDist < dist) {
+                indexWithMaxDist = i;
+                maxDist = dist;
+            }
+        }
+
+        if (maxDist < normedMaxDist)
+            return;
+
+        keep[indexWithMaxDist - offset] = true;
+        keepBetween(points, keep, offset, fromIndex, indexWithMaxDist);
+        keepBetween(points, keep, offset, indexWithMaxDist, lastIndex);
+    }
+
+    /**
+     * Moves the kept points and all points after lastIndex to the front.
+     *
+     * @return the number of removed points
+     */
+    private int compress(PointListIndoor points, boolean[] keep, int fromIndex, int lastIndex) {
+        int size = points.getSize();
+        int freeIndex = fromIndex;
+        for (int i = fromIndex; i < size; i++) {
+            if (i <= lastIndex && !keep[i - fromIndex])
+                continue;
+
+            if (freeIndex != i)
+                points.set(freeIndex, points.getLatitude(i), points.getLongitude(i), points.getElevation(i), points.getLevel(i));
+            freeIndex++;
+        }
+
+        int removed = size - freeIndex;
+        if (removed > 0)
+            points.trimToSize(freeIndex);
+        return removed;
+    }
+}
@@ -90,10 +90,7 @@ public class InstructionList extends AbstractList<Instruction> {
             instrList.add(instrJson);
 
             InstructionAnnotation ia = instruction.getAnnotation();
-            String text = instruction.getTurnDescription(tr);
-            if (Helper.isEmpty(text))
-                text = ia.getMessage();
-            instrJson.put("text", Helper.firstBig(text));
+            instrJson.put("text", createText(instruction));
             if (!ia.isEmpty()) {
                 instrJson.put("annotation_text", ia.getMessage());
                 instrJson.put("annotation_importance", ia.getImportance());
@@ -114,6 +111,16 @@ public class InstructionList extends AbstractList<Instruction> {
         return instrList;
     }
 
+    /**
+     * @return the translated description of the specified instruction as shown to the user
+     */
+    String createText(Instruction instruction) {
+        String text = instruction.getTurnDescription(tr);
+        if (Helper.isEmpty(text))
+            text = instruction.getAnnotation().getMessage();
+        return Helper.firstBig(text);
+    }
+
     /**
      * @return This method returns a list of gpx entries where the time (in millis) is relative to
      * the first which is 0.
@@ -124,6 +124,35 @@ public class Parameters {
          * a rectangle lat1,lon1,lat2,lon2
          */
         public static final String BLOCK_AREA = "block_area";
+        /**
+         * accessibility profile of the indoor encoder like 'nostairs' or 'wheelchair'
+         */
+        public static final String INDOOR_PROFILE = "indoor_profile";
+        /**
+         * factor for the weight of stairs of the indoor encoder, at least 1
+         */
+        public static final String STAIRS_PENALTY = "stairs_penalty";
+        /**
+         * seconds added for every elevator ride of the indoor encoder
+         */
+        public static final String ELEVATOR_WAIT_SECONDS = "elevator_wait_seconds";
+        /**
+         * seconds an elevator of the indoor encoder needs per level
+         */
+        public static final String ELEVATOR_FLOOR_SECONDS = "elevator_floor_seconds";
+        /**
+         * seconds added per level for stairs and escalators of the indoor encoder
+         */
+        public static final String STAIRS_FLOOR_SECONDS = "stairs_floor_seconds";
+        /**
+         * if true doors of the indoor encoder are avoided
+         */
+        public static final String AVOID_DOORS = "avoid_doors";
+        /**
+         * local time like 2017-06-01T18:30 for which closed edges of the indoor encoder are blocked,
+         * e.g. doors with opening hours
+         */
+        public static final String DEPARTURE_TIME = "departure_time";
     }
 
     /**
@@ -173,6 +202,21 @@ public class Parameters {
         public static final String INIT_DISABLING_ALLOWED = ROUTING_INIT_PREFIX + "lm.disabling_allowed";
     }
 
+    /**
+     * Properties for indoor routing with the overlay of vertical connectors
+     */
+    public static final class IndoorOverlay {
+        public static final String PREPARE = "prepare.indoor_overlay.";
+        /**
+         * This property name in HintsMap configures at runtime if the overlay should be ignored.
+         */
+        public static final String DISABLE = "indoor_overlay.disable";
+        /**
+         * This property name configures at start if the DISABLE parameter can have an effect.
+         */
+        public static final String INIT_DISABLING_ALLOWED = ROUTING_INIT_PREFIX + "indoor_overlay.disabling_allowed";
+    }
+
     /**
      * Properties for non-CH routing
      */
@@ -202,6 +246,11 @@ public class Parameters {
     public static final class PT {
         public static final String EARLIEST_DEPARTURE_TIME = "pt.earliest_departure_time";
         public static final String PROFILE_QUERY = "pt.profile";
+        /**
+         * Turns the request into a range query returning all Pareto-optimal journeys which depart
+         * within this ISO-8601 duration (e.g. PT1H) after the earliest departure time.
+         */
+        public static final String PROFILE_DURATION = "pt.profile_duration";
         public static final String ARRIVE_BY = "pt.arrive_by";
         public static final String IGNORE_TRANSFERS = "pt.ignore_transfers";
         public static final String WALK_SPEED = "pt.walk_speed";
@@ -41,7 +41,7 @@ public class PointListIndoor extends PointList{
     private final static DistanceCalc3D distCalc3D = Helper.DIST_3D;
     final static String ERR_MSG = "Tried to access PointList with too big index!";
     protected int size = 0;
-    private int[] levels;
+    private double[] levels;
 
     public PointListIndoor() {
         this(10, false);
@@ -49,11 +49,15 @@ public class PointListIndoor extends PointList{
 
     public PointListIndoor(int cap, boolean is3D) {
         super(cap,is3D);
-        levels = new int[cap];
+        levels = new double[cap];
     }
 
 
     public PointListIndoor (PointList from, int[] levels){
+        this(from, toDoubles(levels));
+    }
+
+    public PointListIndoor (PointList from, double[] levels){
         this(from.getSize(),from.is3D());
         if(from.getSize()!= levels.length)
             throw new IllegalStateException("Point list and level array must have the same size.\n Size of point list: "+from.getSize()+"\nSize of level array: "+levels.length);
@@ -66,38 +70,52 @@ public class PointListIndoor extends PointList{
         }
     }
 
-     static public PointListIndoor fromPointList(PointList pointList, List<EdgeIteratorState> edges,IndoorExtension indoorExtension,int[] virtualLevels){
-        int levels[] = new int[pointList.getSize()];
-        int index = 0;
-
+    private static double[] toDoubles(int[] levels) {
+        double[] result = new double[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            result[i] = levels[i];
+        }
+        return result;
+    }
 
-        for(int i=0;i<edges.size();i++){
+    /**
+     * Creates the indoor point list of a path from its points and edges. The points must have been created like in
+     * {@link Path#calcPoints()}, i.e. the start point followed by fetchWayGeometry(2) of every edge.
+     *
+     * @param virtualLevels levels of the start and end point of the path
+     */
+    public static PointListIndoor fromPointList(PointList pointList, List<EdgeIteratorState> edges, IndoorExtension indoorExtension, double[] virtualLevels){
+        double[] levels = new double[pointList.getSize()];
+        int index = 0;
+        double level = 0;
+        for(int i = 0; i < edges.size(); i++){
             EdgeIteratorState edge = edges.get(i);
-            int baseNode= edge.getBaseNode();
-            int level;
-            if(edge instanceof VirtualEdgeIteratorState){
-                if(i == 0)
-                    level = virtualLevels[0];
-                else if (i == edges.size())
-                    level = virtualLevels[1];
-                else
-                    level = levels[index - 1];
-            }
-            else
-                level = indoorExtension.getLevel(baseNode);
+            level = getEdgeLevel(edge, i, level, indoorExtension, virtualLevels);
+            // the base node and the pillar nodes of an edge are on the level of the edge
             int nodeCount = edge.fetchWayGeometry(1).getSize();
-            for(int j=0;j<nodeCount;j++){
+            for(int j = 0; j < nodeCount; j++){
                 levels[index] = level;
                 index++;
             }
         }
-
         levels[index] = virtualLevels[1];
-
-        PointListIndoor pointListIndoor = new PointListIndoor(pointList,levels);
-        return pointListIndoor;
+        return new PointListIndoor(pointList, levels);
     }
 
+    /**
+     * Returns the exact level, e.g. 0.5 for a mezzanine, of all points which the specified edge adds to a path,
+     * without allocating a String or a point list. Virtual edges have no level in the indoor extension: the first edge of a path gets the level of
+     * the start point, all later virtual edges keep the level of the previous edge.
+     *
+     * @param edgeIndex     index of the edge within the path
+     * @param previousLevel level returned for the previous edge of the path
+     * @param virtualLevels levels of the start and end point of the path
+     */
+    public static double getEdgeLevel(EdgeIteratorState edge, int edgeIndex, double previousLevel, IndoorExtension indoorExtension, double[] virtualLevels){
+        if(edge instanceof VirtualEdgeIteratorState)
+            return edgeIndex == 0 ? virtualLevels[0] : previousLevel;
+        return indoorExtension.getLevelValue(edge.getBaseNode());
+    }
 
 
     @Override
@@ -121,7 +139,7 @@ public class PointListIndoor extends PointList{
     public void set(int index, double lat, double lon, double ele) {
         throw new IllegalStateException("You need to specify a level for the node.");    }
 
-    public void set(int index, double lat, double lon, double ele,int level) {
+    public void set(int index, double lat, double lon, double ele, double level) {
         super.set(index,lat,lon,ele);
         levels[index] = level;
     }
@@ -146,7 +164,7 @@ public class PointListIndoor extends PointList{
         add(lat,lon,Double.NaN,level);
     }
 
-    public void add(double lat, double lon, double ele, int level) {
+    public void add(double lat, double lon, double ele, double level) {
         super.add(lat,lon,ele);
         incCap(size + 1);
         levels[size] = level;
@@ -156,8 +174,8 @@ public class PointListIndoor extends PointList{
 
     public void add(PointAccess pointAccess, int index) {
         if (pointAccess instanceof NodeAccess){
-            NodeAccess nodeAccess = (NodeAccess) pointAccess;
-            add(nodeAccess.getLatitude(index),nodeAccess.getLon(index),nodeAccess.getElevation(index),nodeAccess.getAdditionalNodeField(index));
+            // levels are stored in the IndoorExtension and not in the node access
+            throw new IllegalStateException("You need to specify a level for the node!");
         }
         else if(pointAccess instanceof GHPointIndoor) {
             GHPointIndoor indoorPoint = (GHPointIndoor) pointAccess;
@@ -202,7 +220,7 @@ public class PointListIndoor extends PointList{
         int max = size / 2;
         for (int i = 0; i < max; i++) {
             int swapIndex = size - i - 1;
-            int tmp = levels[i];
+            double tmp = levels[i];
             levels[i] = levels[swapIndex];
             levels[swapIndex] = tmp;
             }
@@ -264,7 +282,7 @@ public class PointListIndoor extends PointList{
 
             if (this.is3D() && !NumHelper.equalsEps(getElevation(i), other.getElevation(i)))
                 return false;
-            if(getLevel(i) != other.getLevel(i))
+            if(Double.compare(getLevel(i), other.getLevel(i)) != 0)
                 return false;
         }
         return true;
@@ -282,7 +300,7 @@ public class PointListIndoor extends PointList{
             }
         else
             for (int i = 0; i < getSize(); i++) {
-                clonePL.add(getLatitude(i), getLongitude(i),getLevel(i));
+                clonePL.add(getLatitude(i), getLongitude(i), Double.NaN, getLevel(i));
             }
         if (reverse)
             clonePL.reverse();
@@ -308,18 +326,24 @@ public class PointListIndoor extends PointList{
             }
         else
             for (int i = from; i < end; i++) {
-                copyPL.add(getLatitude(i), getLongitude(i), getLevel(i));
+                copyPL.add(getLatitude(i), getLongitude(i), Double.NaN, getLevel(i));
             }
 
         return copyPL;
     }
 
-    public int getLevel(int index){
+    /**
+     * @return the exact level of the specified point, e.g. 0.5 for a mezzanine
+     */
+    public double getLevel(int index){
         return levels[index];
     }
 
-    public int[] getLevels() {
-        return levels;
+    /**
+     * @return a copy of the levels of all points
+     */
+    public double[] getLevels() {
+        return Arrays.copyOf(levels, size);
     }
 
 }
@@ -23,7 +23,9 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.change.ChangeGraphException;
 import com.graphhopper.storage.change.ChangeGraphHelper;
+import com.graphhopper.storage.change.ChangeGraphResponse;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
@@ -35,6 +37,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -189,4 +192,268 @@ public class GraphHopperAPITest {
 
         assertEquals(2, checkPointCounter.get());
     }
+
+    @Test
+    public void testRoutingUsesSnapshotWhileGraphChanges() throws Exception {
+        final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountDownLatch routed = new CountDownLatch(1);
+        final AtomicInteger changeCounter = new AtomicInteger(0);
+        final GraphHopper graphHopper = new GraphHopper() {
+            @Override
+            protected ChangeGraphHelper createChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
+                return new ChangeGraphHelper(graph, locationIndex) {
+                    @Override
+                    public long applyChanges(EncodingManager em, Collection<JsonFeature> features) {
+                        long updates = super.applyChanges(em, features);
+                        // the second change waits until the main thread has routed on the old state
+                        if (changeCounter.incrementAndGet() == 2) {
+                            latch.countDown();
+                            try {
+                                routed.await();
+                            } catch (InterruptedException e) {
+                                throw new RuntimeException(e);
+                            }
+                        }
+                        return updates;
+                    }
+                };
+            }
+        }.setStoreOnFlush(false).setEncodingManager(encodingManager).setCHEnabled(false).
+                loadGraph(graph);
+
+        graphHopper.changeGraph(createSpeedChange(5));
+        GHResponse rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertEquals(8400, rsp.getBest().getTime());
+
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                graphHopper.changeGraph(createSpeedChange(10));
+            }
+        });
+
+        latch.await();
+        // the change is already applied to the graph but routing is not blocked and still uses the old state
+        rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(8400, rsp.getBest().getTime());
+        routed.countDown();
+
+        executorService.shutdown();
+        executorService.awaitTermination(3, TimeUnit.SECONDS);
+        rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertEquals(4800, rsp.getBest().getTime());
+        graphHopper.close();
+    }
+
+    @Test
+    public void testLookupUsesSnapshotWhileGraphChanges() throws Exception {
+        final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountDownLatch routed = new CountDownLatch(1);
+        final GraphHopper graphHopper = new GraphHopper() {
+            @Override
+            protected ChangeGraphHelper createChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
+                return new ChangeGraphHelper(graph, locationIndex) {
+                    @Override
+                    public long applyChanges(EncodingManager em, Collection<JsonFeature> features) {
+                        long updates = super.applyChanges(em, features);
+                        if (features.iterator().next().getProperty("access") != null) {
+                            latch.countDown();
+                            try {
+                                routed.await();
+                            } catch (InterruptedException e) {
+                                throw new RuntimeException(e);
+                            }
+                        }
+                        return updates;
+                    }
+                };
+            }
+        }.setStoreOnFlush(false).setEncodingManager(encodingManager).setCHEnabled(false).
+                loadGraph(graph);
+        graphHopper.changeGraph(createSpeedChange(5));
+
+        final List<JsonFeature> blockStart = new ArrayList<>();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("access", false);
+        blockStart.add(new JsonFeature("1", "bbox", new BBox(10.399, 10.4, 42.0, 42.001), null, properties));
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                graphHopper.changeGraph(blockStart);
+            }
+        });
+
+        latch.await();
+        // the start edge is already blocked in the graph but the lookup has to use the snapshot like the routing
+        GHResponse rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(8400, rsp.getBest().getTime());
+        routed.countDown();
+
+        executorService.shutdown();
+        executorService.awaitTermination(3, TimeUnit.SECONDS);
+        // now the start snaps to the next accessible edge
+        rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(1200, rsp.getBest().getTime());
+        graphHopper.close();
+    }
+
+    @Test
+    public void testChangeGraphNotSupportedWithLM() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        GraphHopper graphHopper = new GraphHopper().setStoreOnFlush(false).setEncodingManager(encodingManager).
+                setCHEnabled(false);
+        graphHopper.getLMFactoryDecorator().setEnabled(true);
+        graphHopper.loadGraph(graph);
+        try {
+            graphHopper.changeGraph(createSpeedChange(5));
+            fail("changes cannot be applied to the landmarks");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("To use the changeGraph API you need to turn off LM", ex.getMessage());
+        }
+        graphHopper.close();
+    }
+
+    @Test
+    public void testChangeGraphInBatches() {
+        final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+        GraphHopper graphHopper = new GraphHopper().setStoreOnFlush(false).setEncodingManager(encodingManager).
+                setCHEnabled(false).setChangeGraphBatchSize(2).loadGraph(graph);
+
+        List<JsonFeature> features = new ArrayList<>();
+        features.addAll(createSpeedChange(20));
+        features.addAll(createSpeedChange(5));
+        features.addAll(createSpeedChange(10));
+        ChangeGraphResponse response = graphHopper.changeGraph(features.iterator());
+        assertEquals(2, response.getBatches().size());
+        assertEquals(2, response.getBatches().get(0).getFeatureCount());
+        assertEquals(1, response.getBatches().get(1).getFeatureCount());
+        assertEquals(response.getBatches().get(0).getUpdateCount() + response.getBatches().get(1).getUpdateCount(),
+                response.getUpdateCount());
+        assertTrue(response.getUpdateCount() > 0);
+
+        // the features are applied in their order, so the last speed wins
+        GHResponse rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(4800, rsp.getBest().getTime());
+        graphHopper.close();
+    }
+
+    @Test
+    public void testChangeGraphBatchIsAppliedWhileReadingBlocks() throws Exception {
+        final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+        final GraphHopper graphHopper = new GraphHopper().setStoreOnFlush(false).setEncodingManager(encodingManager).
+                setCHEnabled(false).loadGraph(graph);
+
+        // the client sends one feature and then stalls
+        final CountDownLatch resume = new CountDownLatch(1);
+        final Iterator<JsonFeature> features = createSpeedChange(5).iterator();
+        final Iterator<JsonFeature> stalling = new Iterator<JsonFeature>() {
+            @Override
+            public boolean hasNext() {
+                if (features.hasNext())
+                    return true;
+                try {
+                    resume.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return false;
+            }
+
+            @Override
+            public JsonFeature next() {
+                return features.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        final AtomicReference<ChangeGraphResponse> response = new AtomicReference<>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                response.set(graphHopper.changeGraph(stalling));
+            }
+        };
+        thread.start();
+
+        // the first batch is visible although the stream is not finished
+        long deadline = System.currentTimeMillis() + 10000;
+        while (graphHopper.route(new GHRequest(42, 10.4, 42, 10)).getBest().getTime() != 8400) {
+            assertTrue("the batch was not applied while reading blocked", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        resume.countDown();
+        thread.join();
+        assertEquals(1, response.get().getBatches().size());
+        graphHopper.close();
+    }
+
+    @Test
+    public void testChangeGraphFailureContainsAppliedBatches() {
+        final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+        GraphHopper graphHopper = new GraphHopper().setStoreOnFlush(false).setEncodingManager(encodingManager).
+                setCHEnabled(false).setChangeGraphBatchSize(1).loadGraph(graph);
+
+        final Iterator<JsonFeature> features = createSpeedChange(5).iterator();
+        Iterator<JsonFeature> failing = new Iterator<JsonFeature>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public JsonFeature next() {
+                if (!features.hasNext())
+                    throw new IllegalArgumentException("invalid feature");
+                return features.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        try {
+            graphHopper.changeGraph(failing);
+            fail("the invalid feature has to fail the request");
+        } catch (ChangeGraphException ex) {
+            assertTrue(ex.getCause() instanceof IllegalArgumentException);
+            assertEquals(1, ex.getAppliedChanges().getBatches().size());
+            assertTrue(ex.getAppliedChanges().getUpdateCount() > 0);
+        }
+        // the batch before the error is not rolled back
+        assertEquals(8400, graphHopper.route(new GHRequest(42, 10.4, 42, 10)).getBest().getTime());
+        graphHopper.close();
+    }
+
+    private List<JsonFeature> createSpeedChange(double speed) {
+        List<JsonFeature> list = new ArrayList<>();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("speed", speed);
+        list.add(new JsonFeature("1", "bbox", new BBox(10.399, 10.4, 42.0, 42.001), null, properties));
+        return list;
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortedLongIntMapTest {
+    @Test
+    public void testSortedKeys() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.RAM, -1, 4);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(-1, map.put(i * 3L + 1_000_000_000_000L, i));
+        }
+        assertEquals(100, map.getSize());
+        // sorted keys are only appended
+        assertEquals(1, map.getRuns());
+        assertEquals(-1, map.get(1_000_000_000_001L));
+        assertEquals(7, map.get(7 * 3L + 1_000_000_000_000L));
+        assertEquals(99, map.get(99 * 3L + 1_000_000_000_000L));
+
+        assertEquals(7, map.put(7 * 3L + 1_000_000_000_000L, -3));
+        assertEquals(-3, map.get(7 * 3L + 1_000_000_000_000L));
+        assertEquals(100, map.getSize());
+        assertEquals(1, map.getRuns());
+    }
+
+    @Test
+    public void testUnsortedKeys() {
+        Random rand = new Random(1);
+        for (DAType type : new DAType[]{DAType.RAM, DAType.UNSAFE_STORE}) {
+            SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", type, -1, 16);
+            Map<Long, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 5000; i++) {
+                // negative keys too like the barrier nodes created in OSMReader
+                long key = rand.nextInt(20_000) - 1000 + (rand.nextBoolean() ? 0 : 5_000_000_000L);
+                int value = rand.nextInt(100);
+                Integer old = expected.put(key, value);
+                assertEquals(old == null ? -1 : old, map.put(key, value));
+            }
+            assertEquals(expected.size(), map.getSize());
+            for (int i = -1000; i < 20_000; i++) {
+                Integer value = expected.get((long) i);
+                assertEquals(value == null ? -1 : value, map.get(i));
+                value = expected.get(i + 5_000_000_000L);
+                assertEquals(value == null ? -1 : value, map.get(i + 5_000_000_000L));
+            }
+            // few runs although the buffer is tiny
+            assertEquals(map.toString(), true, map.getRuns() < 20);
+
+            map.optimize();
+            assertEquals(1, map.getRuns());
+            for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+                assertEquals((int) e.getValue(), map.get(e.getKey()));
+            }
+            map.clear();
+            assertEquals(0, map.getSize());
+            assertEquals(-1, map.get(expected.keySet().iterator().next()));
+        }
+    }
+
+    @Test
+    public void testSkewedKeys() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.RAM, -1);
+        // interpolation would be slow for these keys without the alternating bisection
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        map.put(Long.MAX_VALUE, 1000);
+        map.put(Long.MIN_VALUE + 1, 1001);
+        map.optimize();
+
+        assertEquals(1000, map.get(Long.MAX_VALUE));
+        assertEquals(1001, map.get(Long.MIN_VALUE + 1));
+        assertEquals(-1, map.get(Long.MIN_VALUE));
+        assertEquals(-1, map.get(Long.MAX_VALUE - 1));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i));
+        }
+        assertEquals(-1, map.get(1000));
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.UNSAFE_STORE, -1);
+        for (int i = 0; i < 300_000; i++) {
+            map.put(i * 2, i);
+        }
+        // 3MB segments for the keys, 2MB for the values and 1.5MB for the buffer
+        assertEquals(6, map.getMemoryUsage());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm.conditional;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+
+import static com.graphhopper.storage.IndoorExtension.*;
+import static org.junit.Assert.*;
+
+public class OpeningHoursParserTest {
+    private final OpeningHoursParser parser = new OpeningHoursParser();
+
+    private static int slot(int day, int hour, int minute) {
+        return (day * 24 * 60 + hour * 60 + minute) / TIME_SLOT_MINUTES;
+    }
+
+    private static boolean open(long[] mask, int day, int hour, int minute) {
+        return isOpen(mask, slot(day, hour, minute));
+    }
+
+    @Test
+    public void testWeekdays() throws ParseException {
+        long[] mask = parser.parse("Mo-Fr 08:00-18:00; Sa 10:00-12:00,14:00-16:00");
+        assertFalse(open(mask, 0, 7, 55));
+        assertTrue(open(mask, 0, 8, 0));
+        assertTrue(open(mask, 4, 17, 55));
+        assertFalse(open(mask, 4, 18, 0));
+        assertTrue(open(mask, 5, 11, 0));
+        assertFalse(open(mask, 5, 13, 0));
+        assertTrue(open(mask, 5, 15, 0));
+        assertFalse(open(mask, 6, 12, 0));
+    }
+
+    @Test
+    public void testOverrideAndOff() throws ParseException {
+        long[] mask = parser.parse("08:00-20:00; Su off");
+        assertTrue(open(mask, 2, 12, 0));
+        assertFalse(open(mask, 6, 12, 0));
+
+        mask = parser.parse("Mo-Su 08:00-20:00; We 10:00-12:00");
+        assertFalse(open(mask, 2, 9, 0));
+        assertTrue(open(mask, 2, 11, 0));
+        assertTrue(open(mask, 3, 9, 0));
+
+        mask = parser.parse("Sa, Su");
+        assertFalse(open(mask, 4, 12, 0));
+        assertTrue(open(mask, 5, 0, 0));
+        assertTrue(open(mask, 6, 23, 55));
+    }
+
+    @Test
+    public void testOverMidnight() throws ParseException {
+        // the night of sunday continues on monday
+        long[] mask = parser.parse("Fr-Su 22:00-02:00");
+        assertTrue(open(mask, 4, 23, 0));
+        assertTrue(open(mask, 5, 1, 0));
+        assertFalse(open(mask, 5, 2, 0));
+        assertTrue(open(mask, 0, 1, 55));
+        assertFalse(open(mask, 1, 1, 0));
+
+        mask = parser.parse("24/7");
+        for (int slot = 0; slot < TIME_SLOTS; slot++) {
+            assertTrue(isOpen(mask, slot));
+        }
+    }
+
+    @Test
+    public void testUnsupported() {
+        for (String str : new String[]{"", "Mo-Fr 08:00-18:00 || PH off", "PH off", "Jan-Mar", "Mo 8-12", "Mo 08:00+", "Xy 08:00-10:00"}) {
+            try {
+                parser.parse(str);
+                fail(str + " should not be supported");
+            } catch (ParseException ex) {
+                // expected
+            }
+        }
+    }
+}
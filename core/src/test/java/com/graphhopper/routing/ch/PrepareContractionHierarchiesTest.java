@@ -33,6 +33,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
 import static org.junit.Assert.*;
@@ -477,6 +478,60 @@ public class PrepareContractionHierarchiesTest {
         checkPath(ghStorage, bikeWeighting, 9, 5, Helper.createTList(3, 10, 14, 16, 13, 12));
     }
 
+    @Test
+    public void testParallelContraction() throws InterruptedException {
+        // a grid with some one-way streets and random distances
+        Random rand = new Random(42);
+        int size = 30;
+        GraphHopperStorage ghStorage = createGHStorage();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int node = row * size + col;
+                if (col + 1 < size)
+                    ghStorage.edge(node, node + 1, 1 + rand.nextInt(100), rand.nextInt(10) > 0);
+                if (row + 1 < size)
+                    ghStorage.edge(node, node + size, 1 + rand.nextInt(100), rand.nextInt(10) > 0);
+            }
+        }
+        ghStorage.freeze();
+
+        CHGraph lg = ghStorage.getGraph(CHGraph.class);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, ghStorage, lg, weighting, tMode).
+                setContractionThreads(4);
+        prepare.doWork();
+        assertTrue(prepare.getShortcuts() > 0);
+
+        int nodes = ghStorage.getNodes();
+        for (int node = 0; node < nodes; node++) {
+            assertTrue(lg.getLevel(node) > 0);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            int from = rand.nextInt(nodes);
+            int to = rand.nextInt(nodes);
+            Path refPath = new DijkstraBidirectionRef(ghStorage, weighting, tMode).calcPath(from, to);
+            Path chPath = prepare.createAlgo(lg, new AlgorithmOptions(DIJKSTRA_BI, weighting, tMode)).calcPath(from, to);
+            assertEquals(from + "->" + to, refPath.isFound(), chPath.isFound());
+            assertEquals(from + "->" + to, refPath.getWeight(), chPath.getWeight(), 1e-5);
+            assertEquals(from + "->" + to, refPath.getDistance(), chPath.getDistance(), 1e-5);
+        }
+
+        // the pool is shut down after the contraction, without calling close
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hasContractionThread()) {
+            assertTrue("contraction threads are still running", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean hasContractionThread() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && "contraction".equals(thread.getName()))
+                return true;
+        }
+        return false;
+    }
+
     void checkPath(GraphHopperStorage ghStorage, Weighting w, int expShortcuts, double expDistance, IntIndexedContainer expNodes) {
         CHGraph lg = ghStorage.getGraph(CHGraph.class, w);
         PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, ghStorage, lg, w, tMode);
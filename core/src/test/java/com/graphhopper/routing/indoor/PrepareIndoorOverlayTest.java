@@ -0,0 +1,175 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.indoor;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
+import static org.junit.Assert.*;
+
+public class PrepareIndoorOverlayTest {
+    private final EncodingManager encodingManager = new EncodingManager("indoor");
+    private final FlagEncoder encoder = encodingManager.getEncoder("indoor");
+    private final Weighting weighting = new ShortestWeighting(encoder);
+
+    // three levels with a 3x3 grid each, stacked on top of each other. Upper levels are a bit faster
+    private GraphHopperStorage createGraph() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        for (int level = 0; level < 3; level++) {
+            int offset = level * 9;
+            for (int i = 0; i < 9; i++) {
+                na.setNode(offset + i, 0.001 * (i / 3), 0.001 * (i % 3));
+                ext.setLevel(offset + i, Integer.toString(level));
+            }
+            for (int i = 0; i < 9; i++) {
+                if (i % 3 < 2)
+                    graph.edge(offset + i, offset + i + 1, 130 - level * 5 + i, true);
+                if (i < 6)
+                    graph.edge(offset + i, offset + i + 3, 140 - level * 5 + i, true);
+            }
+        }
+        // stairs between level 0 and 1 at two corners, and between level 1 and 2 at one corner
+        graph.edge(0, 9, 10, true);
+        graph.edge(8, 17, 10, true);
+        graph.edge(9, 18, 10, true);
+        return graph;
+    }
+
+    @Test
+    public void testPrepare() {
+        PrepareIndoorOverlay prepare = new PrepareIndoorOverlay(createGraph(), weighting);
+        assertFalse(prepare.isPrepared());
+        prepare.doWork();
+        assertTrue(prepare.isPrepared());
+        assertEquals(5, prepare.getConnectorCount());
+        // 0 <-> 8 and 9 <-> 17, node 18 has no other connector on its level
+        assertEquals(4, prepare.getShortcutCount());
+        assertEquals(-1, prepare.getConnectorIndex(4));
+        int connector = prepare.getConnectorIndex(0);
+        assertEquals(1, prepare.getShortcutEnd(connector) - prepare.getShortcutStart(connector));
+        int shortcut = prepare.getShortcutStart(connector);
+        assertEquals(8, prepare.getShortcutAdjNode(shortcut));
+        assertEquals(4, prepare.getShortcutEdgeEnd(shortcut) - prepare.getShortcutEdgeStart(shortcut));
+    }
+
+    @Test
+    public void testSameWeightAsDijkstra() {
+        GraphHopperStorage graph = createGraph();
+        PrepareIndoorOverlay prepare = new PrepareIndoorOverlay(graph, weighting);
+        prepare.doWork();
+        for (int from = 0; from < graph.getNodes(); from++) {
+            for (int to = 0; to < graph.getNodes(); to++) {
+                Path expected = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+                AStarBidirectionIndoorOverlay algo = new AStarBidirectionIndoorOverlay(graph, prepare, weighting,
+                        TraversalMode.NODE_BASED);
+                Path path = algo.calcPath(from, to);
+                String msg = from + "->" + to;
+                assertTrue(msg, path.isFound());
+                assertEquals(msg, expected.getWeight(), path.getWeight(), 1e-6);
+                assertEquals(msg, expected.getDistance(), path.getDistance(), 1e-6);
+                assertEquals(msg, from, path.calcNodes().get(0));
+                assertEquals(msg, to, path.calcNodes().get(path.calcNodes().size() - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testSkipLevels() {
+        GraphHopperStorage graph = createGraph();
+        PrepareIndoorOverlay prepare = new PrepareIndoorOverlay(graph, weighting);
+        prepare.doWork();
+        // the route crosses level 1 via the shortcut from 17 to 9
+        AStarBidirectionIndoorOverlay algo = new AStarBidirectionIndoorOverlay(graph, prepare, weighting,
+                TraversalMode.NODE_BASED);
+        Path path = algo.calcPath(8, 26);
+        Dijkstra dijkstra = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED);
+        assertEquals(dijkstra.calcPath(8, 26).calcNodes(), path.calcNodes());
+        assertTrue(algo.getVisitedNodes() < dijkstra.getVisitedNodes());
+        assertTrue(path.calcNodes().contains(17));
+        assertTrue(path.calcNodes().contains(9));
+        assertEquals(path.getWeight(), path.getDistance(), 1e-6);
+    }
+
+    @Test
+    public void testOverlayFollowsGraphChanges() {
+        GraphHopperStorage graph = createGraph();
+        List<Weighting> weightings = Collections.singletonList(weighting);
+        IndoorOverlayAlgoFactoryDecorator decorator = new IndoorOverlayAlgoFactoryDecorator();
+        GraphHopperStorage snapshot = graph.createSnapshot();
+        decorator.createPreparations(snapshot, weightings);
+        RoutingAlgorithmFactory factory = decorator.getDecoratedAlgorithmFactory(new RoutingAlgorithmFactorySimple(),
+                new HintsMap());
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(ASTAR_BI).weighting(weighting).
+                traversalMode(TraversalMode.NODE_BASED).build();
+
+        // block the corridor 9-10 on level 1 which the shortcut from 17 to 9 uses
+        EdgeIteratorState corridor = GHUtility.getEdge(graph, 9, 10);
+        RoutingAlgorithm algo = factory.createAlgo(snapshot, opts);
+        assertTrue(algo instanceof AStarBidirectionIndoorOverlay);
+        assertTrue(algo.calcPath(8, 26).calcNodes().contains(10));
+        corridor.setFlags(encoder.setAccess(corridor.getFlags(), false, false));
+        GraphHopperStorage changed = graph.createSnapshot();
+        Path expected = new Dijkstra(changed, weighting, TraversalMode.NODE_BASED).calcPath(8, 26);
+        assertFalse(expected.calcNodes().contains(10));
+
+        // the overlay of the previous graph state must not be used
+        assertTrue(decorator.isPreparedFor(snapshot));
+        assertFalse(decorator.isPreparedFor(changed));
+        algo = factory.createAlgo(changed, opts);
+        assertFalse(algo instanceof AStarBidirectionIndoorOverlay);
+        assertEquals(expected.calcNodes(), algo.calcPath(8, 26).calcNodes());
+
+        List<PrepareIndoorOverlay> previous = decorator.getPreparations();
+        decorator.updatePreparations(changed, weightings);
+        assertTrue(decorator.isPreparedFor(changed));
+        // the list a route already iterates is not modified
+        assertSame(snapshot.getExtension(), previous.get(0).getExtension());
+        decorator.addPreparation(previous.get(0));
+        assertEquals(1, previous.size());
+        assertEquals(2, decorator.getPreparations().size());
+        assertFalse(decorator.isPreparedFor(changed));
+        algo = factory.createAlgo(changed, opts);
+        assertTrue(algo instanceof AStarBidirectionIndoorOverlay);
+        Path path = algo.calcPath(8, 26);
+        assertEquals(expected.calcNodes(), path.calcNodes());
+        assertEquals(expected.getWeight(), path.getWeight(), 1e-6);
+    }
+}
@@ -34,6 +34,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -124,6 +125,43 @@ public class LandmarkStorageTest {
         assertEquals("[6, 4]", Arrays.toString(storage.getLandmarks(2)));
     }
 
+    @Test
+    public void testParallelWeights() {
+        // two disconnected grids with random distances
+        Random rand = new Random(1);
+        int size = 10;
+        for (int offset = 0; offset <= size * size; offset += size * size) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int node = offset + row * size + col;
+                    if (col + 1 < size)
+                        ghStorage.edge(node, node + 1, 1 + rand.nextInt(100), true);
+                    if (row + 1 < size)
+                        ghStorage.edge(node, node + size, 1 + rand.nextInt(100), true);
+                }
+            }
+        }
+
+        LandmarkStorage storage = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), 6);
+        storage.setMinimumNodes(2);
+        storage.createLandmarks();
+        LandmarkStorage parallelStorage = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), 6).
+                setLandmarkThreads(3);
+        parallelStorage.setMinimumNodes(2);
+        parallelStorage.createLandmarks();
+
+        assertEquals(3, parallelStorage.getSubnetworksWithLandmarks());
+        for (int subnetwork = 1; subnetwork < 3; subnetwork++) {
+            assertEquals(Arrays.toString(storage.getLandmarks(subnetwork)), Arrays.toString(parallelStorage.getLandmarks(subnetwork)));
+        }
+        for (int node = 0; node < ghStorage.getNodes(); node++) {
+            for (int lmIdx = 0; lmIdx < 6; lmIdx++) {
+                assertEquals(storage.getFromWeight(lmIdx, node), parallelStorage.getFromWeight(lmIdx, node));
+                assertEquals(storage.getToWeight(lmIdx, node), parallelStorage.getToWeight(lmIdx, node));
+            }
+        }
+    }
+
     @Test
     public void testWithSubnetworks2() {
         // should not happen with subnetwork preparation
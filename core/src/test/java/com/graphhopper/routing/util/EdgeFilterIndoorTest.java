@@ -0,0 +1,66 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.util.EdgeIterator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EdgeFilterIndoorTest {
+
+    @Test
+    public void testAccept() {
+        GraphHopperStorage graph = new GraphBuilder(new EncodingManager("indoor")).create();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        graph.edge(0, 1, 10, true);
+        graph.edge(1, 2, 10, true);
+        graph.edge(2, 3, 10, true);
+        ext.setLevel(0, "1");
+        ext.setLevel(1, "1");
+        ext.setLevel(2, "2");
+        ext.setLevel(3, "2");
+
+        EdgeFilterIndoor filter = new EdgeFilterIndoor(1);
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(1);
+        int accepted = 0;
+        while (iter.next()) {
+            EdgeIteratorIndoor edge = (EdgeIteratorIndoor) iter;
+            assertEquals(1, edge.getBaseLevel());
+            if (edge.getAdjNode() == 2) {
+                assertTrue(edge.isLevelTransition());
+                assertEquals(2, edge.getAdjLevel());
+                assertEquals("1;2", edge.getLevel());
+                assertFalse(filter.accept(edge));
+            } else {
+                assertFalse(edge.isLevelTransition());
+                assertTrue(filter.accept(edge));
+                accepted++;
+            }
+        }
+        assertEquals(1, accepted);
+
+        iter = graph.createEdgeExplorer().setBaseNode(3);
+        assertTrue(iter.next());
+        assertFalse(filter.accept(iter));
+        assertTrue(new EdgeFilterIndoor(2).accept(iter));
+    }
+}
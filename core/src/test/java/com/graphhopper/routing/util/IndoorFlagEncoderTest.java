@@ -0,0 +1,153 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.reader.ReaderWay;
+import org.junit.Test;
+
+import static com.graphhopper.routing.util.IndoorFlagEncoder.*;
+import static com.graphhopper.storage.IndoorExtension.TIME_SLOT_MINUTES;
+import static com.graphhopper.storage.IndoorExtension.isOpen;
+import static org.junit.Assert.*;
+
+public class IndoorFlagEncoderTest {
+    private final EncodingManager encodingManager = new EncodingManager("indoor");
+    private final IndoorFlagEncoder encoder = (IndoorFlagEncoder) encodingManager.getEncoder("indoor");
+
+    private int getConnectorTypes(ReaderWay way) {
+        long flags = encoder.handleWayTags(way, encoder.acceptWay(way), 0);
+        return encoder.getConnectorTypes(flags);
+    }
+
+    @Test
+    public void testConnectorTypes() {
+        ReaderWay way = new ReaderWay(1);
+        way.setTag("highway", "footway");
+        assertEquals(0, getConnectorTypes(way));
+
+        way.setTag("highway", "steps");
+        assertEquals(STAIRS, getConnectorTypes(way));
+
+        way.setTag("conveying", "forward");
+        assertEquals(ESCALATOR, getConnectorTypes(way));
+
+        way.setTag("conveying", "no");
+        assertEquals(STAIRS, getConnectorTypes(way));
+
+        way.clearTags();
+        way.setTag("highway", "elevator");
+        assertEquals(ELEVATOR, getConnectorTypes(way));
+
+        way.clearTags();
+        way.setTag("highway", "footway");
+        way.setTag("incline", "up");
+        assertEquals(RAMP, getConnectorTypes(way));
+
+        way.clearTags();
+        way.setTag("highway", "footway");
+        way.setTag("ramp:wheelchair", "yes");
+        way.setTag("door", "hinged");
+        assertEquals(RAMP | DOOR, getConnectorTypes(way));
+
+        way.setTag("door", "no");
+        assertEquals(RAMP, getConnectorTypes(way));
+    }
+
+    @Test
+    public void testProfileEncodersWereRemoved() {
+        try {
+            new EncodingManager("indoor,nostairs");
+            fail("the nostairs encoder was replaced by the nostairs profile");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("indoor_profile=nostairs"));
+        }
+    }
+
+    @Test
+    public void testSpeedIsIndependentOfConnectorTypes() {
+        ReaderWay way = new ReaderWay(1);
+        way.setTag("highway", "steps");
+        way.setTag("indoor", "door");
+        long flags = encoder.handleWayTags(way, encoder.acceptWay(way), 0);
+        assertEquals(STAIRS | DOOR, encoder.getConnectorTypes(flags));
+        assertEquals(MEAN_SPEED, encoder.getSpeed(flags), 1e-1);
+        assertTrue(encoder.isForward(flags));
+        assertTrue(encoder.isBackward(flags));
+    }
+
+    @Test
+    public void testLevelCodeDelta() {
+        ReaderWay way = new ReaderWay(1);
+        way.setTag("highway", "elevator");
+        long flags = encoder.handleWayTags(way, encoder.acceptWay(way), 0);
+        assertEquals(0, encoder.getLevelCodeDelta(flags));
+
+        flags = encoder.setLevelCodeDelta(flags, -25);
+        assertEquals(25, encoder.getLevelCodeDelta(flags));
+        assertEquals(ELEVATOR, encoder.getConnectorTypes(flags));
+        assertEquals(MEAN_SPEED, encoder.getSpeed(flags), 1e-1);
+
+        flags = encoder.setLevelCodeDelta(flags, 1000);
+        assertEquals(255, encoder.getLevelCodeDelta(flags));
+    }
+
+    private static int slot(int day, int hour) {
+        return (day * 24 + hour) * 60 / TIME_SLOT_MINUTES;
+    }
+
+    @Test
+    public void testTimeRestrictions() {
+        ReaderWay way = new ReaderWay(1);
+        way.setTag("highway", "footway");
+        assertNull(encoder.getOpenSlots(way));
+
+        // closed at night, but imported independent of the import time
+        way.setTag("access:conditional", "no @ (Mo-Fr 18:00-08:00)");
+        assertTrue(encoder.acceptWay(way) != 0);
+        long[] open = encoder.getOpenSlots(way);
+        assertTrue(isOpen(open, slot(0, 12)));
+        assertFalse(isOpen(open, slot(0, 20)));
+        assertFalse(isOpen(open, slot(1, 7)));
+        assertTrue(isOpen(open, slot(5, 20)));
+
+        way.setTag("opening_hours", "Mo-Sa 06:00-22:00");
+        open = encoder.getOpenSlots(way);
+        assertTrue(isOpen(open, slot(5, 20)));
+        assertFalse(isOpen(open, slot(5, 23)));
+        assertFalse(isOpen(open, slot(6, 12)));
+
+        // only open at the specified times
+        way = new ReaderWay(2);
+        way.setTag("highway", "footway");
+        way.setTag("access", "private");
+        way.setTag("access:conditional", "yes @ (Mo-Fr 08:00-18:00)");
+        assertTrue(encoder.acceptWay(way) != 0);
+        open = encoder.getOpenSlots(way);
+        assertTrue(isOpen(open, slot(0, 12)));
+        assertFalse(isOpen(open, slot(0, 20)));
+
+        // opening hours cannot lift access restrictions and date ranges are still evaluated while importing
+        way.removeTag("access:conditional");
+        way.setTag("opening_hours", "24/7");
+        assertNull(encoder.getOpenSlots(way));
+        assertEquals(0, encoder.acceptWay(way));
+        way.setTag("access:conditional", "yes @ (2010 Jan 01-2011 Jan 01)");
+        assertNull(encoder.getOpenSlots(way));
+        assertEquals(0, encoder.acceptWay(way));
+    }
+}
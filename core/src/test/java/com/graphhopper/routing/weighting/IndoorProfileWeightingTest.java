@@ -0,0 +1,164 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.IndoorFlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters.Routing;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndoorProfileWeightingTest {
+    private final EncodingManager em = new EncodingManager("indoor");
+    private final IndoorFlagEncoder encoder = (IndoorFlagEncoder) em.getEncoder("indoor");
+    private Graph graph;
+    private EdgeIteratorState footway, stairs, escalator, elevator, elevatorRoom, door;
+
+    @Before
+    public void setUp() {
+        graph = new GraphBuilder(em).create();
+        footway = createEdge(0, 1, createWay("footway", null, null), 0);
+        stairs = createEdge(1, 2, createWay("steps", null, null), 10);
+        escalator = createEdge(2, 3, createWay("steps", "conveying", "forward"), 10);
+        // a ride over two levels and an edge of the elevator room on one level
+        elevator = createEdge(3, 4, createWay("elevator", null, null), 20);
+        elevatorRoom = createEdge(4, 5, createWay("elevator", null, null), 0);
+        door = createEdge(5, 6, createWay("footway", "door", "hinged"), 0);
+    }
+
+    private ReaderWay createWay(String highway, String key, String value) {
+        ReaderWay way = new ReaderWay(1);
+        way.setTag("highway", highway);
+        if (key != null)
+            way.setTag(key, value);
+        return way;
+    }
+
+    private EdgeIteratorState createEdge(int from, int to, ReaderWay way, int levelCodeDelta) {
+        long flags = encoder.handleWayTags(way, encoder.acceptWay(way), 0);
+        return graph.edge(from, to, 10, true).setFlags(encoder.setLevelCodeDelta(flags, levelCodeDelta));
+    }
+
+    private double calcWeight(Weighting weighting, EdgeIteratorState edge) {
+        return weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE);
+    }
+
+    @Test
+    public void testProfiles() {
+        Weighting fastest = new FastestWeighting(encoder);
+        double expected = calcWeight(fastest, footway);
+
+        Weighting noStairs = new IndoorProfileWeighting(fastest, IndoorProfileWeighting.NO_STAIRS);
+        assertEquals(expected, calcWeight(noStairs, footway), 1e-6);
+        assertTrue(Double.isInfinite(calcWeight(noStairs, stairs)));
+        assertTrue(Double.isInfinite(calcWeight(noStairs, escalator)));
+        assertEquals(expected, calcWeight(noStairs, elevatorRoom), 1e-6);
+
+        Weighting noElevators = new IndoorProfileWeighting(fastest, IndoorProfileWeighting.NO_ELEVATORS);
+        assertTrue(Double.isInfinite(calcWeight(noElevators, elevator)));
+        assertTrue(Double.isInfinite(calcWeight(noElevators, elevatorRoom)));
+        assertEquals(expected, calcWeight(noElevators, door), 1e-6);
+    }
+
+    @Test
+    public void testTransitionCosts() {
+        Weighting fastest = new FastestWeighting(encoder);
+        double expected = calcWeight(fastest, footway);
+        long expectedMillis = fastest.calcMillis(footway, false, EdgeIterator.NO_EDGE);
+
+        Weighting weighting = new IndoorProfileWeighting(fastest, IndoorProfileWeighting.DEFAULT);
+        assertEquals(expected, calcWeight(weighting, footway), 1e-6);
+        assertEquals(expected + 10, calcWeight(weighting, stairs), 1e-6);
+        assertEquals(expected + 10, calcWeight(weighting, escalator), 1e-6);
+        assertEquals(expected + 30 + 2 * 3, calcWeight(weighting, elevator), 1e-6);
+        assertEquals(expectedMillis + 36000, weighting.calcMillis(elevator, false, EdgeIterator.NO_EDGE));
+        // no wait for the edges of the elevator room itself
+        assertEquals(expected, calcWeight(weighting, elevatorRoom), 1e-6);
+
+        weighting = new IndoorProfileWeighting(fastest, new PMap().put(Routing.ELEVATOR_FLOOR_SECONDS, 5).
+                put(Routing.STAIRS_FLOOR_SECONDS, 20));
+        assertEquals(expected + 20, calcWeight(weighting, stairs), 1e-6);
+        assertEquals(expected + 30 + 2 * 5, calcWeight(weighting, elevator), 1e-6);
+    }
+
+    @Test
+    public void testTransitionCostsUseUnitOfWrappedWeighting() {
+        Weighting shortest = new ShortestWeighting(encoder);
+        Weighting weighting = new IndoorProfileWeighting(shortest, IndoorProfileWeighting.DEFAULT);
+        double metersPerSecond = encoder.getMaxSpeed() / 3.6;
+        assertEquals(10, calcWeight(weighting, footway), 1e-6);
+        assertEquals(10 + 10 * metersPerSecond, calcWeight(weighting, stairs), 1e-6);
+        assertEquals(10 + (30 + 2 * 3) * metersPerSecond, calcWeight(weighting, elevator), 1e-6);
+        // the time is still in milliseconds
+        long expectedMillis = shortest.calcMillis(footway, false, EdgeIterator.NO_EDGE);
+        assertEquals(expectedMillis + 36000, weighting.calcMillis(elevator, false, EdgeIterator.NO_EDGE));
+    }
+
+    @Test
+    public void testPenalties() {
+        Weighting fastest = new FastestWeighting(encoder);
+        double expected = calcWeight(fastest, footway);
+        long expectedMillis = fastest.calcMillis(footway, false, EdgeIterator.NO_EDGE);
+
+        PMap params = new PMap().put(Routing.STAIRS_PENALTY, 3).put(Routing.ELEVATOR_WAIT_SECONDS, 40).
+                put(Routing.AVOID_DOORS, true);
+        Weighting weighting = new IndoorProfileWeighting(fastest, params);
+        assertEquals(expected, calcWeight(weighting, footway), 1e-6);
+        assertEquals(3 * expected + 10, calcWeight(weighting, stairs), 1e-6);
+        // escalators are not penalized like stairs
+        assertEquals(expected + 10, calcWeight(weighting, escalator), 1e-6);
+        assertEquals(expected + 40 + 2 * 3, calcWeight(weighting, elevator), 1e-6);
+        assertEquals(expectedMillis + 46000, weighting.calcMillis(elevator, false, EdgeIterator.NO_EDGE));
+        assertEquals(IndoorProfileWeighting.DOOR_PENALTY * expected, calcWeight(weighting, door), 1e-6);
+
+        // penalties are combined with the blocked connectors of the profile
+        weighting = new IndoorProfileWeighting(fastest, params.put(Routing.INDOOR_PROFILE, "Stroller"));
+        assertTrue(Double.isInfinite(calcWeight(weighting, stairs)));
+        assertEquals(expected + 40 + 2 * 3, calcWeight(weighting, elevator), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStairsPenaltyMustNotUnderestimate() {
+        new IndoorProfileWeighting(new FastestWeighting(encoder), new PMap().put(Routing.STAIRS_PENALTY, 0.5));
+    }
+
+    @Test
+    public void testName() {
+        Weighting fastest = new FastestWeighting(encoder);
+        assertEquals("indoor_wheelchair|fastest|indoor",
+                new IndoorProfileWeighting(fastest, IndoorProfileWeighting.WHEELCHAIR).toString());
+        assertEquals("indoor_default|fastest|indoor",
+                new IndoorProfileWeighting(fastest, new PMap().put(Routing.ELEVATOR_WAIT_SECONDS, 30)).toString());
+        assertEquals("indoor_default_adjusted|fastest|indoor",
+                new IndoorProfileWeighting(fastest, new PMap().put(Routing.ELEVATOR_WAIT_SECONDS, 10)).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProfile() {
+        new IndoorProfileWeighting(new FastestWeighting(encoder), "unknown");
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IndoorWeightApproximatorTest {
+    private final EncodingManager encodingManager = new EncodingManager("indoor");
+    private final FlagEncoder encoder = encodingManager.getEncoder("indoor");
+
+    // two floors on top of each other, connected by stairs at the east end
+    private GraphHopperStorage createGraph() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 0, 0.001);
+        na.setNode(2, 0, 0.002);
+        na.setNode(3, 0, 0);
+        na.setNode(4, 0, 0.001);
+        na.setNode(5, 0, 0.002);
+        graph.edge(0, 1, 112, true);
+        graph.edge(1, 2, 112, true);
+        graph.edge(2, 5, 10, true);
+        graph.edge(5, 4, 112, true);
+        graph.edge(4, 3, 112, true);
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        for (int node = 0; node < 3; node++) {
+            ext.setLevel(node, "0");
+            ext.setLevel(node + 3, "1");
+        }
+        return graph;
+    }
+
+    @Test
+    public void testApproximateViaConnector() {
+        GraphHopperStorage graph = createGraph();
+        IndoorWeightApproximator approx = new IndoorWeightApproximator(graph, new ShortestWeighting(encoder));
+        approx.setDistanceCalc(Helper.DIST_PLANE);
+        assertEquals(0, approx.getMinWeightPerLevelCode(), 1e-6);
+
+        approx.setTo(3);
+        // node 0 is directly below the goal, but the path has to use the stairs
+        assertEquals(445, approx.approximate(0), 1);
+        assertEquals(334, approx.approximate(1), 1);
+        // same level as the goal, so the beeline is used
+        assertEquals(111, approx.approximate(4), 1);
+        assertEquals(0, approx.approximate(3), 1e-6);
+
+        WeightApproximator reverse = approx.reverse();
+        reverse.setTo(0);
+        assertEquals(445, reverse.approximate(3), 1);
+        assertEquals(222, reverse.approximate(2), 1);
+    }
+
+    @Test
+    public void testLevelWeight() {
+        GraphHopperStorage graph = createGraph();
+        // stairs are slower than the floors
+        Weighting weighting = new AbstractAdjustedWeighting(new ShortestWeighting(encoder)) {
+            @Override
+            public double getMinWeight(double distance) {
+                return superWeighting.getMinWeight(distance);
+            }
+
+            @Override
+            public double calcWeight(EdgeIteratorState edge, boolean reverse, int prevOrNextEdgeId) {
+                double weight = superWeighting.calcWeight(edge, reverse, prevOrNextEdgeId);
+                return edge.getEdge() == 2 ? weight + 50 : weight;
+            }
+
+            @Override
+            public String getName() {
+                return "stairs_test";
+            }
+        };
+        IndoorWeightApproximator approx = new IndoorWeightApproximator(graph, weighting);
+        approx.setDistanceCalc(Helper.DIST_PLANE);
+        assertEquals(50.0 / IndoorExtension.LEVEL_FACTOR, approx.getMinWeightPerLevelCode(), 1e-6);
+        approx.setTo(3);
+        assertEquals(495, approx.approximate(0), 1);
+        assertEquals(111, approx.approximate(4), 1);
+
+        // the approximation must not change the optimal path
+        Path expected = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(0, 3);
+        AStarBidirection astar = new AStarBidirection(graph, weighting, TraversalMode.NODE_BASED);
+        astar.setApproximation(approx);
+        Path path = astar.calcPath(0, 3);
+        assertEquals(expected.getWeight(), path.getWeight(), 1e-6);
+        assertEquals(expected.calcNodes(), path.calcNodes());
+    }
+
+    @Test
+    public void testLevelWeightOfConnector() {
+        GraphHopperStorage graph = createGraph();
+        // a second transition at the west end, cheaper than the stairs at the east end
+        graph.edge(0, 3, 10, true);
+        Weighting weighting = new AbstractAdjustedWeighting(new ShortestWeighting(encoder)) {
+            @Override
+            public double getMinWeight(double distance) {
+                return superWeighting.getMinWeight(distance);
+            }
+
+            @Override
+            public double calcWeight(EdgeIteratorState edge, boolean reverse, int prevOrNextEdgeId) {
+                double weight = superWeighting.calcWeight(edge, reverse, prevOrNextEdgeId);
+                if (edge.getEdge() == 2)
+                    return weight + 100;
+                return edge.getEdge() == 5 ? weight + 50 : weight;
+            }
+
+            @Override
+            public String getName() {
+                return "connector_test";
+            }
+        };
+        IndoorWeightApproximator approx = new IndoorWeightApproximator(graph, weighting);
+        approx.setDistanceCalc(Helper.DIST_PLANE);
+        assertEquals(50.0 / IndoorExtension.LEVEL_FACTOR, approx.getMinWeightPerLevelCode(), 1e-6);
+        approx.setTo(5);
+        // the cheap transition is far away, so the stairs directly above are the lower bound
+        assertEquals(100, approx.approximate(2), 1);
+        assertEquals(211, approx.approximate(1), 1);
+
+        Path expected = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(2, 5);
+        AStarBidirection astar = new AStarBidirection(graph, weighting, TraversalMode.NODE_BASED);
+        astar.setApproximation(approx);
+        Path path = astar.calcPath(2, 5);
+        assertEquals(expected.getWeight(), path.getWeight(), 1e-6);
+        assertEquals(expected.calcNodes(), path.calcNodes());
+    }
+
+    @Test
+    public void testConnectorsAreCached() {
+        GraphHopperStorage graph = createGraph();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        Weighting weighting = new FastestWeighting(encoder);
+        IndoorWeightApproximator.Connectors connectors = IndoorWeightApproximator.getConnectors(graph, ext, weighting);
+        assertEquals(2, connectors.lats.length);
+        // a new weighting of a later request and the time restricted version of it share the connectors
+        assertSame(connectors, IndoorWeightApproximator.getConnectors(graph, ext, new FastestWeighting(encoder)));
+        assertSame(connectors, IndoorWeightApproximator.getConnectors(graph, ext, new TimeRestrictionWeighting(weighting, ext, 0)));
+        assertNotSame(connectors, IndoorWeightApproximator.getConnectors(graph, ext, new ShortestWeighting(encoder)));
+
+        // a level change creates them again, now the edge 1-2 connects the levels
+        ext.setLevel(2, "1");
+        connectors = IndoorWeightApproximator.getConnectors(graph, ext, weighting);
+        assertEquals(2, connectors.lons.length);
+        assertEquals(0.001, connectors.lons[0], 1e-6);
+        assertEquals(0.002, connectors.lons[1], 1e-6);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IndoorExtension;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimeRestrictionWeightingTest {
+    private final EncodingManager em = new EncodingManager("indoor");
+    private final FlagEncoder encoder = em.getEncoder("indoor");
+
+    @Test
+    public void testClosedEdgesAreBlocked() {
+        GraphHopperStorage graph = new GraphBuilder(em).create();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        EdgeIteratorState footway = graph.edge(0, 1, 10, true);
+        EdgeIteratorState door = graph.edge(1, 2, 10, true);
+        // open on monday from 08:00 until 09:00
+        long[] open = new long[IndoorExtension.TIME_MASK_LONGS];
+        for (int slot = 8 * 60 / IndoorExtension.TIME_SLOT_MINUTES; slot < 9 * 60 / IndoorExtension.TIME_SLOT_MINUTES; slot++) {
+            open[slot >>> 6] |= 1L << slot;
+        }
+        ext.setTimeRestriction(door.getEdge(), open);
+
+        Weighting fastest = new FastestWeighting(encoder);
+        Weighting weighting = new TimeRestrictionWeighting(fastest, ext, TimeRestrictionWeighting.parseTimeSlot("2017-06-05T08:30"));
+        assertEquals(fastest.calcWeight(door, false, EdgeIterator.NO_EDGE), weighting.calcWeight(door, false, EdgeIterator.NO_EDGE), 1e-6);
+
+        weighting = new TimeRestrictionWeighting(fastest, ext, TimeRestrictionWeighting.parseTimeSlot("2017-06-05T09:00"));
+        assertTrue(Double.isInfinite(weighting.calcWeight(door, false, EdgeIterator.NO_EDGE)));
+        assertFalse(Double.isInfinite(weighting.calcWeight(footway, false, EdgeIterator.NO_EDGE)));
+        assertEquals("time_restriction|fastest|indoor", weighting.toString());
+    }
+
+    @Test
+    public void testParseTimeSlot() {
+        // a wednesday
+        assertEquals((2 * 24 * 60 + 18 * 60 + 30) / IndoorExtension.TIME_SLOT_MINUTES,
+                TimeRestrictionWeighting.parseTimeSlot("2017-06-07T18:30"));
+        assertEquals(TimeRestrictionWeighting.parseTimeSlot("2017-06-07T18:30"),
+                TimeRestrictionWeighting.parseTimeSlot("2017-06-07T18:30:59"));
+        try {
+            TimeRestrictionWeighting.parseTimeSlot("18:30");
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
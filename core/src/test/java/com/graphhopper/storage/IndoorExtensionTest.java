@@ -0,0 +1,194 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.EdgeIteratorIndoor;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.IndoorFlagEncoder;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class IndoorExtensionTest {
+    private final String location = "./target/graphstorage-indoor";
+
+    @Before
+    @After
+    public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testParseLevelRange() {
+        long range = IndoorExtension.parseLevelRange("-1;0;2");
+        assertEquals(-10, IndoorExtension.getMinCode(range));
+        assertEquals(20, IndoorExtension.getMaxCode(range));
+
+        range = IndoorExtension.parseLevelRange("0.5");
+        assertEquals(5, IndoorExtension.getMinCode(range));
+        assertEquals(5, IndoorExtension.getMaxCode(range));
+
+        range = IndoorExtension.parseLevelRange("M;1");
+        assertEquals(10, IndoorExtension.getMinCode(range));
+        assertEquals(10, IndoorExtension.getMaxCode(range));
+
+        assertEquals(Long.MIN_VALUE, IndoorExtension.parseLevelRange("M"));
+        assertEquals(Long.MIN_VALUE, IndoorExtension.parseLevelRange(""));
+        assertEquals(Long.MIN_VALUE, IndoorExtension.parseLevelRange("1e9"));
+    }
+
+    @Test
+    public void testLevelConversion() {
+        assertEquals(0, IndoorExtension.toLevel(5));
+        assertEquals(-1, IndoorExtension.toLevel(-5));
+        assertEquals(-1, IndoorExtension.toLevel(-10));
+        assertEquals("0.5", IndoorExtension.toLevelString(5));
+        assertEquals("-2", IndoorExtension.toLevelString(-20));
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        EncodingManager em = new EncodingManager("indoor");
+        GraphHopperStorage graph = new GraphBuilder(em).setLocation(location).setStore(true).create();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        ((EdgeIteratorIndoor) graph.edge(0, 1, 10, true)).setLevel("0.5");
+        ((EdgeIteratorIndoor) graph.edge(1, 2, 10, true)).setLevel("0;1;2");
+        ((EdgeIteratorIndoor) graph.edge(2, 3, 10, true)).setLevel("2");
+        assertEquals(0.5, ext.getLevelValue(0), 1e-6);
+        assertEquals(0, ext.getLevel(1));
+        assertEquals(2, ext.getLevel(2));
+        assertEquals(0, ext.getMinLevel(1), 1e-6);
+        assertEquals(2, ext.getMaxLevel(1), 1e-6);
+        // never stored
+        assertEquals(0, ext.getLevel(100));
+        graph.flush();
+        graph.close();
+
+        graph = new GraphBuilder(em).setLocation(location).setStore(true).load();
+        ext = (IndoorExtension) graph.getExtension();
+        assertEquals(5, ext.getLevelCode(1));
+        assertEquals(20, ext.getLevelCode(3));
+        assertEquals(0, ext.getMinLevelCode(1));
+        assertEquals(20, ext.getMaxLevelCode(1));
+        assertEquals(20, ext.getMinLevelCode(2));
+        graph.close();
+    }
+
+    @Test
+    public void testMultiLevelWayIsLevelTransition() {
+        EncodingManager em = new EncodingManager("indoor");
+        GraphHopperStorage graph = new GraphBuilder(em).create();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        EdgeIteratorIndoor corridor = (EdgeIteratorIndoor) graph.edge(0, 1, 10, true);
+        corridor.setLevel("1");
+        ((EdgeIteratorIndoor) graph.edge(2, 3, 10, true)).setLevel("1");
+        // an elevator whose nodes are shared with the corridors of level 1
+        EdgeIteratorIndoor elevator = (EdgeIteratorIndoor) graph.edge(1, 2, 5, true);
+        elevator.setLevel("0;1;2");
+        assertEquals(1, ext.getLevel(1));
+        assertEquals(1, ext.getLevel(2));
+        assertTrue(elevator.isLevelTransition());
+        assertEquals("0;2", elevator.getLevel());
+        assertFalse(corridor.isLevelTransition());
+        assertEquals("1", corridor.getLevel());
+        assertArrayEquals(new int[]{elevator.getEdge()}, ext.getLevelTransitionEdges());
+        graph.close();
+    }
+
+    @Test
+    public void testLevelCodeDeltaIsStoredInFlags() {
+        EncodingManager em = new EncodingManager("indoor");
+        IndoorFlagEncoder encoder = (IndoorFlagEncoder) em.getEncoder("indoor");
+        GraphHopperStorage graph = new GraphBuilder(em).create();
+        EdgeIteratorIndoor stairs = (EdgeIteratorIndoor) graph.edge(0, 1, 10, true);
+        EdgeIteratorIndoor corridor = (EdgeIteratorIndoor) graph.edge(1, 2, 10, true);
+        corridor.setLevel("1");
+        assertEquals(10, encoder.getLevelCodeDelta(graph.getEdgeIteratorState(stairs.getEdge(), 1).getFlags()));
+        assertEquals(0, encoder.getLevelCodeDelta(graph.getEdgeIteratorState(corridor.getEdge(), 2).getFlags()));
+
+        // the elevator spans more levels than its nodes are apart
+        EdgeIteratorIndoor elevator = (EdgeIteratorIndoor) graph.edge(2, 3, 5, true);
+        ((EdgeIteratorIndoor) graph.edge(3, 4, 10, true)).setLevel("1");
+        elevator.setLevel("0;1;2");
+        assertEquals(20, encoder.getLevelCodeDelta(graph.getEdgeIteratorState(elevator.getEdge(), 3).getFlags()));
+
+        // a changed node level updates all of its edges
+        ((IndoorExtension) graph.getExtension()).setLevelCode(0, 10);
+        assertEquals(0, encoder.getLevelCodeDelta(graph.getEdgeIteratorState(stairs.getEdge(), 1).getFlags()));
+        graph.close();
+    }
+
+    @Test
+    public void testTimeRestrictions() {
+        EncodingManager em = new EncodingManager("indoor");
+        GraphHopperStorage graph = new GraphBuilder(em).setLocation(location).setStore(true).create();
+        IndoorExtension ext = (IndoorExtension) graph.getExtension();
+        long[] morning = new long[IndoorExtension.TIME_MASK_LONGS];
+        morning[0] = 0xFFFFL;
+        long[] alwaysOpen = new long[IndoorExtension.TIME_MASK_LONGS];
+        Arrays.fill(alwaysOpen, -1L);
+        ((EdgeIteratorIndoor) graph.edge(0, 1, 10, true)).setTimeRestriction(morning);
+        graph.edge(1, 2, 10, true);
+        ((EdgeIteratorIndoor) graph.edge(2, 3, 10, true)).setTimeRestriction(morning);
+        ((EdgeIteratorIndoor) graph.edge(3, 4, 10, true)).setTimeRestriction(alwaysOpen);
+        assertEquals(1, ext.getTimeRestriction(0));
+        assertEquals(0, ext.getTimeRestriction(1));
+        assertEquals(1, ext.getTimeRestriction(2));
+        assertEquals(0, ext.getTimeRestriction(3));
+        assertTrue(IndoorExtension.isOpen(ext.getOpenTimeRestrictions(15), 1));
+        assertFalse(IndoorExtension.isOpen(ext.getOpenTimeRestrictions(16), 1));
+        assertTrue(IndoorExtension.isOpen(ext.getOpenTimeRestrictions(16), 0));
+        graph.flush();
+        graph.close();
+
+        graph = new GraphBuilder(em).setLocation(location).setStore(true).load();
+        ext = (IndoorExtension) graph.getExtension();
+        assertEquals(1, ext.getTimeRestriction(2));
+        assertTrue(IndoorExtension.isOpen(ext.getOpenTimeRestrictions(0), 1));
+        assertFalse(IndoorExtension.isOpen(ext.getOpenTimeRestrictions(100), 1));
+
+        // identical masks share the ID also after loading
+        long[] evening = new long[IndoorExtension.TIME_MASK_LONGS];
+        evening[1] = 1L;
+        ext.setTimeRestriction(1, morning);
+        ext.setTimeRestriction(3, evening);
+        assertEquals(1, ext.getTimeRestriction(1));
+        assertEquals(2, ext.getTimeRestriction(3));
+        assertTrue(IndoorExtension.isOpen(ext.getOpenTimeRestrictions(64), 2));
+        graph.close();
+    }
+
+    @Test
+    public void testGetTimeSlot() {
+        Calendar calendar = Calendar.getInstance(Helper.UTC);
+        // a monday
+        calendar.set(2017, Calendar.JUNE, 5, 0, 4);
+        assertEquals(0, IndoorExtension.getTimeSlot(calendar));
+        calendar.set(2017, Calendar.JUNE, 11, 23, 59);
+        assertEquals(IndoorExtension.TIME_SLOTS - 1, IndoorExtension.getTimeSlot(calendar));
+        calendar.set(2017, Calendar.JUNE, 7, 18, 30);
+        assertEquals((2 * 24 * 60 + 18 * 60 + 30) / IndoorExtension.TIME_SLOT_MINUTES, IndoorExtension.getTimeSlot(calendar));
+    }
+}
@@ -17,6 +17,10 @@
  */
 package com.graphhopper.storage;
 
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
 /**
  * @author Peter Karich
  */
@@ -30,4 +34,36 @@ public class RAMIntDataAccessTest extends DataAccessTest {
     public void testSet_GetBytes() {
         // should we implement this?
     }
+
+    @Test
+    public void testCopyOnWrite() {
+        RAMIntDataAccess da1 = (RAMIntDataAccess) createDataAccess(name);
+        da1.create(128 * 3);
+        da1.setInt(4, 1);
+        da1.setInt(128 + 4, 2);
+
+        RAMIntDataAccess da2 = (RAMIntDataAccess) createDataAccess(name + "2");
+        da2.create(10);
+        da1.copyTo(da2);
+        assertTrue(da1.isShared(0));
+        assertTrue(da2.isShared(1));
+
+        // only the written segment is cloned
+        da2.setInt(4, 3);
+        assertFalse(da2.isShared(0));
+        assertTrue(da2.isShared(1));
+        assertEquals(1, da1.getInt(4));
+        assertEquals(3, da2.getInt(4));
+
+        da1.setInt(128 + 4, 4);
+        assertFalse(da1.isShared(1));
+        assertEquals(2, da2.getInt(128 + 4));
+        assertEquals(4, da1.getInt(128 + 4));
+
+        // new segments are never shared
+        da2.ensureCapacity(128 * 4);
+        assertFalse(da2.isShared(3));
+        da1.close();
+        da2.close();
+    }
 }
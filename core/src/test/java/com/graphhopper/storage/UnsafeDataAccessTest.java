@@ -23,6 +23,7 @@ import org.junit.Test;
 import java.nio.ByteOrder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Peter Karich
@@ -33,14 +34,35 @@ public class UnsafeDataAccessTest extends DataAccessTest {
         return new UnsafeDataAccess(name, directory, defaultOrder).setSegmentSize(128);
     }
 
-    @Override
-    public void testExceptionIfNoEnsureCapacityWasCalled() {
-        // SKIP as unsafe failes with SIGSEGV and not with an exception!
+    @Test
+    public void testFind() {
+        GHDirectory dir = new GHDirectory(directory, DAType.UNSAFE_STORE);
+        DataAccess da = dir.find("test");
+        if (UnsafeDataAccess.isAvailable(dir.getByteOrder()))
+            assertTrue(da instanceof UnsafeDataAccess);
+        else
+            assertTrue(da instanceof RAMDataAccess);
+        // no exception for the second call although it could be a fallback
+        assertTrue(da == dir.find("test"));
+        dir.clear();
     }
 
-    @Override
-    public void testBoundsCheck() {
-        // SKIP as unsafe has no bounds checks
+    @Test
+    public void testCopyToKeepsOnlyCapacity() {
+        DataAccess da = createDataAccess(name);
+        da.create(128 * 4);
+        da.setInt(3 * 128, 12);
+        da.setHeader(4, 7);
+
+        DataAccess copy = createDataAccess(name + "copy");
+        copy.create(128 * 10);
+        copy.setInt(9 * 128, 34);
+        da.copyTo(copy);
+        assertEquals(4, copy.getSegments());
+        assertEquals(12, copy.getInt(3 * 128));
+        assertEquals(7, copy.getHeader(4));
+        da.close();
+        copy.close();
     }
 
     @Test
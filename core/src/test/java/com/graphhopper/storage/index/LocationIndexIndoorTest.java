@@ -0,0 +1,125 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EdgeFilterIndoor;
+import com.graphhopper.routing.util.EdgeIteratorIndoor;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class LocationIndexIndoorTest {
+    private final String location = "./target/tmp-indoor-index";
+
+    @Before
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    GraphHopperStorage createGraph() {
+        GraphHopperStorage graph = new GraphBuilder(new EncodingManager("indoor")).create();
+        NodeAccess na = graph.getNodeAccess();
+        // the same corridor on level 0 and 1, connected via stairs
+        na.setNode(0, 50.8410, 12.9270);
+        na.setNode(1, 50.8410, 12.9280);
+        na.setNode(2, 50.8411, 12.9270);
+        na.setNode(3, 50.8411, 12.9280);
+        ((EdgeIteratorIndoor) graph.edge(0, 1, 70, true)).setLevel("0");
+        ((EdgeIteratorIndoor) graph.edge(2, 3, 70, true)).setLevel("1");
+        ((EdgeIteratorIndoor) graph.edge(1, 3, 10, true)).setLevel("0;1");
+        graph.getProperties().put("levels", "[0, 1, 0.5]");
+        return graph;
+    }
+
+    @Test
+    public void testFindClosestOnLevel() {
+        GraphHopperStorage graph = createGraph();
+        LocationIndexIndoor index = new LocationIndexIndoor(graph, new RAMDirectory());
+        index.prepareIndex();
+        assertArrayEquals(new int[]{0, 1}, index.getLevels());
+
+        // closer to level 1 geometrically but level 0 is requested
+        QueryResult res = index.findClosest(50.84109, 12.9275, new EdgeFilterIndoor(0));
+        assertTrue(res.isValid());
+        assertEquals(0, res.getClosestEdge().getEdge());
+
+        res = index.findClosest(50.84101, 12.9275, new EdgeFilterIndoor(1));
+        assertEquals(1, res.getClosestEdge().getEdge());
+
+        assertFalse(index.findClosest(50.8410, 12.9275, new EdgeFilterIndoor(2)).isValid());
+
+        // without a level the closest edge of all levels is returned
+        res = index.findClosest(50.84109, 12.9275, EdgeFilter.ALL_EDGES);
+        assertEquals(1, res.getClosestEdge().getEdge());
+    }
+
+    @Test
+    public void testLevelTransitionsInTreesOfTouchedLevels() {
+        GraphHopperStorage graph = createGraph();
+        // an elevator from level 0 to 2 next to the corridors, both of its nodes are on level 0
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(4, 50.8410, 12.9290);
+        na.setNode(5, 50.8410, 12.9291);
+        ((EdgeIteratorIndoor) graph.edge(1, 4, 10, true)).setLevel("0");
+        ((EdgeIteratorIndoor) graph.edge(4, 5, 1, true)).setLevel("0;1;2");
+        graph.getProperties().put("levels", "[0, 1, 2]");
+        LocationIndexIndoor index = new LocationIndexIndoor(graph, new RAMDirectory());
+        index.prepareIndex();
+
+        // the stairs are next to the query point and found without a level
+        QueryResult res = index.findClosest(50.84105, 12.92799, EdgeFilter.ALL_EDGES);
+        assertTrue(res.isValid());
+        assertEquals(2, res.getClosestEdge().getEdge());
+        // they are in the trees of both levels they connect
+        assertEquals(2, index.getIndex(0).findClosest(50.84105, 12.92799, EdgeFilter.ALL_EDGES).getClosestEdge().getEdge());
+        assertEquals(2, index.getIndex(1).findClosest(50.84105, 12.92799, EdgeFilter.ALL_EDGES).getClosestEdge().getEdge());
+        // but a lookup on a level still snaps onto the corridor
+        assertEquals(0, index.findClosest(50.84105, 12.92799, new EdgeFilterIndoor(0)).getClosestEdge().getEdge());
+
+        // the elevator passes level 1 and stops on level 2 although both of its nodes are on level 0
+        assertEquals(4, index.getIndex(1).findClosest(50.84101, 12.92905, EdgeFilter.ALL_EDGES).getClosestEdge().getEdge());
+        assertEquals(4, index.getIndex(2).findClosest(50.84101, 12.92905, EdgeFilter.ALL_EDGES).getClosestEdge().getEdge());
+    }
+
+    @Test
+    public void testLoadExisting() {
+        GraphHopperStorage graph = createGraph();
+        new File(location).mkdirs();
+        LocationIndexIndoor index = new LocationIndexIndoor(graph, new RAMDirectory(location, true));
+        index.prepareIndex();
+        index.flush();
+        index.close();
+
+        LocationIndexIndoor loaded = new LocationIndexIndoor(graph, new RAMDirectory(location, true));
+        assertTrue(loaded.loadExisting());
+        assertArrayEquals(new int[]{0, 1}, loaded.getLevels());
+        assertEquals(1, loaded.findClosest(50.84101, 12.9275, new EdgeFilterIndoor(1)).getClosestEdge().getEdge());
+    }
+}
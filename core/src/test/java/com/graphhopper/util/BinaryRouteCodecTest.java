@@ -0,0 +1,204 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryRouteCodecTest {
+    private final TranslationMap trMap = TranslationMapTest.SINGLETON;
+
+    private GHResponse createIndoorResponse() {
+        PointListIndoor points = new PointListIndoor();
+        points.add(49.4100011, 8.6700022, 0);
+        // a mezzanine between level 0 and 1
+        points.add(49.4100511, 8.6700522, Double.NaN, 0.5);
+        points.add(49.4101011, 8.6700522, 1);
+        points.add(49.4101011, 8.6701022, 1);
+        points.add(49.4101511, 8.6701022, -1);
+
+        InstructionList instructions = new InstructionList(trMap.getWithFallBack(Locale.US));
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "hall", InstructionAnnotation.EMPTY, points.copy(0, 2)).
+                setDistance(10).setTime(7000));
+        instructions.add(new Instruction(Instruction.TURN_LEFT, "stairs", InstructionAnnotation.EMPTY, points.copy(2, 4)).
+                setDistance(5.5).setTime(4000));
+        instructions.add(new FinishInstruction("", points.copy(4, 5), 0));
+
+        PointListIndoor waypoints = new PointListIndoor();
+        waypoints.add(49.4100011, 8.6700022, 0);
+        waypoints.add(49.4101511, 8.6701022, -1);
+
+        PathWrapper path = new PathWrapper();
+        path.setPoints(points);
+        path.setWaypoints(waypoints);
+        path.setInstructions(instructions);
+        path.setDistance(15.5).setTime(11000).setRouteWeight(12.25);
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        return rsp;
+    }
+
+    private GHResponse writeAndRead(GHResponse rsp, boolean calcPoints, boolean instructions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteCodec.write(rsp, calcPoints, instructions, false, out);
+        return BinaryRouteCodec.read(new ByteArrayInputStream(out.toByteArray()), true);
+    }
+
+    @Test
+    public void testIndoorRoundTrip() throws IOException {
+        GHResponse rsp = createIndoorResponse();
+        GHResponse result = writeAndRead(rsp, true, true);
+        assertEquals(1, result.getAll().size());
+
+        PathWrapper expected = rsp.getBest();
+        PathWrapper path = result.getBest();
+        assertEquals(15.5, path.getDistance(), 1e-9);
+        assertEquals(12.25, path.getRouteWeight(), 1e-9);
+        assertEquals(11000, path.getTime());
+
+        assertTrue(path.getPoints() instanceof PointListIndoor);
+        assertPointsEquals(expected.getPoints(), path.getPoints());
+        assertPointsEquals(expected.getWaypoints(), path.getWaypoints());
+        assertEquals(0.5, ((PointListIndoor) path.getPoints()).getLevel(1), 1e-9);
+
+        InstructionList instructions = path.getInstructions();
+        assertEquals(3, instructions.size());
+        assertEquals("Continue onto hall", instructions.get(0).getName());
+        assertEquals("Turn left onto stairs", instructions.get(1).getName());
+        assertEquals(Instruction.TURN_LEFT, instructions.get(1).getSign());
+        assertEquals(5.5, instructions.get(1).getDistance(), 1e-9);
+        assertEquals(4000, instructions.get(1).getTime());
+        assertEquals(2, instructions.get(1).getLength());
+        assertEquals(1, ((PointListIndoor) instructions.get(1).getPoints()).getLevel(0), 1e-9);
+        assertEquals(Instruction.FINISH, instructions.get(2).getSign());
+    }
+
+    @Test
+    public void testWithoutPoints() throws IOException {
+        PathWrapper path = writeAndRead(createIndoorResponse(), false, false).getBest();
+        assertEquals(15.5, path.getDistance(), 1e-9);
+        assertTrue(path.getPoints().isEmpty());
+        assertEquals(2, path.getWaypoints().getSize());
+    }
+
+    @Test
+    public void testInstructionsWithoutPoints() throws IOException {
+        PathWrapper path = writeAndRead(createIndoorResponse(), false, true).getBest();
+        assertTrue(path.getPoints().isEmpty());
+        InstructionList instructions = path.getInstructions();
+        assertEquals(3, instructions.size());
+        assertEquals(2, instructions.get(1).getLength());
+        assertEquals(1, ((PointListIndoor) instructions.get(1).getPoints()).getLevel(0), 1e-9);
+        assertEquals(Instruction.FINISH, instructions.get(2).getSign());
+    }
+
+    @Test
+    public void testStreetNames() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteCodec.write(createIndoorResponse(), true, true, false, out);
+        PathWrapper path = BinaryRouteCodec.read(new ByteArrayInputStream(out.toByteArray()), false).getBest();
+        assertEquals("stairs", path.getInstructions().get(1).getName());
+    }
+
+    @Test
+    public void testInstructionWithoutName() throws IOException {
+        GHResponse rsp = createIndoorResponse();
+        InstructionList instructions = rsp.getBest().getInstructions();
+        instructions.set(1, new Instruction(Instruction.TURN_RIGHT, null, InstructionAnnotation.EMPTY,
+                instructions.get(1).getPoints()).setDistance(5.5).setTime(4000));
+
+        Instruction instruction = writeAndRead(rsp, true, true).getBest().getInstructions().get(1);
+        assertEquals("Turn right", instruction.getName());
+        assertEquals(5.5, instruction.getDistance(), 1e-9);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteCodec.write(rsp, true, true, false, out);
+        instruction = BinaryRouteCodec.read(new ByteArrayInputStream(out.toByteArray()), false).getBest().getInstructions().get(1);
+        assertNull(instruction.getName());
+        assertEquals(Instruction.TURN_RIGHT, instruction.getSign());
+    }
+
+    @Test
+    public void test3DPoints() throws IOException {
+        PointList points = new PointList(3, true);
+        points.add(49.41, 8.67, 101.5);
+        points.add(49.42, 8.66, 99.25);
+        points.add(-33.86, 151.2, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteCodec.writePoints(new DataOutputStream(out), points, true);
+        PointList result = BinaryRouteCodec.readPoints(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertTrue(result.is3D());
+        assertPointsEquals(points, result);
+    }
+
+    @Test
+    public void testVarLong() throws IOException {
+        long[] values = {0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(out);
+        for (long value : values) {
+            BinaryRouteCodec.writeVarLong(dos, value);
+        }
+        // small values need a single byte
+        assertEquals(1, encode(-64).length);
+        assertEquals(2, encode(64).length);
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, BinaryRouteCodec.readVarLong(dis));
+        }
+    }
+
+    private void assertPointsEquals(PointList expected, PointList points) {
+        assertEquals(expected.getSize(), points.getSize());
+        for (int i = 0; i < expected.getSize(); i++) {
+            // coordinates are stored with a precision of 1e-6
+            assertEquals(expected.getLat(i), points.getLat(i), 1e-6);
+            assertEquals(expected.getLon(i), points.getLon(i), 1e-6);
+            if (expected.is3D())
+                assertEquals(expected.getEle(i), points.getEle(i), 1e-2);
+            if (expected instanceof PointListIndoor)
+                assertEquals(((PointListIndoor) expected).getLevel(i), ((PointListIndoor) points).getLevel(i), 1e-9);
+        }
+    }
+
+    private byte[] encode(long value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteCodec.writeVarLong(new DataOutputStream(out), value);
+        return out.toByteArray();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorsAreNotWritten() throws IOException {
+        GHResponse rsp = new GHResponse();
+        rsp.addError(new IllegalStateException("no route"));
+        BinaryRouteCodec.write(rsp, true, true, false, new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DouglasPeuckerIndoorTest {
+
+    private PointListIndoor createPoints(int levelChangeIndex) {
+        PointList pointList = new PointList();
+        pointList.parse2DJSON(new DouglasPeuckerTest().points1);
+        int[] levels = new int[pointList.getSize()];
+        for (int i = levelChangeIndex; i < levels.length; i++) {
+            levels[i] = 1;
+        }
+        return new PointListIndoor(pointList, levels);
+    }
+
+    @Test
+    public void testSameLevel() {
+        PointListIndoor points = createPoints(Integer.MAX_VALUE);
+        PointList expected = points.clone(false);
+        new DouglasPeucker().setMaxDistance(.5).simplify(expected);
+
+        new DouglasPeuckerIndoor().setMaxDistance(.5).simplify(points);
+        assertEquals(20, points.getSize());
+        assertEquals(expected.toString(), points.toString());
+    }
+
+    @Test
+    public void testKeepLevelChange() {
+        PointListIndoor original = createPoints(13);
+        PointListIndoor points = createPoints(13);
+        int removed = new DouglasPeuckerIndoor().setMaxDistance(.5).simplify(points);
+        assertEquals(original.getSize() - removed, points.getSize());
+
+        // the last point on level 0 and the first point on level 1 must survive
+        int changes = 0;
+        for (int i = 1; i < points.getSize(); i++) {
+            if (points.getLevel(i - 1) != points.getLevel(i)) {
+                changes++;
+                assertEquals(original.getLatitude(12), points.getLatitude(i - 1), 1e-8);
+                assertEquals(original.getLatitude(13), points.getLatitude(i), 1e-8);
+            }
+        }
+        assertEquals(1, changes);
+        assertEquals(0, points.getLevel(0), 1e-9);
+        assertEquals(1, points.getLevel(points.getSize() - 1), 1e-9);
+        assertEquals(original.getLatitude(original.getSize() - 1), points.getLatitude(points.getSize() - 1), 1e-8);
+    }
+
+    @Test
+    public void testSimplifyPartAndKeepTail() {
+        PointListIndoor original = createPoints(20);
+        PointListIndoor points = createPoints(20);
+        int removed = new DouglasPeuckerIndoor().setMaxDistance(.5).simplify(points, 0, 10);
+        assertTrue(removed > 0);
+        assertEquals(original.getSize() - removed, points.getSize());
+        assertEquals(original.getLatitude(10), points.getLatitude(10 - removed), 1e-8);
+        // all points after the simplified part are unchanged
+        for (int i = 11; i < original.getSize(); i++) {
+            assertEquals(original.getLatitude(i), points.getLatitude(i - removed), 1e-8);
+            assertEquals(original.getLevel(i), points.getLevel(i - removed), 1e-9);
+        }
+    }
+}
@@ -18,7 +18,7 @@
 
 package com.graphhopper.reader.gtfs;
 
-import com.google.common.collect.ArrayListMultimap;
+import com.carrotsearch.hppc.IntIntHashMap;
 import com.graphhopper.routing.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.storage.Graph;
@@ -30,70 +30,139 @@ import com.graphhopper.util.EdgeIteratorState;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Spliterators;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 final class GraphExplorer {
 
-    private final EdgeExplorer edgeExplorer;
+    private final DefaultEdgeFilter edgeFilter;
     private final PtFlagEncoder flagEncoder;
     private final GtfsStorage gtfsStorage;
     private final RealtimeFeed realtimeFeed;
     private final boolean reverse;
     private final PtTravelTimeWeighting weighting;
-    private final List<EdgeIteratorState> extraEdges = new ArrayList<>();
-    private final ArrayListMultimap<Integer, VirtualEdgeIteratorState> extraEdgesBySource = ArrayListMultimap.create();
-    private final ArrayListMultimap<Integer, VirtualEdgeIteratorState> extraEdgesByDestination = ArrayListMultimap.create();
+    // the extra edges as passed in and the edges in search direction, i.e. reversed for a reverse search
+    private final VirtualEdgeIteratorState[] extraEdges;
+    private final VirtualEdgeIteratorState[] extraEdgesInSearchDirection;
+    // adjacency lists of the extra edges: the first index per node and the next index per edge, -1 marks the end
+    private final IntIntHashMap firstExtraEdgeByNode = new IntIntHashMap();
+    private final int[] nextExtraEdge;
+    private final IntIntHashMap extraEdgeByEdgeId = new IntIntHashMap();
     private final Graph graph;
     private final boolean walkOnly;
 
 
     GraphExplorer(Graph graph, PtTravelTimeWeighting weighting, PtFlagEncoder flagEncoder, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, boolean reverse, List<VirtualEdgeIteratorState> extraEdges, boolean walkOnly) {
         this.graph = graph;
-        this.edgeExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, reverse, !reverse));
+        this.edgeFilter = new DefaultEdgeFilter(flagEncoder, reverse, !reverse);
         this.flagEncoder = flagEncoder;
         this.weighting = weighting;
         this.gtfsStorage = gtfsStorage;
         this.realtimeFeed = realtimeFeed;
         this.reverse = reverse;
-        this.extraEdges.addAll(extraEdges);
-        for (VirtualEdgeIteratorState extraEdge : extraEdges) {
+        this.extraEdges = extraEdges.toArray(new VirtualEdgeIteratorState[extraEdges.size()]);
+        this.extraEdgesInSearchDirection = new VirtualEdgeIteratorState[this.extraEdges.length];
+        this.nextExtraEdge = new int[this.extraEdges.length];
+        // iterate backwards so that the adjacency lists keep the order of the extra edges
+        for (int i = this.extraEdges.length - 1; i >= 0; i--) {
+            VirtualEdgeIteratorState extraEdge = this.extraEdges[i];
             if (extraEdge == null) {
                 throw new RuntimeException();
             }
-            extraEdgesBySource.put(extraEdge.getBaseNode(), extraEdge);
-            extraEdgesByDestination.put(extraEdge.getAdjNode(), new VirtualEdgeIteratorState(extraEdge.getOriginalTraversalKey(), extraEdge.getEdge(), extraEdge.getAdjNode(), extraEdge.getBaseNode(), extraEdge.getDistance(), extraEdge.getFlags(), extraEdge.getName(), extraEdge.fetchWayGeometry(3)));
+            if (reverse) {
+                extraEdgesInSearchDirection[i] = new VirtualEdgeIteratorState(extraEdge.getOriginalTraversalKey(), extraEdge.getEdge(), extraEdge.getAdjNode(), extraEdge.getBaseNode(), extraEdge.getDistance(), extraEdge.getFlags(), extraEdge.getName(), extraEdge.fetchWayGeometry(3));
+            } else {
+                extraEdgesInSearchDirection[i] = extraEdge;
+            }
+            int node = extraEdgesInSearchDirection[i].getBaseNode();
+            nextExtraEdge[i] = firstExtraEdgeByNode.getOrDefault(node, -1);
+            firstExtraEdgeByNode.put(node, i);
+        }
+        for (int i = 0; i < this.extraEdges.length; i++) {
+            if (!extraEdgeByEdgeId.containsKey(this.extraEdges[i].getEdge())) {
+                extraEdgeByEdgeId.put(this.extraEdges[i].getEdge(), i);
+            }
         }
         this.walkOnly = walkOnly;
     }
 
-    Stream<EdgeIteratorState> exploreEdgesAround(Label label) {
-        final List<VirtualEdgeIteratorState> extraEdges = reverse ? extraEdgesByDestination.get(label.adjNode) : extraEdgesBySource.get(label.adjNode);
-        return Stream.concat(
-                label.adjNode < graph.getNodes() ? mainEdgesAround(label) : Stream.empty(),
-                extraEdges.stream()).filter(new EdgeIteratorStatePredicate(label));
+    /**
+     * Creates a cursor over the edges which can be traversed from a label. Every cursor has its own
+     * edge explorer, so a search should create one cursor and reset it for every label.
+     */
+    EdgeCursor createEdgeCursor() {
+        return new EdgeCursor(graph.createEdgeExplorer(edgeFilter));
     }
 
-    private Stream<EdgeIteratorState> mainEdgesAround(Label label) {
+    /**
+     * Stream based variant of {@link EdgeCursor}. It creates a new cursor for every call, so use a
+     * cursor where many labels are explored.
+     */
+    Stream<EdgeIteratorState> exploreEdgesAround(Label label) {
+        final EdgeCursor cursor = createEdgeCursor().reset(label);
         return StreamSupport.stream(new Spliterators.AbstractSpliterator<EdgeIteratorState>(0, 0) {
-            EdgeIterator edgeIterator = edgeExplorer.setBaseNode(label.adjNode);
-
             @Override
             public boolean tryAdvance(Consumer<? super EdgeIteratorState> action) {
-                if (edgeIterator.next()) {
-                    action.accept(edgeIterator);
+                if (cursor.next()) {
+                    action.accept(cursor.edge());
                     return true;
                 }
                 return false;
             }
+        }, false);
+    }
 
+    /**
+     * Iterates over the edges of the graph and the extra edges around the node of a label and
+     * skips edges which cannot be traversed at the time of the label. The returned edge is only
+     * valid until the next call of next.
+     */
+    final class EdgeCursor {
+        private final EdgeExplorer cursorExplorer;
+        private Label label;
+        private EdgeIterator mainEdges;
+        private int nextExtraEdgeIndex;
+        private EdgeIteratorState edge;
 
-        }, false);
+        private EdgeCursor(EdgeExplorer cursorExplorer) {
+            this.cursorExplorer = cursorExplorer;
+        }
+
+        EdgeCursor reset(Label label) {
+            this.label = label;
+            this.mainEdges = label.adjNode < graph.getNodes() ? cursorExplorer.setBaseNode(label.adjNode) : null;
+            this.nextExtraEdgeIndex = firstExtraEdgeByNode.getOrDefault(label.adjNode, -1);
+            this.edge = null;
+            return this;
+        }
+
+        boolean next() {
+            while (mainEdges != null) {
+                if (!mainEdges.next()) {
+                    mainEdges = null;
+                } else if (accept(label, mainEdges)) {
+                    edge = mainEdges;
+                    return true;
+                }
+            }
+            while (nextExtraEdgeIndex >= 0) {
+                VirtualEdgeIteratorState extraEdge = extraEdgesInSearchDirection[nextExtraEdgeIndex];
+                nextExtraEdgeIndex = nextExtraEdge[nextExtraEdgeIndex];
+                if (accept(label, extraEdge)) {
+                    edge = extraEdge;
+                    return true;
+                }
+            }
+            edge = null;
+            return false;
+        }
+
+        EdgeIteratorState edge() {
+            return edge;
+        }
     }
 
     long calcTravelTimeMillis(EdgeIteratorState edge, long earliestStartTime) {
@@ -160,9 +229,8 @@ final class GraphExplorer {
         if (edgeId == -1) {
             throw new RuntimeException();
         }
-        return extraEdges.stream()
-                .filter(edge -> edge.getEdge() == edgeId)
-                .findFirst().orElseGet(() -> graph.getEdgeIteratorState(edgeId, adjNode));
+        int index = extraEdgeByEdgeId.getOrDefault(edgeId, -1);
+        return index >= 0 ? extraEdges[index] : graph.getEdgeIteratorState(edgeId, adjNode);
     }
 
     NodeAccess getNodeAccess() {
@@ -173,37 +241,26 @@ final class GraphExplorer {
         return graph;
     }
 
-    private class EdgeIteratorStatePredicate implements Predicate<EdgeIteratorState> {
-        private final Label label;
-        boolean foundEnteredTimeExpandedNetworkEdge;
-
-        EdgeIteratorStatePredicate(Label label) {
-            this.label = label;
-            foundEnteredTimeExpandedNetworkEdge = false;
+    private boolean accept(Label label, EdgeIteratorState edgeIterator) {
+        final GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edgeIterator.getFlags());
+        if (walkOnly && edgeType != GtfsStorage.EdgeType.HIGHWAY && edgeType != (reverse ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT)) {
+            return false;
         }
-
-        @Override
-        public boolean test(EdgeIteratorState edgeIterator) {
-            final GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edgeIterator.getFlags());
-            if (walkOnly && edgeType != GtfsStorage.EdgeType.HIGHWAY && edgeType != (reverse ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT)) {
-                return false;
-            }
-            if (!isValidOn(edgeIterator, label.currentTime)) {
+        if (!isValidOn(edgeIterator, label.currentTime)) {
+            return false;
+        }
+        if (edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL && !reverse) {
+            return false;
+        }
+        if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK && !reverse) {
+            if (secondsOnTrafficDay(edgeIterator, label.currentTime) > flagEncoder.getTime(edgeIterator.getFlags())) {
                 return false;
             }
-            if (edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL && !reverse) {
+        } else if (edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && reverse) {
+            if (secondsOnTrafficDay(edgeIterator, label.currentTime) < flagEncoder.getTime(edgeIterator.getFlags())) {
                 return false;
             }
-            if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK && !reverse) {
-                if (secondsOnTrafficDay(edgeIterator, label.currentTime) > flagEncoder.getTime(edgeIterator.getFlags())) {
-                    return false;
-                }
-            } else if (edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && reverse) {
-                if (secondsOnTrafficDay(edgeIterator, label.currentTime) < flagEncoder.getTime(edgeIterator.getFlags())) {
-                    return false;
-                }
-            }
-            return true;
         }
+        return true;
     }
 }
@@ -35,9 +35,11 @@ import com.graphhopper.util.shapes.GHPoint;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipFile;
@@ -65,6 +67,17 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             return new GraphHopperGtfs(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, RealtimeFeed.fromProtobuf(graphHopperStorage, gtfsStorage, flagEncoder, realtimeFeed));
         }
 
+        /**
+         * Every request uses the version of the realtime overlay which is current when it starts.
+         */
+        public GraphHopperGtfs createWith(RealtimeFeedUpdater realtimeFeedUpdater) {
+            return new GraphHopperGtfs(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, realtimeFeedUpdater::getRealtimeFeed);
+        }
+
+        public RealtimeFeedUpdater createRealtimeFeedUpdater() {
+            return new RealtimeFeedUpdater(graphHopperStorage, gtfsStorage, flagEncoder);
+        }
+
         public GraphHopperGtfs createWithoutRealtimeFeed() {
             return new GraphHopperGtfs(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, RealtimeFeed.empty(gtfsStorage));
         }
@@ -79,14 +92,15 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
     private final GraphHopperStorage graphHopperStorage;
     private final LocationIndex locationIndex;
     private final GtfsStorage gtfsStorage;
-    private final RealtimeFeed realtimeFeed;
-    private final TripFromLabel tripFromLabel;
+    private final Supplier<RealtimeFeed> realtimeFeedSupplier;
+    private final ProfileQueryCache profileQueryCache = new ProfileQueryCache(1000, Duration.ofMinutes(5));
 
     private class RequestHandler {
         private final int maxVisitedNodesForRequest;
         private final int limitSolutions;
         private final Instant initialTime;
         private final boolean profileQuery;
+        private final Duration profileDuration;
         private final boolean separateWalkQuery = true;
         private final boolean arriveBy;
         private final boolean ignoreTransfers;
@@ -96,7 +110,12 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
         private final PtTravelTimeWeighting weighting;
         private final GHPoint enter;
         private final GHPoint exit;
+        private final Locale locale;
+        // the hints which determine the result of the bucket search of routeWithCache
+        private final Map<String, String> cacheKeyHints;
         private final Translation translation;
+        private final RealtimeFeed realtimeFeed = realtimeFeedSupplier.get();
+        private final TripFromLabel tripFromLabel = new TripFromLabel(gtfsStorage, realtimeFeed);
         private final List<VirtualEdgeIteratorState> extraEdges = new ArrayList<>(realtimeFeed.getAdditionalEdges());
         private final Map<Integer, PathWrapper> walkPaths = new HashMap<>();
 
@@ -104,12 +123,22 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
         private final Graph graphWithExtraEdges = new WrapperGraph(graphHopperStorage, extraEdges);
         private QueryGraph queryGraph = new QueryGraph(graphWithExtraEdges);
         private GraphExplorer graphExplorer;
+        private int originStationNode = -1;
 
         RequestHandler(GHRequest request) {
             maxVisitedNodesForRequest = request.getHints().getInt(Parameters.Routing.MAX_VISITED_NODES, 1_000_000);
-            profileQuery = request.getHints().getBool(PROFILE_QUERY, false);
+            final String profileDurationString = request.getHints().get(Parameters.PT.PROFILE_DURATION, "");
+            try {
+                profileDuration = profileDurationString.isEmpty() ? null : Duration.parse(profileDurationString);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException(String.format(Locale.ROOT, "Illegal value for parameter %s: [%s]", Parameters.PT.PROFILE_DURATION, profileDurationString));
+            }
+            if (profileDuration != null && profileDuration.isNegative()) {
+                throw new IllegalArgumentException(String.format(Locale.ROOT, "Illegal value for parameter %s: [%s]", Parameters.PT.PROFILE_DURATION, profileDurationString));
+            }
+            profileQuery = profileDuration != null || request.getHints().getBool(PROFILE_QUERY, false);
             ignoreTransfers = request.getHints().getBool(Parameters.PT.IGNORE_TRANSFERS, profileQuery);
-            limitSolutions = request.getHints().getInt(Parameters.PT.LIMIT_SOLUTIONS, profileQuery ? 5 : ignoreTransfers ? 1 : Integer.MAX_VALUE);
+            limitSolutions = request.getHints().getInt(Parameters.PT.LIMIT_SOLUTIONS, profileDuration != null ? Integer.MAX_VALUE : profileQuery ? 5 : ignoreTransfers ? 1 : Integer.MAX_VALUE);
             final String departureTimeString = request.getHints().get(Parameters.PT.EARLIEST_DEPARTURE_TIME, "");
             try {
                 initialTime = Instant.parse(departureTimeString);
@@ -127,6 +156,9 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             }
             enter = request.getPoints().get(0);
             exit = request.getPoints().get(1);
+            locale = request.getLocale();
+            cacheKeyHints = new PMap(request.getHints()).remove(Parameters.PT.EARLIEST_DEPARTURE_TIME).
+                    remove(Parameters.PT.LIMIT_SOLUTIONS).toMap();
         }
 
         GHResponse route() {
@@ -157,17 +189,74 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
                 startNode = allQueryResults.get(0).getClosestNode();
                 destNode = allQueryResults.get(1).getClosestNode();
             }
-            List<Label> solutions = findPaths(startNode, destNode);
-            parseSolutionsAndAddToResponse(solutions, startAndEndpoint);
+            if (profileDuration != null && !arriveBy && originStationNode != -1) {
+                routeWithCache(startNode, destNode, startAndEndpoint);
+            } else {
+                Instant rangeEnd = profileDuration == null ? null : arriveBy ? initialTime.minus(profileDuration) : initialTime.plus(profileDuration);
+                List<Label> solutions = findPaths(startNode, destNode, initialTime, rangeEnd, limitSolutions);
+                parseSolutions(solutions, startAndEndpoint, initialTime).forEach(response::add);
+            }
             return response;
         }
 
+        /**
+         * Range queries from the same origin station are answered for the whole departure time
+         * bucket at once, every request takes the journeys which depart within its own range. The
+         * bucket search is not limited, the limit of the request is applied to these journeys.
+         */
+        private void routeWithCache(int startNode, int destNode, PointList waypoints) {
+            long bucket = profileQueryCache.getBucket(initialTime);
+            ProfileQueryCache.Key key = new ProfileQueryCache.Key(originStationNode, bucket, enter, exit, locale, cacheKeyHints);
+            List<PathWrapper> journeys = profileQueryCache.get(key, realtimeFeed);
+            if (journeys == null) {
+                Instant bucketStart = profileQueryCache.getBucketStart(bucket);
+                List<Label> solutions = findPaths(startNode, destNode, bucketStart, profileQueryCache.getBucketEnd(bucket).plus(profileDuration), Integer.MAX_VALUE);
+                journeys = parseSolutions(solutions, waypoints, bucketStart);
+                profileQueryCache.put(key, realtimeFeed, journeys);
+            } else {
+                response.addDebugInfo("profile_cache:hit");
+            }
+            Instant rangeEnd = initialTime.plus(profileDuration);
+            for (PathWrapper journey : journeys) {
+                if (response.getAll().size() >= limitSolutions)
+                    break;
+                if (journey.getLegs().stream().noneMatch(leg -> leg instanceof Trip.PtLeg)) {
+                    // a journey without public transport can start at any time, so it starts now
+                    response.add(departingAt(journey, initialTime, waypoints));
+                } else {
+                    Instant departureTime = journey.getLegs().get(0).getDepartureTime().toInstant();
+                    if (!departureTime.isBefore(initialTime) && !departureTime.isAfter(rangeEnd)) {
+                        response.add(journey);
+                    }
+                }
+            }
+            if (response.getAll().isEmpty() && !response.hasErrors()) {
+                response.addError(new RuntimeException("No route found"));
+            }
+        }
+
+        private PathWrapper departingAt(PathWrapper walkJourney, Instant time, PointList waypoints) {
+            long shift = time.toEpochMilli() - walkJourney.getLegs().get(0).getDepartureTime().getTime();
+            List<Trip.Leg> legs = walkJourney.getLegs().stream()
+                    .map(leg -> (Trip.WalkLeg) leg)
+                    .map(leg -> new Trip.WalkLeg(leg.departureLocation, new Date(leg.getDepartureTime().getTime() + shift),
+                            leg.edges, leg.geometry, leg.distance, leg.instructions, new Date(leg.getArrivalTime().getTime() + shift)))
+                    .collect(Collectors.toList());
+            PathWrapper journey = tripFromLabel.createPathWrapper(translation, waypoints, legs);
+            journey.setImpossible(walkJourney.isImpossible());
+            return journey;
+        }
+
         private void substitutePointWithVirtualNode(int index, boolean reverse, GHPoint ghPoint, ArrayList<QueryResult> allQueryResults) {
             final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, weighting, flagEncoder, gtfsStorage, realtimeFeed, reverse, extraEdges, true);
             int nextNodeId = graphWithExtraEdges.getNodes() + 2 + index; // FIXME: A number bigger than the number of nodes QueryGraph adds
             int nextEdgeId = graphWithExtraEdges.getAllEdges().getMaxId() + 100; // FIXME: A number bigger than the number of edges QueryGraph adds
 
             final List<Label> stationNodes = findStationNodes(graphExplorer, allQueryResults.get(index).getClosestNode(), reverse);
+            if (index == 0 && !stationNodes.isEmpty()) {
+                // the station which is closest to the origin, labels are found in the order of their walk time
+                originStationNode = stationNodes.get(0).parent.adjNode;
+            }
             for (Label stationNode : stationNodes) {
                 final PathWrapper pathWrapper = stationNode.parent.parent != null ?
                         tripFromLabel.parseSolutionIntoPath(reverse, flagEncoder, translation, graphExplorer, weighting, stationNode.parent, new PointList()) :
@@ -210,7 +299,8 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             return source;
         }
 
-        private void parseSolutionsAndAddToResponse(List<Label> solutions, PointList waypoints) {
+        private List<PathWrapper> parseSolutions(List<Label> solutions, PointList waypoints, Instant searchTime) {
+            List<PathWrapper> pathWrappers = new ArrayList<>();
             for (Label solution : solutions) {
                 final List<Trip.Leg> legs = tripFromLabel.getTrip(arriveBy, flagEncoder, translation, graphExplorer, weighting, solution);
                 if (separateWalkQuery) {
@@ -219,13 +309,21 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
                 }
                 final PathWrapper pathWrapper = tripFromLabel.createPathWrapper(translation, waypoints, legs);
                 pathWrapper.setImpossible(isImpossible(solution));
-                // TODO: remove
-                pathWrapper.setTime((solution.currentTime - initialTime.toEpochMilli()) * (arriveBy ? -1 : 1));
-                response.add(pathWrapper);
+                if (profileDuration != null) {
+                    // the journeys of a range query depart at different times, so only their duration is comparable
+                    pathWrapper.setTime(legs.get(legs.size() - 1).getArrivalTime().getTime() - legs.get(0).getDepartureTime().getTime());
+                } else {
+                    // TODO: remove
+                    pathWrapper.setTime((solution.currentTime - searchTime.toEpochMilli()) * (arriveBy ? -1 : 1));
+                }
+                pathWrappers.add(pathWrapper);
             }
             Comparator<PathWrapper> c = Comparator.comparingInt(p -> (p.isImpossible() ? 1 : 0));
-            Comparator<PathWrapper> d = Comparator.comparingDouble(PathWrapper::getTime);
-            response.getAll().sort(c.thenComparing(d));
+            Comparator<PathWrapper> d = profileDuration != null ?
+                    Comparator.comparingLong(p -> p.getLegs().get(0).getDepartureTime().getTime()) :
+                    Comparator.comparingDouble(PathWrapper::getTime);
+            pathWrappers.sort(c.thenComparing(d));
+            return pathWrappers;
         }
 
         private boolean isImpossible(Label solution) {
@@ -259,14 +357,14 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             }
         }
 
-        private List<Label> findPaths(int startNode, int destNode) {
+        private List<Label> findPaths(int startNode, int destNode, Instant searchTime, Instant rangeEnd, int limit) {
             StopWatch stopWatch = new StopWatch().start();
             graphExplorer = new GraphExplorer(queryGraph, weighting, flagEncoder, gtfsStorage, realtimeFeed, arriveBy, extraEdges, false);
             MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, weighting, arriveBy, maxWalkDistancePerLeg, -1, !ignoreTransfers, profileQuery, maxVisitedNodesForRequest);
-            final Stream<Label> labels = router.calcLabels(startNode, destNode, initialTime);
+            final Stream<Label> labels = rangeEnd == null ? router.calcLabels(startNode, destNode, searchTime) : router.calcLabels(startNode, destNode, searchTime, rangeEnd);
             List<Label> solutions = labels
                     .filter(current -> destNode == current.adjNode)
-                    .limit(limitSolutions)
+                    .limit(limit)
                     .collect(Collectors.toList());
             response.addDebugInfo("routing:" + stopWatch.stop().getSeconds() + "s");
             if (solutions.isEmpty() && router.getVisitedNodes() >= maxVisitedNodesForRequest) {
@@ -282,13 +380,16 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
     }
 
     public GraphHopperGtfs(PtFlagEncoder flagEncoder, TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed) {
+        this(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, () -> realtimeFeed);
+    }
+
+    private GraphHopperGtfs(PtFlagEncoder flagEncoder, TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, Supplier<RealtimeFeed> realtimeFeedSupplier) {
         this.flagEncoder = flagEncoder;
         this.translationMap = translationMap;
         this.graphHopperStorage = graphHopperStorage;
         this.locationIndex = locationIndex;
         this.gtfsStorage = gtfsStorage;
-        this.realtimeFeed = realtimeFeed;
-        this.tripFromLabel = new TripFromLabel(this.gtfsStorage, this.realtimeFeed);
+        this.realtimeFeedSupplier = realtimeFeedSupplier;
     }
 
     public static GtfsStorage createGtfsStorage() {
@@ -0,0 +1,283 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Stores the stop sequence and the trip descriptor of the board and alight edges in flat
+ * DataAccess tables which are indexed by the edge id. These values are read for every such edge
+ * while routing, so they are not kept in the MapDB of the GtfsStorage.
+ * <p>
+ * Every edge has two ints: the stop sequence plus one and the byte pointer of its trip descriptor
+ * plus one, zero means that there is no value. A trip descriptor is stored once as its length
+ * followed by the bytes and is shared with the previous edge if it has the same descriptor.
+ */
+final class GtfsEdgeStorage {
+    private static final int EDGE_ENTRY_BYTES = 8;
+    private static final int STOP_SEQUENCE = 0;
+    private static final int TRIP_DESCRIPTOR = 4;
+    private final DataAccess edges;
+    private final DataAccess tripDescriptors;
+    private int edgeCount;
+    private long tripDescriptorBytes;
+    private byte[] lastTripDescriptor;
+    private int lastTripDescriptorPointer;
+    // the trip descriptors are decoded by several routing threads, each of them reuses its own buffer
+    private final ThreadLocal<byte[]> tripDescriptorBuffer = ThreadLocal.withInitial(() -> new byte[64]);
+
+    /**
+     * Decodes a trip descriptor from a buffer which is reused after decode returns.
+     */
+    interface TripDescriptorDecoder<T> {
+        T decode(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    GtfsEdgeStorage(Directory dir) {
+        this.edges = dir.find("gtfs_edges");
+        this.tripDescriptors = dir.find("gtfs_trip_descriptors");
+    }
+
+    void create(long initBytes) {
+        edges.create(initBytes);
+        tripDescriptors.create(initBytes);
+    }
+
+    boolean loadExisting() {
+        if (!edges.loadExisting() || !tripDescriptors.loadExisting())
+            return false;
+
+        edgeCount = edges.getHeader(0);
+        tripDescriptorBytes = tripDescriptors.getHeader(0) & 0xFFFFFFFFL;
+        return true;
+    }
+
+    void flush() {
+        edges.setHeader(0, edgeCount);
+        edges.flush();
+        tripDescriptors.setHeader(0, (int) tripDescriptorBytes);
+        tripDescriptors.flush();
+    }
+
+    void close() {
+        edges.close();
+        tripDescriptors.close();
+    }
+
+    long getCapacity() {
+        return edges.getCapacity() + tripDescriptors.getCapacity();
+    }
+
+    /**
+     * @return the stop sequence of the specified edge or -1 if there is none
+     */
+    int getStopSequence(int edge) {
+        if (edge < 0 || edge >= edgeCount)
+            return -1;
+        return edges.getInt((long) edge * EDGE_ENTRY_BYTES + STOP_SEQUENCE) - 1;
+    }
+
+    void setStopSequence(int edge, int stopSequence) {
+        if (stopSequence < 0)
+            throw new IllegalArgumentException("stop sequence of edge " + edge + " cannot be negative: " + stopSequence);
+        ensureEdge(edge);
+        edges.setInt((long) edge * EDGE_ENTRY_BYTES + STOP_SEQUENCE, stopSequence + 1);
+    }
+
+    /**
+     * @return a copy of the trip descriptor of the specified edge or null if there is none. Used by the
+     * map view, routing decodes the descriptor without the copy via getTripDescriptor(int, decoder)
+     */
+    byte[] getTripDescriptor(int edge) {
+        int pointer = getTripDescriptorPointer(edge);
+        if (pointer < 0)
+            return null;
+        byte[] bytes = new byte[tripDescriptors.getInt(pointer)];
+        tripDescriptors.getBytes(pointer + 4, bytes, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Decodes the trip descriptor of the specified edge straight from the storage into a buffer of
+     * the calling thread, so no array is allocated per call.
+     *
+     * @return the decoded trip descriptor or null if there is none
+     */
+    <T> T getTripDescriptor(int edge, TripDescriptorDecoder<T> decoder) {
+        int pointer = getTripDescriptorPointer(edge);
+        if (pointer < 0)
+            return null;
+        int length = tripDescriptors.getInt(pointer);
+        byte[] buffer = tripDescriptorBuffer.get();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+            tripDescriptorBuffer.set(buffer);
+        }
+        tripDescriptors.getBytes(pointer + 4, buffer, length);
+        try {
+            return decoder.decode(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode the trip descriptor of edge " + edge, e);
+        }
+    }
+
+    private int getTripDescriptorPointer(int edge) {
+        if (edge < 0 || edge >= edgeCount)
+            return -1;
+        return edges.getInt((long) edge * EDGE_ENTRY_BYTES + TRIP_DESCRIPTOR) - 1;
+    }
+
+    void setTripDescriptor(int edge, byte[] tripDescriptor) {
+        ensureEdge(edge);
+        if (!Arrays.equals(tripDescriptor, lastTripDescriptor)) {
+            // align the length to read it with getInt
+            long pointer = (tripDescriptorBytes + 3) / 4 * 4;
+            if (pointer + 4 + tripDescriptor.length >= Integer.MAX_VALUE)
+                throw new IllegalStateException("Too many trip descriptors " + pointer);
+            tripDescriptors.ensureCapacity(pointer + 4 + tripDescriptor.length);
+            tripDescriptors.setInt(pointer, tripDescriptor.length);
+            tripDescriptors.setBytes(pointer + 4, tripDescriptor, tripDescriptor.length);
+            tripDescriptorBytes = pointer + 4 + tripDescriptor.length;
+            lastTripDescriptor = tripDescriptor.clone();
+            lastTripDescriptorPointer = (int) pointer;
+        }
+        edges.setInt((long) edge * EDGE_ENTRY_BYTES + TRIP_DESCRIPTOR, lastTripDescriptorPointer + 1);
+    }
+
+    private void ensureEdge(int edge) {
+        if (edge < 0)
+            throw new IllegalArgumentException("edge cannot be negative: " + edge);
+        if (edge >= edgeCount) {
+            edges.ensureCapacity((long) (edge + 1) * EDGE_ENTRY_BYTES);
+            // newly allocated segments are zero, but the area could have been used before
+            for (long pointer = (long) edgeCount * EDGE_ENTRY_BYTES; pointer < (long) (edge + 1) * EDGE_ENTRY_BYTES; pointer += 4) {
+                edges.setInt(pointer, 0);
+            }
+            edgeCount = edge + 1;
+        }
+    }
+
+    /**
+     * A map view of the stop sequences for the GtfsReader which writes to GtfsStorageI.
+     */
+    Map<Integer, Integer> stopSequencesAsMap() {
+        return new EdgeMap<Integer>() {
+            @Override
+            Integer getValue(int edge) {
+                int stopSequence = getStopSequence(edge);
+                return stopSequence < 0 ? null : stopSequence;
+            }
+
+            @Override
+            void setValue(int edge, Integer value) {
+                setStopSequence(edge, value);
+            }
+        };
+    }
+
+    /**
+     * A map view of the trip descriptors for the GtfsReader which writes to GtfsStorageI.
+     */
+    Map<Integer, byte[]> tripDescriptorsAsMap() {
+        return new EdgeMap<byte[]>() {
+            @Override
+            byte[] getValue(int edge) {
+                return getTripDescriptor(edge);
+            }
+
+            @Override
+            void setValue(int edge, byte[] value) {
+                setTripDescriptor(edge, value);
+            }
+        };
+    }
+
+    private abstract class EdgeMap<V> extends AbstractMap<Integer, V> {
+        abstract V getValue(int edge);
+
+        abstract void setValue(int edge, V value);
+
+        @Override
+        public V get(Object key) {
+            return key instanceof Integer ? getValue((Integer) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public V put(Integer key, V value) {
+            if (value == null)
+                throw new NullPointerException("value for edge " + key + " cannot be null");
+            V old = getValue(key);
+            setValue(key, value);
+            return old;
+        }
+
+        @Override
+        public Set<Entry<Integer, V>> entrySet() {
+            return new AbstractSet<Entry<Integer, V>>() {
+                @Override
+                public Iterator<Entry<Integer, V>> iterator() {
+                    return new Iterator<Entry<Integer, V>>() {
+                        int edge = advance(0);
+
+                        private int advance(int from) {
+                            while (from < edgeCount && getValue(from) == null) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return edge < edgeCount;
+                        }
+
+                        @Override
+                        public Entry<Integer, V> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            Entry<Integer, V> entry = new SimpleImmutableEntry<>(edge, getValue(edge));
+                            edge = advance(edge + 1);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (int edge = 0; edge < edgeCount; edge++) {
+                        if (getValue(edge) != null)
+                            size++;
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+}
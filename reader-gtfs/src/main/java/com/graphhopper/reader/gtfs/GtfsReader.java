@@ -52,6 +52,7 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -248,8 +249,15 @@ class GtfsReader {
         insertTransfers();
     }
 
+    /**
+     * Connects the timeline nodes added since the last call with the static network. Only the
+     * stops which got new timeline nodes are visited.
+     */
     void wireUpAdditionalDepartures(ZoneId zoneId) {
-        for (Stop stop : feed.stops.values()) {
+        Set<String> stopIds = new HashSet<>(departureTimelineNodes.keySet());
+        stopIds.addAll(arrivalTimelineNodes.keySet());
+        for (String stopId : stopIds) {
+            Stop stop = feed.stops.get(stopId);
             int stationNode = gtfsStorage.getStationNodes().get(stop.stop_id);
             final Map<String, List<TimelineNodeIdWithTripId>> departureTimelineNodesByRoute = departureTimelineNodes.get(stop.stop_id).stream().collect(Collectors.groupingBy(t -> t.routeId));
             departureTimelineNodesByRoute.forEach((routeId, timelineNodesWithTripId) -> {
@@ -330,6 +338,8 @@ class GtfsReader {
                 });
             });
         }
+        departureTimelineNodes.clear();
+        arrivalTimelineNodes.clear();
     }
 
     private Stream<Fun.Tuple2<Integer, Integer>> findDepartureTimelineNodesForRoute(int stationNode, String routeId) {
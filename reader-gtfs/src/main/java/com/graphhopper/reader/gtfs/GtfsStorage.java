@@ -21,6 +21,7 @@ package com.graphhopper.reader.gtfs;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Fare;
 import com.conveyal.gtfs.model.FareRule;
+import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.fare.FixedFareAttributeLoader;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
@@ -84,6 +85,10 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	}
 
+	// a constant to not create the method reference for every decoded trip descriptor
+	private static final GtfsEdgeStorage.TripDescriptorDecoder<GtfsRealtime.TripDescriptor> TRIP_DESCRIPTOR_DECODER =
+			GtfsRealtime.TripDescriptor.PARSER::parseFrom;
+
 	private boolean isClosed = false;
 	private Directory dir;
 	private Set<String> gtfsFeedIds;
@@ -92,6 +97,7 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 	private HTreeMap<Validity, Integer> operatingDayPatterns;
 	private Bind.MapWithModificationListener<FeedIdWithTimezone, Integer> timeZones;
 	private Map<Integer, FeedIdWithTimezone> readableTimeZones;
+	private GtfsEdgeStorage edgeStorage;
 	private Map<Integer, byte[]> tripDescriptors;
 	private Map<Integer, Integer> stopSequences;
 
@@ -146,6 +152,9 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	@Override
 	public boolean loadExisting() {
+		this.edgeStorage = new GtfsEdgeStorage(dir);
+		if (!edgeStorage.loadExisting())
+			return false;
 		this.data = DBMaker.newFileDB(new File(dir.getLocation() + "/transit_schedule")).transactionDisable().mmapFileEnable().readOnly().make();
 		init();
 		for (String gtfsFeedId : this.gtfsFeedIds) {
@@ -169,6 +178,8 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 			throw new RuntimeException(e);
 		}
 		this.data = DBMaker.newFileDB(file).transactionDisable().mmapFileEnable().asyncWriteEnable().make();
+		this.edgeStorage = new GtfsEdgeStorage(dir);
+		edgeStorage.create(byteCount);
 		init();
 		return this;
 	}
@@ -183,8 +194,8 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 		}
 		Bind.mapInverse(this.timeZones, readableTimeZones);
 		this.readableTimeZones = Collections.unmodifiableMap(readableTimeZones);
-		this.tripDescriptors = data.getTreeMap("tripDescriptors");
-		this.stopSequences = data.getTreeMap("stopSequences");
+		this.tripDescriptors = edgeStorage.tripDescriptorsAsMap();
+		this.stopSequences = edgeStorage.stopSequencesAsMap();
 		this.fares = data.getTreeMap("fares");
 		this.boardEdgesForTrip = data.getHashMap("boardEdgesForTrip");
 		this.leaveEdgesForTrip = data.getHashMap("leaveEdgesForTrip");
@@ -218,6 +229,7 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	@Override
 	public void flush() {
+		edgeStorage.flush();
 	}
 
 	@Override
@@ -225,6 +237,7 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 		if (!isClosed) {
 			isClosed = true;
 			data.close();
+			edgeStorage.close();
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
 			}
@@ -238,7 +251,7 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	@Override
 	public long getCapacity() {
-		return 0;
+		return edgeStorage.getCapacity();
 	}
 
     @Override
@@ -265,6 +278,20 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 		return stopSequences;
 	}
 
+	/**
+	 * @return the trip descriptor of a board or alight edge or null, decoded straight from the edge storage
+	 */
+	GtfsRealtime.TripDescriptor getTripDescriptor(int edge) {
+		return edgeStorage.getTripDescriptor(edge, TRIP_DESCRIPTOR_DECODER);
+	}
+
+	/**
+	 * @return the stop sequence of a board or alight edge or -1, without going through the map view
+	 */
+	int getStopSequence(int edge) {
+		return edgeStorage.getStopSequence(edge);
+	}
+
 	@Override
 	public Map<String, int[]> getBoardEdgesForTrip() {
 		return boardEdgesForTrip;
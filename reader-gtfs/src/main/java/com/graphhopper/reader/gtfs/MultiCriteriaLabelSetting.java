@@ -17,18 +17,19 @@
  */
 package com.graphhopper.reader.gtfs;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.carrotsearch.hppc.IntObjectHashMap;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -47,10 +48,14 @@ class MultiCriteriaLabelSetting {
 
     private final Comparator<Label> queueComparator;
     private long startTime;
+    private long rangeEnd;
     private final PtFlagEncoder flagEncoder;
     private final PtTravelTimeWeighting weighting;
-    private final Multimap<Integer, Label> fromMap;
+    private final IntObjectHashMap<ParetoBag> fromMap;
     private final PriorityQueue<Label> fromHeap;
+    // dominated labels are removed from the heap when they are polled
+    private final Set<Label> removedFromHeap = Collections.newSetFromMap(new IdentityHashMap<Label, Boolean>());
+    private final List<Label> dominatedLabels = new ArrayList<>();
     private final int maxVisitedNodes;
     private final boolean reverse;
     private final double maxWalkDistancePerLeg;
@@ -59,12 +64,14 @@ class MultiCriteriaLabelSetting {
     private final boolean profileQuery;
     private int visitedNodes;
     private final GraphExplorer explorer;
+    private final GraphExplorer.EdgeCursor edgeCursor;
 
     MultiCriteriaLabelSetting(GraphExplorer explorer, Weighting weighting, boolean reverse, double maxWalkDistancePerLeg, double maxTransferDistancePerLeg, boolean mindTransfers, boolean profileQuery, int maxVisitedNodes) {
         this.weighting = (PtTravelTimeWeighting) weighting;
         this.flagEncoder = (PtFlagEncoder) weighting.getFlagEncoder();
         this.maxVisitedNodes = maxVisitedNodes;
         this.explorer = explorer;
+        this.edgeCursor = explorer.createEdgeCursor();
         this.reverse = reverse;
         this.maxWalkDistancePerLeg = maxWalkDistancePerLeg;
         this.maxTransferDistancePerLeg = maxTransferDistancePerLeg;
@@ -77,29 +84,41 @@ class MultiCriteriaLabelSetting {
                 .thenComparing(Comparator.comparingLong(l1 -> l1.nWalkDistanceConstraintViolations))
                 .thenComparing(Comparator.comparingLong(l -> departureTimeCriterion(l) != null ? departureTimeCriterion(l) : 0));
         fromHeap = new PriorityQueue<>(queueComparator);
-        fromMap = ArrayListMultimap.create();
+        fromMap = new IntObjectHashMap<>();
     }
 
     Stream<Label> calcLabels(int from, int to, Instant startTime) {
         this.startTime = startTime.toEpochMilli();
-        return StreamSupport.stream(new MultiCriteriaLabelSettingSpliterator(from, to), false)
-                .limit(maxVisitedNodes)
-                .peek(label -> visitedNodes++);
+        this.rangeEnd = reverse ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return StreamSupport.stream(new MultiCriteriaLabelSettingSpliterator(from, to), false);
+    }
+
+    /**
+     * Range query for a profile search: only journeys departing between startTime and rangeEnd
+     * (arriving between rangeEnd and startTime for a reverse search) are explored, so the stream
+     * runs out after the Pareto-optimal journeys of the whole range.
+     */
+    Stream<Label> calcLabels(int from, int to, Instant startTime, Instant rangeEnd) {
+        if (!profileQuery)
+            throw new IllegalStateException("Range queries require a profile query");
+        this.startTime = startTime.toEpochMilli();
+        this.rangeEnd = rangeEnd.toEpochMilli();
+        return StreamSupport.stream(new MultiCriteriaLabelSettingSpliterator(from, to), false);
     }
 
     private class MultiCriteriaLabelSettingSpliterator extends Spliterators.AbstractSpliterator<Label> {
 
         private final int from;
         private final int to;
-        private final Collection<Label> targetLabels;
+        private final ParetoBag targetLabels;
 
         MultiCriteriaLabelSettingSpliterator(int from, int to) {
             super(0, 0);
             this.from = from;
             this.to = to;
-            targetLabels = new ArrayList<>();
+            targetLabels = new ParetoBag(reverse, profileQuery, mindTransfers);
             Label label = new Label(startTime, EdgeIterator.NO_EDGE, from, 0, 0, 0.0, null, 0, 0,false,null);
-            fromMap.put(from, label);
+            getBag(from).add(label);
             fromHeap.add(label);
             if (to == from) {
                 targetLabels.add(label);
@@ -108,16 +127,24 @@ class MultiCriteriaLabelSetting {
 
         @Override
         public boolean tryAdvance(Consumer<? super Label> action) {
-            if (fromHeap.isEmpty()) {
+            Label label = null;
+            while (label == null && !fromHeap.isEmpty() && visitedNodes < maxVisitedNodes) {
+                label = fromHeap.poll();
+                if (removedFromHeap.remove(label)) {
+                    label = null;
+                }
+            }
+            if (label == null) {
                 return false;
             } else {
-                Label label = fromHeap.poll();
+                visitedNodes++;
                 action.accept(label);
-                explorer.exploreEdgesAround(label).forEach(edge -> {
+                for (edgeCursor.reset(label); edgeCursor.next();) {
+                    EdgeIteratorState edge = edgeCursor.edge();
                     GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edge.getFlags());
-                    if (edgeType == GtfsStorage.EdgeType.HIGHWAY && maxTransferDistancePerLeg <= 0.0) return;
-                    if (edgeType == GtfsStorage.EdgeType.ENTER_PT && ((reverse?edge.getAdjNode():edge.getBaseNode()) != (reverse?to:from)) && maxTransferDistancePerLeg <= 0.0) return;
-                    if (edgeType == GtfsStorage.EdgeType.EXIT_PT && ((reverse?edge.getBaseNode():edge.getAdjNode()) != (reverse?from:to)) && maxTransferDistancePerLeg <= 0.0) return;
+                    if (edgeType == GtfsStorage.EdgeType.HIGHWAY && maxTransferDistancePerLeg <= 0.0) continue;
+                    if (edgeType == GtfsStorage.EdgeType.ENTER_PT && ((reverse?edge.getAdjNode():edge.getBaseNode()) != (reverse?to:from)) && maxTransferDistancePerLeg <= 0.0) continue;
+                    if (edgeType == GtfsStorage.EdgeType.EXIT_PT && ((reverse?edge.getBaseNode():edge.getAdjNode()) != (reverse?from:to)) && maxTransferDistancePerLeg <= 0.0) continue;
                     long nextTime;
                     if (reverse) {
                         nextTime = label.currentTime - explorer.calcTravelTimeMillis(edge, label.currentTime);
@@ -140,7 +167,7 @@ class MultiCriteriaLabelSetting {
                     long walkTime = label.walkTime + (edgeType == GtfsStorage.EdgeType.HIGHWAY || edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT ? nextTime - label.currentTime : 0);
                     int nWalkDistanceConstraintViolations = Math.min(1, label.nWalkDistanceConstraintViolations + (
                             isTryingToReEnterPtAfterTransferWalking ? 1 : (label.walkDistanceOnCurrentLeg <= maxWalkDistancePerLeg && walkDistanceOnCurrentLeg > maxWalkDistancePerLeg ? 1 : 0)));
-                    Collection<Label> sptEntries = fromMap.get(edge.getAdjNode());
+                    ParetoBag sptEntries = getBag(edge.getAdjNode());
                     boolean impossible = label.impossible
                             || explorer.isBlocked(edge)
                             || (!reverse) && edgeType == GtfsStorage.EdgeType.BOARD && label.residualDelay > 0
@@ -174,18 +201,21 @@ class MultiCriteriaLabelSetting {
                         Label newLabel = new Label(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, nWalkDistanceConstraintViolations, walkDistanceOnCurrentLeg, firstPtDepartureTime, walkTime, residualDelay, impossible, label);
                         insertIfNotDominated(edge, sptEntries, newLabel);
                     }
-                });
+                }
                 return true;
             }
         }
 
-        private void insertIfNotDominated(EdgeIteratorState edge, Collection<Label> sptEntries, Label nEdge) {
-            if (isNotDominatedByAnyOf(nEdge, sptEntries) && isNotDominatedByAnyOf(nEdge, targetLabels)) {
+        private void insertIfNotDominated(EdgeIteratorState edge, ParetoBag sptEntries, Label nEdge) {
+            if (isOutsideOfRange(nEdge)) {
+                return;
+            }
+            if (!sptEntries.isDominated(nEdge) && !targetLabels.isDominated(nEdge)) {
                 removeDominated(nEdge, sptEntries);
                 if (to == edge.getAdjNode()) {
                     removeDominated(nEdge, targetLabels);
                 }
-                fromMap.put(edge.getAdjNode(), nEdge);
+                sptEntries.add(nEdge);
                 if (to == edge.getAdjNode()) {
                     targetLabels.add(nEdge);
                 }
@@ -194,72 +224,23 @@ class MultiCriteriaLabelSetting {
         }
     }
 
-    private boolean isNotDominatedByAnyOf(Label me, Collection<Label> sptEntries) {
-        if (me.nWalkDistanceConstraintViolations > 0) {
-            return false;
+    private ParetoBag getBag(int node) {
+        ParetoBag bag = fromMap.get(node);
+        if (bag == null) {
+            bag = new ParetoBag(reverse, profileQuery, mindTransfers);
+            fromMap.put(node, bag);
         }
-        for (Label they : sptEntries) {
-            if (dominates(they, me)) {
-                return false;
-            }
-        }
-        return true;
+        return bag;
     }
 
-
-    private void removeDominated(Label me, Collection<Label> sptEntries) {
-        for (Iterator<Label> iterator = sptEntries.iterator(); iterator.hasNext();) {
-            Label sptEntry = iterator.next();
-            if (dominates(me, sptEntry)) {
-                fromHeap.remove(sptEntry);
-                iterator.remove();
-            }
-        }
+    private void removeDominated(Label me, ParetoBag sptEntries) {
+        sptEntries.removeDominatedBy(me, dominatedLabels);
+        removedFromHeap.addAll(dominatedLabels);
+        dominatedLabels.clear();
     }
 
-    private boolean dominates(Label me, Label they) {
-        if (profileQuery) {
-            if (me.departureTime != null && they.departureTime != null) {
-                if (currentTimeCriterion(me) > currentTimeCriterion(they))
-                    return false;
-                if (departureTimeCriterion(me) > departureTimeCriterion(they))
-                    return false;
-            } else {
-                if (travelTimeCriterion(me) > travelTimeCriterion(they))
-                    return false;
-            }
-        } else {
-            if (currentTimeCriterion(me) > currentTimeCriterion(they))
-                return false;
-        }
-
-        if (mindTransfers && me.nTransfers > they.nTransfers)
-            return false;
-        if (me.nWalkDistanceConstraintViolations  > they.nWalkDistanceConstraintViolations)
-            return false;
-        if (me.impossible && !they.impossible)
-            return false;
-
-        if (profileQuery) {
-            if (me.departureTime != null && they.departureTime != null) {
-                if (currentTimeCriterion(me) < currentTimeCriterion(they))
-                    return true;
-                if (departureTimeCriterion(me) < departureTimeCriterion(they))
-                    return true;
-            } else {
-                if (travelTimeCriterion(me) < travelTimeCriterion(they))
-                    return true;
-            }
-        } else {
-            if (currentTimeCriterion(me) < currentTimeCriterion(they))
-                return true;
-        }
-        if (mindTransfers && me.nTransfers  < they.nTransfers)
-            return true;
-        if (me.nWalkDistanceConstraintViolations < they.nWalkDistanceConstraintViolations)
-            return true;
-
-        return queueComparator.compare(me,they) <= 0;
+    private boolean isOutsideOfRange(Label label) {
+        return label.departureTime != null && (reverse ? label.departureTime < rangeEnd : label.departureTime > rangeEnd);
     }
 
     private Long departureTimeCriterion(Label label) {
@@ -270,14 +251,6 @@ class MultiCriteriaLabelSetting {
         return reverse ? -label.currentTime : label.currentTime;
     }
 
-    private long travelTimeCriterion(Label label) {
-        if (label.departureTime == null) {
-            return label.walkTime;
-        } else {
-            return (reverse ? -1 : 1) * (label.currentTime - label.departureTime);
-        }
-    }
-
     int getVisitedNodes() {
         return visitedNodes;
     }
@@ -0,0 +1,258 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The Pareto set of the labels at one node for the criteria of {@link MultiCriteriaLabelSetting}.
+ * The criteria are stored in primitive arrays which are sorted by the current time criterion, so a
+ * dominance test can stop at the first label which arrives later. The last slot of the arrays holds
+ * the label which is currently tested.
+ */
+final class ParetoBag {
+    private final boolean reverse;
+    private final boolean profileQuery;
+    private final boolean mindTransfers;
+    private Label[] labels = new Label[4];
+    private long[] currentTimes = new long[4];
+    private boolean[] hasDepartureTimes = new boolean[4];
+    private long[] departureTimes = new long[4];
+    private long[] travelTimes = new long[4];
+    private int[] nTransfers = new int[4];
+    private int[] nWalkDistanceConstraintViolations = new int[4];
+    private boolean[] impossible = new boolean[4];
+    private int size;
+    private int withoutDepartureTime;
+
+    ParetoBag(boolean reverse, boolean profileQuery, boolean mindTransfers) {
+        this.reverse = reverse;
+        this.profileQuery = profileQuery;
+        this.mindTransfers = mindTransfers;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Label get(int index) {
+        return labels[index];
+    }
+
+    boolean isDominated(Label label) {
+        if (label.nWalkDistanceConstraintViolations > 0) {
+            return true;
+        }
+        int candidate = setCandidate(label);
+        // only labels which do not arrive later can dominate the candidate
+        int end = isSortedByDominance(candidate) ? upperBound(currentTimes[candidate]) : size;
+        boolean dominated = false;
+        for (int i = 0; i < end && !dominated; i++) {
+            dominated = dominates(i, candidate);
+        }
+        labels[candidate] = null;
+        return dominated;
+    }
+
+    /**
+     * Removes all labels which are dominated by the specified label and adds them to removed.
+     */
+    void removeDominatedBy(Label label, Collection<Label> removed) {
+        int candidate = setCandidate(label);
+        // the candidate can only dominate labels which do not arrive earlier
+        int start = isSortedByDominance(candidate) ? lowerBound(currentTimes[candidate]) : 0;
+        int newSize = start;
+        for (int i = start; i < size; i++) {
+            if (dominates(candidate, i)) {
+                removed.add(labels[i]);
+                if (!hasDepartureTimes[i]) {
+                    withoutDepartureTime--;
+                }
+            } else {
+                if (newSize != i) {
+                    move(i, newSize);
+                }
+                newSize++;
+            }
+        }
+        Arrays.fill(labels, newSize, candidate + 1, null);
+        size = newSize;
+    }
+
+    void add(Label label) {
+        int candidate = setCandidate(label);
+        int index = upperBound(currentTimes[candidate]);
+        // the candidate is moved to the end of the shifted labels
+        move(candidate, candidate + 1);
+        System.arraycopy(labels, index, labels, index + 1, size - index);
+        System.arraycopy(currentTimes, index, currentTimes, index + 1, size - index);
+        System.arraycopy(hasDepartureTimes, index, hasDepartureTimes, index + 1, size - index);
+        System.arraycopy(departureTimes, index, departureTimes, index + 1, size - index);
+        System.arraycopy(travelTimes, index, travelTimes, index + 1, size - index);
+        System.arraycopy(nTransfers, index, nTransfers, index + 1, size - index);
+        System.arraycopy(nWalkDistanceConstraintViolations, index, nWalkDistanceConstraintViolations, index + 1, size - index);
+        System.arraycopy(impossible, index, impossible, index + 1, size - index);
+        move(candidate + 1, index);
+        labels[candidate + 1] = null;
+        if (label.departureTime == null) {
+            withoutDepartureTime++;
+        }
+        size++;
+    }
+
+    /**
+     * In a profile query labels with and without departure time are compared by a different
+     * criterion, so the order by current time can only be used if all labels have a departure time.
+     */
+    private boolean isSortedByDominance(int candidate) {
+        return !profileQuery || hasDepartureTimes[candidate] && withoutDepartureTime == 0;
+    }
+
+    private int setCandidate(Label label) {
+        ensureCapacity(size + 2);
+        int candidate = size;
+        labels[candidate] = label;
+        currentTimes[candidate] = reverse ? -label.currentTime : label.currentTime;
+        hasDepartureTimes[candidate] = label.departureTime != null;
+        departureTimes[candidate] = label.departureTime != null ? (reverse ? label.departureTime : -label.departureTime) : 0;
+        travelTimes[candidate] = label.departureTime != null ? (reverse ? -1 : 1) * (label.currentTime - label.departureTime) : label.walkTime;
+        nTransfers[candidate] = label.nTransfers;
+        nWalkDistanceConstraintViolations[candidate] = label.nWalkDistanceConstraintViolations;
+        impossible[candidate] = label.impossible;
+        return candidate;
+    }
+
+    private void move(int from, int to) {
+        labels[to] = labels[from];
+        currentTimes[to] = currentTimes[from];
+        hasDepartureTimes[to] = hasDepartureTimes[from];
+        departureTimes[to] = departureTimes[from];
+        travelTimes[to] = travelTimes[from];
+        nTransfers[to] = nTransfers[from];
+        nWalkDistanceConstraintViolations[to] = nWalkDistanceConstraintViolations[from];
+        impossible[to] = impossible[from];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= labels.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, labels.length * 2);
+        labels = Arrays.copyOf(labels, newLength);
+        currentTimes = Arrays.copyOf(currentTimes, newLength);
+        hasDepartureTimes = Arrays.copyOf(hasDepartureTimes, newLength);
+        departureTimes = Arrays.copyOf(departureTimes, newLength);
+        travelTimes = Arrays.copyOf(travelTimes, newLength);
+        nTransfers = Arrays.copyOf(nTransfers, newLength);
+        nWalkDistanceConstraintViolations = Arrays.copyOf(nWalkDistanceConstraintViolations, newLength);
+        impossible = Arrays.copyOf(impossible, newLength);
+    }
+
+    // the first index with a current time not smaller than the specified time
+    private int lowerBound(long currentTime) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (currentTimes[mid] < currentTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // the first index with a current time bigger than the specified time
+    private int upperBound(long currentTime) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (currentTimes[mid] <= currentTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean dominates(int me, int they) {
+        boolean compareDepartureTimes = hasDepartureTimes[me] && hasDepartureTimes[they];
+        if (profileQuery) {
+            if (compareDepartureTimes) {
+                if (currentTimes[me] > currentTimes[they])
+                    return false;
+                if (departureTimes[me] > departureTimes[they])
+                    return false;
+            } else {
+                if (travelTimes[me] > travelTimes[they])
+                    return false;
+            }
+        } else {
+            if (currentTimes[me] > currentTimes[they])
+                return false;
+        }
+
+        if (mindTransfers && nTransfers[me] > nTransfers[they])
+            return false;
+        if (nWalkDistanceConstraintViolations[me] > nWalkDistanceConstraintViolations[they])
+            return false;
+        if (impossible[me] && !impossible[they])
+            return false;
+
+        if (profileQuery) {
+            if (compareDepartureTimes) {
+                if (currentTimes[me] < currentTimes[they])
+                    return true;
+                if (departureTimes[me] < departureTimes[they])
+                    return true;
+            } else {
+                if (travelTimes[me] < travelTimes[they])
+                    return true;
+            }
+        } else {
+            if (currentTimes[me] < currentTimes[they])
+                return true;
+        }
+        if (mindTransfers && nTransfers[me] < nTransfers[they])
+            return true;
+        if (nWalkDistanceConstraintViolations[me] < nWalkDistanceConstraintViolations[they])
+            return true;
+
+        return compareQueueOrder(me, they) <= 0;
+    }
+
+    // the same order as the queue of MultiCriteriaLabelSetting
+    private int compareQueueOrder(int me, int they) {
+        int res = Boolean.compare(impossible[me], impossible[they]);
+        if (res != 0)
+            return res;
+        res = Long.compare(currentTimes[me], currentTimes[they]);
+        if (res != 0)
+            return res;
+        res = Integer.compare(nTransfers[me], nTransfers[they]);
+        if (res != 0)
+            return res;
+        res = Integer.compare(nWalkDistanceConstraintViolations[me], nWalkDistanceConstraintViolations[they]);
+        if (res != 0)
+            return res;
+        return Long.compare(departureTimes[me], departureTimes[they]);
+    }
+}
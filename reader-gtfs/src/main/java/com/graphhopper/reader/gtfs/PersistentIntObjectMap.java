@@ -0,0 +1,172 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * An immutable map from non-negative int keys to objects, organized as a radix tree with four
+ * levels of 256 slots. A new version only copies the nodes on the paths to the changed keys and
+ * shares all other nodes with the previous version, so readers can keep using an old version
+ * without any locking while the next one is built.
+ */
+final class PersistentIntObjectMap<T> {
+    private static final int BITS = 8;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final int ROOT_SHIFT = 3 * BITS;
+    private static final PersistentIntObjectMap<?> EMPTY = new PersistentIntObjectMap<>(null, 0);
+
+    // every node has one additional slot which stores the builder owning it
+    private final Object[] root;
+    private final int size;
+
+    private PersistentIntObjectMap(Object[] root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentIntObjectMap<T> empty() {
+        return (PersistentIntObjectMap<T>) EMPTY;
+    }
+
+    T get(int key) {
+        return find(root, key);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Calls the consumer for all values in ascending order of their keys.
+     */
+    void forEachValue(Consumer<? super T> consumer) {
+        forEachValue(root, ROOT_SHIFT, consumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void forEachValue(Object[] node, int shift, Consumer<? super T> consumer) {
+        if (node == null)
+            return;
+        for (int i = 0; i < WIDTH; i++) {
+            if (node[i] == null)
+                continue;
+            if (shift == 0)
+                consumer.accept((T) node[i]);
+            else
+                forEachValue((Object[]) node[i], shift - BITS, consumer);
+        }
+    }
+
+    Builder<T> toBuilder() {
+        return new Builder<>(root, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T find(Object[] node, int key) {
+        checkKey(key);
+        for (int shift = ROOT_SHIFT; node != null && shift > 0; shift -= BITS) {
+            node = (Object[]) node[(key >>> shift) & MASK];
+        }
+        return node == null ? null : (T) node[key & MASK];
+    }
+
+    private static void checkKey(int key) {
+        if (key < 0)
+            throw new IllegalArgumentException("key cannot be negative: " + key);
+    }
+
+    /**
+     * Collects changes for the next version. Nodes which were already copied by this builder are
+     * changed in place, so a batch of changes to neighbouring keys copies every node only once.
+     */
+    static final class Builder<T> {
+        private Object owner = new Object();
+        private Object[] root;
+        private int size;
+
+        private Builder(Object[] root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        T get(int key) {
+            return find(root, key);
+        }
+
+        int size() {
+            return size;
+        }
+
+        T put(int key, T value) {
+            if (value == null)
+                throw new NullPointerException("value for key " + key + " cannot be null");
+            return set(key, value);
+        }
+
+        T remove(int key) {
+            if (get(key) == null)
+                return null;
+            return set(key, null);
+        }
+
+        @SuppressWarnings("unchecked")
+        private T set(int key, T value) {
+            checkKey(key);
+            root = editable(root);
+            Object[] node = root;
+            for (int shift = ROOT_SHIFT; shift > 0; shift -= BITS) {
+                int index = (key >>> shift) & MASK;
+                Object[] child = editable((Object[]) node[index]);
+                node[index] = child;
+                node = child;
+            }
+            T old = (T) node[key & MASK];
+            node[key & MASK] = value;
+            if (old == null)
+                size++;
+            if (value == null)
+                size--;
+            return old;
+        }
+
+        private Object[] editable(Object[] node) {
+            if (node == null) {
+                node = new Object[WIDTH + 1];
+            } else if (node[WIDTH] != owner) {
+                node = Arrays.copyOf(node, WIDTH + 1);
+            } else {
+                return node;
+            }
+            node[WIDTH] = owner;
+            return node;
+        }
+
+        /**
+         * Returns the new version. Later changes of this builder do not affect it.
+         */
+        PersistentIntObjectMap<T> build() {
+            owner = new Object();
+            return new PersistentIntObjectMap<>(root, size);
+        }
+    }
+}
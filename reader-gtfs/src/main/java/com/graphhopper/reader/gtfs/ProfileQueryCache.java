@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * LRU cache for the results of range queries, keyed by the origin station node and the bucket of
+ * the departure time. A miss computes the range from the start of the bucket until the end of
+ * the requested range after the end of the bucket, so every request of the same bucket can be
+ * answered by dropping the journeys which depart before its own departure time. Journeys without
+ * public transport are kept and start at the beginning of the bucket.
+ * <p>
+ * Results are only returned for the realtime version they were computed with.
+ */
+final class ProfileQueryCache {
+
+    static final class Key {
+        final int originStationNode;
+        final long bucket;
+        final GHPoint enter;
+        final GHPoint exit;
+        final Locale locale;
+        // all other request parameters
+        final Map<String, String> hints;
+
+        Key(int originStationNode, long bucket, GHPoint enter, GHPoint exit, Locale locale, Map<String, String> hints) {
+            this.originStationNode = originStationNode;
+            this.bucket = bucket;
+            this.enter = enter;
+            this.exit = exit;
+            this.locale = locale;
+            this.hints = hints;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return originStationNode == key.originStationNode && bucket == key.bucket && enter.equals(key.enter) && exit.equals(key.exit)
+                    && Objects.equals(locale, key.locale) && hints.equals(key.hints);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(originStationNode, bucket, enter, exit, locale, hints);
+        }
+    }
+
+    private static final class Entry {
+        final RealtimeFeed realtimeFeed;
+        final List<PathWrapper> journeys;
+
+        Entry(RealtimeFeed realtimeFeed, List<PathWrapper> journeys) {
+            this.realtimeFeed = realtimeFeed;
+            this.journeys = journeys;
+        }
+    }
+
+    private final long bucketMillis;
+    private final Map<Key, Entry> entries;
+
+    ProfileQueryCache(final int maxEntries, Duration bucket) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        this.bucketMillis = bucket.toMillis();
+        if (bucketMillis <= 0)
+            throw new IllegalArgumentException("bucket must be positive: " + bucket);
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    long getBucket(Instant departureTime) {
+        return Math.floorDiv(departureTime.toEpochMilli(), bucketMillis);
+    }
+
+    Instant getBucketStart(long bucket) {
+        return Instant.ofEpochMilli(bucket * bucketMillis);
+    }
+
+    Instant getBucketEnd(long bucket) {
+        return Instant.ofEpochMilli((bucket + 1) * bucketMillis);
+    }
+
+    /**
+     * @return the cached journeys of the whole bucket or null
+     */
+    synchronized List<PathWrapper> get(Key key, RealtimeFeed realtimeFeed) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (entry.realtimeFeed != realtimeFeed) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.journeys;
+    }
+
+    synchronized void put(Key key, RealtimeFeed realtimeFeed, List<PathWrapper> journeys) {
+        entries.put(key, new Entry(realtimeFeed, Collections.unmodifiableList(new ArrayList<>(journeys))));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -18,386 +18,108 @@
 
 package com.graphhopper.reader.gtfs;
 
-import com.carrotsearch.hppc.IntHashSet;
-import com.carrotsearch.hppc.IntIntHashMap;
-import com.carrotsearch.hppc.IntLongHashMap;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Agency;
-import com.conveyal.gtfs.model.Fare;
 import com.conveyal.gtfs.model.StopTime;
 import com.conveyal.gtfs.model.Trip;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.routing.VirtualEdgeIteratorState;
-import com.graphhopper.routing.util.AllEdgesIterator;
-import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.GraphExtension;
-import com.graphhopper.storage.NodeAccess;
-import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.PointList;
-import com.graphhopper.util.shapes.BBox;
 import org.mapdb.Fun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.NO_DATA;
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
-import static java.time.temporal.ChronoUnit.DAYS;
 
 public class RealtimeFeed {
     private static final Logger logger = LoggerFactory.getLogger(RealtimeFeed.class);
-    private final IntHashSet blockedEdges;
-    private final IntLongHashMap delaysForBoardEdges;
-    private final IntLongHashMap delaysForAlightEdges;
-    private final List<VirtualEdgeIteratorState> additionalEdges;
-    private final GtfsRealtime.FeedMessage feedMessage;
+    private final PersistentIntObjectMap<Boolean> blockedEdges;
+    private final PersistentIntObjectMap<Long> delaysForBoardEdges;
+    private final PersistentIntObjectMap<Long> delaysForAlightEdges;
+    private final PersistentIntObjectMap<VirtualEdgeIteratorState> additionalEdges;
+    private volatile List<VirtualEdgeIteratorState> additionalEdgeList;
+    private final GtfsRealtime.FeedHeader feedHeader;
     private final GTFSFeed staticFeed;
     private final Agency agency;
     private final GtfsStorage staticGtfs;
-    private final Map<Integer, byte[]> additionalTripDescriptors;
-    private final Map<Integer, Integer> stopSequences;
+    private final PersistentIntObjectMap<byte[]> additionalTripDescriptors;
+    private final PersistentIntObjectMap<Integer> stopSequences;
+    // by tripKey, the updates of all trips with the same key
+    private final PersistentIntObjectMap<GtfsRealtime.TripUpdate[]> tripUpdates;
     private final Map<Integer, GtfsStorage.Validity> validities;
 
-    private RealtimeFeed(GtfsStorage staticGtfs, GTFSFeed feed, Agency agency, GtfsRealtime.FeedMessage feedMessage, IntHashSet blockedEdges,
-                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<VirtualEdgeIteratorState> additionalEdges, Map<Integer, byte[]> tripDescriptors, Map<Integer, Integer> stopSequences, Map<GtfsStorage.Validity, Integer> operatingDayPatterns) {
+    RealtimeFeed(GtfsStorage staticGtfs, GTFSFeed feed, Agency agency, GtfsRealtime.FeedHeader feedHeader, PersistentIntObjectMap<Boolean> blockedEdges,
+                 PersistentIntObjectMap<Long> delaysForBoardEdges, PersistentIntObjectMap<Long> delaysForAlightEdges, PersistentIntObjectMap<VirtualEdgeIteratorState> additionalEdges,
+                 PersistentIntObjectMap<byte[]> tripDescriptors, PersistentIntObjectMap<Integer> stopSequences,
+                 PersistentIntObjectMap<GtfsRealtime.TripUpdate[]> tripUpdates, Map<Integer, GtfsStorage.Validity> validities) {
         this.staticGtfs = staticGtfs;
         this.staticFeed = feed;
         this.agency = agency;
-        this.feedMessage = feedMessage;
+        this.feedHeader = feedHeader;
         this.blockedEdges = blockedEdges;
         this.delaysForBoardEdges = delaysForBoardEdges;
         this.delaysForAlightEdges = delaysForAlightEdges;
         this.additionalEdges = additionalEdges;
         this.additionalTripDescriptors = tripDescriptors;
         this.stopSequences = stopSequences;
-        Map<Integer, GtfsStorage.Validity> reverseOperatingDayPatterns = new HashMap<>();
-        for (Map.Entry<GtfsStorage.Validity, Integer> entry : operatingDayPatterns.entrySet()) {
-            reverseOperatingDayPatterns.put(entry.getValue(), entry.getKey());
-        }
-        this.validities = Collections.unmodifiableMap(reverseOperatingDayPatterns);
+        this.tripUpdates = tripUpdates;
+        this.validities = validities;
     }
 
     public static RealtimeFeed empty(GtfsStorage staticGtfs) {
-        return new RealtimeFeed(staticGtfs, staticGtfs.getGtfsFeeds().get("gtfs_0"), null, null, new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(), Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), staticGtfs.getOperatingDayPatterns());
+        Map<Integer, GtfsStorage.Validity> reverseOperatingDayPatterns = new HashMap<>();
+        for (Map.Entry<GtfsStorage.Validity, Integer> entry : staticGtfs.getOperatingDayPatterns().entrySet()) {
+            reverseOperatingDayPatterns.put(entry.getValue(), entry.getKey());
+        }
+        return new RealtimeFeed(staticGtfs, staticGtfs.getGtfsFeeds().get("gtfs_0"), null, null, PersistentIntObjectMap.empty(), PersistentIntObjectMap.empty(),
+                PersistentIntObjectMap.empty(), PersistentIntObjectMap.empty(), PersistentIntObjectMap.empty(), PersistentIntObjectMap.empty(),
+                PersistentIntObjectMap.empty(), Collections.unmodifiableMap(reverseOperatingDayPatterns));
     }
 
+    /**
+     * Builds the overlay for a single, complete feed message. Use a {@link RealtimeFeedUpdater} to
+     * apply a stream of messages, which only processes the trip updates that changed.
+     */
     public static RealtimeFeed fromProtobuf(Graph graph, GtfsStorage staticGtfs, PtFlagEncoder encoder, GtfsRealtime.FeedMessage feedMessage) {
-        String feedKey = "gtfs_0";
-        GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
-        // TODO: Require configuration of feed and agency this realtime feed is for.
-        Agency agency = feed.agency.values().iterator().next(); // Realtime feeds are always specific to an agency.
-        final IntHashSet blockedEdges = new IntHashSet();
-        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
-        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
-        final LinkedList<VirtualEdgeIteratorState> additionalEdges = new LinkedList<>();
-        final Graph overlayGraph = new Graph() {
-            int nNodes = 0;
-            int firstEdge = graph.getAllEdges().getMaxId()+1;
-            final NodeAccess nodeAccess = new NodeAccess() {
-                IntIntHashMap additionalNodeFields = new IntIntHashMap();
-
-                @Override
-                public int getAdditionalNodeField(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public void setAdditionalNodeField(int nodeId, int additionalValue) {
-                    additionalNodeFields.put(nodeId, additionalValue);
-                }
-
-                @Override
-                public boolean is3D() {
-                    return false;
-                }
-
-                @Override
-                public int getDimension() {
-                    return 0;
-                }
-
-                @Override
-                public void ensureNode(int nodeId) {
-
-                }
-
-                @Override
-                public void setNode(int nodeId, double lat, double lon) {
-
-                }
-
-                @Override
-                public void setNode(int nodeId, double lat, double lon, double ele) {
-
-                }
-
-                @Override
-                public double getLatitude(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getLat(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getLongitude(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getLon(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getElevation(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getEle(int nodeId) {
-                    return 0;
-                }
-            };
-            @Override
-            public Graph getBaseGraph() {
-                return graph;
-            }
-
-            @Override
-            public int getNodes() {
-                return graph.getNodes() + nNodes;
-            }
-
-            @Override
-            public NodeAccess getNodeAccess() {
-                return nodeAccess;
-            }
-
-            @Override
-            public BBox getBounds() {
-                return null;
-            }
-
-            @Override
-            public EdgeIteratorState edge(int a, int b) {
-                return null;
-            }
-
-            @Override
-            public EdgeIteratorState edge(int a, int b, double distance, boolean bothDirections) {
-                int edge = firstEdge++;
-                final VirtualEdgeIteratorState newEdge = new VirtualEdgeIteratorState(-1,
-                        edge, a, b, distance,0, "", new PointList());
-                final VirtualEdgeIteratorState reverseNewEdge = new VirtualEdgeIteratorState(-1,
-                        edge, b, a, distance,0, "", new PointList());
-
-                newEdge.setReverseEdge(reverseNewEdge);
-                reverseNewEdge.setReverseEdge(newEdge);
-                additionalEdges.push(newEdge);
-                return newEdge;
-            }
-
-            @Override
-            public EdgeIteratorState getEdgeIteratorState(int edgeId, int adjNode) {
-                return null;
-            }
-
-            @Override
-            public AllEdgesIterator getAllEdges() {
-                return null;
-            }
-
-            @Override
-            public EdgeExplorer createEdgeExplorer(EdgeFilter filter) {
-                return null;
-            }
-
-            @Override
-            public EdgeExplorer createEdgeExplorer() {
-                return graph.createEdgeExplorer();
-            }
-
-            @Override
-            public Graph copyTo(Graph g) {
-                return null;
-            }
-
-            @Override
-            public GraphExtension getExtension() {
-                throw new RuntimeException();
-            }
-        };
-        Map<GtfsStorage.Validity, Integer> operatingDayPatterns = new HashMap<>(staticGtfs.getOperatingDayPatterns());
-        Map<Integer, byte[]> tripDescriptors = new HashMap<>();
-        Map<Integer, Integer> stopSequences = new HashMap<>();
-        Map<String, int[]> boardEdgesForTrip = new HashMap<>();
-        Map<String, int[]> alightEdgesForTrip = new HashMap<>();
-        Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones = new HashMap<>();
-
-        GtfsStorageI gtfsStorage = new GtfsStorageI() {
-            @Override
-            public Map<String, Fare> getFares() {
-                return null;
-            }
-
-            @Override
-            public Map<GtfsStorage.Validity, Integer> getOperatingDayPatterns() {
-                return operatingDayPatterns;
-            }
-
-            @Override
-            public Map<GtfsStorage.FeedIdWithTimezone, Integer> getWritableTimeZones() {
-                return writableTimeZones;
-            }
-
-            @Override
-            public Map<Integer, byte[]> getTripDescriptors() {
-                return tripDescriptors;
-            }
-
-            @Override
-            public Map<Integer, Integer> getStopSequences() {
-                return stopSequences;
-            }
-
-            @Override
-            public Map<String, int[]> getBoardEdgesForTrip() {
-                return boardEdgesForTrip;
-            }
-
-            @Override
-            public Map<String, int[]> getAlightEdgesForTrip() {
-                return alightEdgesForTrip;
-            }
-
-            @Override
-            public Map<String, GTFSFeed> getGtfsFeeds() {
-                HashMap<String, GTFSFeed> stringGTFSFeedHashMap = new HashMap<>();
-                stringGTFSFeedHashMap.put(feedKey, feed);
-                return stringGTFSFeedHashMap;
-            }
-
-            @Override
-            public Map<String, Transfers> getTransfers() {
-                return staticGtfs.getTransfers();
-            }
-
-            @Override
-            public Map<String, Integer> getStationNodes() {
-                return staticGtfs.getStationNodes();
-            }
-
-            @Override
-            public Map<Integer, String> getRoutes() {
-                return staticGtfs.getRoutes();
-            }
-        };
-        final GtfsReader gtfsReader = new GtfsReader(feedKey, overlayGraph, gtfsStorage, encoder, null);
-        Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
-        LocalDate dateToChange = timestamp.atZone(ZoneId.of(agency.agency_timezone)).toLocalDate(); //FIXME
-        BitSet validOnDay = new BitSet();
-        LocalDate startDate = feed.calculateStats().getStartDate();
-        validOnDay.set((int) DAYS.between(startDate, dateToChange));
-        feedMessage.getEntityList().stream()
-                .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
-                .forEach(tripUpdate -> {
-                    String key = GtfsStorage.tripKey(tripUpdate.getTrip().getTripId(), tripUpdate.getTrip().getStartTime());
-                    final int[] boardEdges = staticGtfs.getBoardEdgesForTrip().get(key);
-                    final int[] leaveEdges = staticGtfs.getAlightEdgesForTrip().get(key);
-                    if (boardEdges == null || leaveEdges == null) {
-                        logger.warn("Trip not found: {}", tripUpdate.getTrip());
-                        return;
-                    }
-                    tripUpdate.getStopTimeUpdateList().stream()
-                            .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
-                            .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
-                            .forEach(skippedStopSequenceNumber -> {
-                                blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
-                                blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
-                            });
-                    GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, agency, tripUpdate);
-                    tripWithStopTimes.stopTimes.forEach(stopTime -> {
-                        if (stopTime.stop_sequence > leaveEdges.length-1) {
-                            logger.warn("Stop sequence number too high {} vs {}",stopTime.stop_sequence, leaveEdges.length);
-                            return;
-                        }
-                        final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
-                        int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
-                        delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
-                        int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
-                        if (departureDelay > 0) {
-                            int boardEdge = boardEdges[stopTime.stop_sequence];
-                            int departureNode = graph.getEdgeIteratorState(boardEdge, Integer.MIN_VALUE).getAdjNode();
-                            int timeOffset = tripUpdate.getTrip().hasStartTime() ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
-                            int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(ZoneId.of(agency.agency_timezone), tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
-                            delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
-                        }
-                    });
-                });
-        feedMessage.getEntityList().stream()
-                .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
-                .forEach(tripUpdate -> {
-                    Trip trip = new Trip();
-                    trip.trip_id = tripUpdate.getTrip().getTripId();
-                    trip.route_id = tripUpdate.getTrip().getRouteId();
-                    final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
-                            .map(stopTimeUpdate -> {
-                                final StopTime stopTime = new StopTime();
-                                stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
-                                stopTime.stop_id = stopTimeUpdate.getStopId();
-                                stopTime.trip_id = trip.trip_id;
-                                final ZonedDateTime arrival_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(ZoneId.of(agency.agency_timezone));
-                                stopTime.arrival_time = (int) Duration.between(arrival_time.truncatedTo(ChronoUnit.DAYS), arrival_time).getSeconds();
-                                final ZonedDateTime departure_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(ZoneId.of(agency.agency_timezone));
-                                stopTime.departure_time = (int) Duration.between(departure_time.truncatedTo(ChronoUnit.DAYS), departure_time).getSeconds();
-                                return stopTime;
-                            })
-                            .collect(Collectors.toList());
-                    GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
-                    gtfsReader.addTrip(ZoneId.of(agency.agency_timezone), 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip());
-                });
-        gtfsReader.wireUpAdditionalDepartures(ZoneId.of(agency.agency_timezone));
-        return new RealtimeFeed(staticGtfs, feed, agency, feedMessage, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges, tripDescriptors, stopSequences, operatingDayPatterns);
+        return new RealtimeFeedUpdater(graph, staticGtfs, encoder).apply(feedMessage);
     }
 
     boolean isBlocked(int edgeId) {
-        return blockedEdges.contains(edgeId);
+        return blockedEdges.get(edgeId) != null;
     }
 
     List<VirtualEdgeIteratorState> getAdditionalEdges() {
-        return additionalEdges;
+        List<VirtualEdgeIteratorState> edges = additionalEdgeList;
+        if (edges == null) {
+            List<VirtualEdgeIteratorState> list = new ArrayList<>(additionalEdges.size());
+            additionalEdges.forEachValue(list::add);
+            edges = additionalEdgeList = Collections.unmodifiableList(list);
+        }
+        return edges;
     }
 
     public Optional<GtfsReader.TripWithStopTimes> getTripUpdate(GtfsRealtime.TripDescriptor tripDescriptor, Label.Transition boardEdge, Instant boardTime) {
-        if (feedMessage == null || !isThisRealtimeUpdateAboutThisLineRun(boardEdge.edge.edgeIteratorState, boardTime)) {
+        if (feedHeader == null || !isThisRealtimeUpdateAboutThisLineRun(boardEdge.edge.edgeIteratorState, boardTime)) {
             return Optional.empty();
         } else {
             return findUpdate(tripDescriptor);
@@ -405,16 +127,22 @@ public class RealtimeFeed {
     }
 
     public Optional<GtfsReader.TripWithStopTimes> findUpdate(GtfsRealtime.TripDescriptor tripDescriptor) {
-        GtfsRealtime.TripDescriptor normalizedTripDescriptor = normalize(tripDescriptor);
-        return feedMessage.getEntityList().stream()
-                .filter(e -> e.hasTripUpdate())
-                .map(e -> e.getTripUpdate())
-                .filter(tu -> normalize(tu.getTrip()).equals(normalizedTripDescriptor))
-                .map(tu -> toTripWithStopTimes(staticFeed, agency, tu))
-                .findFirst();
+        GtfsRealtime.TripDescriptor normalized = normalize(tripDescriptor);
+        GtfsRealtime.TripUpdate[] updates = tripUpdates.get(tripKey(normalized));
+        return Optional.ofNullable(updates).flatMap(u -> Arrays.stream(u)
+                .filter(tu -> normalize(tu.getTrip()).equals(normalized))
+                .findFirst())
+                .map(tu -> toTripWithStopTimes(staticFeed, agency, tu));
+    }
+
+    /**
+     * @return the non-negative key under which the update of the normalized trip is stored
+     */
+    static int tripKey(GtfsRealtime.TripDescriptor normalizedTripDescriptor) {
+        return normalizedTripDescriptor.hashCode() & Integer.MAX_VALUE;
     }
 
-    public GtfsRealtime.TripDescriptor normalize(GtfsRealtime.TripDescriptor tripDescriptor) {
+    public static GtfsRealtime.TripDescriptor normalize(GtfsRealtime.TripDescriptor tripDescriptor) {
         return GtfsRealtime.TripDescriptor.newBuilder(tripDescriptor).clearRouteId().build();
     }
 
@@ -511,7 +239,8 @@ public class RealtimeFeed {
 
     public long getDelayForBoardEdge(EdgeIteratorState edge, Instant now) {
         if (isThisRealtimeUpdateAboutThisLineRun(edge, now)) {
-            return delaysForBoardEdges.getOrDefault(edge.getEdge(), 0);
+            Long delay = delaysForBoardEdges.get(edge.getEdge());
+            return delay == null ? 0 : delay;
         } else {
             return 0;
         }
@@ -519,14 +248,15 @@ public class RealtimeFeed {
 
     public long getDelayForAlightEdge(EdgeIteratorState edge, Instant now) {
         if (isThisRealtimeUpdateAboutThisLineRun(edge, now)) {
-            return delaysForAlightEdges.getOrDefault(edge.getEdge(), 0);
+            Long delay = delaysForAlightEdges.get(edge.getEdge());
+            return delay == null ? 0 : delay;
         } else {
             return 0;
         }
     }
 
     boolean isThisRealtimeUpdateAboutThisLineRun(EdgeIteratorState edge, Instant now) {
-        if (feedMessage == null || Duration.between(feedTimestampOrNow(), now).toHours() > 24) {
+        if (feedHeader == null || Duration.between(feedTimestampOrNow(), now).toHours() > 24) {
             return false;
         } else {
             return true;
@@ -534,19 +264,30 @@ public class RealtimeFeed {
     }
 
     private Instant feedTimestampOrNow() {
-        if (feedMessage.getHeader().hasTimestamp()) {
-            return Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
+        if (feedHeader.hasTimestamp()) {
+            return Instant.ofEpochSecond(feedHeader.getTimestamp());
         } else {
             return Instant.now();
         }
     }
 
-    public byte[] getTripDescriptor(int edge) {
-        return staticGtfs.getTripDescriptors().getOrDefault(edge, additionalTripDescriptors.get(edge));
+    public GtfsRealtime.TripDescriptor getTripDescriptor(int edge) {
+        GtfsRealtime.TripDescriptor tripDescriptor = staticGtfs.getTripDescriptor(edge);
+        if (tripDescriptor != null)
+            return tripDescriptor;
+        byte[] additionalTripDescriptor = additionalTripDescriptors.get(edge);
+        if (additionalTripDescriptor == null)
+            return null;
+        try {
+            return GtfsRealtime.TripDescriptor.parseFrom(additionalTripDescriptor);
+        } catch (InvalidProtocolBufferException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     public int getStopSequence(int edge) {
-        return staticGtfs.getStopSequences().getOrDefault(edge, stopSequences.get(edge));
+        int stopSequence = staticGtfs.getStopSequence(edge);
+        return stopSequence >= 0 ? stopSequence : stopSequences.get(edge);
     }
 
     public StopTime getStopTime(GtfsRealtime.TripDescriptor tripDescriptor, Label.Transition t, Instant boardTime, int stopSequence) {
@@ -0,0 +1,632 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Agency;
+import com.conveyal.gtfs.model.Fare;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Trip;
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import org.mapdb.Fun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * Keeps the realtime overlay of the static timetable up to date. Every applied feed message only
+ * processes the trip updates that changed since the previous message, and the overlay of every
+ * trip can be replaced or removed on its own. The result is published as a new immutable
+ * {@link RealtimeFeed} which shares all unchanged parts with the previous one, so routing threads
+ * just read {@link #getRealtimeFeed()} and keep using their version while the next one is built.
+ * <p>
+ * Messages with FULL_DATASET incrementality replace all trip updates, trips which are not part of
+ * the message anymore are removed. DIFFERENTIAL messages only change the contained trips.
+ * <p>
+ * The changed trips of a message are connected with the static network together. The ids of
+ * removed trips are recycled by adding all trips again once most of the ids are unused.
+ */
+public final class RealtimeFeedUpdater {
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeFeedUpdater.class);
+    private static final String FEED_KEY = "gtfs_0";
+
+    private static class TripState {
+        final GtfsRealtime.TripUpdate tripUpdate;
+        final BitSet validOnDay;
+        // all static and additional edges with realtime information for this trip
+        final IntArrayList edges = new IntArrayList();
+        Wiring wiring;
+
+        TripState(GtfsRealtime.TripUpdate tripUpdate, BitSet validOnDay) {
+            this.tripUpdate = tripUpdate;
+            this.validOnDay = validOnDay;
+        }
+    }
+
+    /**
+     * The stop nodes, transfers and timeline edges which connect the trips added by one message with
+     * the static network. They are shared by these trips and removed with the last of them.
+     */
+    private static class Wiring {
+        final IntArrayList edges = new IntArrayList();
+        // all nodes added for the trips, they can be referenced by the edges of the wiring
+        int nodes;
+        int trips;
+    }
+
+    private final Graph graph;
+    private final GtfsStorage staticGtfs;
+    private final PtFlagEncoder encoder;
+    private final GTFSFeed feed;
+    // TODO: Require configuration of feed and agency this realtime feed is for.
+    private final Agency agency;
+    private final ZoneId zoneId;
+    private final LocalDate startDate;
+    private final Graph overlayGraph;
+    private final GtfsStorageI overlayStorage;
+    private final Map<GtfsStorage.Validity, Integer> operatingDayPatterns;
+    private final Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones = new HashMap<>();
+    // only ever grows, so the published versions can share it
+    private final Map<Integer, GtfsStorage.Validity> validities = new ConcurrentHashMap<>();
+    private final Map<GtfsRealtime.TripDescriptor, TripState> tripStates = new HashMap<>();
+
+    private final PersistentIntObjectMap.Builder<Boolean> blockedEdges = PersistentIntObjectMap.<Boolean>empty().toBuilder();
+    private final PersistentIntObjectMap.Builder<Long> delaysForBoardEdges = PersistentIntObjectMap.<Long>empty().toBuilder();
+    private final PersistentIntObjectMap.Builder<Long> delaysForAlightEdges = PersistentIntObjectMap.<Long>empty().toBuilder();
+    private final PersistentIntObjectMap.Builder<VirtualEdgeIteratorState> additionalEdges = PersistentIntObjectMap.<VirtualEdgeIteratorState>empty().toBuilder();
+    private final PersistentIntObjectMap.Builder<byte[]> tripDescriptors = PersistentIntObjectMap.<byte[]>empty().toBuilder();
+    private final PersistentIntObjectMap.Builder<Integer> stopSequences = PersistentIntObjectMap.<Integer>empty().toBuilder();
+    private final PersistentIntObjectMap.Builder<GtfsRealtime.TripUpdate[]> tripUpdates = PersistentIntObjectMap.<GtfsRealtime.TripUpdate[]>empty().toBuilder();
+
+    private final int firstNode;
+    private final int firstEdge;
+    private int nextNode;
+    private int nextEdge;
+    private int liveNodes;
+    // the edges of the trip or wiring which is currently built
+    private IntArrayList currentEdges;
+    private volatile RealtimeFeed realtimeFeed;
+
+    public RealtimeFeedUpdater(Graph graph, GtfsStorage staticGtfs, PtFlagEncoder encoder) {
+        this.graph = graph;
+        this.staticGtfs = staticGtfs;
+        this.encoder = encoder;
+        this.feed = staticGtfs.getGtfsFeeds().get(FEED_KEY);
+        this.agency = feed.agency.values().iterator().next(); // Realtime feeds are always specific to an agency.
+        this.zoneId = ZoneId.of(agency.agency_timezone);
+        this.startDate = feed.calculateStats().getStartDate();
+        this.firstNode = this.nextNode = graph.getNodes();
+        this.firstEdge = this.nextEdge = graph.getAllEdges().getMaxId() + 1;
+        for (Map.Entry<GtfsStorage.Validity, Integer> entry : staticGtfs.getOperatingDayPatterns().entrySet()) {
+            validities.put(entry.getValue(), entry.getKey());
+        }
+        this.operatingDayPatterns = new HashMap<GtfsStorage.Validity, Integer>(staticGtfs.getOperatingDayPatterns()) {
+            @Override
+            public Integer put(GtfsStorage.Validity key, Integer value) {
+                validities.put(value, key);
+                return super.put(key, value);
+            }
+        };
+        this.overlayGraph = createOverlayGraph();
+        this.overlayStorage = createOverlayStorage();
+        this.realtimeFeed = publish(null);
+    }
+
+    /**
+     * @return the latest version of the realtime overlay
+     */
+    public RealtimeFeed getRealtimeFeed() {
+        return realtimeFeed;
+    }
+
+    /**
+     * Applies the trip updates of the feed message which are different from the last ones seen for
+     * the same trip, publishes and returns the new version of the overlay.
+     */
+    public synchronized RealtimeFeed apply(GtfsRealtime.FeedMessage feedMessage) {
+        boolean differential = feedMessage.getHeader().getIncrementality() == GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL;
+        Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
+        LocalDate dateToChange = timestamp.atZone(zoneId).toLocalDate(); //FIXME
+        BitSet validOnDay = new BitSet();
+        validOnDay.set((int) DAYS.between(startDate, dateToChange));
+
+        Set<GtfsRealtime.TripDescriptor> tripsInMessage = new HashSet<>();
+        Map<GtfsRealtime.TripDescriptor, TripState> addedTrips = new LinkedHashMap<>();
+        int changedTrips = 0;
+        for (GtfsRealtime.FeedEntity entity : feedMessage.getEntityList()) {
+            if (!entity.hasTripUpdate())
+                continue;
+
+            GtfsRealtime.TripUpdate tripUpdate = entity.getTripUpdate();
+            GtfsRealtime.TripDescriptor tripKey = RealtimeFeed.normalize(tripUpdate.getTrip());
+            tripsInMessage.add(tripKey);
+            TripState previous = tripStates.get(tripKey);
+            if (entity.getIsDeleted()) {
+                if (previous != null) {
+                    removeTrip(tripKey);
+                    addedTrips.remove(tripKey);
+                    changedTrips++;
+                }
+                continue;
+            }
+            if (previous != null && isSameUpdate(previous.tripUpdate, tripUpdate))
+                continue;
+
+            removeTrip(tripKey);
+            addedTrips.put(tripKey, addTrip(tripKey, tripUpdate, validOnDay));
+            changedTrips++;
+        }
+        if (!differential) {
+            for (GtfsRealtime.TripDescriptor tripKey : new ArrayList<>(tripStates.keySet())) {
+                if (!tripsInMessage.contains(tripKey)) {
+                    removeTrip(tripKey);
+                    changedTrips++;
+                }
+            }
+        }
+        buildTrips(addedTrips.values());
+        if (isSparse())
+            compact();
+        logger.debug("Applied {} changed trips of {} feed entities, {} trips with realtime information", changedTrips, feedMessage.getEntityCount(), tripStates.size());
+        realtimeFeed = publish(feedMessage.getHeader());
+        return realtimeFeed;
+    }
+
+    private RealtimeFeed publish(GtfsRealtime.FeedHeader feedHeader) {
+        return new RealtimeFeed(staticGtfs, feed, agency, feedHeader, blockedEdges.build(), delaysForBoardEdges.build(), delaysForAlightEdges.build(),
+                additionalEdges.build(), tripDescriptors.build(), stopSequences.build(), tripUpdates.build(),
+                Collections.unmodifiableMap(validities));
+    }
+
+    private static boolean isSameUpdate(GtfsRealtime.TripUpdate a, GtfsRealtime.TripUpdate b) {
+        // ignore the timestamp, it changes with every message
+        return a.getTrip().equals(b.getTrip()) && a.getStopTimeUpdateList().equals(b.getStopTimeUpdateList());
+    }
+
+    private void removeTrip(GtfsRealtime.TripDescriptor tripKey) {
+        TripState trip = tripStates.remove(tripKey);
+        if (trip == null)
+            return;
+
+        removeTripUpdate(tripKey);
+        removeEdges(trip.edges);
+        if (trip.wiring != null && --trip.wiring.trips == 0) {
+            removeEdges(trip.wiring.edges);
+            liveNodes -= trip.wiring.nodes;
+        }
+    }
+
+    private void removeEdges(IntArrayList edges) {
+        for (IntCursor edge : edges) {
+            blockedEdges.remove(edge.value);
+            delaysForBoardEdges.remove(edge.value);
+            delaysForAlightEdges.remove(edge.value);
+            additionalEdges.remove(edge.value);
+            tripDescriptors.remove(edge.value);
+            stopSequences.remove(edge.value);
+        }
+    }
+
+    private TripState addTrip(GtfsRealtime.TripDescriptor tripKey, GtfsRealtime.TripUpdate tripUpdate, BitSet validOnDay) {
+        TripState trip = new TripState(tripUpdate, validOnDay);
+        tripStates.put(tripKey, trip);
+        putTripUpdate(tripKey, tripUpdate);
+        return trip;
+    }
+
+    /**
+     * Adds the edges of the trips and connects all of them with the static network at once, so
+     * stops served by several of the trips only get one set of stop nodes.
+     */
+    private void buildTrips(Collection<TripState> trips) {
+        if (trips.isEmpty())
+            return;
+
+        int firstTripNode = nextNode;
+        GtfsReader gtfsReader = new GtfsReader(FEED_KEY, overlayGraph, overlayStorage, encoder, null);
+        Wiring wiring = new Wiring();
+        try {
+            for (TripState trip : trips) {
+                currentEdges = trip.edges;
+                GtfsRealtime.TripDescriptor.ScheduleRelationship scheduleRelationship = trip.tripUpdate.getTrip().getScheduleRelationship();
+                if (scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED) {
+                    addScheduledTrip(gtfsReader, trip.tripUpdate, trip.validOnDay);
+                } else if (scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED) {
+                    addAddedTrip(gtfsReader, trip.tripUpdate, trip.validOnDay);
+                }
+                trip.wiring = wiring;
+                wiring.trips++;
+            }
+            currentEdges = wiring.edges;
+            gtfsReader.wireUpAdditionalDepartures(zoneId);
+        } finally {
+            currentEdges = null;
+        }
+        wiring.nodes = nextNode - firstTripNode;
+        liveNodes += wiring.nodes;
+    }
+
+    /**
+     * Node and edge ids of removed trips are not reused, so the ids would grow with every message.
+     * Once less than half of them are in use, all trips are added again with new ids.
+     */
+    private boolean isSparse() {
+        return nextNode - firstNode > 2 * liveNodes || nextEdge - firstEdge > 2 * additionalEdges.size();
+    }
+
+    private void compact() {
+        logger.debug("Compacting realtime overlay of {} nodes and {} edges, {} edges in use", nextNode - firstNode, nextEdge - firstEdge, additionalEdges.size());
+        List<TripState> trips = new ArrayList<>(tripStates.size());
+        for (GtfsRealtime.TripDescriptor tripKey : new ArrayList<>(tripStates.keySet())) {
+            TripState trip = tripStates.get(tripKey);
+            removeTrip(tripKey);
+            trips.add(addTrip(tripKey, trip.tripUpdate, trip.validOnDay));
+        }
+        nextNode = firstNode;
+        nextEdge = firstEdge;
+        buildTrips(trips);
+    }
+
+    private void putTripUpdate(GtfsRealtime.TripDescriptor tripKey, GtfsRealtime.TripUpdate tripUpdate) {
+        int key = RealtimeFeed.tripKey(tripKey);
+        GtfsRealtime.TripUpdate[] others = withoutTripUpdate(tripUpdates.get(key), tripKey);
+        GtfsRealtime.TripUpdate[] updates = others == null ? new GtfsRealtime.TripUpdate[1] : Arrays.copyOf(others, others.length + 1);
+        updates[updates.length - 1] = tripUpdate;
+        tripUpdates.put(key, updates);
+    }
+
+    private void removeTripUpdate(GtfsRealtime.TripDescriptor tripKey) {
+        int key = RealtimeFeed.tripKey(tripKey);
+        GtfsRealtime.TripUpdate[] others = withoutTripUpdate(tripUpdates.get(key), tripKey);
+        if (others == null)
+            tripUpdates.remove(key);
+        else
+            tripUpdates.put(key, others);
+    }
+
+    // trip updates are stored by the hash of their trip, so a slot holds all updates with the same hash
+    private static GtfsRealtime.TripUpdate[] withoutTripUpdate(GtfsRealtime.TripUpdate[] updates, GtfsRealtime.TripDescriptor tripKey) {
+        if (updates == null)
+            return null;
+        GtfsRealtime.TripUpdate[] others = Arrays.stream(updates)
+                .filter(tripUpdate -> !RealtimeFeed.normalize(tripUpdate.getTrip()).equals(tripKey))
+                .toArray(GtfsRealtime.TripUpdate[]::new);
+        return others.length == 0 ? null : others;
+    }
+
+    private void addScheduledTrip(GtfsReader gtfsReader, GtfsRealtime.TripUpdate tripUpdate, BitSet validOnDay) {
+        String key = GtfsStorage.tripKey(tripUpdate.getTrip().getTripId(), tripUpdate.getTrip().getStartTime());
+        final int[] boardEdges = staticGtfs.getBoardEdgesForTrip().get(key);
+        final int[] leaveEdges = staticGtfs.getAlightEdgesForTrip().get(key);
+        if (boardEdges == null || leaveEdges == null) {
+            logger.warn("Trip not found: {}", tripUpdate.getTrip());
+            return;
+        }
+        tripUpdate.getStopTimeUpdateList().stream()
+                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
+                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
+                .forEach(skippedStopSequenceNumber -> {
+                    block(boardEdges[skippedStopSequenceNumber]);
+                    block(leaveEdges[skippedStopSequenceNumber]);
+                });
+        GtfsReader.TripWithStopTimes tripWithStopTimes = RealtimeFeed.toTripWithStopTimes(feed, agency, tripUpdate);
+        tripWithStopTimes.stopTimes.forEach(stopTime -> {
+            if (stopTime.stop_sequence > leaveEdges.length-1) {
+                logger.warn("Stop sequence number too high {} vs {}",stopTime.stop_sequence, leaveEdges.length);
+                return;
+            }
+            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
+            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
+            int alightEdge = leaveEdges[stopTime.stop_sequence];
+            delaysForAlightEdges.put(alightEdge, arrivalDelay * 1000L);
+            currentEdges.add(alightEdge);
+            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
+            if (departureDelay > 0) {
+                int boardEdge = boardEdges[stopTime.stop_sequence];
+                int departureNode = graph.getEdgeIteratorState(boardEdge, Integer.MIN_VALUE).getAdjNode();
+                int timeOffset = tripUpdate.getTrip().hasStartTime() ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
+                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(zoneId, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
+                delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000L);
+            }
+        });
+    }
+
+    private void block(int edge) {
+        blockedEdges.put(edge, Boolean.TRUE);
+        currentEdges.add(edge);
+    }
+
+    private void addAddedTrip(GtfsReader gtfsReader, GtfsRealtime.TripUpdate tripUpdate, BitSet validOnDay) {
+        Trip trip = new Trip();
+        trip.trip_id = tripUpdate.getTrip().getTripId();
+        trip.route_id = tripUpdate.getTrip().getRouteId();
+        final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
+                .map(stopTimeUpdate -> {
+                    final StopTime stopTime = new StopTime();
+                    stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
+                    stopTime.stop_id = stopTimeUpdate.getStopId();
+                    stopTime.trip_id = trip.trip_id;
+                    final ZonedDateTime arrival_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(zoneId);
+                    stopTime.arrival_time = (int) Duration.between(arrival_time.truncatedTo(ChronoUnit.DAYS), arrival_time).getSeconds();
+                    final ZonedDateTime departure_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(zoneId);
+                    stopTime.departure_time = (int) Duration.between(departure_time.truncatedTo(ChronoUnit.DAYS), departure_time).getSeconds();
+                    return stopTime;
+                })
+                .collect(Collectors.toList());
+        GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
+        gtfsReader.addTrip(zoneId, 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip());
+    }
+
+    private Graph createOverlayGraph() {
+        return new Graph() {
+            final NodeAccess nodeAccess = new NodeAccess() {
+                @Override
+                public int getAdditionalNodeField(int nodeId) {
+                    return 0;
+                }
+
+                @Override
+                public void setAdditionalNodeField(int nodeId, int additionalValue) {
+                    nextNode = Math.max(nextNode, nodeId + 1);
+                }
+
+                @Override
+                public boolean is3D() {
+                    return false;
+                }
+
+                @Override
+                public int getDimension() {
+                    return 0;
+                }
+
+                @Override
+                public void ensureNode(int nodeId) {
+
+                }
+
+                @Override
+                public void setNode(int nodeId, double lat, double lon) {
+                    nextNode = Math.max(nextNode, nodeId + 1);
+                }
+
+                @Override
+                public void setNode(int nodeId, double lat, double lon, double ele) {
+                    nextNode = Math.max(nextNode, nodeId + 1);
+                }
+
+                @Override
+                public double getLatitude(int nodeId) {
+                    return 0;
+                }
+
+                @Override
+                public double getLat(int nodeId) {
+                    return 0;
+                }
+
+                @Override
+                public double getLongitude(int nodeId) {
+                    return 0;
+                }
+
+                @Override
+                public double getLon(int nodeId) {
+                    return 0;
+                }
+
+                @Override
+                public double getElevation(int nodeId) {
+                    return 0;
+                }
+
+                @Override
+                public double getEle(int nodeId) {
+                    return 0;
+                }
+            };
+
+            @Override
+            public Graph getBaseGraph() {
+                return graph;
+            }
+
+            @Override
+            public int getNodes() {
+                // node ids of removed trips are only reused after compact
+                return nextNode;
+            }
+
+            @Override
+            public NodeAccess getNodeAccess() {
+                return nodeAccess;
+            }
+
+            @Override
+            public BBox getBounds() {
+                return null;
+            }
+
+            @Override
+            public EdgeIteratorState edge(int a, int b) {
+                return null;
+            }
+
+            @Override
+            public EdgeIteratorState edge(int a, int b, double distance, boolean bothDirections) {
+                int edge = nextEdge++;
+                final VirtualEdgeIteratorState newEdge = new VirtualEdgeIteratorState(-1,
+                        edge, a, b, distance,0, "", new PointList());
+                final VirtualEdgeIteratorState reverseNewEdge = new VirtualEdgeIteratorState(-1,
+                        edge, b, a, distance,0, "", new PointList());
+
+                newEdge.setReverseEdge(reverseNewEdge);
+                reverseNewEdge.setReverseEdge(newEdge);
+                additionalEdges.put(edge, newEdge);
+                currentEdges.add(edge);
+                return newEdge;
+            }
+
+            @Override
+            public EdgeIteratorState getEdgeIteratorState(int edgeId, int adjNode) {
+                return null;
+            }
+
+            @Override
+            public AllEdgesIterator getAllEdges() {
+                return null;
+            }
+
+            @Override
+            public EdgeExplorer createEdgeExplorer(EdgeFilter filter) {
+                return null;
+            }
+
+            @Override
+            public EdgeExplorer createEdgeExplorer() {
+                return graph.createEdgeExplorer();
+            }
+
+            @Override
+            public Graph copyTo(Graph g) {
+                return null;
+            }
+
+            @Override
+            public GraphExtension getExtension() {
+                throw new RuntimeException();
+            }
+        };
+    }
+
+    private GtfsStorageI createOverlayStorage() {
+        Map<Integer, byte[]> tripDescriptorView = new EdgeMapView<>(tripDescriptors);
+        Map<Integer, Integer> stopSequenceView = new EdgeMapView<>(stopSequences);
+        Map<String, GTFSFeed> gtfsFeeds = Collections.singletonMap(FEED_KEY, feed);
+        return new GtfsStorageI() {
+            @Override
+            public Map<String, Fare> getFares() {
+                return null;
+            }
+
+            @Override
+            public Map<GtfsStorage.Validity, Integer> getOperatingDayPatterns() {
+                return operatingDayPatterns;
+            }
+
+            @Override
+            public Map<GtfsStorage.FeedIdWithTimezone, Integer> getWritableTimeZones() {
+                return writableTimeZones;
+            }
+
+            @Override
+            public Map<Integer, byte[]> getTripDescriptors() {
+                return tripDescriptorView;
+            }
+
+            @Override
+            public Map<Integer, Integer> getStopSequences() {
+                return stopSequenceView;
+            }
+
+            @Override
+            public Map<String, int[]> getBoardEdgesForTrip() {
+                // only written for added trips, which are found by their trip update
+                return new HashMap<>();
+            }
+
+            @Override
+            public Map<String, int[]> getAlightEdgesForTrip() {
+                return new HashMap<>();
+            }
+
+            @Override
+            public Map<String, GTFSFeed> getGtfsFeeds() {
+                return gtfsFeeds;
+            }
+
+            @Override
+            public Map<String, Transfers> getTransfers() {
+                return staticGtfs.getTransfers();
+            }
+
+            @Override
+            public Map<String, Integer> getStationNodes() {
+                return staticGtfs.getStationNodes();
+            }
+
+            @Override
+            public Map<Integer, String> getRoutes() {
+                return staticGtfs.getRoutes();
+            }
+        };
+    }
+
+    /**
+     * Lets the GtfsReader write the values of additional edges into the builders of the next version.
+     */
+    private class EdgeMapView<T> extends AbstractMap<Integer, T> {
+        private final PersistentIntObjectMap.Builder<T> builder;
+
+        EdgeMapView(PersistentIntObjectMap.Builder<T> builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public T get(Object key) {
+            return key instanceof Integer ? builder.get((Integer) key) : null;
+        }
+
+        @Override
+        public T put(Integer key, T value) {
+            currentEdges.add(key);
+            return builder.put(key, value);
+        }
+
+        @Override
+        public Set<Entry<Integer, T>> entrySet() {
+            throw new UnsupportedOperationException("realtime edge values cannot be iterated");
+        }
+    }
+}
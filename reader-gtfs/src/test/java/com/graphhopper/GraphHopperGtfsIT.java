@@ -47,6 +47,7 @@ import java.util.stream.Stream;
 import static com.graphhopper.reader.gtfs.GtfsHelper.time;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class GraphHopperGtfsIT {
 
@@ -193,6 +194,57 @@ public class GraphHopperGtfsIT {
         assertEquals(expectedDepartureTimes, actualDepartureTimes);
     }
 
+    @Test
+    public void testRoute1ProfileRange() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        GHRequest ghRequest = new GHRequest(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(2007,1,1,8,40).atZone(zoneId).toInstant());
+        ghRequest.getHints().put(Parameters.PT.PROFILE_DURATION, "PT1H");
+
+        GHResponse response = graphHopper.route(ghRequest);
+        // the range is computed until one hour after the end of the five minute bucket, but only the
+        // journeys departing within the requested hour are returned
+        assertEquals(Stream.of("08:44", "08:54", "09:04", "09:14", "09:24", "09:34").map(LocalTime::parse).collect(Collectors.toList()),
+                departureTimes(response));
+
+        ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(2007,1,1,8,45).atZone(zoneId).toInstant());
+        response = graphHopper.route(ghRequest);
+        assertFalse(response.getDebugInfo().contains("profile_cache:hit"));
+        ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(2007,1,1,8,47).atZone(zoneId).toInstant());
+        response = graphHopper.route(ghRequest);
+        assertTrue(response.getDebugInfo().contains("profile_cache:hit"));
+        assertEquals(Stream.of("08:54", "09:04", "09:14", "09:24", "09:34", "09:44").map(LocalTime::parse).collect(Collectors.toList()),
+                departureTimes(response));
+    }
+
+    @Test
+    public void testRoute1ProfileRangeWithLimit() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        GHRequest ghRequest = new GHRequest(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        // the 08:44 departure is in the bucket starting at 08:40 but before the requested time
+        ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(2007,1,1,8,44,30).atZone(zoneId).toInstant());
+        ghRequest.getHints().put(Parameters.PT.PROFILE_DURATION, "PT1H");
+        ghRequest.getHints().put(Parameters.PT.LIMIT_SOLUTIONS, 2);
+
+        GHResponse response = graphHopper.route(ghRequest);
+        assertEquals(Stream.of("08:54", "09:04").map(LocalTime::parse).collect(Collectors.toList()),
+                departureTimes(response));
+    }
+
+    private List<LocalTime> departureTimes(GHResponse response) {
+        return response.getAll().stream()
+                .map(path -> LocalTime.from(((Trip.PtLeg) path.getLegs().get(0)).getDepartureTime().toInstant().atZone(zoneId)))
+                .collect(Collectors.toList());
+    }
+
     @Test
     public void testRoute1ProfileLatestDeparture() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
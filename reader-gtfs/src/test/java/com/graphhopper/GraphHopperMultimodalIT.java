@@ -32,7 +32,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.Collections;
@@ -83,4 +85,25 @@ public class GraphHopperMultimodalIT {
                 .isEqualTo(response.getAll().get(0).getLegs().get(1).getDepartureTime().toInstant());
     }
 
+    @Test
+    public void testWalkOnlyJourneyOfRangeQueryDepartsAtRequestTime() {
+        GHRequest ghRequest = new GHRequest(
+                36.91311729030539,-116.76769495010377,
+                36.91260259593356,-116.76149368286134
+        );
+        ghRequest.getHints().put(Parameters.PT.PROFILE_DURATION, "PT1H");
+
+        // both requests are in the same departure time bucket, the second one is answered from the cache
+        for (LocalTime time : Arrays.asList(LocalTime.of(6, 42), LocalTime.of(6, 44))) {
+            ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(LocalDate.of(2007,1,1), time).atZone(zoneId).toInstant());
+            GHResponse response = graphHopper.route(ghRequest);
+
+            PathWrapper walkOnly = response.getAll().stream()
+                    .filter(path -> path.getLegs().stream().noneMatch(leg -> leg instanceof Trip.PtLeg))
+                    .findFirst().get();
+            assertThat(walkOnly.getLegs().get(0).getDepartureTime().toInstant().atZone(zoneId).toLocalTime())
+                    .isEqualTo(time);
+        }
+    }
+
 }
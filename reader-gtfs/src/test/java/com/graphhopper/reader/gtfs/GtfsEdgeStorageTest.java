@@ -0,0 +1,118 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GtfsEdgeStorageTest {
+    private final String location = "./target/tmp/gtfs-edge-storage";
+
+    @Before
+    @After
+    public void cleanUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        Directory dir = new RAMDirectory(location, true).create();
+        GtfsEdgeStorage storage = new GtfsEdgeStorage(dir);
+        storage.create(100);
+        assertEquals(-1, storage.getStopSequence(0));
+        assertNull(storage.getTripDescriptor(0));
+
+        // more edges than fit into the first segment
+        for (int edge = 0; edge < 100_000; edge += 2) {
+            storage.setStopSequence(edge, edge % 7);
+            storage.setTripDescriptor(edge, descriptor(edge / 4));
+        }
+        storage.setStopSequence(100_001, 0);
+        storage.flush();
+        storage.close();
+
+        storage = new GtfsEdgeStorage(new RAMDirectory(location, true));
+        assertTrue(storage.loadExisting());
+        for (int edge = 0; edge < 100_000; edge++) {
+            if (edge % 2 == 0) {
+                assertEquals(edge % 7, storage.getStopSequence(edge));
+                assertArrayEquals(descriptor(edge / 4), storage.getTripDescriptor(edge));
+            } else {
+                assertEquals(-1, storage.getStopSequence(edge));
+                assertNull(storage.getTripDescriptor(edge));
+            }
+        }
+        assertEquals(0, storage.getStopSequence(100_001));
+        assertNull(storage.getTripDescriptor(100_001));
+        assertEquals(-1, storage.getStopSequence(100_002));
+        storage.close();
+    }
+
+    @Test
+    public void testDecodeTripDescriptor() {
+        GtfsEdgeStorage storage = new GtfsEdgeStorage(new RAMDirectory());
+        storage.create(100);
+        GtfsEdgeStorage.TripDescriptorDecoder<String> decoder = (bytes, offset, length) -> new String(bytes, offset, length);
+        assertNull(storage.getTripDescriptor(0, decoder));
+
+        // longer than the initial buffer
+        String longTrip = String.join("", Collections.nCopies(20, "long trip"));
+        storage.setTripDescriptor(0, descriptor(1));
+        storage.setTripDescriptor(1, longTrip.getBytes());
+        storage.setTripDescriptor(2, descriptor(2));
+        assertEquals("trip1", storage.getTripDescriptor(0, decoder));
+        assertEquals(longTrip, storage.getTripDescriptor(1, decoder));
+        assertEquals("trip2", storage.getTripDescriptor(2, decoder));
+        assertNull(storage.getTripDescriptor(3, decoder));
+    }
+
+    @Test
+    public void testMapView() {
+        GtfsEdgeStorage storage = new GtfsEdgeStorage(new RAMDirectory());
+        storage.create(100);
+        Map<Integer, Integer> stopSequences = storage.stopSequencesAsMap();
+        assertNull(stopSequences.put(3, 1));
+        assertEquals(1, (int) stopSequences.put(3, 2));
+        stopSequences.put(5, 0);
+        assertEquals(2, stopSequences.size());
+        assertEquals(2, (int) stopSequences.get(3));
+        assertFalse(stopSequences.containsKey(4));
+        assertEquals(7, (int) stopSequences.getOrDefault(4, 7));
+        assertEquals("{3=2, 5=0}", stopSequences.toString());
+    }
+
+    @Test
+    public void testNotExisting() {
+        assertFalse(new GtfsEdgeStorage(new RAMDirectory(location, true)).loadExisting());
+    }
+
+    private static byte[] descriptor(int trip) {
+        return ("trip" + trip).getBytes();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParetoBagTest {
+
+    @Test
+    public void testSameParetoSetAsLinearScan() {
+        Random random = new Random(0);
+        for (boolean reverse : new boolean[]{false, true}) {
+            for (boolean profileQuery : new boolean[]{false, true}) {
+                for (boolean mindTransfers : new boolean[]{false, true}) {
+                    ParetoBag bag = new ParetoBag(reverse, profileQuery, mindTransfers);
+                    List<Label> expected = new ArrayList<>();
+                    for (int i = 0; i < 2000; i++) {
+                        Label label = randomLabel(random);
+                        boolean dominated = isDominated(label, expected, reverse, profileQuery, mindTransfers);
+                        assertEquals(dominated, bag.isDominated(label));
+                        if (dominated) {
+                            continue;
+                        }
+
+                        List<Label> removed = new ArrayList<>();
+                        bag.removeDominatedBy(label, removed);
+                        Set<Label> expectedRemoved = Collections.newSetFromMap(new IdentityHashMap<Label, Boolean>());
+                        for (Iterator<Label> iterator = expected.iterator(); iterator.hasNext(); ) {
+                            Label they = iterator.next();
+                            if (dominates(label, they, reverse, profileQuery, mindTransfers)) {
+                                expectedRemoved.add(they);
+                                iterator.remove();
+                            }
+                        }
+                        assertEquals(expectedRemoved.size(), removed.size());
+                        for (Label they : removed) {
+                            assertEquals(true, expectedRemoved.contains(they));
+                        }
+                        bag.add(label);
+                        expected.add(label);
+                        assertEquals(expected.size(), bag.size());
+                    }
+                }
+            }
+        }
+    }
+
+    private Label randomLabel(Random random) {
+        long currentTime = random.nextInt(100);
+        Long departureTime = random.nextInt(4) == 0 ? null : (long) random.nextInt(100);
+        boolean impossible = random.nextInt(10) == 0;
+        return new Label(currentTime, 0, 0, random.nextInt(3), random.nextInt(20) == 0 ? 1 : 0, 0, departureTime, random.nextInt(50), 0, impossible, null);
+    }
+
+    // the linear scan which was used before the bag
+    private boolean isDominated(Label me, List<Label> labels, boolean reverse, boolean profileQuery, boolean mindTransfers) {
+        if (me.nWalkDistanceConstraintViolations > 0) {
+            return true;
+        }
+        for (Label they : labels) {
+            if (dominates(they, me, reverse, profileQuery, mindTransfers)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean dominates(Label me, Label they, boolean reverse, boolean profileQuery, boolean mindTransfers) {
+        if (profileQuery) {
+            if (me.departureTime != null && they.departureTime != null) {
+                if (currentTime(me, reverse) > currentTime(they, reverse))
+                    return false;
+                if (departureTime(me, reverse) > departureTime(they, reverse))
+                    return false;
+            } else {
+                if (travelTime(me, reverse) > travelTime(they, reverse))
+                    return false;
+            }
+        } else {
+            if (currentTime(me, reverse) > currentTime(they, reverse))
+                return false;
+        }
+
+        if (mindTransfers && me.nTransfers > they.nTransfers)
+            return false;
+        if (me.nWalkDistanceConstraintViolations > they.nWalkDistanceConstraintViolations)
+            return false;
+        if (me.impossible && !they.impossible)
+            return false;
+
+        if (profileQuery) {
+            if (me.departureTime != null && they.departureTime != null) {
+                if (currentTime(me, reverse) < currentTime(they, reverse))
+                    return true;
+                if (departureTime(me, reverse) < departureTime(they, reverse))
+                    return true;
+            } else {
+                if (travelTime(me, reverse) < travelTime(they, reverse))
+                    return true;
+            }
+        } else {
+            if (currentTime(me, reverse) < currentTime(they, reverse))
+                return true;
+        }
+        if (mindTransfers && me.nTransfers < they.nTransfers)
+            return true;
+        if (me.nWalkDistanceConstraintViolations < they.nWalkDistanceConstraintViolations)
+            return true;
+
+        Comparator<Label> queueComparator = Comparator.<Label>comparingLong(l -> l.impossible ? 1 : 0)
+                .thenComparingLong(l -> currentTime(l, reverse))
+                .thenComparingLong(l -> l.nTransfers)
+                .thenComparingLong(l -> l.nWalkDistanceConstraintViolations)
+                .thenComparingLong(l -> l.departureTime != null ? departureTime(l, reverse) : 0);
+        return queueComparator.compare(me, they) <= 0;
+    }
+
+    private long currentTime(Label label, boolean reverse) {
+        return reverse ? -label.currentTime : label.currentTime;
+    }
+
+    private long departureTime(Label label, boolean reverse) {
+        return reverse ? label.departureTime : -label.departureTime;
+    }
+
+    private long travelTime(Label label, boolean reverse) {
+        return label.departureTime == null ? label.walkTime : (reverse ? -1 : 1) * (label.currentTime - label.departureTime);
+    }
+}
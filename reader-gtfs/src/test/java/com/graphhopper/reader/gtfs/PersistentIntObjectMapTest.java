@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PersistentIntObjectMapTest {
+
+    @Test
+    public void testSameAsHashMap() {
+        Random random = new Random(0);
+        PersistentIntObjectMap.Builder<Integer> builder = PersistentIntObjectMap.<Integer>empty().toBuilder();
+        Map<Integer, Integer> expected = new HashMap<>();
+        List<PersistentIntObjectMap<Integer>> versions = new ArrayList<>();
+        List<Map<Integer, Integer>> expectedVersions = new ArrayList<>();
+        for (int version = 0; version < 20; version++) {
+            for (int i = 0; i < 500; i++) {
+                // mostly close keys like the edges of a trip, sometimes far away ones
+                int key = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(5000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), builder.remove(key));
+                } else {
+                    int value = random.nextInt();
+                    assertEquals(expected.put(key, value), builder.put(key, value));
+                }
+            }
+            assertEquals(expected.size(), builder.size());
+            versions.add(builder.build());
+            expectedVersions.add(new HashMap<>(expected));
+        }
+
+        for (int version = 0; version < versions.size(); version++) {
+            PersistentIntObjectMap<Integer> map = versions.get(version);
+            Map<Integer, Integer> expectedMap = expectedVersions.get(version);
+            assertEquals(expectedMap.size(), map.size());
+            for (Map.Entry<Integer, Integer> entry : expectedMap.entrySet()) {
+                assertEquals(entry.getValue(), map.get(entry.getKey()));
+            }
+            for (int key = 0; key < 5000; key++) {
+                assertEquals(expectedMap.get(key), map.get(key));
+            }
+            List<Integer> values = new ArrayList<>();
+            map.forEachValue(values::add);
+            List<Integer> expectedValues = new ArrayList<>();
+            new TreeMap<>(expectedMap).forEach((key, value) -> expectedValues.add(value));
+            assertEquals(expectedValues, values);
+        }
+    }
+
+    @Test
+    public void testVersionsShareUnchangedNodes() {
+        PersistentIntObjectMap.Builder<String> builder = PersistentIntObjectMap.<String>empty().toBuilder();
+        builder.put(1, "a");
+        PersistentIntObjectMap<String> first = builder.build();
+        builder.put(2, "b");
+        builder.remove(1);
+        PersistentIntObjectMap<String> second = builder.build();
+        assertEquals("a", first.get(1));
+        assertNull(first.get(2));
+        assertEquals(1, first.size());
+        assertNull(second.get(1));
+        assertEquals("b", second.get(2));
+        assertEquals(1, second.size());
+        assertNull(builder.remove(3));
+        assertSame(PersistentIntObjectMap.empty(), PersistentIntObjectMap.empty());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ProfileQueryCacheTest {
+
+    @Test
+    public void testBuckets() {
+        ProfileQueryCache cache = new ProfileQueryCache(10, Duration.ofMinutes(5));
+        Instant time = Instant.parse("2007-01-01T10:07:00Z");
+        long bucket = cache.getBucket(time);
+        assertEquals(Instant.parse("2007-01-01T10:05:00Z"), cache.getBucketStart(bucket));
+        assertEquals(Instant.parse("2007-01-01T10:10:00Z"), cache.getBucketEnd(bucket));
+        assertEquals(bucket, cache.getBucket(Instant.parse("2007-01-01T10:05:00Z")));
+        assertEquals(bucket + 1, cache.getBucket(Instant.parse("2007-01-01T10:10:00Z")));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        ProfileQueryCache cache = new ProfileQueryCache(2, Duration.ofMinutes(5));
+        List<PathWrapper> journeys = Collections.singletonList(new PathWrapper());
+        cache.put(key(1, 0), null, journeys);
+        cache.put(key(2, 0), null, journeys);
+        assertEquals(journeys, cache.get(key(1, 0), null));
+        cache.put(key(3, 0), null, journeys);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(key(1, 0), null));
+        assertNull(cache.get(key(2, 0), null));
+        assertNotNull(cache.get(key(3, 0), null));
+        assertNull(cache.get(key(3, 1), null));
+    }
+
+    private static ProfileQueryCache.Key key(int originStationNode, long bucket) {
+        return new ProfileQueryCache.Key(originStationNode, bucket, new GHPoint(52.5, 13.4), new GHPoint(52.6, 13.5), Locale.ROOT,
+                Collections.singletonMap("pt.profile_duration", "PT1H"));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.conveyal.gtfs.model.StopTime;
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.Helper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mapdb.Fun;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.transit.realtime.GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL;
+import static com.google.transit.realtime.GtfsRealtime.FeedHeader.Incrementality.FULL_DATASET;
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SCHEDULED;
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static org.junit.Assert.*;
+
+public class RealtimeFeedUpdaterIT {
+
+    private static final String GRAPH_LOC = "target/RealtimeFeedUpdaterIT";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static PtFlagEncoder ptFlagEncoder;
+    private static GraphHopperStorage graphHopperStorage;
+    private static GtfsStorage gtfsStorage;
+
+    @BeforeClass
+    public static void init() {
+        Helper.removeDir(new File(GRAPH_LOC));
+        ptFlagEncoder = new PtFlagEncoder();
+        EncodingManager encodingManager = new EncodingManager(Arrays.asList(ptFlagEncoder), 8);
+        GHDirectory directory = GraphHopperGtfs.createGHDirectory(GRAPH_LOC);
+        gtfsStorage = GraphHopperGtfs.createGtfsStorage();
+        graphHopperStorage = GraphHopperGtfs.createOrLoad(directory, encodingManager, ptFlagEncoder, gtfsStorage, true, Collections.singleton("files/sample-feed.zip"), Collections.emptyList());
+    }
+
+    @AfterClass
+    public static void close() {
+        graphHopperStorage.close();
+    }
+
+    @Test
+    public void testUnchangedTripIsSkipped() {
+        RealtimeFeedUpdater updater = new RealtimeFeedUpdater(graphHopperStorage, gtfsStorage, ptFlagEncoder);
+        RealtimeFeed first = updater.apply(message(DIFFERENTIAL, 0, delay(600)));
+        assertFalse(first.getAdditionalEdges().isEmpty());
+
+        // only the timestamp is new, so the trip keeps its edges
+        RealtimeFeed second = updater.apply(message(DIFFERENTIAL, 60, delay(600)));
+        assertEquals(first.getAdditionalEdges(), second.getAdditionalEdges());
+        assertEquals(600, arrivalDelay(second));
+    }
+
+    @Test
+    public void testChangedTripReplacesItsEdges() {
+        RealtimeFeedUpdater updater = new RealtimeFeedUpdater(graphHopperStorage, gtfsStorage, ptFlagEncoder);
+        RealtimeFeed first = updater.apply(message(DIFFERENTIAL, 0, delay(600)));
+        RealtimeFeed second = updater.apply(message(DIFFERENTIAL, 60, delay(1200)));
+
+        assertEquals(first.getAdditionalEdges().size(), second.getAdditionalEdges().size());
+        assertTrue(Collections.disjoint(first.getAdditionalEdges(), second.getAdditionalEdges()));
+        assertEquals(1200, arrivalDelay(second));
+        // requests which started before keep their version
+        assertEquals(600, arrivalDelay(first));
+    }
+
+    @Test
+    public void testRemovedTripDropsItsEdges() {
+        RealtimeFeedUpdater updater = new RealtimeFeedUpdater(graphHopperStorage, gtfsStorage, ptFlagEncoder);
+        RealtimeFeed first = updater.apply(message(DIFFERENTIAL, 0, delay(600), skip()));
+        assertTrue(first.isBlocked(skippedBoardEdge()));
+
+        GtfsRealtime.FeedEntity.Builder deleted = skip().setIsDeleted(true);
+        RealtimeFeed second = updater.apply(message(DIFFERENTIAL, 60, deleted));
+        assertFalse(second.isBlocked(skippedBoardEdge()));
+        assertFalse(second.findUpdate(deleted.getTripUpdate().getTrip()).isPresent());
+        assertEquals(first.getAdditionalEdges(), second.getAdditionalEdges());
+
+        RealtimeFeed third = updater.apply(message(DIFFERENTIAL, 120, delay(600).setIsDeleted(true)));
+        assertTrue(third.getAdditionalEdges().isEmpty());
+        assertFalse(third.findUpdate(delay(600).getTripUpdate().getTrip()).isPresent());
+    }
+
+    @Test
+    public void testFullDatasetClearsMissingTrips() {
+        RealtimeFeedUpdater updater = new RealtimeFeedUpdater(graphHopperStorage, gtfsStorage, ptFlagEncoder);
+        updater.apply(message(FULL_DATASET, 0, delay(600), skip()));
+
+        RealtimeFeed differential = updater.apply(message(DIFFERENTIAL, 60, delay(600)));
+        assertTrue(differential.isBlocked(skippedBoardEdge()));
+
+        RealtimeFeed fullDataset = updater.apply(message(FULL_DATASET, 120, delay(600)));
+        assertFalse(fullDataset.isBlocked(skippedBoardEdge()));
+        assertEquals(600, arrivalDelay(fullDataset));
+
+        RealtimeFeed empty = updater.apply(message(FULL_DATASET, 180));
+        assertTrue(empty.getAdditionalEdges().isEmpty());
+    }
+
+    @Test
+    public void testIdsOfRemovedTripsAreReused() {
+        RealtimeFeedUpdater updater = new RealtimeFeedUpdater(graphHopperStorage, gtfsStorage, ptFlagEncoder);
+        int firstEdge = graphHopperStorage.getAllEdges().getMaxId() + 1;
+        for (int i = 0; i < 50; i++) {
+            RealtimeFeed realtimeFeed = updater.apply(message(DIFFERENTIAL, 60 * i, delay(600 + 60 * i)));
+            List<VirtualEdgeIteratorState> edges = realtimeFeed.getAdditionalEdges();
+            int maxEdge = edges.stream().mapToInt(VirtualEdgeIteratorState::getEdge).max().getAsInt();
+            assertTrue("edge " + maxEdge + " after " + i + " changes", maxEdge < firstEdge + 2 * edges.size());
+            assertEquals(600 + 60 * i, arrivalDelay(realtimeFeed));
+        }
+    }
+
+    private int skippedBoardEdge() {
+        return gtfsStorage.getBoardEdgesForTrip().get(GtfsStorage.tripKey("AB1", ""))[2];
+    }
+
+    private int arrivalDelay(RealtimeFeed realtimeFeed) {
+        GtfsReader.TripWithStopTimes trip = realtimeFeed.findUpdate(delay(0).getTripUpdate().getTrip()).get();
+        StopTime planned = gtfsStorage.getGtfsFeeds().get("gtfs_0").stop_times.get(new Fun.Tuple2<>("CITY2", 3));
+        return trip.stopTimes.stream().filter(stopTime -> stopTime.stop_sequence == 3).findFirst().get().arrival_time
+                - planned.arrival_time;
+    }
+
+    private static GtfsRealtime.FeedEntity.Builder delay(int seconds) {
+        GtfsRealtime.FeedEntity.Builder entity = GtfsRealtime.FeedEntity.newBuilder().setId("1");
+        entity.getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(seconds).build());
+        return entity;
+    }
+
+    private static GtfsRealtime.FeedEntity.Builder skip() {
+        GtfsRealtime.FeedEntity.Builder entity = GtfsRealtime.FeedEntity.newBuilder().setId("2");
+        entity.getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("AB1"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(2)
+                .setScheduleRelationship(SKIPPED);
+        return entity;
+    }
+
+    private static GtfsRealtime.FeedMessage message(GtfsRealtime.FeedHeader.Incrementality incrementality, int seconds,
+                                                    GtfsRealtime.FeedEntity.Builder... entities) {
+        GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setIncrementality(incrementality)
+                .setTimestamp(LocalDateTime.of(2007, 1, 1, 0, 0).plusSeconds(seconds).atZone(zoneId).toEpochSecond()));
+        for (GtfsRealtime.FeedEntity.Builder entity : entities) {
+            feedMessageBuilder.addEntity(entity);
+        }
+        return feedMessageBuilder.build();
+    }
+}
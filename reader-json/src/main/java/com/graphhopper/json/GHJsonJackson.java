@@ -17,10 +17,15 @@
  */
 package com.graphhopper.json;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.json.geo.JsonFeature;
+import com.graphhopper.util.CloseableIterator;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.NoSuchElementException;
 
 class GHJsonJackson implements GHJson {
     private final ObjectMapper objectMapper;
@@ -37,4 +42,85 @@ class GHJsonJackson implements GHJson {
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public CloseableIterator<JsonFeature> readFeatures(Reader source) {
+        final JsonParser parser;
+        try {
+            parser = objectMapper.getFactory().createParser(source);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new IllegalArgumentException("A feature collection has to start with an object");
+
+            // skip everything like the type until the features array
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("features".equals(field)) {
+                    if (value != JsonToken.START_ARRAY)
+                        throw new IllegalArgumentException("features has to be an array");
+                    break;
+                }
+                parser.skipChildren();
+            }
+
+            final JsonToken firstToken = parser.getCurrentToken() == JsonToken.START_ARRAY ? parser.nextToken() : JsonToken.END_ARRAY;
+            return new CloseableIterator<JsonFeature>() {
+                private JsonToken token = firstToken;
+
+                @Override
+                public boolean hasNext() {
+                    if (token == JsonToken.START_OBJECT)
+                        return true;
+                    if (token == JsonToken.END_ARRAY)
+                        return false;
+                    // do not silently drop the remaining features
+                    closeQuietly(parser);
+                    throw new IllegalArgumentException("features has to contain only objects but found " + token);
+                }
+
+                @Override
+                public JsonFeature next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    try {
+                        JsonFeature feature = objectMapper.readValue(parser, JsonFeature.class);
+                        token = parser.nextToken();
+                        return feature;
+                    } catch (IOException e) {
+                        closeQuietly(parser);
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Not supported");
+                }
+
+                @Override
+                public void close() throws IOException {
+                    parser.close();
+                }
+            };
+        } catch (IOException e) {
+            closeQuietly(parser);
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(parser);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(JsonParser parser) {
+        try {
+            parser.close();
+        } catch (IOException ex) {
+            // the original exception is more important
+        }
+    }
 }
@@ -19,16 +19,20 @@ package com.graphhopper.json.geo;
 
 import com.graphhopper.json.GHJson;
 import com.graphhopper.json.GHJsonFactory;
+import com.graphhopper.util.CloseableIterator;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 import com.vividsolutions.jts.geom.LineString;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
 import java.util.Map;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * @author Peter Karich
@@ -61,6 +65,84 @@ public class JsonFeatureCollectionTest {
         assertEquals("a", ((Map) f3.getProperty("prop1")).get("test"));
     }
 
+    @Test
+    public void testReadFeatures() {
+        Reader reader = new InputStreamReader(getClass().getResourceAsStream("geojson1.json"), Helper.UTF_CS);
+        Iterator<JsonFeature> iter = ghson.readFeatures(reader);
+        assertTrue(iter.hasNext());
+        assertEquals("1", iter.next().getId());
+        assertTrue(iter.hasNext());
+        JsonFeature f2 = iter.next();
+        assertEquals("2", f2.getId());
+        assertEquals(4, f2.getGeometry().getNumPoints());
+        assertTrue(iter.hasNext());
+        assertEquals("0.0,102.0,1.0,103.0", iter.next().getBBox().toString());
+        assertFalse(iter.hasNext());
+
+        // properties before and after the features are skipped
+        iter = ghson.readFeatures(new StringReader("{\"type\": \"FeatureCollection\", \"crs\": {\"a\": [1, 2]},"
+                + " \"features\": [{\"type\": \"Feature\", \"id\": \"x\"}], \"other\": 1}"));
+        assertEquals("x", iter.next().getId());
+        assertFalse(iter.hasNext());
+
+        assertFalse(ghson.readFeatures(new StringReader("{\"type\": \"FeatureCollection\"}")).hasNext());
+        assertFalse(ghson.readFeatures(new StringReader("{\"features\": []}")).hasNext());
+    }
+
+    @Test
+    public void testReadFeaturesFailsForNonObjects() {
+        Iterator<JsonFeature> iter = ghson.readFeatures(new StringReader("{\"features\": [{\"id\": \"x\"}, 1, {\"id\": \"y\"}]}"));
+        assertEquals("x", iter.next().getId());
+        try {
+            iter.hasNext();
+            fail("the remaining features must not be dropped silently");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("VALUE_NUMBER_INT"));
+        }
+    }
+
+    @Test
+    public void testReadFeaturesClosesSource() throws IOException {
+        ClosingReader reader = new ClosingReader("{\"features\": [{\"type\": \"Feature\", \"id\": \"x\"}, {}]}");
+        CloseableIterator<JsonFeature> iter = ghson.readFeatures(reader);
+        assertEquals("x", iter.next().getId());
+        assertFalse(reader.closed);
+        iter.close();
+        assertTrue(reader.closed);
+
+        // also closed if the collection is invalid
+        reader = new ClosingReader("{\"features\": 1}");
+        try {
+            ghson.readFeatures(reader);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(reader.closed);
+        }
+
+        reader = new ClosingReader("{\"features\": [{\"id\": [}]}");
+        iter = ghson.readFeatures(reader);
+        try {
+            iter.next();
+            fail();
+        } catch (RuntimeException ex) {
+            assertTrue(reader.closed);
+        }
+    }
+
+    private static class ClosingReader extends StringReader {
+        boolean closed;
+
+        ClosingReader(String str) {
+            super(str);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+
     JsonFeatureCollection getJson(String name) {
         Reader reader = new InputStreamReader(getClass().getResourceAsStream(name), Helper.UTF_CS);
         return ghson.fromJson(reader, JsonFeatureCollection.class);
@@ -3,6 +3,7 @@ package com.graphhopper.storage.change;
 import com.graphhopper.json.GHJson;
 import com.graphhopper.json.GHJsonFactory;
 import com.graphhopper.json.JsonFeatureConverter;
+import com.graphhopper.json.geo.JsonFeature;
 import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EncodingManager;
@@ -19,6 +20,11 @@ import org.junit.Test;
 
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
 
@@ -37,8 +43,7 @@ public class ChangeGraphHelperTest {
         ghson = new GHJsonFactory().create();
     }
 
-    @Test
-    public void testApplyChanges() {
+    private LocationIndex createGraph() {
         // 0-1-2
         // | |
         // 3-4
@@ -52,8 +57,12 @@ public class ChangeGraphHelperTest {
         AbstractRoutingAlgorithmTester.updateDistancesFor(graph, 2, 0.01, 0.02);
         AbstractRoutingAlgorithmTester.updateDistancesFor(graph, 3, 0.00, 0.00);
         AbstractRoutingAlgorithmTester.updateDistancesFor(graph, 4, 0.00, 0.01);
-        LocationIndex locationIndex = new LocationIndexTree(graph, new RAMDirectory()).prepareIndex();
+        return new LocationIndexTree(graph, new RAMDirectory()).prepareIndex();
+    }
 
+    @Test
+    public void testApplyChanges() {
+        LocationIndex locationIndex = createGraph();
         FlagEncoder encoder = encodingManager.getEncoder("car");
         double defaultSpeed = encoder.getSpeed(GHUtility.getEdge(graph, 0, 1).getFlags());
         AllEdgesIterator iter = graph.getAllEdges();
@@ -75,4 +84,36 @@ public class ChangeGraphHelperTest {
         assertTrue(newSpeed < defaultSpeed);
         assertFalse(encoder.isForward(GHUtility.getEdge(graph, 3, 4).getFlags()));
     }
+
+    @Test
+    public void testFindAndApplyEdgeChanges() {
+        LocationIndex locationIndex = createGraph();
+        FlagEncoder encoder = encodingManager.getEncoder("car");
+        double defaultSpeed = encoder.getSpeed(GHUtility.getEdge(graph, 0, 1).getFlags());
+
+        Reader reader = new InputStreamReader(getClass().getResourceAsStream("overlaydata1.json"), Helper.UTF_CS);
+        List<JsonFeature> features = new ArrayList<>();
+        Iterator<JsonFeature> iter = ghson.readFeatures(reader);
+        while (iter.hasNext()) {
+            features.add(iter.next());
+        }
+
+        ChangeGraphHelper instance = new ChangeGraphHelper(graph, locationIndex);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<ChangeGraphHelper.EdgeChange> changes;
+        try {
+            changes = instance.findEdgeChanges(encodingManager, features, executor, 2);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, changes.size());
+        assertEquals(2, ChangeGraphHelper.countEdges(changes));
+        assertTrue(changes.get(0).getEdge() < changes.get(1).getEdge());
+        // finding the changes does not modify the graph
+        assertEquals(defaultSpeed, encoder.getSpeed(GHUtility.getEdge(graph, 0, 1).getFlags()), .1);
+
+        assertEquals(2, instance.applyEdgeChanges(changes));
+        assertEquals(10, encoder.getSpeed(GHUtility.getEdge(graph, 0, 1).getFlags()), .1);
+        assertFalse(encoder.isForward(GHUtility.getEdge(graph, 3, 4).getFlags()));
+    }
 }
@@ -22,6 +22,7 @@ import com.graphhopper.json.geo.JsonFeatureCollection;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.spatialrules.*;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.GraphHopperStorage;
 
 import java.util.List;
@@ -46,7 +47,10 @@ public class GraphHopperOSM extends GraphHopper {
 
     @Override
     protected DataReader createReader(GraphHopperStorage ghStorage) {
-        return initDataReader(new OSMReader(ghStorage));
+        OSMReader reader = new OSMReader(ghStorage).setWayWorkerThreads(getWayWorkerThreads());
+        if (!getNodeMapDataAccess().isEmpty())
+            reader.setNodeMapType(DAType.fromString(getNodeMapDataAccess()));
+        return initDataReader(reader);
     }
 
     public String getOSMFile() {
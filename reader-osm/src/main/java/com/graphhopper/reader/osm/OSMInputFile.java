@@ -50,6 +50,7 @@ public class OSMInputFile implements Sink, OSMInput {
     private boolean binary = false;
     private boolean hasIncomingData;
     private int workerThreads = -1;
+    private SkipOptions skipOptions = SkipOptions.none();
     private OSMFileHeader fileheader;
 
     public OSMInputFile(File file) throws IOException {
@@ -74,6 +75,14 @@ public class OSMInputFile implements Sink, OSMInput {
         return this;
     }
 
+    /**
+     * Specifies the element types which are not returned from getNext.
+     */
+    public OSMInputFile setSkipOptions(SkipOptions skipOptions) {
+        this.skipOptions = skipOptions;
+        return this;
+    }
+
     @SuppressWarnings("unchecked")
     private InputStream decode(File file) throws IOException {
         final String name = file.getName();
@@ -192,17 +201,21 @@ public class OSMInputFile implements Sink, OSMInput {
                     switch (name.charAt(0)) {
                         case 'n':
                             // note vs. node
-                            if ("node".equals(name)) {
+                            if ("node".equals(name) && !skipOptions.isSkipNodes()) {
                                 id = Long.parseLong(idStr);
                                 return OSMXMLHelper.createNode(id, parser);
                             }
                             break;
 
                         case 'w': {
+                            if (skipOptions.isSkipWays())
+                                break;
                             id = Long.parseLong(idStr);
                             return OSMXMLHelper.createWay(id, parser);
                         }
                         case 'r':
+                            if (skipOptions.isSkipRelations())
+                                break;
                             id = Long.parseLong(idStr);
                             return OSMXMLHelper.createRelation(id, parser);
                     }
@@ -239,7 +252,7 @@ public class OSMInputFile implements Sink, OSMInput {
         if (workerThreads <= 0)
             workerThreads = 1;
 
-        PbfReader reader = new PbfReader(stream, this, workerThreads);
+        PbfReader reader = new PbfReader(stream, this, workerThreads, skipOptions);
         pbfReaderThread = new Thread(reader, "PBF Reader");
         pbfReaderThread.start();
     }
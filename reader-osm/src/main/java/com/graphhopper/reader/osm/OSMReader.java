@@ -38,6 +38,7 @@ import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -62,6 +63,11 @@ import static com.graphhopper.util.Helper.nf;
  * When creating an edge the pillar node information from the intermediate data structure will be
  * stored in the way geometry of that edge.
  * <p>
+ * If way worker threads are set the tag handling and flag encoding of 2.b) is done in batches of
+ * ways in a thread pool while the edges are still created in the order of the file, see
+ * {@link #setWayWorkerThreads(int)}. The first pass skips nodes and the second pass skips
+ * relations if no turn restrictions are stored.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -71,6 +77,7 @@ public class OSMReader implements DataReader {
     protected static final int PILLAR_NODE = 1;
     // tower node is <= -3
     protected static final int TOWER_NODE = -2;
+    private static final int WAY_BATCH_SIZE = 1_000;
     private static final Logger LOGGER = LoggerFactory.getLogger(OSMReader.class);
     private final GraphStorage ghStorage;
     private final Graph graph;
@@ -89,6 +96,10 @@ public class OSMReader implements DataReader {
     private long skippedLocations;
     private final EncodingManager encodingManager;
     private int workerThreads = 2;
+    private int wayWorkerThreads = 0;
+    private ExecutorService wayExecutor;
+    private WayBatch wayBatch;
+    private final Queue<WayBatch> pendingWayBatches = new ArrayDeque<>();
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
     // very slow: new SparseLongLongArray
@@ -137,13 +148,24 @@ public class OSMReader implements DataReader {
         if (!osmFile.exists())
             throw new IllegalStateException("Your specified OSM file does not exist:" + osmFile.getAbsolutePath());
 
+        LongIntMap nodeMap = getNodeMap();
         StopWatch sw1 = new StopWatch().start();
-        preProcess(osmFile);
-        sw1.stop();
-
-        StopWatch sw2 = new StopWatch().start();
-        writeOsm2Graph(osmFile);
-        sw2.stop();
+        StopWatch sw2 = new StopWatch();
+        try {
+            preProcess(osmFile);
+            // no new OSM nodes are added in the second pass except the barrier nodes, so merge the sorted runs once
+            if (nodeMap instanceof SortedLongIntMap)
+                nodeMap.optimize();
+            sw1.stop();
+
+            sw2.start();
+            writeOsm2Graph(osmFile);
+            sw2.stop();
+        } finally {
+            // finishedReading is not reached if the import fails, but the tmp_osm_node_map files have to be removed anyway
+            if (nodeMap instanceof SortedLongIntMap)
+                ((SortedLongIntMap) nodeMap).clear();
+        }
 
         LOGGER.info("time pass1:" + (int) sw1.getSeconds() + "s, "
                 + "pass2:" + (int) sw2.getSeconds() + "s, "
@@ -155,7 +177,8 @@ public class OSMReader implements DataReader {
      * compact graph data structure.
      */
     void preProcess(File osmFile) {
-        try (OSMInput in = openOsmInputFile(osmFile)) {
+        // nodes are only required in the second pass
+        try (OSMInput in = openOsmInputFile(osmFile, new SkipOptions(true, false, false))) {
             long tmpWayCounter = 1;
             long tmpRelationCounter = 1;
             ReaderElement item;
@@ -263,11 +286,20 @@ public class OSMReader implements DataReader {
         long wayStart = -1;
         long relationStart = -1;
         long counter = 1;
-        try (OSMInput in = openOsmInputFile(osmFile)) {
+        // relations are only used for turn restrictions in this pass
+        boolean skipRelations = !(graph.getExtension() instanceof TurnCostExtension);
+        if (wayWorkerThreads > 0)
+            wayExecutor = Executors.newFixedThreadPool(wayWorkerThreads);
+
+        try (OSMInput in = openOsmInputFile(osmFile, new SkipOptions(false, false, skipRelations))) {
             LongIntMap nodeFilter = getNodeMap();
 
             ReaderElement item;
             while ((item = in.getNext()) != null) {
+                // the edges of all previous ways have to be created before other elements are processed
+                if (!item.isType(ReaderElement.WAY))
+                    flushWays();
+
                 switch (item.getType()) {
                     case ReaderElement.NODE:
                         if (nodeFilter.get(item.getId()) != EMPTY_NODE) {
@@ -280,7 +312,10 @@ public class OSMReader implements DataReader {
                             LOGGER.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
                         }
-                        processWay((ReaderWay) item);
+                        if (wayExecutor == null)
+                            processWay((ReaderWay) item);
+                        else
+                            addToWayBatch((ReaderWay) item);
                         break;
                     case ReaderElement.RELATION:
                         if (relationStart < 0) {
@@ -298,6 +333,7 @@ public class OSMReader implements DataReader {
                     LOGGER.info(nf(counter) + ", locs:" + nf(locations) + " (" + skippedLocations + ") " + Helper.getMemInfo());
                 }
             }
+            flushWays();
 
             if (in.getUnprocessedElements() > 0)
                 throw new IllegalStateException("Still unprocessed elements in reader queue " + in.getUnprocessedElements());
@@ -305,6 +341,13 @@ public class OSMReader implements DataReader {
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex) {
             throw new RuntimeException("Couldn't process file " + osmFile + ", error: " + ex.getMessage(), ex);
+        } finally {
+            if (wayExecutor != null) {
+                wayExecutor.shutdownNow();
+                wayExecutor = null;
+            }
+            wayBatch = null;
+            pendingWayBatches.clear();
         }
 
         finishedReading();
@@ -313,7 +356,11 @@ public class OSMReader implements DataReader {
     }
 
     protected OSMInput openOsmInputFile(File osmFile) throws XMLStreamException, IOException {
-        return new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+        return openOsmInputFile(osmFile, SkipOptions.none());
+    }
+
+    protected OSMInput openOsmInputFile(File osmFile, SkipOptions skipOptions) throws XMLStreamException, IOException {
+        return new OSMInputFile(osmFile).setWorkerThreads(workerThreads).setSkipOptions(skipOptions).open();
     }
 
     /**
@@ -327,8 +374,6 @@ public class OSMReader implements DataReader {
         if (!way.hasTags())
             return;
 
-        long wayOsmId = way.getId();
-
         long includeWay = encodingManager.acceptWay(way);
         if (includeWay == 0)
             return;
@@ -337,18 +382,28 @@ public class OSMReader implements DataReader {
 
         // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
         LongArrayList osmNodeIds = way.getNodes();
+        int first = getNodeMap().get(osmNodeIds.get(0));
+        int last = getNodeMap().get(osmNodeIds.get(osmNodeIds.size() - 1));
+        long wayFlags = handleWayTags(way, includeWay, relationFlags, getTmpLatitude(first), getTmpLongitude(first),
+                getTmpLatitude(last), getTmpLongitude(last));
+        if (wayFlags == 0)
+            return;
+
+        addWay(way, wayFlags);
+    }
+
+    /**
+     * Adds the artificial tags and calculates the flags of the way. This method does not access the
+     * node map or the graph and is therefor called from the way worker threads.
+     */
+    long handleWayTags(ReaderWay way, long includeWay, long relationFlags, double firstLat, double firstLon,
+                       double lastLat, double lastLon) {
         // Estimate length of ways containing a route tag e.g. for ferry speed calculation
-        if (osmNodeIds.size() > 1) {
-            int first = getNodeMap().get(osmNodeIds.get(0));
-            int last = getNodeMap().get(osmNodeIds.get(osmNodeIds.size() - 1));
-            double firstLat = getTmpLatitude(first), firstLon = getTmpLongitude(first);
-            double lastLat = getTmpLatitude(last), lastLon = getTmpLongitude(last);
-            if (!Double.isNaN(firstLat) && !Double.isNaN(firstLon) && !Double.isNaN(lastLat) && !Double.isNaN(lastLon)) {
-                double estimatedDist = distCalc.calcDist(firstLat, firstLon, lastLat, lastLon);
-                // Add artificial tag for the estimated distance and center
-                way.setTag("estimated_distance", estimatedDist);
-                way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
-            }
+        if (!Double.isNaN(firstLat) && !Double.isNaN(firstLon) && !Double.isNaN(lastLat) && !Double.isNaN(lastLon)) {
+            double estimatedDist = distCalc.calcDist(firstLat, firstLon, lastLat, lastLon);
+            // Add artificial tag for the estimated distance and center
+            way.setTag("estimated_distance", estimatedDist);
+            way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
         }
 
         if (way.getTag("duration") != null) {
@@ -361,10 +416,16 @@ public class OSMReader implements DataReader {
             }
         }
 
-        long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
-        if (wayFlags == 0)
-            return;
+        return encodingManager.handleWayTags(way, includeWay, relationFlags);
+    }
 
+    /**
+     * Creates the edges of the way with the specified flags, splits it at barriers and applies the
+     * way tags to the created edges.
+     */
+    void addWay(ReaderWay way, long wayFlags) {
+        long wayOsmId = way.getId();
+        LongArrayList osmNodeIds = way.getNodes();
         List<EdgeIteratorState> createdEdges = new ArrayList<EdgeIteratorState>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -424,6 +485,70 @@ public class OSMReader implements DataReader {
         }
     }
 
+    /**
+     * Collects the specified way for the way worker threads. The end nodes of the way are looked up
+     * here as the node map must not be accessed concurrently to the edge creation.
+     */
+    private void addToWayBatch(ReaderWay way) {
+        if (way.getNodes().size() < 2)
+            return;
+
+        // ignore multipolygon geometry
+        if (!way.hasTags())
+            return;
+
+        if (wayBatch == null)
+            wayBatch = new WayBatch();
+
+        LongArrayList osmNodeIds = way.getNodes();
+        int first = getNodeMap().get(osmNodeIds.get(0));
+        int last = getNodeMap().get(osmNodeIds.get(osmNodeIds.size() - 1));
+        wayBatch.add(way, getRelFlagsMap().get(way.getId()), getTmpLatitude(first), getTmpLongitude(first),
+                getTmpLatitude(last), getTmpLongitude(last));
+        if (wayBatch.size == WAY_BATCH_SIZE) {
+            submitWayBatch();
+            // limit the number of ways in memory, the edges of the oldest batch are created while the others are encoded
+            while (pendingWayBatches.size() > 2 * wayWorkerThreads) {
+                createEdges(pendingWayBatches.poll());
+            }
+        }
+    }
+
+    private void submitWayBatch() {
+        wayBatch.future = wayExecutor.submit(wayBatch);
+        pendingWayBatches.add(wayBatch);
+        wayBatch = null;
+    }
+
+    /**
+     * Creates the edges of all collected ways in the order they were read.
+     */
+    private void flushWays() {
+        if (wayBatch != null)
+            submitWayBatch();
+
+        while (!pendingWayBatches.isEmpty()) {
+            createEdges(pendingWayBatches.poll());
+        }
+    }
+
+    private void createEdges(WayBatch batch) {
+        long[] wayFlags;
+        try {
+            wayFlags = batch.future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Problem while encoding ways", ex.getCause());
+        }
+
+        for (int i = 0; i < batch.size; i++) {
+            if (wayFlags[i] != 0)
+                addWay(batch.ways[i], wayFlags[i]);
+        }
+    }
+
     public void processRelation(ReaderRelation relation) throws XMLStreamException {
         if (relation.hasTag("type", "restriction")) {
             OSMTurnRelation turnRelation = createTurnRelation(relation);
@@ -788,6 +913,8 @@ public class OSMReader implements DataReader {
     protected void finishedReading() {
         printInfo("way");
         pillarInfo.clear();
+        if (osmNodeIdToInternalNodeMap instanceof SortedLongIntMap)
+            ((SortedLongIntMap) osmNodeIdToInternalNodeMap).clear();
         eleProvider.release();
         osmNodeIdToInternalNodeMap = null;
         osmNodeIdToNodeFlagsMap = null;
@@ -905,6 +1032,25 @@ public class OSMReader implements DataReader {
         return this;
     }
 
+    /**
+     * Stores the map from OSM node IDs in sorted arrays of the specified DataAccess type instead of
+     * the on-heap GHLongIntBTree, e.g. DAType.UNSAFE_STORE to reduce the heap needed for the import.
+     */
+    public OSMReader setNodeMapType(DAType type) {
+        osmNodeIdToInternalNodeMap = new SortedLongIntMap(ghStorage.getDirectory(), "tmp_osm_node_map", type, EMPTY_NODE);
+        return this;
+    }
+
+    /**
+     * Specifies the number of threads which calculate the flags of the ways in the second pass. The
+     * edges are created in the order of the file nevertheless. Default is 0 i.e. the ways are
+     * processed in the reading thread.
+     */
+    public OSMReader setWayWorkerThreads(int wayWorkerThreads) {
+        this.wayWorkerThreads = wayWorkerThreads;
+        return this;
+    }
+
     @Override
     public OSMReader setElevationProvider(ElevationProvider eleProvider) {
         if (eleProvider == null)
@@ -948,4 +1094,41 @@ public class OSMReader implements DataReader {
     public String toString() {
         return getClass().getSimpleName();
     }
+
+    /**
+     * Ways of the second pass together with the coordinates of their end nodes. Calling the batch
+     * calculates the flags of every way, 0 if the way is not accepted.
+     */
+    private class WayBatch implements Callable<long[]> {
+        final ReaderWay[] ways = new ReaderWay[WAY_BATCH_SIZE];
+        final long[] relationFlags = new long[WAY_BATCH_SIZE];
+        // firstLat, firstLon, lastLat, lastLon for every way
+        final double[] coordinates = new double[4 * WAY_BATCH_SIZE];
+        int size;
+        Future<long[]> future;
+
+        void add(ReaderWay way, long relFlags, double firstLat, double firstLon, double lastLat, double lastLon) {
+            ways[size] = way;
+            relationFlags[size] = relFlags;
+            coordinates[4 * size] = firstLat;
+            coordinates[4 * size + 1] = firstLon;
+            coordinates[4 * size + 2] = lastLat;
+            coordinates[4 * size + 3] = lastLon;
+            size++;
+        }
+
+        @Override
+        public long[] call() {
+            long[] wayFlags = new long[size];
+            for (int i = 0; i < size; i++) {
+                long includeWay = encodingManager.acceptWay(ways[i]);
+                if (includeWay == 0)
+                    continue;
+
+                wayFlags[i] = handleWayTags(ways[i], includeWay, relationFlags[i], coordinates[4 * i],
+                        coordinates[4 * i + 1], coordinates[4 * i + 2], coordinates[4 * i + 3]);
+            }
+            return wayFlags;
+        }
+    }
 }
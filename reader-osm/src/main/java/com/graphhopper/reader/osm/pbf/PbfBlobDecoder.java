@@ -8,6 +8,7 @@ import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.reader.ReaderRelation;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.osm.OSMFileHeader;
+import com.graphhopper.reader.osm.SkipOptions;
 import com.graphhopper.util.Helper;
 import org.openstreetmap.osmosis.osmbinary.Fileformat;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
@@ -32,6 +33,7 @@ public class PbfBlobDecoder implements Runnable {
     private final String blobType;
     private final byte[] rawBlob;
     private final PbfBlobDecoderListener listener;
+    private final SkipOptions skipOptions;
     private List<ReaderElement> decodedEntities;
 
     /**
@@ -43,9 +45,17 @@ public class PbfBlobDecoder implements Runnable {
      * @param listener The listener for receiving decoding results.
      */
     public PbfBlobDecoder(String blobType, byte[] rawBlob, PbfBlobDecoderListener listener) {
+        this(blobType, rawBlob, listener, SkipOptions.none());
+    }
+
+    /**
+     * @param skipOptions The element types which are not decoded.
+     */
+    public PbfBlobDecoder(String blobType, byte[] rawBlob, PbfBlobDecoderListener listener, SkipOptions skipOptions) {
         this.blobType = blobType;
         this.rawBlob = rawBlob;
         this.listener = listener;
+        this.skipOptions = skipOptions;
     }
 
     private byte[] readBlobContent() throws IOException {
@@ -326,10 +336,14 @@ public class PbfBlobDecoder implements Runnable {
         PbfFieldDecoder fieldDecoder = new PbfFieldDecoder(block);
 
         for (Osmformat.PrimitiveGroup primitiveGroup : block.getPrimitivegroupList()) {
-            processNodes(primitiveGroup.getDense(), fieldDecoder);
-            processNodes(primitiveGroup.getNodesList(), fieldDecoder);
-            processWays(primitiveGroup.getWaysList(), fieldDecoder);
-            processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
+            if (!skipOptions.isSkipNodes()) {
+                processNodes(primitiveGroup.getDense(), fieldDecoder);
+                processNodes(primitiveGroup.getNodesList(), fieldDecoder);
+            }
+            if (!skipOptions.isSkipWays())
+                processWays(primitiveGroup.getWaysList(), fieldDecoder);
+            if (!skipOptions.isSkipRelations())
+                processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
         }
     }
 
@@ -2,6 +2,7 @@
 package com.graphhopper.reader.osm.pbf;
 
 import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.osm.SkipOptions;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -25,6 +26,7 @@ public class PbfDecoder implements Runnable {
     private final ExecutorService executorService;
     private final int maxPendingBlobs;
     private final Sink sink;
+    private final SkipOptions skipOptions;
     private final Lock lock;
     private final Condition dataWaitCondition;
     private final Queue<PbfBlobResult> blobResults;
@@ -40,6 +42,15 @@ public class PbfDecoder implements Runnable {
      */
     public PbfDecoder(PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
                       Sink sink) {
+        this(streamSplitter, executorService, maxPendingBlobs, sink, SkipOptions.none());
+    }
+
+    /**
+     * Creates a new instance which does not decode the element types specified in skipOptions.
+     */
+    public PbfDecoder(PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
+                      Sink sink, SkipOptions skipOptions) {
+        this.skipOptions = skipOptions;
         this.streamSplitter = streamSplitter;
         this.executorService = executorService;
         this.maxPendingBlobs = maxPendingBlobs;
@@ -142,7 +153,7 @@ public class PbfDecoder implements Runnable {
             };
 
             // Create the blob decoder itself and execute it on a worker thread.
-            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
+            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener, skipOptions);
             executorService.execute(blobDecoder);
 
             // If the number of pending blobs has reached capacity we must begin
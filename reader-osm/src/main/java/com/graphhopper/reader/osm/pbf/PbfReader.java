@@ -1,6 +1,8 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package com.graphhopper.reader.osm.pbf;
 
+import com.graphhopper.reader.osm.SkipOptions;
+
 import java.io.DataInputStream;
 import java.io.InputStream;
 import java.util.concurrent.ExecutorService;
@@ -16,6 +18,7 @@ public class PbfReader implements Runnable {
     private InputStream inputStream;
     private Sink sink;
     private int workers;
+    private SkipOptions skipOptions;
 
     /**
      * Creates a new instance.
@@ -25,9 +28,17 @@ public class PbfReader implements Runnable {
      * @param workers The number of worker threads for decoding PBF blocks.
      */
     public PbfReader(InputStream in, Sink sink, int workers) {
+        this(in, sink, workers, SkipOptions.none());
+    }
+
+    /**
+     * @param skipOptions The element types which are not passed to the sink.
+     */
+    public PbfReader(InputStream in, Sink sink, int workers, SkipOptions skipOptions) {
         this.inputStream = in;
         this.sink = sink;
         this.workers = workers;
+        this.skipOptions = skipOptions;
     }
 
     @Override
@@ -43,7 +54,7 @@ public class PbfReader implements Runnable {
             // immediately ready for processing when a worker thread completes.
             // The main thread is responsible for splitting blobs from the
             // request stream, and sending decoded entities to the sink.
-            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
+            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink, skipOptions);
             pbfDecoder.run();
 
         } catch (Exception e) {
@@ -23,6 +23,7 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.PathWrapper;
 import com.graphhopper.reader.DataReader;
+import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHAlgoFactoryDecorator;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
@@ -905,6 +906,80 @@ public class GraphHopperOSMTest {
         }
     }
 
+    @Test
+    public void testPipelinedImport() {
+        GraphHopper pipelined = new GraphHopperOSM().setWayWorkerThreads(3);
+        assertSameGraphAsDefaultImport(pipelined);
+    }
+
+    @Test
+    public void testOffHeapNodeMap() {
+        GraphHopper offHeap = new GraphHopperOSM().setNodeMapDataAccess("UNSAFE_STORE");
+        assertSameGraphAsDefaultImport(offHeap);
+    }
+
+    @Test
+    public void testNodeMapFilesAreRemovedIfImportFails() {
+        instance = new GraphHopperOSM() {
+            @Override
+            protected DataReader createReader(GraphHopperStorage ghStorage) {
+                OSMReader reader = new OSMReader(ghStorage) {
+                    @Override
+                    protected double getElevation(ReaderNode node) {
+                        throw new IllegalStateException("failure while reading " + node.getId());
+                    }
+                };
+                return initDataReader(reader.setNodeMapType(DAType.MMAP));
+            }
+        }.setStoreOnFlush(true).setCHEnabled(false).
+                setEncodingManager(new EncodingManager("car")).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile("../core/files/andorra.osm.pbf");
+        try {
+            instance.importOrLoad();
+            fail("import should fail");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("failure while reading"));
+        }
+
+        for (String file : new File(ghLoc).list()) {
+            assertFalse(file, file.startsWith("tmp_osm_node_map"));
+        }
+    }
+
+    private void assertSameGraphAsDefaultImport(GraphHopper hopper) {
+        String andorra = "../core/files/andorra.osm.pbf";
+        GraphHopper defaultImport = new GraphHopperOSM().setStoreOnFlush(false).setCHEnabled(false).
+                setEncodingManager(new EncodingManager("car,foot")).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile(andorra);
+        defaultImport.importOrLoad();
+
+        instance = hopper.setStoreOnFlush(false).setCHEnabled(false).
+                setEncodingManager(new EncodingManager("car,foot")).
+                setGraphHopperLocation(ghLoc + "2").
+                setDataReaderFile(andorra);
+        instance.importOrLoad();
+
+        // the edges have to be created in the same order
+        Graph expected = defaultImport.getGraphHopperStorage();
+        Graph graph = instance.getGraphHopperStorage();
+        assertEquals(expected.getNodes(), graph.getNodes());
+        assertEquals(expected.getAllEdges().getMaxId(), graph.getAllEdges().getMaxId());
+        AllEdgesIterator expectedIter = expected.getAllEdges();
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (expectedIter.next()) {
+            assertTrue(iter.next());
+            assertEquals(expectedIter.getBaseNode(), iter.getBaseNode());
+            assertEquals(expectedIter.getAdjNode(), iter.getAdjNode());
+            assertEquals(expectedIter.getFlags(), iter.getFlags());
+            assertEquals(expectedIter.getDistance(), iter.getDistance(), 1e-6);
+            assertEquals(expectedIter.fetchWayGeometry(3).size(), iter.fetchWayGeometry(3).size());
+        }
+        defaultImport.close();
+        Helper.removeDir(new File(ghLoc + "2"));
+    }
+
     @Test
     public void testGetMultipleWeightingsForCH() {
         EncodingManager em = new EncodingManager(Arrays.asList(new CarFlagEncoder()), 8);
@@ -30,13 +30,19 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.CHGraph;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IndoorExtension;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexIndoor;
+import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Algorithms;
 import com.graphhopper.util.Parameters.CH;
+import com.graphhopper.util.Parameters.IndoorOverlay;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPointIndoor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -118,6 +124,13 @@ public class Measurement {
             GHBitSet allowedEdges = printGraphDetails(g, vehicleStr);
             printMiscUnitPerfTests(g, isCH, encoder, count * 100, allowedEdges);
             printLocationIndexQuery(g, hopper.getLocationIndex(), count);
+            if (hopper.getLocationIndex() instanceof LocationIndexIndoor)
+                printIndoorLocationIndexQuery(g, (LocationIndexIndoor) hopper.getLocationIndex(), count);
+            if (hopper.getEncodingManager().isIndoor()) {
+                printIndoorRouteQuery(hopper, count / 20, "routing_indoor_beeline", vehicleStr, false, false);
+                printIndoorRouteQuery(hopper, count / 20, "routing_indoor_level_aware", vehicleStr, true, false);
+                printIndoorRouteQuery(hopper, count / 20, "routing_indoor", vehicleStr, true, true);
+            }
             printTimeOfRouteQuery(hopper, isCH, isLM, count / 20, "routing", vehicleStr, true, -1, true);
 
             if (hopper.getLMFactoryDecorator().isEnabled()) {
@@ -217,6 +230,80 @@ public class Measurement {
         print("location_index", miniPerf);
     }
 
+    /**
+     * Compares the snapping to a specific level of the per level index with a single index for all levels.
+     */
+    private void printIndoorLocationIndexQuery(GraphHopperStorage g, LocationIndexIndoor idx, int count) {
+        LocationIndexTree flatIndex = new LocationIndexTree(g, new RAMDirectory());
+        flatIndex.prepareIndex();
+        printIndoorLocationIndexQuery(g, flatIndex, idx.getLevels(), count, "location_index_indoor_flat");
+        printIndoorLocationIndexQuery(g, idx, idx.getLevels(), count, "location_index_indoor");
+        flatIndex.close();
+    }
+
+    private void printIndoorLocationIndexQuery(Graph g, final LocationIndex idx, final int[] levels, int count, String prefix) {
+        final BBox bbox = g.getBounds();
+        final double latDelta = bbox.maxLat - bbox.minLat;
+        final double lonDelta = bbox.maxLon - bbox.minLon;
+        final Random rand = new Random(seed);
+        MiniPerfTest miniPerf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                double lat = rand.nextDouble() * latDelta + bbox.minLat;
+                double lon = rand.nextDouble() * lonDelta + bbox.minLon;
+                int level = levels[rand.nextInt(levels.length)];
+                return idx.findClosest(lat, lon, new EdgeFilterIndoor(level)).getClosestNode();
+            }
+        }.setIterations(count).start();
+
+        print(prefix, miniPerf);
+    }
+
+    /**
+     * Compares the visited nodes of the level aware approximation and of the overlay with the plain
+     * beeline for routes between random nodes of an indoor graph.
+     */
+    private void printIndoorRouteQuery(final GraphHopper hopper, int count, String prefix, final String vehicle,
+                                       final boolean levelAware, final boolean overlay) {
+        final GraphHopperStorage g = hopper.getGraphHopperStorage();
+        final IndoorExtension ext = (IndoorExtension) g.getExtension();
+        final NodeAccess na = g.getNodeAccess();
+        final AtomicLong visitedNodesSum = new AtomicLong(0);
+        final AtomicInteger failedCount = new AtomicInteger(0);
+        final Random rand = new Random(seed);
+        MiniPerfTest miniPerf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                int from = rand.nextInt(maxNode);
+                int to = rand.nextInt(maxNode);
+                GHRequest req = new GHRequest(
+                        new GHPointIndoor(na.getLatitude(from), na.getLongitude(from), ext.getLevel(from)),
+                        new GHPointIndoor(na.getLatitude(to), na.getLongitude(to), ext.getLevel(to))).
+                        setVehicle(vehicle);
+                req.getHints().put(CH.DISABLE, true).
+                        put(Landmark.DISABLE, true).
+                        put(Algorithms.ASTAR_BI + ".level_aware", levelAware).
+                        put(IndoorOverlay.DISABLE, !overlay);
+
+                GHResponse rsp = hopper.route(req);
+                if (rsp.hasErrors()) {
+                    if (!warmup)
+                        failedCount.incrementAndGet();
+                    return 0;
+                }
+
+                if (!warmup)
+                    visitedNodesSum.addAndGet(rsp.getHints().getLong("visited_nodes.sum", 0));
+                return rsp.getBest().getPoints().getSize();
+            }
+        }.setIterations(count).start();
+
+        count -= failedCount.get();
+        put(prefix + ".failed_count", failedCount.get());
+        put(prefix + ".visited_nodes_mean", (float) visitedNodesSum.get() / count);
+        print(prefix, miniPerf);
+    }
+
     private void printMiscUnitPerfTests(final Graph graph, boolean isCH, final FlagEncoder encoder,
                                         int count, final GHBitSet allowedEdges) {
         final Random rand = new Random(seed);
@@ -28,6 +28,7 @@ import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.PreparationWeighting;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
+import com.graphhopper.routing.weighting.IndoorProfileWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndexTree;
@@ -93,7 +94,7 @@ public class MiniGraphUIIndoor {
     private QueryResult fromRes;
     private QueryResult toRes;
     private ButtonGroup allLevelButtons = new ButtonGroup();
-    private ButtonGroup allEncoders = new ButtonGroup();
+    private ButtonGroup allProfiles = new ButtonGroup();
     HintsMap map;
     final Graph graph;
     private IndoorExtension indoorExtension;
@@ -237,25 +238,30 @@ public class MiniGraphUIIndoor {
             settings.add(levelButton);
         }
 
-        //add different indoor encoders
+        //add the accessibility profiles of the indoor encoder
         settings.add(new JSeparator());
-        settings.add(new JLabel("Encoder"));
+        settings.add(new JLabel("Profile"));
 
         JRadioButton stairsAndElevators = new JRadioButton("Stairs and elevators");
         stairsAndElevators.setSelected(true);
-        stairsAndElevators.addActionListener(new EncoderListener(stairsAndElevators,"indoor",hopper));
+        stairsAndElevators.addActionListener(new ProfileListener(stairsAndElevators, IndoorProfileWeighting.DEFAULT, hopper));
         settings.add(stairsAndElevators);
-        allEncoders.add(stairsAndElevators);
+        allProfiles.add(stairsAndElevators);
 
         JRadioButton noStairs = new JRadioButton("No stairs");
-        noStairs.addActionListener(new EncoderListener(noStairs,"nostairs",hopper));
+        noStairs.addActionListener(new ProfileListener(noStairs, IndoorProfileWeighting.NO_STAIRS, hopper));
         settings.add(noStairs);
-        allEncoders.add(noStairs);
+        allProfiles.add(noStairs);
 
         JRadioButton noElevators = new JRadioButton("No elevators");
-        noElevators.addActionListener(new EncoderListener(noElevators,"noelevators",hopper));
+        noElevators.addActionListener(new ProfileListener(noElevators, IndoorProfileWeighting.NO_ELEVATORS, hopper));
         settings.add(noElevators);
-        allEncoders.add(noElevators);
+        allProfiles.add(noElevators);
+
+        JRadioButton wheelchair = new JRadioButton("Wheelchair");
+        wheelchair.addActionListener(new ProfileListener(wheelchair, IndoorProfileWeighting.WHEELCHAIR, hopper));
+        settings.add(wheelchair);
+        allProfiles.add(wheelchair);
 
 
         mainPanel = new LayeredPanel();
@@ -361,9 +367,9 @@ public class MiniGraphUIIndoor {
         }
 
 
-        int[] levels = new int[2];
-        levels[0] = Integer.parseInt(fromLevel);
-        levels[1] = Integer.parseInt(toLevel);
+        double[] levels = new double[2];
+        levels[0] = Double.parseDouble(fromLevel);
+        levels[1] = Double.parseDouble(toLevel);
         tmpPath.setLevels(levels);
 
         PointListIndoor pathPoints = (PointListIndoor) tmpPath.calcPoints();
@@ -371,9 +377,9 @@ public class MiniGraphUIIndoor {
         for (int i = 0; i < pathPoints.getSize(); i++) {
             double lat = pathPoints.getLatitude(i);
             double lon = pathPoints.getLongitude(i);
-            int level = pathPoints.getLevel(i);
+            double level = pathPoints.getLevel(i);
             width = 4;
-            if(Integer.toString(level).equals(currentLevel)) {
+            if(IndoorExtension.toLevelString(IndoorExtension.toLevelCode(level)).equals(currentLevel)) {
                 g2.setColor(edgeOnSameLevel);
             }
             else {
@@ -534,14 +540,14 @@ public class MiniGraphUIIndoor {
         }
     }
 
-    public class EncoderListener implements ActionListener{
-        private JToggleButton encoderButton;
-        private String encoderString;
+    public class ProfileListener implements ActionListener{
+        private JToggleButton profileButton;
+        private String profile;
         private GraphHopper hopper;
 
-        EncoderListener(JToggleButton encoderButton,String encoderString,GraphHopper hopper) {
-            this.encoderButton = encoderButton;
-            this.encoderString = encoderString;
+        ProfileListener(JToggleButton profileButton, String profile, GraphHopper hopper) {
+            this.profileButton = profileButton;
+            this.profile = profile;
             this.hopper = hopper;
             final RoutingAlgorithmFactory tmpFactory = hopper.getAlgorithmFactory(map);
             algoFactory = new RoutingAlgorithmFactory() {
@@ -566,8 +572,8 @@ public class MiniGraphUIIndoor {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (e.getSource() == encoderButton){
-                encoder = hopper.getEncodingManager().getEncoder(encoderString);
+            if (e.getSource() == profileButton){
+                map.put(Parameters.Routing.INDOOR_PROFILE, profile);
                 weighting = hopper.createWeighting(map, encoder, graph);
                 algoOpts = new AlgorithmOptions(Algorithms.ASTAR_BI, weighting);
                 repaintPaths();
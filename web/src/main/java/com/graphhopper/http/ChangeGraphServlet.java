@@ -17,12 +17,16 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.json.GHJson;
-import com.graphhopper.json.geo.JsonFeatureCollection;
+import com.graphhopper.json.geo.JsonFeature;
+import com.graphhopper.storage.change.ChangeGraphBatch;
+import com.graphhopper.storage.change.ChangeGraphException;
 import com.graphhopper.storage.change.ChangeGraphResponse;
+import com.graphhopper.util.CloseableIterator;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.StopWatch;
 
@@ -52,15 +56,16 @@ public class ChangeGraphServlet extends GHBaseServlet {
         float took = -1;
         StopWatch sw = new StopWatch().start();
         try {
-            JsonFeatureCollection collection = ghJson.fromJson(new InputStreamReader(httpReq.getInputStream(), Helper.UTF_CS), JsonFeatureCollection.class);
             // TODO put changeGraph on GraphHopperAPI interface and remove cast (or some other solution)
             if (!(graphHopper instanceof GraphHopper)) {
                 throw new IllegalStateException("Graph change API not supported with public transit.");
             }
-            // TODO make asynchronous!
-            ChangeGraphResponse rsp = ((GraphHopper) graphHopper).changeGraph(collection.getFeatures());
-            ObjectNode resObject = objectMapper.createObjectNode();
-            resObject.put("updates", rsp.getUpdateCount());
+            // the features are applied in batches while they are read from the request
+            ChangeGraphResponse rsp;
+            try (CloseableIterator<JsonFeature> features = ghJson.readFeatures(new InputStreamReader(httpReq.getInputStream(), Helper.UTF_CS))) {
+                rsp = ((GraphHopper) graphHopper).changeGraph(features);
+            }
+            ObjectNode resObject = createJson(rsp);
             // prepare the consumer to get some changes not immediately when returning after POST
             resObject.put("scheduled_updates", 0);
 
@@ -69,6 +74,25 @@ public class ChangeGraphServlet extends GHBaseServlet {
 
             took = sw.stop().getSeconds();
             logger.info(infoStr + " " + took);
+        } catch (ChangeGraphException ex) {
+            // earlier batches are already visible for routing, so tell the client what was applied
+            took = sw.stop().getSeconds();
+            ChangeGraphResponse applied = ex.getAppliedChanges();
+            String appliedStr = "applied " + applied.getUpdateCount() + " updates in " + applied.getBatches().size() + " batches before the error";
+            int code;
+            String message;
+            if (ex.getCause() instanceof IllegalArgumentException) {
+                logger.warn(infoStr + " " + took + ", " + appliedStr + ", " + ex.getMessage());
+                code = 400;
+                message = "Wrong arguments for endpoint /change, " + appliedStr + ", " + infoStr;
+            } else {
+                logger.error(infoStr + " " + took + ", " + appliedStr, ex);
+                code = 500;
+                message = "Error at endpoint /change, " + appliedStr + ", " + infoStr;
+            }
+            ObjectNode json = createJson(applied);
+            json.put("message", message);
+            writeJsonError(httpRes, code, json);
         } catch (IllegalArgumentException ex) {
             took = sw.stop().getSeconds();
             logger.warn(infoStr + " " + took + ", " + ex.getMessage());
@@ -80,6 +104,20 @@ public class ChangeGraphServlet extends GHBaseServlet {
         }
     }
 
+    private ObjectNode createJson(ChangeGraphResponse rsp) {
+        ObjectNode resObject = objectMapper.createObjectNode();
+        resObject.put("updates", rsp.getUpdateCount());
+        ArrayNode batchesArray = resObject.putArray("batches");
+        for (ChangeGraphBatch batch : rsp.getBatches()) {
+            ObjectNode batchObject = batchesArray.addObject();
+            batchObject.put("features", batch.getFeatureCount());
+            batchObject.put("edges", batch.getEdgeCount());
+            batchObject.put("updates", batch.getUpdateCount());
+            batchObject.put("took", batch.getTookMillis());
+        }
+        return resObject;
+    }
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         throw new IllegalArgumentException("GET not allowed");
@@ -23,6 +23,7 @@ import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.PathWrapper;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.util.BinaryRouteCodec;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPointIndoor;
@@ -47,11 +48,13 @@ import java.util.*;
 import static com.graphhopper.util.Parameters.DETAILS.PATH_DETAILS;
 import static com.graphhopper.util.Parameters.Routing.*;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 /**
  * Servlet to use GraphHopper in a remote client application like mobile or browser. Note: If type
  * is json it returns the points in GeoJson format (longitude,latitude) unlike the format "lat,lon"
- * used otherwise. See the full API response format in docs/web/api-doc.md
+ * used otherwise. If type is binary successful responses are written with the BinaryRouteCodec.
+ * See the full API response format in docs/web/api-doc.md
  * <p>
  *
  * @author Peter Karich
@@ -74,7 +77,9 @@ public class GraphHopperServlet extends GHBaseServlet {
         GHResponse ghRsp = new GHResponse();
 
         double minPathPrecision = getDoubleParam(httpReq, WAY_POINT_MAX_DISTANCE, 1d);
-        boolean writeGPX = "gpx".equalsIgnoreCase(getParam(httpReq, "type", "json"));
+        String type = getParam(httpReq, "type", "json");
+        boolean writeGPX = "gpx".equalsIgnoreCase(type);
+        boolean writeBinary = "binary".equalsIgnoreCase(type);
         boolean enableInstructions = writeGPX || getBooleanParam(httpReq, INSTRUCTIONS, true);
         boolean calcPoints = getBooleanParam(httpReq, CALC_POINTS, true);
         boolean enableElevation = getBooleanParam(httpReq, "elevation", false);
@@ -180,6 +185,11 @@ public class GraphHopperServlet extends GHBaseServlet {
                 String xml = createGPXString(httpReq, httpRes, ghRsp.getBest());
                 writeResponse(httpRes, xml);
             }
+        } else if (writeBinary && !ghRsp.hasErrors()) {
+            // errors are still returned as JSON below, so clients only have to decode successful responses
+            httpRes.setStatus(SC_OK);
+            httpRes.setContentType(BinaryRouteCodec.CONTENT_TYPE);
+            BinaryRouteCodec.write(ghRsp, calcPoints, enableInstructions, enableElevation, httpRes.getOutputStream());
         } else {
             Map<String, Object> map = routeSerializer.toJSON(ghRsp, calcPoints, pointsEncoded,
                     enableElevation, enableInstructions);
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.http;
 
+import com.graphhopper.storage.IndoorExtension;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.PointListIndoor;
 
@@ -51,7 +52,7 @@ public class WebHelper {
 
 
         public static PointList decodePolyline(String encoded, int initCap, boolean is3D, boolean isIndoor) {
-        PointList poly = new PointList(initCap, is3D);
+        PointList poly = isIndoor ? new PointListIndoor(initCap, is3D) : new PointList(initCap, is3D);
         int index = 0;
         int len = encoded.length();
         int lat = 0, lng = 0, ele = 0;
@@ -103,7 +104,7 @@ public class WebHelper {
                 } while (b >= 0x20);
                 int deltaLevel = ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
                 level += deltaLevel;
-                ((PointListIndoor)poly).add((double) lat / 1e5, (double) lng / 1e5,level);
+                ((PointListIndoor)poly).add((double) lat / 1e5, (double) lng / 1e5, Double.NaN, IndoorExtension.toLevelValue(level));
 
             }
             else
@@ -140,7 +141,8 @@ public class WebHelper {
                 prevEle = num;
             }
             if(isIndoor){
-                num = ((PointListIndoor)poly).getLevel(i);
+                // level codes keep fractional levels like 0.5
+                num = IndoorExtension.toLevelCode(((PointListIndoor)poly).getLevel(i));
                 encodeNumber(sb,num-prevLevel);
                 prevLevel = num;
             }
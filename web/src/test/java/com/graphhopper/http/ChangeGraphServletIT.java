@@ -94,4 +94,17 @@ public class ChangeGraphServletIT extends BaseServletTester {
         assertTrue("distance wasn't correct:" + distance, distance > 5300);
         assertTrue("distance wasn't correct:" + distance, distance < 5800);
     }
+
+    @Test
+    public void testInvalidFeatureReportsAppliedChanges() throws Exception {
+        String geoJson = "{\"type\": \"FeatureCollection\", \"features\": [{"
+                + "  \"type\": \"Feature\","
+                + "  \"geometry\": {\"type\": \"Point\", \"coordinates\": [1.521692, 42.522969]},"
+                + "  \"properties\": {\"vehicles\": [\"car\"], \"access\": false}"
+                + "}, 1]}";
+        JsonNode json = new ObjectMapper().readTree(post("/change", 400, geoJson));
+        assertTrue(json.get("message").asText(), json.get("message").asText().contains("before the error"));
+        assertTrue(json.has("updates"));
+        assertTrue(json.has("batches"));
+    }
 }